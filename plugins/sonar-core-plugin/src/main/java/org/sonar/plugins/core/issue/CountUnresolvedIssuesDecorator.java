@@ -28,6 +28,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
 import org.apache.commons.lang.time.DateUtils;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorBarriers;
 import org.sonar.api.batch.DecoratorContext;
@@ -66,6 +67,7 @@ import java.util.Set;
  * @since 3.6
  */
 @DependsUpon(DecoratorBarriers.ISSUES_TRACKED)
+@ConcurrentExecution
 public class CountUnresolvedIssuesDecorator implements Decorator {
 
   private final ResourcePerspectives perspectives;
@@ -22,6 +22,7 @@ package org.sonar.plugins.core.issue;
 import org.apache.commons.lang.time.DateUtils;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.resources.Project;
@@ -36,6 +37,7 @@ import java.util.Date;
 /**
  * Load all the issues referenced during the previous scan.
  */
+@ConcurrentExecution
 public class InitialOpenIssuesSensor implements Sensor {
 
   private final InitialOpenIssuesStack initialOpenIssuesStack;
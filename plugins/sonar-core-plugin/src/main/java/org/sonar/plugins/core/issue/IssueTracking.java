@@ -23,7 +23,7 @@ package org.sonar.plugins.core.issue;
 import org.sonar.plugins.core.issue.tracking.SourceChecksum;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Objects;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -42,6 +42,7 @@ import org.sonar.plugins.core.issue.tracking.StringTextComparator;
 
 import javax.annotation.Nullable;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -92,19 +93,10 @@ public class IssueTracking implements BatchExtension {
     }
 
     // Match the key of the issue. (For manual issues)
-    for (DefaultIssue newIssue : newIssues) {
-      mapIssue(newIssue, findLastIssueWithSameKey(newIssue, result.unmatchedForRule(newIssue.ruleKey())), result);
-    }
+    mapIssuesWithSame(TrackingKey.KEY, newIssues, result);
 
     // Try first to match issues on same rule with same line and with same checksum (but not necessarily with same message)
-    for (DefaultIssue newIssue : newIssues) {
-      if (isNotAlreadyMapped(newIssue, result)) {
-        mapIssue(
-          newIssue,
-          findLastIssueWithSameLineAndChecksum(newIssue, result.unmatchedForRule(newIssue.ruleKey())),
-          result);
-      }
-    }
+    mapIssuesWithSame(TrackingKey.LINE_AND_CHECKSUM, newIssues, result);
   }
 
   private void mapNewissues(SourceHashHolder sourceHashHolder, Collection<DefaultIssue> newIssues, IssueTrackingResult result) {
@@ -172,50 +164,68 @@ public class IssueTracking implements BatchExtension {
 
   private void mapIssuesOnSameRule(Collection<DefaultIssue> newIssues, IssueTrackingResult result) {
     // Try then to match issues on same rule with same message and with same checksum
-    for (DefaultIssue newIssue : newIssues) {
-      if (isNotAlreadyMapped(newIssue, result)) {
-        mapIssue(
-          newIssue,
-          findLastIssueWithSameChecksumAndMessage(newIssue, result.unmatchedForRule(newIssue.ruleKey())),
-          result);
-      }
-    }
+    mapIssuesWithSame(TrackingKey.CHECKSUM_AND_MESSAGE, newIssues, result);
 
     // Try then to match issues on same rule with same line and with same message
-    for (DefaultIssue newIssue : newIssues) {
-      if (isNotAlreadyMapped(newIssue, result)) {
-        mapIssue(
-          newIssue,
-          findLastIssueWithSameLineAndMessage(newIssue, result.unmatchedForRule(newIssue.ruleKey())),
-          result);
-      }
-    }
+    mapIssuesWithSame(TrackingKey.LINE_AND_MESSAGE, newIssues, result);
 
     // Last check: match issue if same rule and same checksum but different line and different message
     // See SONAR-2812
+    mapIssuesWithSame(TrackingKey.CHECKSUM, newIssues, result);
+  }
+
+  /**
+   * Maps each new issue to the first unmatched past issue having the same rule and the same fields.
+   * Past issues are indexed once per pass, so each new issue costs a lookup instead of a scan
+   * of all the past issues of its rule.
+   */
+  private void mapIssuesWithSame(TrackingKey trackingKey, Collection<DefaultIssue> newIssues, IssueTrackingResult result) {
+    Multimap<List<Object>, IssueDto> lastIssuesByKey = LinkedHashMultimap.create();
+    for (Map.Entry<RuleKey, IssueDto> entry : result.unmatchedByRule().entries()) {
+      lastIssuesByKey.put(trackingKey.of(entry.getKey(), entry.getValue()), entry.getValue());
+    }
     for (DefaultIssue newIssue : newIssues) {
+      if (lastIssuesByKey.isEmpty()) {
+        return;
+      }
       if (isNotAlreadyMapped(newIssue, result)) {
-        mapIssue(
-          newIssue,
-          findLastIssueWithSameChecksum(newIssue, result.unmatchedForRule(newIssue.ruleKey())),
-          result);
+        List<Object> key = trackingKey.of(newIssue);
+        IssueDto pastIssue = Iterables.getFirst(lastIssuesByKey.get(key), null);
+        if (pastIssue != null) {
+          lastIssuesByKey.remove(key, pastIssue);
+          mapIssue(newIssue, pastIssue, result);
+        }
       }
     }
   }
 
   private void map(Collection<DefaultIssue> newIssues, Collection<IssueDto> lastIssues, IssueTrackingResult result) {
+    // lazily loaded, as most of the calls happen when all the new issues of the line are already mapped
+    Multimap<RuleKey, IssueDto> lastIssuesByRule = null;
     for (DefaultIssue newIssue : newIssues) {
       if (isNotAlreadyMapped(newIssue, result)) {
-        for (IssueDto pastIssue : lastIssues) {
-          if (isNotAlreadyMapped(pastIssue, result) && Objects.equal(newIssue.ruleKey(), RuleKey.of(pastIssue.getRuleRepo(), pastIssue.getRule()))) {
-            mapIssue(newIssue, pastIssue, result);
-            break;
-          }
+        if (lastIssuesByRule == null) {
+          lastIssuesByRule = unmatchedIssuesByRule(lastIssues, result);
+        }
+        IssueDto pastIssue = Iterables.getFirst(lastIssuesByRule.get(newIssue.ruleKey()), null);
+        if (pastIssue != null) {
+          lastIssuesByRule.remove(newIssue.ruleKey(), pastIssue);
+          mapIssue(newIssue, pastIssue, result);
         }
       }
     }
   }
 
+  private Multimap<RuleKey, IssueDto> unmatchedIssuesByRule(Collection<IssueDto> lastIssues, IssueTrackingResult result) {
+    Multimap<RuleKey, IssueDto> lastIssuesByRule = LinkedHashMultimap.create();
+    for (IssueDto pastIssue : lastIssues) {
+      if (isNotAlreadyMapped(pastIssue, result)) {
+        lastIssuesByRule.put(RuleKey.of(pastIssue.getRuleRepo(), pastIssue.getRule()), pastIssue);
+      }
+    }
+    return lastIssuesByRule;
+  }
+
   private Multimap<Integer, DefaultIssue> newIssuesByLines(Collection<DefaultIssue> newIssues, IssueTrackingBlocksRecognizer rec, IssueTrackingResult result) {
     Multimap<Integer, DefaultIssue> newIssuesByLines = LinkedHashMultimap.create();
     for (DefaultIssue newIssue : newIssues) {
@@ -236,51 +246,6 @@ public class IssueTracking implements BatchExtension {
     return lastIssuesByLines;
   }
 
-  private IssueDto findLastIssueWithSameChecksum(DefaultIssue newIssue, Collection<IssueDto> lastIssues) {
-    for (IssueDto pastIssue : lastIssues) {
-      if (isSameChecksum(newIssue, pastIssue)) {
-        return pastIssue;
-      }
-    }
-    return null;
-  }
-
-  private IssueDto findLastIssueWithSameLineAndMessage(DefaultIssue newIssue, Collection<IssueDto> lastIssues) {
-    for (IssueDto pastIssue : lastIssues) {
-      if (isSameLine(newIssue, pastIssue) && isSameMessage(newIssue, pastIssue)) {
-        return pastIssue;
-      }
-    }
-    return null;
-  }
-
-  private IssueDto findLastIssueWithSameChecksumAndMessage(DefaultIssue newIssue, Collection<IssueDto> lastIssues) {
-    for (IssueDto pastIssue : lastIssues) {
-      if (isSameChecksum(newIssue, pastIssue) && isSameMessage(newIssue, pastIssue)) {
-        return pastIssue;
-      }
-    }
-    return null;
-  }
-
-  private IssueDto findLastIssueWithSameLineAndChecksum(DefaultIssue newIssue, Collection<IssueDto> lastIssues) {
-    for (IssueDto pastIssue : lastIssues) {
-      if (isSameLine(newIssue, pastIssue) && isSameChecksum(newIssue, pastIssue)) {
-        return pastIssue;
-      }
-    }
-    return null;
-  }
-
-  private IssueDto findLastIssueWithSameKey(DefaultIssue newIssue, Collection<IssueDto> lastIssues) {
-    for (IssueDto pastIssue : lastIssues) {
-      if (isSameKey(newIssue, pastIssue)) {
-        return pastIssue;
-      }
-    }
-    return null;
-  }
-
   private boolean isNotAlreadyMapped(IssueDto pastIssue, IssueTrackingResult result) {
     return result.unmatched().contains(pastIssue);
   }
@@ -289,22 +254,6 @@ public class IssueTracking implements BatchExtension {
     return !result.isMatched(newIssue);
   }
 
-  private boolean isSameChecksum(DefaultIssue newIssue, IssueDto pastIssue) {
-    return Objects.equal(pastIssue.getChecksum(), newIssue.checksum());
-  }
-
-  private boolean isSameLine(DefaultIssue newIssue, IssueDto pastIssue) {
-    return Objects.equal(pastIssue.getLine(), newIssue.line());
-  }
-
-  private boolean isSameMessage(DefaultIssue newIssue, IssueDto pastIssue) {
-    return Objects.equal(newIssue.message(), pastIssue.getMessage());
-  }
-
-  private boolean isSameKey(DefaultIssue newIssue, IssueDto pastIssue) {
-    return Objects.equal(newIssue.key(), pastIssue.getKee());
-  }
-
   private void mapIssue(DefaultIssue issue, @Nullable IssueDto ref, IssueTrackingResult result) {
     if (ref != null) {
       result.setMatch(issue, ref);
@@ -316,6 +265,71 @@ public class IssueTracking implements BatchExtension {
     return getClass().getSimpleName();
   }
 
+  /**
+   * Fields compared by the successive tracking passes. Rule is always part of the key.
+   */
+  private enum TrackingKey {
+    KEY {
+      @Override
+      List<Object> of(RuleKey ruleKey, IssueDto pastIssue) {
+        return Arrays.<Object>asList(ruleKey, pastIssue.getKee());
+      }
+
+      @Override
+      List<Object> of(DefaultIssue newIssue) {
+        return Arrays.<Object>asList(newIssue.ruleKey(), newIssue.key());
+      }
+    },
+    LINE_AND_CHECKSUM {
+      @Override
+      List<Object> of(RuleKey ruleKey, IssueDto pastIssue) {
+        return Arrays.<Object>asList(ruleKey, pastIssue.getLine(), pastIssue.getChecksum());
+      }
+
+      @Override
+      List<Object> of(DefaultIssue newIssue) {
+        return Arrays.<Object>asList(newIssue.ruleKey(), newIssue.line(), newIssue.checksum());
+      }
+    },
+    CHECKSUM_AND_MESSAGE {
+      @Override
+      List<Object> of(RuleKey ruleKey, IssueDto pastIssue) {
+        return Arrays.<Object>asList(ruleKey, pastIssue.getChecksum(), pastIssue.getMessage());
+      }
+
+      @Override
+      List<Object> of(DefaultIssue newIssue) {
+        return Arrays.<Object>asList(newIssue.ruleKey(), newIssue.checksum(), newIssue.message());
+      }
+    },
+    LINE_AND_MESSAGE {
+      @Override
+      List<Object> of(RuleKey ruleKey, IssueDto pastIssue) {
+        return Arrays.<Object>asList(ruleKey, pastIssue.getLine(), pastIssue.getMessage());
+      }
+
+      @Override
+      List<Object> of(DefaultIssue newIssue) {
+        return Arrays.<Object>asList(newIssue.ruleKey(), newIssue.line(), newIssue.message());
+      }
+    },
+    CHECKSUM {
+      @Override
+      List<Object> of(RuleKey ruleKey, IssueDto pastIssue) {
+        return Arrays.<Object>asList(ruleKey, pastIssue.getChecksum());
+      }
+
+      @Override
+      List<Object> of(DefaultIssue newIssue) {
+        return Arrays.<Object>asList(newIssue.ruleKey(), newIssue.checksum());
+      }
+    };
+
+    abstract List<Object> of(RuleKey ruleKey, IssueDto pastIssue);
+
+    abstract List<Object> of(DefaultIssue newIssue);
+  }
+
   private static class LinePair {
     int lineA;
     int lineB;
@@ -44,6 +44,13 @@ class IssueTrackingResult {
     return unmatchedByRule.get(ruleKey);
   }
 
+  /**
+   * Unmatched issues grouped by rule, in the order they were added
+   */
+  Multimap<RuleKey, IssueDto> unmatchedByRule() {
+    return unmatchedByRule;
+  }
+
   Collection<DefaultIssue> matched() {
     return matched.keySet();
   }
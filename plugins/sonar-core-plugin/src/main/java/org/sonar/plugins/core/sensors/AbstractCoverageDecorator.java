@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.core.sensors;
 
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
@@ -31,6 +32,7 @@ import org.sonar.api.resources.ResourceUtils;
 import java.util.Arrays;
 import java.util.Collection;
 
+@ConcurrentExecution
 public abstract class AbstractCoverageDecorator implements Decorator {
 
   public boolean shouldExecuteOnProject(Project project) {
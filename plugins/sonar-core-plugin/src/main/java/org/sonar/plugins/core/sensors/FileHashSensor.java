@@ -20,6 +20,7 @@
 package org.sonar.plugins.core.sensors;
 
 import com.google.common.collect.Maps;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.InputFile;
@@ -41,6 +42,7 @@ import java.util.Map;
  * @since 4.0
  */
 @DryRunIncompatible
+@ConcurrentExecution
 public final class FileHashSensor implements Sensor {
 
   private final InputPathCache fileCache;
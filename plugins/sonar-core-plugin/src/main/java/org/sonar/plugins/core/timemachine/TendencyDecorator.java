@@ -24,6 +24,7 @@ import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.DateUtils;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorBarriers;
 import org.sonar.api.batch.DecoratorContext;
@@ -44,6 +45,7 @@ import java.util.List;
 
 @DryRunIncompatible
 @DependedUpon(DecoratorBarriers.END_OF_TIME_MACHINE)
+@ConcurrentExecution
 public class TendencyDecorator implements Decorator {
 
   public static final String PROP_DAYS_DESCRIPTION = "Number of days the tendency should be calculated on.";
@@ -86,12 +88,19 @@ public class TendencyDecorator implements Decorator {
     return query;
   }
 
-  protected TimeMachineQuery resetQuery(Project project, Resource resource) {
+  /**
+   * The shared query is only a template: a new query is created for each resource, so that resources
+   * can be decorated concurrently.
+   */
+  protected synchronized TimeMachineQuery createQuery(Project project, Resource resource) {
     if (query == null) {
       initQuery(project);
     }
-    query.setResource(resource);
-    return query;
+    return new TimeMachineQuery(resource)
+      .setFrom(query.getFrom())
+      .setTo(query.getTo())
+      .setToCurrentAnalysis(query.isToCurrentAnalysis())
+      .setMetrics(query.getMetrics());
   }
 
   public boolean shouldExecuteOnProject(Project project) {
@@ -100,14 +109,14 @@ public class TendencyDecorator implements Decorator {
 
   public void decorate(Resource resource, DecoratorContext context) {
     if (shouldDecorateResource(resource)) {
-      resetQuery(context.getProject(), resource);
-      List<Object[]> fields = timeMachine.getMeasuresFields(query);
+      TimeMachineQuery resourceQuery = createQuery(context.getProject(), resource);
+      List<Object[]> fields = timeMachine.getMeasuresFields(resourceQuery);
       ListMultimap<Metric, Double> valuesPerMetric = ArrayListMultimap.create();
       for (Object[] field : fields) {
         valuesPerMetric.put((Metric) field[1], (Double) field[2]);
       }
 
-      for (Metric metric : query.getMetrics()) {
+      for (Metric metric : resourceQuery.getMetrics()) {
         Measure measure = context.getMeasure(metric);
         if (measure != null) {
           List<Double> values = valuesPerMetric.get(metric);
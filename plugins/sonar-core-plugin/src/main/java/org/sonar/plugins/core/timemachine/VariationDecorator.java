@@ -21,6 +21,7 @@ package org.sonar.plugins.core.timemachine;
 
 import com.google.common.collect.Maps;
 import org.apache.commons.lang.StringUtils;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorBarriers;
 import org.sonar.api.batch.DecoratorContext;
@@ -34,6 +35,7 @@ import org.sonar.api.measures.RuleMeasure;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.ResourceUtils;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
@@ -49,6 +51,7 @@ import java.util.List;
 import java.util.Map;
 
 @DependedUpon(DecoratorBarriers.END_OF_TIME_MACHINE)
+@ConcurrentExecution
 public class VariationDecorator implements Decorator {
 
   private List<PastSnapshot> projectPastSnapshots;
@@ -82,6 +85,10 @@ public class VariationDecorator implements Decorator {
         computeVariation(resource, context, projectPastSnapshot);
       }
     }
+    if (ResourceUtils.isRootProject(resource)) {
+      // the root project is the last resource to be decorated
+      pastMeasuresLoader.releaseTreePastMeasures();
+    }
   }
 
   boolean shouldComputeVariation(Resource resource) {
@@ -112,6 +112,22 @@ public class InitialOpenIssuesStackTest {
     assertThat(issueChangeDtos.get(1).getKey()).isEqualTo("CHANGE-2");
   }
 
+  @Test
+  public void select_changelog_of_many_issues() {
+    stack.addChangelog(new IssueChangeDto().setKey("CHANGE-1").setIssueKey("ISSUE-1"));
+    stack.addChangelog(new IssueChangeDto().setKey("CHANGE-2").setIssueKey("ISSUE-2"));
+    stack.addChangelog(new IssueChangeDto().setKey("CHANGE-3").setIssueKey("ISSUE-1"));
+    stack.addChangelog(new IssueChangeDto().setKey("CHANGE-4").setIssueKey("ISSUE-1"));
+
+    List<IssueChangeDto> issueChangeDtos = stack.selectChangelog("ISSUE-1");
+    assertThat(issueChangeDtos).hasSize(3);
+    assertThat(issueChangeDtos.get(0).getKey()).isEqualTo("CHANGE-1");
+    assertThat(issueChangeDtos.get(1).getKey()).isEqualTo("CHANGE-3");
+    assertThat(issueChangeDtos.get(2).getKey()).isEqualTo("CHANGE-4");
+
+    assertThat(stack.selectChangelog("ISSUE-2")).hasSize(1);
+  }
+
   @Test
   public void return_empty_changelog() {
     assertThat(stack.selectChangelog("ISSUE-1")).isEmpty();
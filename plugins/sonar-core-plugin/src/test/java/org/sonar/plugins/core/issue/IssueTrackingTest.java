@@ -23,6 +23,8 @@ package org.sonar.plugins.core.issue;
 import org.sonar.api.batch.SonarIndex;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
 import com.google.common.io.Resources;
 import org.junit.Before;
 import org.junit.Test;
@@ -36,6 +38,9 @@ import org.sonar.core.issue.db.IssueDto;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.fest.assertions.Assertions.assertThat;
@@ -340,6 +345,105 @@ public class IssueTrackingTest {
     assertThat(result.matching(newIssue5)).isSameAs(referenceIssue1);
   }
 
+  @Test(timeout = 10000)
+  public void should_track_thousands_of_issues_on_same_rule() {
+    sourceHashHolder = new SourceHashHolder(index, lastSnapshots, null);
+
+    List<IssueDto> referenceIssues = newArrayList();
+    List<DefaultIssue> newIssues = newArrayList();
+    for (int i = 0; i < 20000; i++) {
+      referenceIssues.add(newReferenceIssue("message", i, "squid", "AvoidCycle", "checksum" + i));
+      // lines moved and messages changed, only the checksums can match
+      newIssues.add(newDefaultIssue("new message", i + 1, RuleKey.of("squid", "AvoidCycle"), "checksum" + (19999 - i)));
+    }
+
+    IssueTrackingResult result = new IssueTrackingResult();
+    tracking.mapIssues(newIssues, referenceIssues, sourceHashHolder, result);
+
+    assertThat(result.matched()).hasSize(20000);
+    assertThat(result.unmatched()).isEmpty();
+    assertThat(result.matching(newIssues.get(0))).isSameAs(referenceIssues.get(19999));
+  }
+
+  @Test
+  public void should_match_like_a_sequential_scan_of_past_issues() {
+    sourceHashHolder = new SourceHashHolder(index, lastSnapshots, null);
+    Random random = new Random(42L);
+    String[] rules = {"AvoidCycle", "NullDeref"};
+
+    for (int iteration = 0; iteration < 200; iteration++) {
+      List<IssueDto> referenceIssues = newArrayList();
+      List<DefaultIssue> newIssues = newArrayList();
+      for (int i = 0; i < 30; i++) {
+        // small value domains, so that many issues share the same fields
+        IssueDto referenceIssue = newReferenceIssue(randomValue(random, "message"), randomLine(random), "squid", rules[random.nextInt(2)], randomValue(random, "checksum"));
+        referenceIssues.add(referenceIssue);
+        DefaultIssue newIssue = newDefaultIssue(randomValue(random, "message"), randomLine(random), RuleKey.of("squid", rules[random.nextInt(2)]), randomValue(random, "checksum"));
+        if (random.nextInt(10) == 0) {
+          newIssue.setKey(referenceIssues.get(random.nextInt(referenceIssues.size())).getKee());
+        }
+        newIssues.add(newIssue);
+      }
+
+      IssueTrackingResult result = new IssueTrackingResult();
+      tracking.mapIssues(newIssues, referenceIssues, sourceHashHolder, result);
+
+      Map<DefaultIssue, IssueDto> expected = sequentialScan(newIssues, referenceIssues);
+      for (DefaultIssue newIssue : newIssues) {
+        assertThat(result.matching(newIssue)).isSameAs(expected.get(newIssue));
+      }
+    }
+  }
+
+  /**
+   * Reference implementation of the tracking passes, scanning all the unmatched past issues for each new issue
+   */
+  private static Map<DefaultIssue, IssueDto> sequentialScan(List<DefaultIssue> newIssues, List<IssueDto> referenceIssues) {
+    Map<DefaultIssue, IssueDto> matches = Maps.newIdentityHashMap();
+    List<IssueDto> unmatched = newArrayList(referenceIssues);
+    String[][] passes = {{"key"}, {"line", "checksum"}, {"checksum", "message"}, {"line", "message"}, {"checksum"}};
+    for (String[] fields : passes) {
+      for (DefaultIssue newIssue : newIssues) {
+        if (!matches.containsKey(newIssue)) {
+          for (IssueDto pastIssue : unmatched) {
+            if (isSame(newIssue, pastIssue, fields)) {
+              matches.put(newIssue, pastIssue);
+              unmatched.remove(pastIssue);
+              break;
+            }
+          }
+        }
+      }
+    }
+    return matches;
+  }
+
+  private static boolean isSame(DefaultIssue newIssue, IssueDto pastIssue, String[] fields) {
+    boolean same = newIssue.ruleKey().equals(RuleKey.of(pastIssue.getRuleRepo(), pastIssue.getRule()));
+    for (String field : fields) {
+      if ("key".equals(field)) {
+        same &= Objects.equal(newIssue.key(), pastIssue.getKee());
+      } else if ("line".equals(field)) {
+        same &= Objects.equal(newIssue.line(), pastIssue.getLine());
+      } else if ("checksum".equals(field)) {
+        same &= Objects.equal(newIssue.checksum(), pastIssue.getChecksum());
+      } else {
+        same &= Objects.equal(newIssue.message(), pastIssue.getMessage());
+      }
+    }
+    return same;
+  }
+
+  private static String randomValue(Random random, String prefix) {
+    int value = random.nextInt(4);
+    return value == 0 ? null : prefix + value;
+  }
+
+  private static Integer randomLine(Random random) {
+    int line = random.nextInt(5);
+    return line == 0 ? null : line;
+  }
+
   private static String load(String name) throws IOException {
     return Resources.toString(IssueTrackingTest.class.getResource("IssueTrackingTest/" + name + ".txt"), Charsets.UTF_8);
   }
@@ -21,6 +21,7 @@ package org.sonar.plugins.core.timemachine;
 
 import org.junit.Test;
 import org.junit.matchers.JUnitMatchers;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.TimeMachine;
 import org.sonar.api.batch.TimeMachineQuery;
@@ -30,6 +31,7 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -37,7 +39,11 @@ import java.util.Arrays;
 import java.util.Date;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyList;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -69,7 +75,7 @@ public class TendencyDecoratorTest {
     TimeMachineQuery query = new TimeMachineQuery(null).setMetrics(CoreMetrics.LINES, CoreMetrics.COVERAGE);
     TimeMachine timeMachine = mock(TimeMachine.class);
 
-    when(timeMachine.getMeasuresFields(query)).thenReturn(Arrays.<Object[]>asList(
+    when(timeMachine.getMeasuresFields(any(TimeMachineQuery.class))).thenReturn(Arrays.<Object[]>asList(
       new Object[] {date("2009-12-01"), CoreMetrics.LINES, 1200.0},
       new Object[] {date("2009-12-01"), CoreMetrics.COVERAGE, 80.5},
       new Object[] {date("2009-12-02"), CoreMetrics.LINES, 1300.0},
@@ -82,10 +88,18 @@ public class TendencyDecoratorTest {
     when(context.getMeasure(CoreMetrics.COVERAGE)).thenReturn(new Measure(CoreMetrics.LINES, 90.0));
 
     TendencyDecorator decorator = new TendencyDecorator(timeMachine, query, analyser);
-    decorator.decorate(new Directory("org/foo"), context);
+    Directory directory = new Directory("org/foo");
+    decorator.decorate(directory, context);
 
     verify(analyser).analyseLevel(Arrays.asList(1200.0, 1300.0, 1150.0, 1400.0));
     verify(analyser).analyseLevel(Arrays.asList(80.5, 79.6, 90.0));
+
+    ArgumentCaptor<TimeMachineQuery> resourceQuery = ArgumentCaptor.forClass(TimeMachineQuery.class);
+    verify(timeMachine).getMeasuresFields(resourceQuery.capture());
+    assertThat(resourceQuery.getValue(), not(sameInstance(query)));
+    assertThat(resourceQuery.getValue().getResource(), is((Resource) directory));
+    assertThat(resourceQuery.getValue().getMetrics(), is(query.getMetrics()));
+    assertThat(query.getResource(), nullValue());
   }
 
   @Test
@@ -94,7 +108,7 @@ public class TendencyDecoratorTest {
     TimeMachineQuery query = new TimeMachineQuery(null).setMetrics(CoreMetrics.LINES, CoreMetrics.COVERAGE);
     TimeMachine timeMachine = mock(TimeMachine.class);
 
-    when(timeMachine.getMeasuresFields(query)).thenReturn(Arrays.<Object[]>asList(
+    when(timeMachine.getMeasuresFields(any(TimeMachineQuery.class))).thenReturn(Arrays.<Object[]>asList(
       new Object[] {date("2009-12-01"), CoreMetrics.LINES, 1200.0},
       new Object[] {date("2009-12-02"), CoreMetrics.LINES, 1300.0}
     ));
@@ -39,10 +39,12 @@ import org.sonar.batch.components.TimeMachineConfiguration;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -144,6 +146,19 @@ public class VariationDecoratorTest extends AbstractDbUnitTestCase {
     assertThat(violations.getVariation1()).isEqualTo(20.0);
   }
 
+  @Test
+  public void shouldReleasePastMeasuresOnceRootProjectIsDecorated() {
+    PastMeasuresLoader pastMeasuresLoader = mock(PastMeasuresLoader.class);
+    DecoratorContext context = mock(DecoratorContext.class);
+    VariationDecorator decorator = new VariationDecorator(pastMeasuresLoader, mock(MetricFinder.class), Collections.<PastSnapshot>emptyList(), mock(RuleFinder.class));
+
+    decorator.decorate(new Directory("org/foo"), context);
+    verify(pastMeasuresLoader, never()).releaseTreePastMeasures();
+
+    decorator.decorate(new Project("foo"), context);
+    verify(pastMeasuresLoader).releaseTreePastMeasures();
+  }
+
   private Measure newMeasure(Metric metric, double value) {
     return new Measure(metric, value);
   }
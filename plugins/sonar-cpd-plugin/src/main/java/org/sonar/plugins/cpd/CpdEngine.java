@@ -22,9 +22,19 @@ package org.sonar.plugins.cpd;
 import org.slf4j.Logger;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.config.Settings;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public abstract class CpdEngine implements BatchExtension {
 
+  /**
+   * Number of threads used to chunk files and to detect their duplications. Files are processed
+   * one at a time when not set.
+   */
+  static final String THREADS_PROPERTY = "sonar.cpd.threads";
+
   abstract boolean isLanguageSupported(String language);
 
   abstract void analyse(String language, SensorContext context);
@@ -41,6 +51,14 @@ public abstract class CpdEngine implements BatchExtension {
     }
   }
 
+  static int threads(Settings settings) {
+    return Math.max(1, settings.getInt(THREADS_PROPERTY));
+  }
+
+  static ExecutorService newExecutorService(Settings settings) {
+    return Executors.newFixedThreadPool(threads(settings));
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
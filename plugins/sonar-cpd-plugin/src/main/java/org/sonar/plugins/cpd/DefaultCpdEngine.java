@@ -21,7 +21,6 @@ package org.sonar.plugins.cpd;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +34,6 @@ import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.config.Settings;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.resources.Project;
-import org.sonar.api.utils.SonarException;
 import org.sonar.batch.duplication.BlockCache;
 import org.sonar.duplications.DuplicationPredicates;
 import org.sonar.duplications.block.Block;
@@ -47,23 +45,13 @@ import org.sonar.plugins.cpd.index.SonarDuplicationsIndex;
 
 import javax.annotation.Nullable;
 
-import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 public class DefaultCpdEngine extends CpdEngine {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultCpdEngine.class);
 
-  /**
-   * Limit of time to analyse one file (in seconds).
-   */
-  private static final int TIMEOUT = 5 * 60;
-
   private final IndexFactory indexFactory;
   private final CpdMappings mappings;
   private final FileSystem fs;
@@ -115,28 +103,9 @@ public class DefaultCpdEngine extends CpdEngine {
     // Detect
     Predicate<CloneGroup> minimumTokensPredicate = DuplicationPredicates.numberOfUnitsNotLessThan(getMinimumTokens(languageKey));
 
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    ExecutorService executorService = newExecutorService(settings);
     try {
-      for (InputFile inputFile : sourceFiles) {
-        LOG.debug("Detection of duplications for {}", inputFile);
-        String resourceEffectiveKey = ((DeprecatedDefaultInputFile) inputFile).key();
-        Collection<Block> fileBlocks = index.getByInputFile(inputFile, resourceEffectiveKey);
-
-        Iterable<CloneGroup> filtered;
-        try {
-          List<CloneGroup> duplications = executorService.submit(new JavaCpdEngine.Task(index, fileBlocks)).get(TIMEOUT, TimeUnit.SECONDS);
-          filtered = Iterables.filter(duplications, minimumTokensPredicate);
-        } catch (TimeoutException e) {
-          filtered = null;
-          LOG.warn("Timeout during detection of duplications for " + inputFile, e);
-        } catch (InterruptedException e) {
-          throw new SonarException("Fail during detection of duplication for " + inputFile, e);
-        } catch (ExecutionException e) {
-          throw new SonarException("Fail during detection of duplication for " + inputFile, e);
-        }
-
-        JavaCpdEngine.save(context, inputFile, filtered, contextFactory);
-      }
+      JavaCpdEngine.detect(executorService, threads(settings), index, context, sourceFiles, minimumTokensPredicate, contextFactory);
     } finally {
       executorService.shutdown();
     }
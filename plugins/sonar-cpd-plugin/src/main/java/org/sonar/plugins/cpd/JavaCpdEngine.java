@@ -20,6 +20,7 @@
 
 package org.sonar.plugins.cpd;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import org.apache.commons.io.IOUtils;
@@ -43,7 +44,6 @@ import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.BlockChunker;
 import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm;
 import org.sonar.duplications.index.CloneGroup;
-import org.sonar.duplications.index.CloneIndex;
 import org.sonar.duplications.index.ClonePart;
 import org.sonar.duplications.java.JavaStatementBuilder;
 import org.sonar.duplications.java.JavaTokenProducer;
@@ -59,14 +59,18 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -81,6 +85,12 @@ public class JavaCpdEngine extends CpdEngine {
    */
   private static final int TIMEOUT = 5 * 60;
 
+  /**
+   * Number of detection tasks submitted ahead of the file being saved, per thread. A task which times out
+   * keeps its thread until it completes, so the tasks are not all submitted at once.
+   */
+  private static final int TASKS_IN_FLIGHT_PER_THREAD = 2;
+
   private static final int MAX_CLONE_GROUP_PER_FILE = 100;
   private static final int MAX_CLONE_PART_PER_GROUP = 100;
 
@@ -120,18 +130,59 @@ public class JavaCpdEngine extends CpdEngine {
     if (sourceFiles.isEmpty()) {
       return;
     }
-    SonarDuplicationsIndex index = createIndex(project, languageKey, sourceFiles);
-    detect(index, context, sourceFiles);
+    ExecutorService executorService = newExecutorService(settings);
+    try {
+      SonarDuplicationsIndex index = createIndex(executorService, project, languageKey, sourceFiles);
+      detect(executorService, threads(settings), index, context, sourceFiles, null, contextFactory);
+    } finally {
+      executorService.shutdown();
+    }
   }
 
-  private SonarDuplicationsIndex createIndex(@Nullable Project project, String language, Iterable<InputFile> sourceFiles) {
+  private SonarDuplicationsIndex createIndex(ExecutorService executorService, @Nullable Project project, String language, List<InputFile> sourceFiles) {
     final SonarDuplicationsIndex index = indexFactory.create(project, language);
 
-    TokenChunker tokenChunker = JavaTokenProducer.build();
-    StatementChunker statementChunker = JavaStatementBuilder.build();
-    BlockChunker blockChunker = new BlockChunker(BLOCK_SIZE);
+    // chunkers are not thread-safe, so each thread gets its own ones
+    final ThreadLocal<Chunker> chunkers = new ThreadLocal<Chunker>() {
+      @Override
+      protected Chunker initialValue() {
+        return new Chunker();
+      }
+    };
+    List<Future<List<Block>>> futures = Lists.newArrayListWithCapacity(sourceFiles.size());
+    for (final InputFile inputFile : sourceFiles) {
+      futures.add(executorService.submit(new Callable<List<Block>>() {
+        @Override
+        public List<Block> call() {
+          return chunkers.get().chunk(inputFile);
+        }
+      }));
+    }
 
-    for (InputFile inputFile : sourceFiles) {
+    // blocks are inserted in the order of files, whatever the order of chunking
+    for (int i = 0; i < sourceFiles.size(); i++) {
+      InputFile inputFile = sourceFiles.get(i);
+      try {
+        index.insert(inputFile, futures.get(i).get());
+      } catch (InterruptedException e) {
+        throw new SonarException("Fail to populate index from " + inputFile, e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new SonarException("Fail to populate index from " + inputFile, e);
+      }
+    }
+
+    return index;
+  }
+
+  private class Chunker {
+    private final TokenChunker tokenChunker = JavaTokenProducer.build();
+    private final StatementChunker statementChunker = JavaStatementBuilder.build();
+    private final BlockChunker blockChunker = new BlockChunker(BLOCK_SIZE);
+
+    List<Block> chunk(InputFile inputFile) {
       LOG.debug("Populating index from {}", inputFile);
       String resourceEffectiveKey = ((DeprecatedDefaultInputFile) inputFile).key();
 
@@ -147,53 +198,81 @@ public class JavaCpdEngine extends CpdEngine {
         IOUtils.closeQuietly(reader);
       }
 
-      List<Block> blocks = blockChunker.chunk(resourceEffectiveKey, statements);
-      index.insert(inputFile, blocks);
+      return blockChunker.chunk(resourceEffectiveKey, statements);
     }
-
-    return index;
   }
 
-  private void detect(SonarDuplicationsIndex index, org.sonar.api.batch.sensor.SensorContext context, List<InputFile> sourceFiles) {
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
-    try {
-      for (InputFile inputFile : sourceFiles) {
-        LOG.debug("Detection of duplications for {}", inputFile);
-        String resourceEffectiveKey = ((DeprecatedDefaultInputFile) inputFile).key();
-
-        Collection<Block> fileBlocks = index.getByInputFile(inputFile, resourceEffectiveKey);
-
-        List<CloneGroup> clones;
-        try {
-          clones = executorService.submit(new Task(index, fileBlocks)).get(TIMEOUT, TimeUnit.SECONDS);
-        } catch (TimeoutException e) {
-          clones = null;
-          LOG.warn("Timeout during detection of duplications for " + inputFile, e);
-        } catch (InterruptedException e) {
-          throw new SonarException("Fail during detection of duplication for " + inputFile, e);
-        } catch (ExecutionException e) {
-          throw new SonarException("Fail during detection of duplication for " + inputFile, e);
-        }
+  /**
+   * Detection is executed by the given executor, but results are saved sequentially in the order of files
+   * as the sensor context is not thread-safe.
+   */
+  static void detect(ExecutorService executorService, int threads, SonarDuplicationsIndex index, SensorContext context, List<InputFile> sourceFiles,
+    @Nullable Predicate<CloneGroup> filter, FileLinesContextFactory contextFactory) {
+    int maxTasksInFlight = threads * TASKS_IN_FLIGHT_PER_THREAD;
+    Queue<Task> tasks = new ArrayDeque<Task>(maxTasksInFlight);
+    Queue<Future<List<CloneGroup>>> futures = new ArrayDeque<Future<List<CloneGroup>>>(maxTasksInFlight);
+    Iterator<InputFile> filesToSubmit = sourceFiles.iterator();
 
-        save(context, inputFile, clones, contextFactory);
+    for (InputFile inputFile : sourceFiles) {
+      while (tasks.size() < maxTasksInFlight && filesToSubmit.hasNext()) {
+        Task task = new Task(index, filesToSubmit.next());
+        tasks.add(task);
+        futures.add(executorService.submit(task));
       }
-    } finally {
-      executorService.shutdown();
+      Task task = tasks.remove();
+      Future<List<CloneGroup>> future = futures.remove();
+
+      Iterable<CloneGroup> clones;
+      try {
+        List<CloneGroup> duplications = task.getResult(future);
+        clones = filter != null ? Iterables.filter(duplications, filter) : duplications;
+      } catch (TimeoutException e) {
+        clones = null;
+        future.cancel(true);
+        LOG.warn("Timeout during detection of duplications for " + inputFile, e);
+      } catch (InterruptedException e) {
+        throw new SonarException("Fail during detection of duplication for " + inputFile, e);
+      } catch (ExecutionException e) {
+        throw new SonarException("Fail during detection of duplication for " + inputFile, e);
+      }
+
+      save(context, inputFile, clones, contextFactory);
     }
   }
 
   static class Task implements Callable<List<CloneGroup>> {
-    private final CloneIndex index;
-    private final Collection<Block> fileBlocks;
+    private final SonarDuplicationsIndex index;
+    private final InputFile inputFile;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private volatile long startedAt;
 
-    public Task(CloneIndex index, Collection<Block> fileBlocks) {
+    public Task(SonarDuplicationsIndex index, InputFile inputFile) {
       this.index = index;
-      this.fileBlocks = fileBlocks;
+      this.inputFile = inputFile;
     }
 
     public List<CloneGroup> call() {
+      startedAt = System.currentTimeMillis();
+      started.countDown();
+      LOG.debug("Detection of duplications for {}", inputFile);
+      String resourceEffectiveKey = ((DeprecatedDefaultInputFile) inputFile).key();
+      // blocks must be loaded by the thread executing the detection, see SonarDuplicationsIndex
+      Collection<Block> fileBlocks = index.getByInputFile(inputFile, resourceEffectiveKey);
       return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
     }
+
+    /**
+     * Waits for the result of this task, at most {@link #TIMEOUT} seconds from its start. It also waits at most
+     * {@link #TIMEOUT} seconds for a thread to start it, as threads are kept by the tasks which timed out.
+     */
+    List<CloneGroup> getResult(Future<List<CloneGroup>> future) throws InterruptedException, ExecutionException, TimeoutException {
+      long timeoutInMillis = TimeUnit.SECONDS.toMillis(TIMEOUT);
+      if (!started.await(timeoutInMillis, TimeUnit.MILLISECONDS)) {
+        throw new TimeoutException("Detection not started after " + TIMEOUT + " seconds");
+      }
+      long elapsedInMillis = System.currentTimeMillis() - startedAt;
+      return future.get(Math.max(timeoutInMillis - elapsedInMillis, 0L), TimeUnit.MILLISECONDS);
+    }
   }
 
   static void save(org.sonar.api.batch.sensor.SensorContext context, InputFile inputFile, @Nullable Iterable<CloneGroup> duplications,
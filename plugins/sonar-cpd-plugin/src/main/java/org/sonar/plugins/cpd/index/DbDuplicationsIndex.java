@@ -20,7 +20,10 @@
 package org.sonar.plugins.cpd.index;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.Project;
@@ -31,13 +34,11 @@ import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 public class DbDuplicationsIndex {
 
-  private final Map<ByteArray, Collection<Block>> cache = Maps.newHashMap();
+  private static final Logger LOG = LoggerFactory.getLogger(DbDuplicationsIndex.class);
 
   private final ResourcePersister resourcePersister;
   private final int currentProjectSnapshotId;
@@ -46,6 +47,11 @@ public class DbDuplicationsIndex {
 
   private DuplicationDao dao;
 
+  /**
+   * Candidates of all the files of the project, loaded on first request once blocks of the project are inserted
+   */
+  private volatile PackedBlocksIndex candidates;
+
   public DbDuplicationsIndex(ResourcePersister resourcePersister, Project currentProject, DuplicationDao dao,
                              String language) {
     this.dao = dao;
@@ -61,43 +67,32 @@ public class DbDuplicationsIndex {
     return resourcePersister.getSnapshotOrFail(inputFile).getId();
   }
 
-  public void prepareCache(InputFile inputFile) {
-    int resourceSnapshotId = getSnapshotIdFor(inputFile);
-    List<DuplicationUnitDto> units = dao.selectCandidates(resourceSnapshotId, lastSnapshotId, languageKey);
-    cache.clear();
-    // TODO Godin: maybe remove conversion of units to blocks?
-    for (DuplicationUnitDto unit : units) {
-      String hash = unit.getHash();
-      String resourceKey = unit.getResourceKey();
-      int indexInFile = unit.getIndexInFile();
-      int startLine = unit.getStartLine();
-      int endLine = unit.getEndLine();
-
-      // TODO Godin: in fact we could work directly with id instead of key - this will allow to decrease memory consumption
-      Block block = Block.builder()
-        .setResourceId(resourceKey)
-        .setBlockHash(new ByteArray(hash))
-        .setIndexInFile(indexInFile)
-        .setLines(startLine, endLine)
-        .build();
-
-      // Group blocks by hash
-      Collection<Block> sameHash = cache.get(block.getBlockHash());
-      if (sameHash == null) {
-        sameHash = Lists.newArrayList();
-        cache.put(block.getBlockHash(), sameHash);
-      }
-      sameHash.add(block);
+  /**
+   * Loads with a single request the blocks of other projects that share a hash with the blocks of the current project.
+   */
+  public synchronized void prepareCache() {
+    if (candidates != null) {
+      return;
     }
+    final PackedBlocksIndex index = new PackedBlocksIndex();
+    dao.selectCandidatesOfProject(currentProjectSnapshotId, lastSnapshotId, languageKey, new ResultHandler() {
+      @Override
+      public void handleResult(ResultContext context) {
+        DuplicationUnitDto unit = (DuplicationUnitDto) context.getResultObject();
+        index.insert(unit.getHash(), unit.getResourceKey(), unit.getIndexInFile(), unit.getStartLine(), unit.getEndLine());
+      }
+    });
+    index.sort();
+    LOG.debug("{} candidate blocks loaded for cross project duplications", index.size());
+    candidates = index;
   }
 
   public Collection<Block> getByHash(ByteArray hash) {
-    Collection<Block> result = cache.get(hash);
-    if (result != null) {
-      return result;
-    } else {
-      return Collections.emptyList();
+    PackedBlocksIndex index = candidates;
+    if (index == null) {
+      throw new IllegalStateException("Candidate blocks are not loaded");
     }
+    return index.getByHash(hash);
   }
 
   public void insert(InputFile inputFile, Collection<Block> blocks) {
@@ -0,0 +1,205 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.cpd.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.DataUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of blocks sorted by hash, packed in arrays of primitives. Hashes are stored as longs and
+ * resource keys are shared between blocks. Once {@link #sort()} is called, it can be queried by concurrent threads.
+ *
+ * @since 4.5.4
+ */
+class PackedBlocksIndex {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+  /**
+   * Index in file, start line and end line
+   */
+  private static final int BLOCK_INTS = 3;
+
+  private final List<String> resourceKeys = Lists.newArrayList();
+  private final Map<String, Integer> resourceIds = Maps.newHashMap();
+
+  private long[] hashes;
+  private int[] resources;
+  private int[] blockData;
+  private int size;
+  private boolean sorted;
+
+  PackedBlocksIndex() {
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  PackedBlocksIndex(int initialCapacity) {
+    this.hashes = new long[initialCapacity];
+    this.resources = new int[initialCapacity];
+    this.blockData = new int[initialCapacity * BLOCK_INTS];
+  }
+
+  void insert(String hash, String resourceKey, int indexInFile, int startLine, int endLine) {
+    ensureCapacity();
+    Integer resourceId = resourceIds.get(resourceKey);
+    if (resourceId == null) {
+      resourceId = resourceKeys.size();
+      resourceKeys.add(resourceKey);
+      resourceIds.put(resourceKey, resourceId);
+    }
+    hashes[size] = toLong(hash);
+    resources[size] = resourceId;
+    int offset = size * BLOCK_INTS;
+    blockData[offset++] = indexInFile;
+    blockData[offset++] = startLine;
+    blockData[offset] = endLine;
+    size++;
+    sorted = false;
+  }
+
+  void sort() {
+    if (!sorted) {
+      DataUtils.sort(byHash);
+      // only needed while inserting
+      resourceIds.clear();
+      sorted = true;
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  Collection<Block> getByHash(ByteArray hash) {
+    if (!sorted) {
+      throw new IllegalStateException("Index must be sorted before being queried");
+    }
+    long value = toLong(hash.getBytes());
+    int index = lowerBound(value);
+    if (index == size || hashes[index] != value) {
+      return Collections.emptyList();
+    }
+    List<Block> result = Lists.newArrayList();
+    Block.Builder builder = Block.builder();
+    while (index < size && hashes[index] == value) {
+      int offset = index * BLOCK_INTS;
+      result.add(builder
+        .setResourceId(resourceKeys.get(resources[index]))
+        .setBlockHash(hash)
+        .setIndexInFile(blockData[offset])
+        .setLines(blockData[offset + 1], blockData[offset + 2])
+        .build());
+      index++;
+    }
+    return result;
+  }
+
+  /**
+   * Unlike {@link DataUtils#binarySearch(DataUtils.Sortable)}, does not write the searched value in the arrays
+   */
+  private int lowerBound(long value) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (hashes[mid] < value) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  private void ensureCapacity() {
+    if (size < hashes.length) {
+      return;
+    }
+    int newCapacity = (hashes.length * 3) / 2 + 1;
+    long[] oldHashes = hashes;
+    hashes = new long[newCapacity];
+    System.arraycopy(oldHashes, 0, hashes, 0, size);
+    int[] oldResources = resources;
+    resources = new int[newCapacity];
+    System.arraycopy(oldResources, 0, resources, 0, size);
+    int[] oldBlockData = blockData;
+    blockData = new int[newCapacity * BLOCK_INTS];
+    System.arraycopy(oldBlockData, 0, blockData, 0, size * BLOCK_INTS);
+  }
+
+  /**
+   * Hashes of blocks are 8 bytes long, so that they fit into a long
+   */
+  static long toLong(String hexHash) {
+    long value = 0L;
+    for (int i = 0; i < hexHash.length(); i++) {
+      value = (value << 4) | Character.digit(hexHash.charAt(i), 16);
+    }
+    return value;
+  }
+
+  static long toLong(byte[] hash) {
+    long value = 0L;
+    for (byte b : hash) {
+      value = (value << 8) | (b & 0xFF);
+    }
+    return value;
+  }
+
+  private final DataUtils.Sortable byHash = new DataUtils.Sortable() {
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void swap(int i, int j) {
+      long hash = hashes[i];
+      hashes[i] = hashes[j];
+      hashes[j] = hash;
+
+      int resource = resources[i];
+      resources[i] = resources[j];
+      resources[j] = resource;
+
+      int i2 = i * BLOCK_INTS;
+      int j2 = j * BLOCK_INTS;
+      for (int k = 0; k < BLOCK_INTS; k++, i2++, j2++) {
+        int x = blockData[i2];
+        blockData[i2] = blockData[j2];
+        blockData[j2] = x;
+      }
+    }
+
+    @Override
+    public boolean isLess(int i, int j) {
+      return hashes[i] < hashes[j];
+    }
+  };
+
+}
@@ -24,17 +24,24 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.AbstractCloneIndex;
-import org.sonar.duplications.index.CloneIndex;
 import org.sonar.duplications.index.PackedMemoryCloneIndex;
 
 import java.util.Collection;
 import java.util.List;
 
+/**
+ * Can be queried by concurrent threads once populated. Blocks must not be inserted while the index is queried.
+ */
 public class SonarDuplicationsIndex extends AbstractCloneIndex {
 
-  private final CloneIndex mem = new PackedMemoryCloneIndex();
+  private final PackedMemoryCloneIndex mem = new PackedMemoryCloneIndex();
   private final DbDuplicationsIndex db;
 
+  /**
+   * Whether the in-memory index is sorted, so that its lookups are read-only
+   */
+  private volatile boolean sorted = false;
+
   public SonarDuplicationsIndex() {
     this.db = null;
   }
@@ -44,8 +51,11 @@ public class SonarDuplicationsIndex extends AbstractCloneIndex {
   }
 
   public void insert(InputFile inputFile, Collection<Block> blocks) {
-    for (Block block : blocks) {
-      mem.insert(block);
+    synchronized (mem) {
+      for (Block block : blocks) {
+        mem.insert(block);
+      }
+      sorted = false;
     }
     if (db != null) {
       db.insert(inputFile, blocks);
@@ -54,21 +64,45 @@ public class SonarDuplicationsIndex extends AbstractCloneIndex {
 
   public Collection<Block> getByInputFile(InputFile inputFile, String resourceKey) {
     if (db != null) {
-      db.prepareCache(inputFile);
+      db.prepareCache();
     }
-    return mem.getByResourceId(resourceKey);
+    return getFromMemoryByResourceId(resourceKey);
   }
 
   public Collection<Block> getBySequenceHash(ByteArray hash) {
     if (db == null) {
-      return mem.getBySequenceHash(hash);
+      return getFromMemoryBySequenceHash(hash);
     } else {
-      List<Block> result = Lists.newArrayList(mem.getBySequenceHash(hash));
+      List<Block> result = Lists.newArrayList(getFromMemoryBySequenceHash(hash));
       result.addAll(db.getByHash(hash));
       return result;
     }
   }
 
+  private Collection<Block> getFromMemoryByResourceId(String resourceKey) {
+    ensureSorted();
+    return mem.getByResourceId(resourceKey);
+  }
+
+  private Collection<Block> getFromMemoryBySequenceHash(ByteArray hash) {
+    ensureSorted();
+    return mem.getBySequenceHash(hash);
+  }
+
+  /**
+   * The first lookup sorts the in-memory index. Next lookups do not modify it, so they don't need to be synchronized.
+   */
+  private void ensureSorted() {
+    if (!sorted) {
+      synchronized (mem) {
+        if (!sorted) {
+          mem.sort();
+          sorted = true;
+        }
+      }
+    }
+  }
+
   public Collection<Block> getByResourceId(String resourceId) {
     throw new UnsupportedOperationException();
   }
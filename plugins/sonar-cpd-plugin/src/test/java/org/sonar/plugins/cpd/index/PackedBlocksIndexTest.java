@@ -0,0 +1,79 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.cpd.index;
+
+import org.junit.Test;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+
+import java.util.Collection;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class PackedBlocksIndexTest {
+
+  @Test
+  public void get_blocks_by_hash() {
+    PackedBlocksIndex index = new PackedBlocksIndex(2);
+    index.insert("ffffffffffffff01", "a", 0, 1, 10);
+    index.insert("0000000000000002", "b", 3, 5, 15);
+    index.insert("ffffffffffffff01", "c", 1, 2, 11);
+    index.insert("7fffffffffffffff", "a", 2, 3, 12);
+    index.sort();
+
+    assertThat(index.size()).isEqualTo(4);
+
+    Collection<Block> blocks = index.getByHash(new ByteArray("ffffffffffffff01"));
+    assertThat(blocks).hasSize(2);
+    assertThat(blocks).onProperty("resourceId").containsOnly("a", "c");
+
+    blocks = index.getByHash(new ByteArray("0000000000000002"));
+    assertThat(blocks).hasSize(1);
+    Block block = blocks.iterator().next();
+    assertThat(block.getResourceId()).isEqualTo("b");
+    assertThat(block.getBlockHash()).isEqualTo(new ByteArray("0000000000000002"));
+    assertThat(block.getIndexInFile()).isEqualTo(3);
+    assertThat(block.getStartLine()).isEqualTo(5);
+    assertThat(block.getEndLine()).isEqualTo(15);
+
+    assertThat(index.getByHash(new ByteArray("7fffffffffffffff"))).hasSize(1);
+    assertThat(index.getByHash(new ByteArray("0000000000000003"))).isEmpty();
+  }
+
+  @Test
+  public void hex_and_binary_hashes_are_equivalent() {
+    assertThat(PackedBlocksIndex.toLong("ffffffffffffff01")).isEqualTo(PackedBlocksIndex.toLong(new ByteArray(-255L).getBytes()));
+    assertThat(PackedBlocksIndex.toLong("0000000000000002")).isEqualTo(2L);
+  }
+
+  @Test
+  public void empty_index() {
+    PackedBlocksIndex index = new PackedBlocksIndex();
+    index.sort();
+    assertThat(index.getByHash(new ByteArray(1L))).isEmpty();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_if_not_sorted() {
+    PackedBlocksIndex index = new PackedBlocksIndex();
+    index.insert("0000000000000002", "b", 3, 5, 15);
+    index.getByHash(new ByteArray(2L));
+  }
+}
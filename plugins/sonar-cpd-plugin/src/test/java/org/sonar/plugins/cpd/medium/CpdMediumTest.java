@@ -117,6 +117,37 @@ public class CpdMediumTest {
     assertThat(cloneGroup.originBlock().length()).isEqualTo(17);
   }
 
+  @Test
+  public void testDuplicationsInParallel() throws IOException {
+    File srcDir = new File(baseDir, "src");
+    srcDir.mkdir();
+
+    String duplicatedStuff = "Sample xoo\ncontent\nfoo\nbar\ntoto\ntiti\nfoo\nbar\ntoto\ntiti\nbar\ntoto\ntiti\nfoo\nbar\ntoto\ntiti";
+
+    for (int i = 0; i < 10; i++) {
+      FileUtils.write(new File(srcDir, "sample" + i + ".xoo"), duplicatedStuff);
+    }
+
+    TaskResult result = tester.newTask()
+      .properties(builder
+        .put("sonar.sources", "src")
+        .put("sonar.cpd.xoo.minimumTokens", "10")
+        .put("sonar.cpd.threads", "4")
+        .build())
+      .start();
+
+    assertThat(result.inputFiles()).hasSize(10);
+
+    // 4 measures per file
+    assertThat(result.measures()).hasSize(40);
+
+    for (InputFile inputFile : result.inputFiles()) {
+      List<DuplicationGroup> duplicationGroups = result.duplicationsFor(inputFile);
+      assertThat(duplicationGroups).hasSize(1);
+      assertThat(duplicationGroups.get(0).duplicates()).hasSize(9);
+    }
+  }
+
   // SONAR-6000
   @Test
   public void truncateDuplication() throws IOException {
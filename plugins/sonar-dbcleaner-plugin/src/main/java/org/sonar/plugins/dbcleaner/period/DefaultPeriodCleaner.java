@@ -20,6 +20,8 @@
 package org.sonar.plugins.dbcleaner.period;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.config.Settings;
@@ -27,10 +29,10 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.task.TaskExtension;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.core.purge.PurgeDao;
-import org.sonar.core.purge.PurgeSnapshotQuery;
 import org.sonar.core.purge.PurgeableSnapshotDto;
 
 import java.util.List;
+import java.util.Set;
 
 public class DefaultPeriodCleaner implements TaskExtension {
 
@@ -54,18 +56,17 @@ public class DefaultPeriodCleaner implements TaskExtension {
   @VisibleForTesting
   void doClean(long projectId, List<Filter> filters) {
     List<PurgeableSnapshotDto> history = selectProjectSnapshots(projectId);
+    // snapshots of all filters are collected first, then deleted in a single pass
+    Set<Long> snapshotIds = Sets.newLinkedHashSet();
     for (Filter filter : filters) {
       filter.log();
-      delete(filter.filter(history));
-    }
-  }
-
-  private void delete(List<PurgeableSnapshotDto> snapshots) {
-    for (PurgeableSnapshotDto snapshot : snapshots) {
-      LOG.info("<- Delete snapshot: " + DateUtils.formatDateTime(snapshot.getDate()) + " [" + snapshot.getSnapshotId() + "]");
-      purgeDao.deleteSnapshots(PurgeSnapshotQuery.create().setRootSnapshotId(snapshot.getSnapshotId()));
-      purgeDao.deleteSnapshots(PurgeSnapshotQuery.create().setId(snapshot.getSnapshotId()));
+      for (PurgeableSnapshotDto snapshot : filter.filter(history)) {
+        if (snapshotIds.add(snapshot.getSnapshotId())) {
+          LOG.info("<- Delete snapshot: " + DateUtils.formatDateTime(snapshot.getDate()) + " [" + snapshot.getSnapshotId() + "]");
+        }
+      }
     }
+    purgeDao.deleteSnapshotTrees(Lists.newArrayList(snapshotIds));
   }
 
   private List<PurgeableSnapshotDto> selectProjectSnapshots(long resourceId) {
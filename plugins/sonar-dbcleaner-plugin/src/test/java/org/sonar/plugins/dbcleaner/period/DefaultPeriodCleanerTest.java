@@ -19,10 +19,7 @@
  */
 package org.sonar.plugins.dbcleaner.period;
 
-import org.apache.commons.lang.ObjectUtils;
-import org.hamcrest.BaseMatcher;
 import org.junit.Test;
-import org.mockito.ArgumentMatcher;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.config.Settings;
@@ -33,10 +30,10 @@ import org.sonar.core.purge.PurgeableSnapshotDto;
 import java.util.Arrays;
 import java.util.Date;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyListOf;
-import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -47,7 +44,8 @@ public class DefaultPeriodCleanerTest {
   public void doClean() {
     PurgeDao dao = mock(PurgeDao.class);
     when(dao.selectPurgeableSnapshots(123L)).thenReturn(Arrays.asList(
-        new PurgeableSnapshotDto().setSnapshotId(999L).setDate(new Date())));
+        new PurgeableSnapshotDto().setSnapshotId(999L).setDate(new Date()),
+        new PurgeableSnapshotDto().setSnapshotId(888L).setDate(new Date())));
     Filter filter1 = newLazyFilter();
     Filter filter2 = newLazyFilter();
 
@@ -56,28 +54,9 @@ public class DefaultPeriodCleanerTest {
 
     verify(filter1).log();
     verify(filter2).log();
-    verify(dao, times(2)).deleteSnapshots(argThat(newRootSnapshotQuery()));
-    verify(dao, times(2)).deleteSnapshots(argThat(newSnapshotIdQuery()));
-  }
-
-  private BaseMatcher<PurgeSnapshotQuery> newRootSnapshotQuery() {
-    return new ArgumentMatcher<PurgeSnapshotQuery>() {
-      @Override
-      public boolean matches(Object o) {
-        PurgeSnapshotQuery query = (PurgeSnapshotQuery) o;
-        return ObjectUtils.equals(query.getRootSnapshotId(), 999L);
-      }
-    };
-  }
-
-  private BaseMatcher<PurgeSnapshotQuery> newSnapshotIdQuery() {
-    return new ArgumentMatcher<PurgeSnapshotQuery>() {
-      @Override
-      public boolean matches(Object o) {
-        PurgeSnapshotQuery query = (PurgeSnapshotQuery) o;
-        return ObjectUtils.equals(query.getId(), 999L);
-      }
-    };
+    // snapshots selected by several filters are deleted only once, in a single call
+    verify(dao).deleteSnapshotTrees(Arrays.asList(999L, 888L));
+    verify(dao, never()).deleteSnapshots(any(PurgeSnapshotQuery.class));
   }
 
   private Filter newLazyFilter() {
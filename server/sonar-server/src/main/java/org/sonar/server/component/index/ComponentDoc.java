@@ -0,0 +1,78 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.index;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Strings;
+import org.apache.commons.lang.builder.ReflectionToStringBuilder;
+import org.sonar.core.component.ComponentDto;
+import org.sonar.server.component.index.ComponentNormalizer.ComponentField;
+import org.sonar.server.search.BaseDoc;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Map;
+
+/**
+ * @since 4.5.4
+ */
+public class ComponentDoc extends BaseDoc {
+
+  public ComponentDoc(Map<String, Object> fields) {
+    super(fields);
+  }
+
+  public String key() {
+    return getField(ComponentField.KEY.field());
+  }
+
+  public long id() {
+    return this.<Number>getField(ComponentField.ID.field()).longValue();
+  }
+
+  public String name() {
+    return getField(ComponentField.NAME.field());
+  }
+
+  public String qualifier() {
+    return getField(ComponentField.QUALIFIER.field());
+  }
+
+  @CheckForNull
+  public Long rootProjectId() {
+    Number rootProjectId = getNullableField(ComponentField.ROOT_PROJECT_ID.field());
+    return rootProjectId != null ? rootProjectId.longValue() : null;
+  }
+
+  /**
+   * Whether the document is still up-to-date with the given component, so that indexing it again is useless.
+   */
+  public boolean isIndexOf(ComponentDto dto) {
+    return id() == dto.getId()
+      && name().equals(Strings.nullToEmpty(dto.name()).trim())
+      && qualifier().equals(dto.qualifier())
+      && Objects.equal(rootProjectId(), dto.projectId());
+  }
+
+  @Override
+  public String toString() {
+    return ReflectionToStringBuilder.toString(this);
+  }
+}
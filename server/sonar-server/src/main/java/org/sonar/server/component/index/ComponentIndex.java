@@ -0,0 +1,194 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.index;
+
+import com.google.common.collect.ImmutableMap;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.FilterBuilder;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.sonar.core.component.ComponentDto;
+import org.sonar.server.component.index.ComponentNormalizer.ComponentField;
+import org.sonar.server.search.BaseIndex;
+import org.sonar.server.search.IndexDefinition;
+import org.sonar.server.search.IndexField;
+import org.sonar.server.search.Result;
+import org.sonar.server.search.SearchClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Index of the names of the components, used to search components by any part of their name.
+ * Each name is indexed with all its substrings of {@link #MIN_GRAM_SIZE} to {@link #MAX_GRAM_SIZE} characters.
+ * @since 4.5.4
+ */
+public class ComponentIndex extends BaseIndex<ComponentDoc, ComponentDto, String> {
+
+  public static final int MIN_GRAM_SIZE = 2;
+  public static final int MAX_GRAM_SIZE = 15;
+
+  private static final String NAME_GRAMS_FIELD = ComponentField.NAME.field() + "." + IndexField.SEARCH_PARTIAL_SUFFIX;
+
+  public ComponentIndex(ComponentNormalizer normalizer, SearchClient client) {
+    super(IndexDefinition.COMPONENTS, normalizer, client);
+  }
+
+  @Override
+  protected String getKeyValue(String key) {
+    return key;
+  }
+
+  @Override
+  protected Map mapKey() {
+    Map<String, Object> mapping = new HashMap<String, Object>();
+    mapping.put("path", ComponentField.KEY.field());
+    return mapping;
+  }
+
+  @Override
+  protected Settings getIndexSettings() throws IOException {
+    return ImmutableSettings.builder()
+      .put("analysis.analyzer.default.type", "keyword")
+      .put("analysis.filter.name_substrings.type", "nGram")
+      .put("analysis.filter.name_substrings.min_gram", MIN_GRAM_SIZE)
+      .put("analysis.filter.name_substrings.max_gram", MAX_GRAM_SIZE)
+      .put("analysis.analyzer.name_grams.type", "custom")
+      .put("analysis.analyzer.name_grams.tokenizer", "keyword")
+      .putArray("analysis.analyzer.name_grams.filter", "lowercase", "name_substrings")
+      .build();
+  }
+
+  @Override
+  protected Map mapProperties() {
+    Map<String, Object> mapping = new HashMap<String, Object>();
+    for (IndexField field : ComponentField.ALL_FIELDS) {
+      mapping.put(field.field(), mapField(field));
+    }
+    mapping.put(ComponentField.NAME.field(), ImmutableMap.of(
+      "type", "multi_field",
+      "fields", ImmutableMap.of(
+        ComponentField.NAME.field(), ImmutableMap.of(
+          "type", "string",
+          "index", "not_analyzed"),
+        IndexField.SEARCH_PARTIAL_SUFFIX, ImmutableMap.of(
+          "type", "string",
+          "index", "analyzed",
+          "index_analyzer", "name_grams",
+          "search_analyzer", "keyword"))));
+    return mapping;
+  }
+
+  @Override
+  protected ComponentDoc toDoc(Map<String, Object> fields) {
+    return new ComponentDoc(fields);
+  }
+
+  /**
+   * Search the components of the given qualifier whose name contains the given text, ignoring case.
+   * Shortest names come first.
+   * @param authorizedRootProjectIds ids of the root projects and views the user is allowed to browse
+   */
+  public Result<ComponentDoc> searchByName(String text, String qualifier, Collection<Long> authorizedRootProjectIds, int limit) {
+    BoolQueryBuilder query = QueryBuilders.boolQuery();
+    for (String gram : searchGrams(text)) {
+      query.must(QueryBuilders.termQuery(NAME_GRAMS_FIELD, gram));
+    }
+    FilterBuilder filter = FilterBuilders.boolFilter()
+      .must(FilterBuilders.termFilter(ComponentField.QUALIFIER.field(), qualifier))
+      .must(FilterBuilders.termsFilter(ComponentField.ROOT_PROJECT_ID.field(), authorizedRootProjectIds));
+
+    SearchRequestBuilder esSearch = getClient()
+      .prepareSearch(this.getIndexName())
+      .setTypes(this.getIndexType())
+      .setQuery(QueryBuilders.filteredQuery(query, filter))
+      .setSize(limit)
+      .addSort(ComponentField.NAME_SIZE.sortField(), SortOrder.ASC)
+      .addSort(ComponentField.NAME.field(), SortOrder.ASC);
+
+    SearchResponse response = getClient().execute(esSearch);
+    return new Result<ComponentDoc>(this, response);
+  }
+
+  /**
+   * Terms to be looked up in the substrings of names. Texts longer than the largest indexed substring
+   * are split into overlapping substrings, which must all be found in the name.
+   */
+  static List<String> searchGrams(String text) {
+    String lowerCaseText = text.toLowerCase(Locale.ENGLISH);
+    List<String> grams = new ArrayList<String>();
+    if (lowerCaseText.length() <= MAX_GRAM_SIZE) {
+      grams.add(lowerCaseText);
+    } else {
+      for (int start = 0; start + MAX_GRAM_SIZE <= lowerCaseText.length(); start++) {
+        grams.add(lowerCaseText.substring(start, start + MAX_GRAM_SIZE));
+      }
+    }
+    return grams;
+  }
+
+  /**
+   * Indexed documents of the components of a root project, by component key
+   */
+  public Map<String, ComponentDoc> getByRootProject(long rootProjectId) {
+    SearchRequestBuilder esSearch = getClient()
+      .prepareSearch(this.getIndexName())
+      .setTypes(this.getIndexType())
+      .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(),
+        FilterBuilders.termFilter(ComponentField.ROOT_PROJECT_ID.field(), rootProjectId)))
+      .setSearchType(SearchType.SCAN)
+      .setScroll(TimeValue.timeValueMinutes(3))
+      .setSize(500);
+
+    SearchResponse response = getClient().execute(esSearch);
+    Map<String, ComponentDoc> docs = new HashMap<String, ComponentDoc>();
+    Iterator<ComponentDoc> scroll = scroll(response.getScrollId());
+    while (scroll.hasNext()) {
+      ComponentDoc doc = scroll.next();
+      docs.put(doc.key(), doc);
+    }
+    return docs;
+  }
+
+  /**
+   * Removes the components of a root project, for example once it has been deleted.
+   */
+  public void deleteByRootProject(long rootProjectId) {
+    getClient().execute(getClient()
+      .prepareDeleteByQuery(this.getIndexName())
+      .setTypes(this.getIndexType())
+      .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(),
+        FilterBuilders.termFilter(ComponentField.ROOT_PROJECT_ID.field(), rootProjectId))));
+    refresh();
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.index;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import org.elasticsearch.action.support.replication.ReplicationType;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.sonar.api.resources.Qualifiers;
+import org.sonar.core.component.ComponentDto;
+import org.sonar.server.db.DbClient;
+import org.sonar.server.search.BaseNormalizer;
+import org.sonar.server.search.IndexDefinition;
+import org.sonar.server.search.IndexField;
+import org.sonar.server.search.Indexable;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @since 4.5.4
+ */
+public class ComponentNormalizer extends BaseNormalizer<ComponentDto, String> {
+
+  /**
+   * Qualifiers of the components which can be searched by name. Directories and packages are excluded.
+   */
+  public static final List<String> SEARCHABLE_QUALIFIERS = ImmutableList.of(
+    Qualifiers.PROJECT, Qualifiers.MODULE, Qualifiers.VIEW, Qualifiers.SUBVIEW,
+    Qualifiers.FILE, Qualifiers.UNIT_TEST_FILE, Qualifiers.CLASS);
+
+  public static final class ComponentField extends Indexable {
+
+    public static final IndexField KEY = add(IndexField.Type.STRING, "key");
+    public static final IndexField ID = add(IndexField.Type.NUMERIC, "id");
+    public static final IndexField NAME = add(IndexField.Type.STRING, "name");
+    public static final IndexField NAME_SIZE = addSortable(IndexField.Type.NUMERIC, "nameSize");
+    public static final IndexField QUALIFIER = add(IndexField.Type.STRING, "qualifier");
+    public static final IndexField ROOT_PROJECT_ID = add(IndexField.Type.NUMERIC, "rootProjectId");
+    public static final IndexField UPDATED_AT = addSortable(IndexField.Type.DATE, BaseNormalizer.UPDATED_AT_FIELD);
+
+    public static final Set<IndexField> ALL_FIELDS = getAllFields();
+
+    private static Set<IndexField> getAllFields() {
+      Set<IndexField> fields = new HashSet<IndexField>();
+      for (Field classField : ComponentField.class.getDeclaredFields()) {
+        if (Modifier.isFinal(classField.getModifiers()) && Modifier.isStatic(classField.getModifiers())
+          && IndexField.class.isAssignableFrom(classField.getType())) {
+          try {
+            fields.add(IndexField.class.cast(classField.get(null)));
+          } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not access Field '" + classField.getName() + "'", e);
+          }
+        }
+      }
+      return fields;
+    }
+  }
+
+  public ComponentNormalizer(DbClient db) {
+    super(IndexDefinition.COMPONENTS, db);
+  }
+
+  @Override
+  public List<UpdateRequest> normalize(ComponentDto dto) {
+    if (!SEARCHABLE_QUALIFIERS.contains(dto.qualifier())) {
+      return Collections.emptyList();
+    }
+    String name = Strings.nullToEmpty(dto.name()).trim();
+    Map<String, Object> componentDoc = new HashMap<String, Object>();
+    componentDoc.put(ComponentField.KEY.field(), dto.getKey());
+    componentDoc.put(ComponentField.ID.field(), dto.getId());
+    componentDoc.put(ComponentField.NAME.field(), name);
+    componentDoc.put(ComponentField.NAME_SIZE.field(), name.length());
+    componentDoc.put(ComponentField.QUALIFIER.field(), dto.qualifier());
+    componentDoc.put(ComponentField.ROOT_PROJECT_ID.field(), dto.projectId());
+    componentDoc.put(ComponentField.UPDATED_AT.field(), dto.getCreatedAt());
+
+    /* Creating updateRequest */
+    return ImmutableList.of(new UpdateRequest()
+      .id(dto.getKey())
+      .replicationType(ReplicationType.ASYNC)
+      .doc(componentDoc)
+      .upsert(componentDoc));
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.index;
+
+import org.sonar.api.ServerComponent;
+import org.sonar.api.web.UserRole;
+import org.sonar.core.user.AuthorizationDao;
+import org.sonar.server.search.IndexClient;
+import org.sonar.server.search.Result;
+import org.sonar.server.user.UserSession;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Search of the components the current user is allowed to browse, by any part of their name.
+ * Used by the web service of component suggestions.
+ * @since 4.5.4
+ */
+public class ComponentSearch implements ServerComponent {
+
+  private final IndexClient index;
+  private final AuthorizationDao authorizationDao;
+
+  public ComponentSearch(IndexClient index, AuthorizationDao authorizationDao) {
+    this.index = index;
+    this.authorizationDao = authorizationDao;
+  }
+
+  /**
+   * Components whose name contains the given text, by qualifier. At most {@code limitByQualifier} components
+   * are returned for each qualifier, shortest names first.
+   */
+  public Map<String, Result<ComponentDoc>> searchByName(String text, Collection<String> qualifiers, int limitByQualifier) {
+    Collection<Long> authorizedRootProjectIds = authorizationDao.selectAuthorizedRootProjectsIds(UserSession.get().userId(), UserRole.USER);
+    ComponentIndex componentIndex = index.get(ComponentIndex.class);
+    Map<String, Result<ComponentDoc>> results = new LinkedHashMap<String, Result<ComponentDoc>>();
+    for (String qualifier : qualifiers) {
+      results.put(qualifier, componentIndex.searchByName(text, qualifier, authorizedRootProjectIds, limitByQualifier));
+    }
+    return results;
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.index;
+
+import org.sonar.core.component.ComponentDto;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.server.db.DbClient;
+import org.sonar.server.search.IndexClient;
+import org.sonar.server.search.ProjectSynchronizer;
+import org.sonar.server.search.action.DeleteKey;
+import org.sonar.server.search.action.UpsertDto;
+
+import java.util.Map;
+
+/**
+ * Pushes to the index the components added, renamed or removed by the analysis of a project. Executed in background at the end
+ * of each analysis, see {@link org.sonar.server.search.ProjectSynchronizationQueue}.
+ * Only the differences between the database and the index are pushed.
+ * @since 4.5.4
+ */
+public class ComponentSynchronizer implements ProjectSynchronizer {
+
+  private final DbClient db;
+  private final IndexClient index;
+
+  public ComponentSynchronizer(DbClient db, IndexClient index) {
+    this.db = db;
+    this.index = index;
+  }
+
+  @Override
+  public void synchronizeProject(String projectKey) {
+    DbSession session = db.openSession(false);
+    try {
+      ComponentDto project = db.componentDao().getNullableByKey(session, projectKey);
+      if (project == null) {
+        return;
+      }
+      String indexType = db.componentDao().getIndexType();
+      Map<String, ComponentDoc> indexedDocs = index.get(ComponentIndex.class).getByRootProject(project.getId());
+      for (ComponentDto dto : db.componentDao().findSearchableByRootProject(session, projectKey)) {
+        ComponentDoc doc = indexedDocs.remove(dto.getKey());
+        if (doc == null || !doc.isIndexOf(dto)) {
+          session.enqueue(new UpsertDto<ComponentDto>(indexType, dto, true));
+        }
+      }
+      // remaining documents are the ones of the components removed from the project
+      for (String key : indexedDocs.keySet()) {
+        session.enqueue(new DeleteKey<String>(indexType, key));
+      }
+      session.commit();
+    } finally {
+      session.close();
+    }
+  }
+
+  @Override
+  public void deleteProject(long projectId, String projectKey) {
+    index.get(ComponentIndex.class).deleteByRootProject(projectId);
+  }
+}
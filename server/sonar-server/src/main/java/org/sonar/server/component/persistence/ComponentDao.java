@@ -19,6 +19,9 @@
  */
 package org.sonar.server.component.persistence;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import org.apache.ibatis.session.RowBounds;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.utils.System2;
 import org.sonar.core.component.AuthorizedComponentDto;
@@ -29,9 +32,12 @@ import org.sonar.core.persistence.DaoComponent;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.server.db.BaseDao;
 import org.sonar.server.exceptions.NotFoundException;
+import org.sonar.server.search.IndexDefinition;
 
 import javax.annotation.CheckForNull;
 
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -39,8 +45,14 @@ import java.util.List;
  */
 public class ComponentDao extends BaseDao<ComponentMapper, ComponentDto, String> implements ServerComponent, DaoComponent {
 
+  /**
+   * Components are loaded by pages during synchronization, so that all the files of a large
+   * instance are never loaded at once in memory
+   */
+  private static final int SYNCHRONIZATION_PAGE_SIZE = 1000;
+
   public ComponentDao(System2 system) {
-    super(ComponentMapper.class, system);
+    super(IndexDefinition.COMPONENTS, ComponentMapper.class, system);
   }
 
   public ComponentDto getById(Long id, DbSession session) {
@@ -127,4 +139,61 @@ public class ComponentDao extends BaseDao<ComponentMapper, ComponentDto, String>
     mapper(session).insert(item);
     return item;
   }
+
+  @Override
+  protected Iterable<ComponentDto> findAfterDate(final DbSession session, Date date) {
+    // components created before the creation date was stored are only indexed when the index is empty
+    final Date createdAfter = date.getTime() > 0L ? date : null;
+    return new Iterable<ComponentDto>() {
+      @Override
+      public Iterator<ComponentDto> iterator() {
+        return new PagedIterator() {
+          @Override
+          protected List<ComponentDto> selectPage(long lastId) {
+            return mapper(session).selectSearchableAfterDate(createdAfter, lastId, new RowBounds(0, SYNCHRONIZATION_PAGE_SIZE));
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Return the current components of a root project which can be searched by name
+   */
+  public Iterable<ComponentDto> findSearchableByRootProject(final DbSession session, final String rootProjectKey) {
+    return new Iterable<ComponentDto>() {
+      @Override
+      public Iterator<ComponentDto> iterator() {
+        return new PagedIterator() {
+          @Override
+          protected List<ComponentDto> selectPage(long lastId) {
+            return mapper(session).selectSearchableByRootProject(rootProjectKey, lastId, new RowBounds(0, SYNCHRONIZATION_PAGE_SIZE));
+          }
+        };
+      }
+    };
+  }
+
+  private abstract static class PagedIterator extends AbstractIterator<ComponentDto> {
+    private Iterator<ComponentDto> page = Iterators.emptyIterator();
+    private boolean lastPage = false;
+    private long lastId = 0L;
+
+    protected abstract List<ComponentDto> selectPage(long lastId);
+
+    @Override
+    protected ComponentDto computeNext() {
+      if (!page.hasNext() && !lastPage) {
+        List<ComponentDto> dtos = selectPage(lastId);
+        lastPage = dtos.size() < SYNCHRONIZATION_PAGE_SIZE;
+        page = dtos.iterator();
+      }
+      if (page.hasNext()) {
+        ComponentDto dto = page.next();
+        lastId = dto.getId();
+        return dto;
+      }
+      return endOfData();
+    }
+  }
 }
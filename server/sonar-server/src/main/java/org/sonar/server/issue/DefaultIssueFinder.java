@@ -22,8 +22,9 @@ package org.sonar.server.issue;
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 import org.apache.ibatis.session.SqlSession;
+import org.elasticsearch.index.query.FilterBuilder;
+import org.elasticsearch.index.query.FilterBuilders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.component.Component;
@@ -41,8 +42,15 @@ import org.sonar.core.issue.db.IssueDao;
 import org.sonar.core.issue.db.IssueDto;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.resource.ResourceDao;
-import org.sonar.server.rule.DefaultRuleFinder;
 import org.sonar.server.issue.actionplan.ActionPlanService;
+import org.sonar.server.issue.index.IssueDoc;
+import org.sonar.server.issue.index.IssueIndex;
+import org.sonar.server.issue.index.IssueNormalizer.IssueField;
+import org.sonar.server.rule.DefaultRuleFinder;
+import org.sonar.server.search.IndexClient;
+import org.sonar.server.search.QueryOptions;
+import org.sonar.server.search.Result;
+import org.sonar.server.user.UserPermissionCache;
 import org.sonar.server.user.UserSession;
 
 import javax.annotation.CheckForNull;
@@ -67,13 +75,17 @@ public class DefaultIssueFinder implements IssueFinder {
   private final UserFinder userFinder;
   private final ResourceDao resourceDao;
   private final ActionPlanService actionPlanService;
+  private final UserPermissionCache permissionCache;
+  private final IndexClient indexClient;
 
   public DefaultIssueFinder(MyBatis myBatis,
                             IssueDao issueDao, IssueChangeDao issueChangeDao,
                             DefaultRuleFinder ruleFinder,
                             UserFinder userFinder,
                             ResourceDao resourceDao,
-                            ActionPlanService actionPlanService) {
+                            ActionPlanService actionPlanService,
+                            UserPermissionCache permissionCache,
+                            IndexClient indexClient) {
     this.myBatis = myBatis;
     this.issueDao = issueDao;
     this.issueChangeDao = issueChangeDao;
@@ -81,6 +93,8 @@ public class DefaultIssueFinder implements IssueFinder {
     this.userFinder = userFinder;
     this.resourceDao = resourceDao;
     this.actionPlanService = actionPlanService;
+    this.permissionCache = permissionCache;
+    this.indexClient = indexClient;
   }
 
   DefaultIssue findByKey(String issueKey, String requiredRole) {
@@ -101,19 +115,13 @@ public class DefaultIssueFinder implements IssueFinder {
     long start = System.currentTimeMillis();
     SqlSession sqlSession = myBatis.openSession(false);
     try {
-      // 1. Select the authorized ids of all the issues that match the query
-      List<IssueDto> authorizedIssues = issueDao.selectIssueIds(query, UserSession.get().userId(), sqlSession);
-
-      // 2. Sort all authorized issues
-      List<IssueDto> authorizedSortedIssues = sort(authorizedIssues, query, authorizedIssues.size());
+      // 1. Search the index for the requested page of authorized issues, already sorted
+      List<Long> pagedIssueIds = newArrayList();
+      int total = (int) Math.min(searchIssueIds(query, pagedIssueIds), query.maxResults());
+      Paging paging = Paging.create(query.pageSize(), query.pageIndex(), total);
 
-      // 3. Apply pagination
-      Paging paging = Paging.create(query.pageSize(), query.pageIndex(), authorizedSortedIssues.size());
-      Set<Long> pagedIssueIds = pagedIssueIds(authorizedSortedIssues, paging);
-
-      // 4. Load issues and their related data (rules, components, projects, comments, action plans, ...) and sort then again
-      List<IssueDto> pagedIssues = issueDao.selectByIds(pagedIssueIds, sqlSession);
-      List<IssueDto> pagedSortedIssues = sort(pagedIssues, query, authorizedIssues.size());
+      // 2. Load issues and their related data (rules, components, projects, comments, action plans, ...) in the order of the index
+      List<IssueDto> pagedSortedIssues = sortByIds(issueDao.selectByIds(pagedIssueIds, sqlSession), pagedIssueIds);
 
       Map<String, DefaultIssue> issuesByKey = newHashMap();
       List<Issue> issues = newArrayList();
@@ -153,7 +161,7 @@ public class DefaultIssueFinder implements IssueFinder {
       allComponents.addAll(rootComponents);
 
       return new DefaultIssueQueryResult(issues)
-        .setMaxResultsReached(authorizedIssues.size() == query.maxResults())
+        .setMaxResultsReached(total == query.maxResults())
         .addRules(hideRules(query) ? Collections.<Rule>emptyList() : findRules(ruleIds))
         .addComponents(allComponents)
         .addProjects(rootComponents)
@@ -171,25 +179,68 @@ public class DefaultIssueFinder implements IssueFinder {
     return hideRules != null ? hideRules : false;
   }
 
-  private List<IssueDto> sort(List<IssueDto> issues, IssueQuery query, int allIssuesSize) {
-    if (allIssuesSize < query.maxResults()) {
-      return new IssuesFinderSort(issues, query).sort();
+  /**
+   * Adds to the given list the ids of the issues of the requested page, and returns the total number of matching issues.
+   * Pages larger than the maximum size of a search request are loaded in several requests.
+   */
+  private long searchIssueIds(IssueQuery query, List<Long> issueIds) {
+    IssueIndex index = indexClient.get(IssueIndex.class);
+    FilterBuilder authorizationFilter = authorizationFilter(query);
+    long offset = (long) (query.pageIndex() - 1) * query.pageSize();
+    long limit = Math.max(0L, Math.min(query.pageSize(), query.maxResults() - offset));
+    long total;
+    boolean lastPage;
+    do {
+      int pageLimit = (int) Math.min(QueryOptions.MAX_LIMIT, limit - issueIds.size());
+      QueryOptions options = new QueryOptions()
+        .setOffset((int) offset + issueIds.size())
+        .setLimit(pageLimit);
+      Result<IssueDoc> result = index.search(query, options, authorizationFilter);
+      total = result.getTotal();
+      for (IssueDoc doc : result.getHits()) {
+        issueIds.add(doc.id());
+      }
+      lastPage = result.getHits().size() < pageLimit;
+    } while (!lastPage && issueIds.size() < limit);
+    return total;
+  }
+
+  /**
+   * Restricts the search to the issues of the components the user is allowed to browse
+   */
+  @CheckForNull
+  private FilterBuilder authorizationFilter(IssueQuery query) {
+    Integer userId = UserSession.get().userId();
+    String role = query.requiredRole();
+    if (!query.componentRoots().isEmpty()) {
+      List<Integer> componentIds = resourceDao.findAuthorizedChildrenComponentIds(query.componentRoots(), userId, role);
+      return componentIds.isEmpty() ? matchNoneFilter() : FilterBuilders.termsFilter(IssueField.COMPONENT_ID.field(), componentIds);
+    }
+    if (role != null) {
+      Collection<String> projectKeys = permissionCache.authorizedRootProjectKeys(userId, role);
+      return projectKeys.isEmpty() ? matchNoneFilter() : FilterBuilders.termsFilter(IssueField.PROJECT.field(), projectKeys);
     }
-    return issues;
+    return null;
   }
 
-  private Set<Long> pagedIssueIds(Collection<IssueDto> issues, Paging paging) {
-    Set<Long> issueIds = Sets.newLinkedHashSet();
-    int index = 0;
+  private static FilterBuilder matchNoneFilter() {
+    return FilterBuilders.notFilter(FilterBuilders.matchAllFilter());
+  }
+
+  private static List<IssueDto> sortByIds(List<IssueDto> issues, List<Long> ids) {
+    Map<Long, IssueDto> issuesById = newHashMap();
     for (IssueDto issue : issues) {
-      if (index >= paging.offset() && issueIds.size() < paging.pageSize()) {
-        issueIds.add(issue.getId());
-      } else if (issueIds.size() >= paging.pageSize()) {
-        break;
+      issuesById.put(issue.getId(), issue);
+    }
+    List<IssueDto> sortedIssues = newArrayList();
+    for (Long id : ids) {
+      IssueDto issue = issuesById.get(id);
+      // the issue may have been purged from db since it was indexed
+      if (issue != null) {
+        sortedIssues.add(issue);
       }
-      index++;
     }
-    return issueIds;
+    return sortedIssues;
   }
 
   private Collection<Rule> findRules(Set<Integer> ruleIds) {
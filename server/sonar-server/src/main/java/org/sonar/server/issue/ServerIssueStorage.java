@@ -23,21 +23,53 @@ import org.sonar.api.ServerComponent;
 import org.sonar.api.issue.internal.DefaultIssue;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.core.issue.db.IssueStorage;
+import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.resource.ResourceDao;
 import org.sonar.core.resource.ResourceDto;
 import org.sonar.core.resource.ResourceQuery;
+import org.sonar.server.issue.db.IssueDao;
+
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
 
 /**
  * @since 3.6
  */
 public class ServerIssueStorage extends IssueStorage implements ServerComponent {
 
+  private final MyBatis mybatis;
   private final ResourceDao resourceDao;
+  private final IssueDao issueDao;
 
-  public ServerIssueStorage(MyBatis mybatis, RuleFinder ruleFinder, ResourceDao resourceDao) {
+  public ServerIssueStorage(MyBatis mybatis, RuleFinder ruleFinder, ResourceDao resourceDao, IssueDao issueDao) {
     super(mybatis, ruleFinder);
+    this.mybatis = mybatis;
     this.resourceDao = resourceDao;
+    this.issueDao = issueDao;
+  }
+
+  @Override
+  public void save(Iterable<DefaultIssue> issues) {
+    super.save(issues);
+    index(issues);
+  }
+
+  /**
+   * Issues changed from the web application are pushed to the search index as soon as they are saved
+   */
+  private void index(Iterable<DefaultIssue> issues) {
+    List<String> keys = newArrayList();
+    for (DefaultIssue issue : issues) {
+      keys.add(issue.key());
+    }
+    DbSession session = mybatis.openSession(false);
+    try {
+      issueDao.synchronizeIssues(session, keys);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
   }
 
   @Override
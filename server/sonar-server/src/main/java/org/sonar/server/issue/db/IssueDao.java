@@ -20,26 +20,116 @@
 package org.sonar.server.issue.db;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import org.apache.ibatis.session.RowBounds;
 import org.sonar.api.utils.System2;
 import org.sonar.core.issue.db.IssueDto;
 import org.sonar.core.issue.db.IssueMapper;
 import org.sonar.core.persistence.DaoComponent;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.server.db.BaseDao;
+import org.sonar.server.search.IndexDefinition;
+import org.sonar.server.search.action.UpsertDto;
+
+import javax.annotation.Nullable;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
 
 public class IssueDao extends BaseDao<IssueMapper, IssueDto, String> implements DaoComponent {
 
+  /**
+   * Issues are loaded by pages during synchronization, so that all the issues of a large
+   * instance are never loaded at once in memory
+   */
+  private static final int SYNCHRONIZATION_PAGE_SIZE = 1000;
+
   public IssueDao() {
     this(System2.INSTANCE);
   }
 
   @VisibleForTesting
   public IssueDao(System2 system) {
-    super(null, IssueMapper.class, system);
+    super(IndexDefinition.ISSUES, IssueMapper.class, system);
   }
 
   @Override
   protected IssueDto doGetNullableByKey(DbSession session, String key) {
     return mapper(session).selectByKey(key);
   }
+
+  @Override
+  protected Iterable<IssueDto> findAfterDate(DbSession session, Date date) {
+    return findAfterDate(session, date, null);
+  }
+
+  /**
+   * Push to the index the issues of the given project which have been updated since the given date,
+   * for example at the end of its analysis.
+   */
+  public void synchronizeProjectAfter(DbSession session, String projectKey, Date date) {
+    for (IssueDto dto : findAfterDate(session, date, projectKey)) {
+      session.enqueue(new UpsertDto<IssueDto>(getIndexType(), dto, true));
+    }
+    session.commit();
+  }
+
+  /**
+   * Ids, among the given ones, of the issues which still exist in database
+   */
+  public List<Long> findExistingIds(DbSession session, Collection<Long> ids) {
+    if (ids.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return mapper(session).selectExistingIds(ids);
+  }
+
+  /**
+   * Push to the index the current state of the given issues
+   */
+  public void synchronizeIssues(DbSession session, Collection<String> keys) {
+    for (List<String> partition : Lists.partition(newArrayList(keys), SYNCHRONIZATION_PAGE_SIZE)) {
+      for (IssueDto dto : mapper(session).selectByKeys(partition)) {
+        session.enqueue(new UpsertDto<IssueDto>(getIndexType(), dto, true));
+      }
+    }
+    session.commit();
+  }
+
+  private Iterable<IssueDto> findAfterDate(final DbSession session, Date date, @Nullable final String projectKey) {
+    final Timestamp timestamp = new Timestamp(date.getTime());
+    return new Iterable<IssueDto>() {
+      @Override
+      public Iterator<IssueDto> iterator() {
+        return new AbstractIterator<IssueDto>() {
+          private Iterator<IssueDto> page = Iterators.emptyIterator();
+          private boolean lastPage = false;
+          private long lastId = 0L;
+
+          @Override
+          protected IssueDto computeNext() {
+            if (!page.hasNext() && !lastPage) {
+              List<IssueDto> dtos = mapper(session).selectAfterDate(timestamp, projectKey, lastId, new RowBounds(0, SYNCHRONIZATION_PAGE_SIZE));
+              lastPage = dtos.size() < SYNCHRONIZATION_PAGE_SIZE;
+              page = dtos.iterator();
+            }
+            if (page.hasNext()) {
+              IssueDto dto = page.next();
+              lastId = dto.getId();
+              return dto;
+            }
+            return endOfData();
+          }
+        };
+      }
+    };
+  }
 }
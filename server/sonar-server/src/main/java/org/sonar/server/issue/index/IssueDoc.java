@@ -0,0 +1,71 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import org.apache.commons.lang.builder.ReflectionToStringBuilder;
+import org.sonar.server.search.BaseDoc;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Map;
+
+/**
+ * @since 4.5.4
+ */
+public class IssueDoc extends BaseDoc {
+
+  public IssueDoc(Map<String, Object> fields) {
+    super(fields);
+  }
+
+  public String key() {
+    return getField(IssueNormalizer.IssueField.KEY.field());
+  }
+
+  public long id() {
+    return this.<Number>getField(IssueNormalizer.IssueField.ID.field()).longValue();
+  }
+
+  public String componentKey() {
+    return getField(IssueNormalizer.IssueField.COMPONENT.field());
+  }
+
+  public String projectKey() {
+    return getField(IssueNormalizer.IssueField.PROJECT.field());
+  }
+
+  public String severity() {
+    return getField(IssueNormalizer.IssueField.SEVERITY.field());
+  }
+
+  public String status() {
+    return getField(IssueNormalizer.IssueField.STATUS.field());
+  }
+
+  @CheckForNull
+  public String assignee() {
+    return getNullableField(IssueNormalizer.IssueField.ASSIGNEE.field());
+  }
+
+  @Override
+  public String toString() {
+    return ReflectionToStringBuilder.toString(this);
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.BoolFilterBuilder;
+import org.elasticsearch.index.query.FilterBuilder;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.search.sort.SortOrder;
+import org.joda.time.DateTime;
+import org.sonar.api.issue.IssueQuery;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.core.issue.db.IssueDto;
+import org.sonar.server.issue.index.IssueNormalizer.IssueField;
+import org.sonar.server.search.BaseIndex;
+import org.sonar.server.search.IndexDefinition;
+import org.sonar.server.search.IndexField;
+import org.sonar.server.search.QueryOptions;
+import org.sonar.server.search.Result;
+import org.sonar.server.search.SearchClient;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of issues, used to filter, sort and paginate issues without loading them all from database.
+ * @since 4.5.4
+ */
+public class IssueIndex extends BaseIndex<IssueDoc, IssueDto, String> {
+
+  public static final String FACET_SEVERITIES = IssueField.SEVERITY.field();
+  public static final String FACET_STATUSES = IssueField.STATUS.field();
+  public static final String FACET_ASSIGNEES = IssueField.ASSIGNEE.field();
+  public static final String FACET_RULES = IssueField.RULE.field();
+
+  private static final int FACET_SIZE = 10;
+
+  public IssueIndex(IssueNormalizer normalizer, SearchClient client) {
+    super(IndexDefinition.ISSUES, normalizer, client);
+  }
+
+  @Override
+  protected String getKeyValue(String key) {
+    return key;
+  }
+
+  @Override
+  protected Map mapKey() {
+    Map<String, Object> mapping = new HashMap<String, Object>();
+    mapping.put("path", IssueField.KEY.field());
+    return mapping;
+  }
+
+  @Override
+  protected Settings getIndexSettings() throws IOException {
+    return ImmutableSettings.builder()
+      .put("analysis.analyzer.default.type", "keyword")
+      .build();
+  }
+
+  @Override
+  protected Map mapProperties() {
+    Map<String, Object> mapping = new HashMap<String, Object>();
+    for (IndexField field : IssueField.ALL_FIELDS) {
+      mapping.put(field.field(), mapField(field));
+    }
+    return mapping;
+  }
+
+  @Override
+  protected IssueDoc toDoc(Map<String, Object> fields) {
+    return new IssueDoc(fields);
+  }
+
+  public Result<IssueDoc> search(IssueQuery query, QueryOptions options) {
+    return search(query, options, null);
+  }
+
+  /**
+   * Search for the issues matching the query. Pagination is read from the options, not from the query.
+   * The domain filter, if any, is typically used to restrict the issues to the ones the user is allowed to browse.
+   */
+  public Result<IssueDoc> search(IssueQuery query, QueryOptions options, @Nullable FilterBuilder domainFilter) {
+    SearchRequestBuilder esSearch = getClient()
+      .prepareSearch(this.getIndexName())
+      .setTypes(this.getIndexType())
+      .setIndices(this.getIndexName())
+      .setFrom(options.getOffset())
+      .setSize(options.getLimit());
+
+    BoolFilterBuilder filter = getFilter(query);
+    if (domainFilter != null) {
+      filter.must(domainFilter);
+    }
+    esSearch.setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(), filter));
+
+    setSorting(query, esSearch);
+
+    if (options.isFacet()) {
+      addFacet(esSearch, FACET_SEVERITIES, IssueField.SEVERITY);
+      addFacet(esSearch, FACET_STATUSES, IssueField.STATUS);
+      addFacet(esSearch, FACET_ASSIGNEES, IssueField.ASSIGNEE);
+      addFacet(esSearch, FACET_RULES, IssueField.RULE);
+    }
+
+    SearchResponse response = getClient().execute(esSearch);
+    return new Result<IssueDoc>(this, response);
+  }
+
+  private BoolFilterBuilder getFilter(IssueQuery query) {
+    BoolFilterBuilder filter = FilterBuilders.boolFilter().must(FilterBuilders.matchAllFilter());
+    addTermFilter(filter, IssueField.KEY.field(), query.issueKeys());
+    addTermFilter(filter, IssueField.SEVERITY.field(), query.severities());
+    addTermFilter(filter, IssueField.STATUS.field(), query.statuses());
+    addTermFilter(filter, IssueField.RESOLUTION.field(), query.resolutions());
+    addTermFilter(filter, IssueField.COMPONENT.field(), query.components());
+    addTermFilter(filter, IssueField.ACTION_PLAN.field(), query.actionPlans());
+    addTermFilter(filter, IssueField.REPORTER.field(), query.reporters());
+    addTermFilter(filter, IssueField.ASSIGNEE.field(), query.assignees());
+    addTermFilter(filter, IssueField.LANGUAGE.field(), query.languages());
+    List<String> rules = new ArrayList<String>();
+    for (RuleKey rule : query.rules()) {
+      rules.add(rule.toString());
+    }
+    addTermFilter(filter, IssueField.RULE.field(), rules);
+
+    addExistsFilter(filter, IssueField.RESOLUTION, query.resolved());
+    addExistsFilter(filter, IssueField.ASSIGNEE, query.assigned());
+    addExistsFilter(filter, IssueField.ACTION_PLAN, query.planned());
+
+    if (query.createdAfter() != null) {
+      filter.must(FilterBuilders.rangeFilter(IssueField.ISSUE_CREATED_AT.field()).gt(query.createdAfter()));
+    }
+    if (query.createdAt() != null) {
+      filter.must(FilterBuilders.rangeFilter(IssueField.ISSUE_CREATED_AT.field()).gte(query.createdAt()).lte(query.createdAt()));
+    }
+    if (query.createdBefore() != null) {
+      filter.must(FilterBuilders.rangeFilter(IssueField.ISSUE_CREATED_AT.field()).lt(query.createdBefore()));
+    }
+    return filter;
+  }
+
+  private static void addExistsFilter(BoolFilterBuilder filter, IndexField field, @Nullable Boolean exists) {
+    if (exists != null) {
+      if (exists) {
+        filter.must(FilterBuilders.existsFilter(field.field()));
+      } else {
+        filter.must(FilterBuilders.missingFilter(field.field()));
+      }
+    }
+  }
+
+  private static void setSorting(IssueQuery query, SearchRequestBuilder esSearch) {
+    String sort = query.sort();
+    Boolean asc = query.asc();
+    if (sort != null && asc != null) {
+      esSearch.addSort(sortField(sort), asc ? SortOrder.ASC : SortOrder.DESC);
+    }
+    // deterministic sort of the issues which have the same value for the sort field
+    esSearch.addSort(IssueField.ID.field(), SortOrder.ASC);
+  }
+
+  private static String sortField(String sort) {
+    if (IssueQuery.SORT_BY_ASSIGNEE.equals(sort)) {
+      return IssueField.ASSIGNEE.sortField();
+    }
+    if (IssueQuery.SORT_BY_SEVERITY.equals(sort)) {
+      return IssueField.SEVERITY_VALUE.sortField();
+    }
+    if (IssueQuery.SORT_BY_STATUS.equals(sort)) {
+      return IssueField.STATUS.sortField();
+    }
+    if (IssueQuery.SORT_BY_CREATION_DATE.equals(sort)) {
+      return IssueField.ISSUE_CREATED_AT.sortField();
+    }
+    if (IssueQuery.SORT_BY_UPDATE_DATE.equals(sort)) {
+      return IssueField.ISSUE_UPDATED_AT.sortField();
+    }
+    if (IssueQuery.SORT_BY_CLOSE_DATE.equals(sort)) {
+      return IssueField.ISSUE_CLOSED_AT.sortField();
+    }
+    throw new IllegalArgumentException("Cannot sort on field : " + sort);
+  }
+
+  private static void addFacet(SearchRequestBuilder esSearch, String facetName, IndexField field) {
+    esSearch.addAggregation(AggregationBuilders.terms(facetName)
+      .field(field.field())
+      .order(Terms.Order.count(false))
+      .size(FACET_SIZE)
+      .minDocCount(1));
+  }
+
+  /**
+   * Date of the most recent update of the indexed issues of a project, or epoch if none of them is indexed.
+   */
+  public Date getLastSynchronization(String projectKey) {
+    SearchRequestBuilder request = getClient().prepareSearch(this.getIndexName())
+      .setTypes(this.getIndexType())
+      .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(),
+        FilterBuilders.termFilter(IssueField.PROJECT.field(), projectKey)))
+      .setSize(0)
+      .addAggregation(AggregationBuilders.max("latest")
+        .field(IssueField.UPDATED_AT.field()));
+
+    SearchResponse response = getClient().execute(request);
+    Max max = (Max) response.getAggregations().get("latest");
+    if (max.getValue() > 0) {
+      return new DateTime(Double.valueOf(max.getValue()).longValue()).toDate();
+    }
+    return new Date(0L);
+  }
+
+  /**
+   * Indexed issues of a project. They are loaded lazily, by pages.
+   */
+  public Iterator<IssueDoc> scrollByProject(String projectKey) {
+    SearchRequestBuilder esSearch = getClient()
+      .prepareSearch(this.getIndexName())
+      .setTypes(this.getIndexType())
+      .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(),
+        FilterBuilders.termFilter(IssueField.PROJECT.field(), projectKey)))
+      .setSearchType(SearchType.SCAN)
+      .setScroll(TimeValue.timeValueMinutes(3))
+      .setSize(500);
+
+    SearchResponse response = getClient().execute(esSearch);
+    return scroll(response.getScrollId());
+  }
+
+  /**
+   * Removes the issues of a project, for example once it has been deleted.
+   */
+  public void deleteByProject(String projectKey) {
+    getClient().execute(getClient()
+      .prepareDeleteByQuery(this.getIndexName())
+      .setTypes(this.getIndexType())
+      .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(),
+        FilterBuilders.termFilter(IssueField.PROJECT.field(), projectKey))));
+    refresh();
+  }
+}
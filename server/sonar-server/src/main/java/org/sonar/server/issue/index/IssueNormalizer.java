@@ -0,0 +1,126 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import com.google.common.collect.ImmutableList;
+import org.elasticsearch.action.support.replication.ReplicationType;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.core.issue.db.IssueDto;
+import org.sonar.server.db.DbClient;
+import org.sonar.server.search.BaseNormalizer;
+import org.sonar.server.search.IndexDefinition;
+import org.sonar.server.search.IndexField;
+import org.sonar.server.search.Indexable;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @since 4.5.4
+ */
+public class IssueNormalizer extends BaseNormalizer<IssueDto, String> {
+
+  public static final class IssueField extends Indexable {
+
+    public static final IndexField KEY = add(IndexField.Type.STRING, "key");
+    public static final IndexField ID = add(IndexField.Type.NUMERIC, "id");
+    public static final IndexField COMPONENT = add(IndexField.Type.STRING, "component");
+    public static final IndexField COMPONENT_ID = add(IndexField.Type.NUMERIC, "componentId");
+    public static final IndexField PROJECT = add(IndexField.Type.STRING, "project");
+    public static final IndexField RULE = add(IndexField.Type.STRING, "rule");
+    public static final IndexField LANGUAGE = add(IndexField.Type.STRING, "language");
+    public static final IndexField SEVERITY = add(IndexField.Type.STRING, "severity");
+    public static final IndexField SEVERITY_VALUE = addSortable(IndexField.Type.NUMERIC, "severityValue");
+    public static final IndexField STATUS = addSortable(IndexField.Type.STRING, "status");
+    public static final IndexField RESOLUTION = add(IndexField.Type.STRING, "resolution");
+    public static final IndexField ASSIGNEE = addSortable(IndexField.Type.STRING, "assignee");
+    public static final IndexField REPORTER = add(IndexField.Type.STRING, "reporter");
+    public static final IndexField ACTION_PLAN = add(IndexField.Type.STRING, "actionPlan");
+    public static final IndexField ISSUE_CREATED_AT = addSortable(IndexField.Type.DATE, "issueCreatedAt");
+    public static final IndexField ISSUE_UPDATED_AT = addSortable(IndexField.Type.DATE, "issueUpdatedAt");
+    public static final IndexField ISSUE_CLOSED_AT = addSortable(IndexField.Type.DATE, "issueClosedAt");
+    public static final IndexField UPDATED_AT = addSortable(IndexField.Type.DATE, BaseNormalizer.UPDATED_AT_FIELD);
+
+    public static final Set<IndexField> ALL_FIELDS = getAllFields();
+
+    private static Set<IndexField> getAllFields() {
+      Set<IndexField> fields = new HashSet<IndexField>();
+      for (Field classField : IssueField.class.getDeclaredFields()) {
+        if (Modifier.isFinal(classField.getModifiers()) && Modifier.isStatic(classField.getModifiers())
+          && IndexField.class.isAssignableFrom(classField.getType())) {
+          try {
+            fields.add(IndexField.class.cast(classField.get(null)));
+          } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not access Field '" + classField.getName() + "'", e);
+          }
+        }
+      }
+      return fields;
+    }
+  }
+
+  public IssueNormalizer(DbClient db) {
+    super(IndexDefinition.ISSUES, db);
+  }
+
+  @Override
+  public List<UpdateRequest> normalize(IssueDto dto) {
+    Map<String, Object> issueDoc = new HashMap<String, Object>();
+    issueDoc.put(IssueField.KEY.field(), dto.getKee());
+    issueDoc.put(IssueField.ID.field(), dto.getId());
+    issueDoc.put(IssueField.COMPONENT.field(), dto.getComponentKey());
+    issueDoc.put(IssueField.COMPONENT_ID.field(), dto.getComponentId());
+    issueDoc.put(IssueField.PROJECT.field(), dto.getRootComponentKey());
+    issueDoc.put(IssueField.RULE.field(), RuleKey.of(dto.getRuleRepo(), dto.getRule()).toString());
+    issueDoc.put(IssueField.LANGUAGE.field(), dto.getLanguage());
+    issueDoc.put(IssueField.SEVERITY.field(), dto.getSeverity());
+    issueDoc.put(IssueField.SEVERITY_VALUE.field(), severityValue(dto.getSeverity()));
+    issueDoc.put(IssueField.STATUS.field(), dto.getStatus());
+    issueDoc.put(IssueField.RESOLUTION.field(), dto.getResolution());
+    issueDoc.put(IssueField.ASSIGNEE.field(), dto.getAssignee());
+    issueDoc.put(IssueField.REPORTER.field(), dto.getReporter());
+    issueDoc.put(IssueField.ACTION_PLAN.field(), dto.getActionPlanKey());
+    issueDoc.put(IssueField.ISSUE_CREATED_AT.field(), dto.getIssueCreationDate());
+    issueDoc.put(IssueField.ISSUE_UPDATED_AT.field(), dto.getIssueUpdateDate());
+    issueDoc.put(IssueField.ISSUE_CLOSED_AT.field(), dto.getIssueCloseDate());
+    issueDoc.put(IssueField.UPDATED_AT.field(), dto.getUpdatedAt());
+
+    /* Creating updateRequest */
+    return ImmutableList.of(new UpdateRequest()
+      .id(dto.getKee())
+      .replicationType(ReplicationType.ASYNC)
+      .doc(issueDoc)
+      .upsert(issueDoc));
+  }
+
+  /**
+   * Rank of the severity, from 0 for INFO to 4 for BLOCKER, so that issues can be sorted by severity.
+   */
+  static int severityValue(String severity) {
+    return Severity.ALL.indexOf(severity);
+  }
+}
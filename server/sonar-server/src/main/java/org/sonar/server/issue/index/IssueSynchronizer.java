@@ -0,0 +1,85 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.server.db.DbClient;
+import org.sonar.server.search.IndexClient;
+import org.sonar.server.search.ProjectSynchronizer;
+import org.sonar.server.search.action.DeleteKey;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pushes to the index the issues changed by the analysis of a project. Called at the end of each analysis.
+ * The indexed issues which do not exist anymore in database, for example because they have been purged,
+ * are removed from the index.
+ * @since 4.5.4
+ */
+public class IssueSynchronizer implements ProjectSynchronizer {
+
+  private static final int PAGE_SIZE = 1000;
+
+  private final DbClient db;
+  private final IndexClient index;
+
+  public IssueSynchronizer(DbClient db, IndexClient index) {
+    this.db = db;
+    this.index = index;
+  }
+
+  @Override
+  public void synchronizeProject(String projectKey) {
+    Date lastSynchronization = index.get(IssueIndex.class).getLastSynchronization(projectKey);
+    DbSession session = db.openSession(false);
+    try {
+      db.issueDao().synchronizeProjectAfter(session, projectKey, lastSynchronization);
+      deleteRemovedIssues(session, projectKey);
+    } finally {
+      session.close();
+    }
+  }
+
+  private void deleteRemovedIssues(DbSession session, String projectKey) {
+    String indexType = db.issueDao().getIndexType();
+    Iterator<List<IssueDoc>> pages = Iterators.partition(index.get(IssueIndex.class).scrollByProject(projectKey), PAGE_SIZE);
+    while (pages.hasNext()) {
+      Map<Long, String> keysById = Maps.newHashMap();
+      for (IssueDoc doc : pages.next()) {
+        keysById.put(doc.id(), doc.key());
+      }
+      keysById.keySet().removeAll(db.issueDao().findExistingIds(session, keysById.keySet()));
+      for (String key : keysById.values()) {
+        session.enqueue(new DeleteKey<String>(indexType, key));
+      }
+    }
+    session.commit();
+  }
+
+  @Override
+  public void deleteProject(long projectId, String projectKey) {
+    index.get(IssueIndex.class).deleteByProject(projectKey);
+  }
+}
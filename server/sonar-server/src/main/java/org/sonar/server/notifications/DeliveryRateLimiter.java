@@ -0,0 +1,60 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.notifications;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads the deliveries of a notification channel so that they do not exceed a given number per second,
+ * whatever the number of threads delivering notifications.
+ * @since 4.5.4
+ */
+class DeliveryRateLimiter {
+
+  private final long intervalInNanos;
+  private long nextDeliveryInNanos;
+
+  /**
+   * @param maxDeliveriesPerSecond maximum number of deliveries per second, or zero for no limit
+   */
+  DeliveryRateLimiter(int maxDeliveriesPerSecond) {
+    this.intervalInNanos = maxDeliveriesPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxDeliveriesPerSecond : 0L;
+    this.nextDeliveryInNanos = System.nanoTime();
+  }
+
+  /**
+   * Wait until the next delivery is allowed
+   */
+  void acquire() throws InterruptedException {
+    if (intervalInNanos == 0L) {
+      return;
+    }
+    long waitInNanos;
+    synchronized (this) {
+      long now = System.nanoTime();
+      long slot = Math.max(now, nextDeliveryInNanos);
+      nextDeliveryInNanos = slot + intervalInNanos;
+      waitInNanos = slot - now;
+    }
+    if (waitInNanos > 0L) {
+      TimeUnit.NANOSECONDS.sleep(waitInNanos);
+    }
+  }
+}
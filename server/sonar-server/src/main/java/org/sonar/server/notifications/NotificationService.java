@@ -26,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.Properties;
 import org.sonar.api.Property;
+import org.sonar.api.PropertyType;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.config.Settings;
 import org.sonar.api.notifications.Notification;
@@ -35,15 +36,25 @@ import org.sonar.api.utils.TimeProfiler;
 import org.sonar.core.notification.DefaultNotificationManager;
 import org.sonar.jpa.session.DatabaseSessionFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Notifications are read from the queue by batches. Recipients are resolved on the thread which reads the queue,
+ * then the deliveries of a batch are executed by a pool of workers. A batch is removed from the queue only once
+ * all its deliveries are done, so it is delivered again after a restart if the server stopped in the meantime.
  * @since 2.10
  */
 @Properties({
@@ -58,6 +69,28 @@ import java.util.concurrent.TimeUnit;
     defaultValue = "600",
     name = "Delay before reporting notification status, in seconds",
     project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_BATCH_SIZE,
+    defaultValue = "100",
+    name = "Number of notifications read at once from the queue",
+    type = PropertyType.INTEGER,
+    project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_WORKERS,
+    defaultValue = "1",
+    name = "Number of threads delivering notifications",
+    description = "Notification channels must be thread-safe when greater than one.",
+    type = PropertyType.INTEGER,
+    project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_MAX_DELIVERIES_PER_SECOND,
+    defaultValue = "0",
+    name = "Maximum number of deliveries per second and per channel, zero for no limit",
+    type = PropertyType.INTEGER,
+    project = false,
     global = false)
 })
 public class NotificationService implements ServerComponent {
@@ -66,17 +99,32 @@ public class NotificationService implements ServerComponent {
 
   public static final String PROPERTY_DELAY = "sonar.notifications.delay";
   public static final String PROPERTY_DELAY_BEFORE_REPORTING_STATUS = "sonar.notifications.runningDelayBeforeReportingStatus";
+  public static final String PROPERTY_BATCH_SIZE = "sonar.notifications.batchSize";
+  public static final String PROPERTY_WORKERS = "sonar.notifications.workers";
+  public static final String PROPERTY_MAX_DELIVERIES_PER_SECOND = "sonar.notifications.maxDeliveriesPerSecond";
+
+  static final int DEFAULT_BATCH_SIZE = 100;
+  static final int DEFAULT_WORKERS = 1;
 
   private static final TimeProfiler TIME_PROFILER = new TimeProfiler(LOG).setLevelToDebug();
 
   private final long delayInSeconds;
   private final long delayBeforeReportingStatusInSeconds;
+  private final int batchSize;
+  private final int workers;
+  private final int maxDeliveriesPerSecond;
   private final DefaultNotificationManager manager;
   private final NotificationDispatcher[] dispatchers;
   private final DatabaseSessionFactory databaseSessionFactory;
+  private final ConcurrentMap<String, DeliveryRateLimiter> rateLimitersByChannel = new ConcurrentHashMap<String, DeliveryRateLimiter>();
+
+  private final AtomicLong deliveredCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+  private volatile long backlogSince = 0L;
 
   private ScheduledExecutorService executorService;
-  private boolean stopping = false;
+  private ExecutorService deliveryService;
+  private volatile boolean stopping = false;
 
   /**
    * Constructor for {@link NotificationService}
@@ -85,6 +133,9 @@ public class NotificationService implements ServerComponent {
     this.databaseSessionFactory = databaseSessionFactory;
     delayInSeconds = settings.getLong(PROPERTY_DELAY);
     delayBeforeReportingStatusInSeconds = settings.getLong(PROPERTY_DELAY_BEFORE_REPORTING_STATUS);
+    batchSize = positiveOrDefault(settings.getInt(PROPERTY_BATCH_SIZE), DEFAULT_BATCH_SIZE);
+    workers = positiveOrDefault(settings.getInt(PROPERTY_WORKERS), DEFAULT_WORKERS);
+    maxDeliveriesPerSecond = Math.max(settings.getInt(PROPERTY_MAX_DELIVERIES_PER_SECOND), 0);
     this.manager = manager;
     this.dispatchers = dispatchers;
   }
@@ -97,7 +148,12 @@ public class NotificationService implements ServerComponent {
     LOG.warn("There is no dispatcher - all notifications will be ignored!");
   }
 
+  private static int positiveOrDefault(int value, int defaultValue) {
+    return value > 0 ? value : defaultValue;
+  }
+
   public void start() {
+    deliveryService = Executors.newFixedThreadPool(workers);
     executorService = Executors.newSingleThreadScheduledExecutor();
     executorService.scheduleWithFixedDelay(new Runnable() {
       public void run() {
@@ -111,14 +167,19 @@ public class NotificationService implements ServerComponent {
         }
       }
     }, 0, delayInSeconds, TimeUnit.SECONDS);
-    LOG.info("Notification service started (delay {} sec.)", delayInSeconds);
+    LOG.info("Notification service started (delay {} sec., {} workers)", delayInSeconds, workers);
   }
 
   public void stop() {
     try {
       stopping = true;
       executorService.shutdown();
-      executorService.awaitTermination(5, TimeUnit.SECONDS);
+      if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
+        // deliveries of the current batch are interrupted, its notifications are kept in the queue
+        executorService.shutdownNow();
+      }
+      deliveryService.shutdown();
+      deliveryService.awaitTermination(5, TimeUnit.SECONDS);
     } catch (InterruptedException e) {
       LOG.error("Error during stop of notification service", e);
     }
@@ -132,10 +193,16 @@ public class NotificationService implements ServerComponent {
     long lastLog = start;
     long notifSentCount = 0;
 
-    Notification notifToSend = manager.getFromQueue();
-    while (notifToSend != null) {
-      deliver(notifToSend);
-      notifSentCount++;
+    Map<Long, Notification> notifsToSend = manager.readFromQueue(batchSize);
+    if (!notifsToSend.isEmpty() && backlogSince == 0L) {
+      backlogSince = start;
+    }
+    while (!notifsToSend.isEmpty()) {
+      if (!deliver(notifsToSend.values())) {
+        break;
+      }
+      manager.removeFromQueue(notifsToSend.keySet());
+      notifSentCount += notifsToSend.size();
       if (stopping) {
         break;
       }
@@ -146,7 +213,10 @@ public class NotificationService implements ServerComponent {
         long spentTimeInMinutes = (now - start) / (60 * 1000);
         log(notifSentCount, remainingNotifCount, spentTimeInMinutes);
       }
-      notifToSend = manager.getFromQueue();
+      notifsToSend = manager.readFromQueue(batchSize);
+    }
+    if (notifsToSend.isEmpty()) {
+      backlogSince = 0L;
     }
 
     TIME_PROFILER.stop();
@@ -162,7 +232,65 @@ public class NotificationService implements ServerComponent {
     return System.currentTimeMillis();
   }
 
-  private void deliver(Notification notification) {
+  /**
+   * Number of notifications waiting in the queue
+   */
+  public long getPendingCount() {
+    return manager.count();
+  }
+
+  /**
+   * Number of deliveries done since startup, whatever the channel
+   */
+  public long getDeliveredCount() {
+    return deliveredCount.get();
+  }
+
+  /**
+   * Number of deliveries which failed since startup
+   */
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * Time since the service started to process the notifications which are still waiting, zero if the queue is empty.
+   * This is the maximum time a notification has been waiting after the previous run of the service.
+   */
+  public long getQueueLagInMillis() {
+    long since = backlogSince;
+    return since == 0L ? 0L : Math.max(System.currentTimeMillis() - since, 0L);
+  }
+
+  /**
+   * Resolve the recipients of all the notifications of the batch, then deliver them on the pool of workers
+   * and wait for the deliveries to be done.
+   * @return false if interrupted before all the deliveries are done
+   */
+  private boolean deliver(Collection<Notification> notifications) {
+    List<Future<?>> deliveries = new ArrayList<Future<?>>();
+    manager.enableSubscribersCache();
+    try {
+      for (Notification notification : notifications) {
+        deliveries.addAll(dispatch(notification, findRecipients(notification)));
+      }
+    } finally {
+      manager.disableSubscribersCache();
+    }
+    for (Future<?> delivery : deliveries) {
+      try {
+        delivery.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      } catch (ExecutionException e) {
+        LOG.error("Unexpected error during delivery of notification", e);
+      }
+    }
+    return true;
+  }
+
+  private SetMultimap<String, NotificationChannel> findRecipients(Notification notification) {
     LOG.debug("Delivering notification " + notification);
     final SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
     for (NotificationDispatcher dispatcher : dispatchers) {
@@ -184,23 +312,48 @@ public class NotificationService implements ServerComponent {
         LOG.warn("Unable to dispatch notification " + notification + " using " + dispatcher, e);
       }
     }
-    dispatch(notification, recipients);
+    return recipients;
   }
 
-  private void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
+  private List<Future<?>> dispatch(final Notification notification, SetMultimap<String, NotificationChannel> recipients) {
+    List<Future<?>> deliveries = new ArrayList<Future<?>>();
     for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
-      String username = entry.getKey();
+      final String username = entry.getKey();
       Collection<NotificationChannel> userChannels = entry.getValue();
       LOG.debug("For user {} via {}", username, userChannels);
-      for (NotificationChannel channel : userChannels) {
-        try {
-          channel.deliver(notification, username);
-        } catch (Exception e) {
-          // catch all exceptions in order to deliver via other channels
-          LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
-        }
+      for (final NotificationChannel channel : userChannels) {
+        deliveries.add(deliveryService.submit(new Runnable() {
+          public void run() {
+            deliver(notification, username, channel);
+          }
+        }));
       }
     }
+    return deliveries;
+  }
+
+  private void deliver(Notification notification, String username, NotificationChannel channel) {
+    try {
+      rateLimiter(channel).acquire();
+      channel.deliver(notification, username);
+      deliveredCount.incrementAndGet();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      // catch all exceptions in order to deliver via other channels
+      failedCount.incrementAndGet();
+      LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+    }
+  }
+
+  private DeliveryRateLimiter rateLimiter(NotificationChannel channel) {
+    String channelKey = channel.getKey();
+    DeliveryRateLimiter rateLimiter = rateLimitersByChannel.get(channelKey);
+    if (rateLimiter == null) {
+      rateLimitersByChannel.putIfAbsent(channelKey, new DeliveryRateLimiter(maxDeliveriesPerSecond));
+      rateLimiter = rateLimitersByChannel.get(channelKey);
+    }
+    return rateLimiter;
   }
 
   @VisibleForTesting
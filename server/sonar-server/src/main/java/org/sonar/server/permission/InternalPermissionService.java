@@ -36,6 +36,7 @@ import org.sonar.core.user.UserDao;
 import org.sonar.core.user.UserDto;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
+import org.sonar.server.user.UserPermissionCache;
 import org.sonar.server.user.UserSession;
 
 import javax.annotation.Nullable;
@@ -62,12 +63,15 @@ public class InternalPermissionService implements ServerComponent {
   private final ResourceDao resourceDao;
   private final PermissionFacade permissionFacade;
   private final PermissionFinder finder;
+  private final UserPermissionCache permissionCache;
 
-  public InternalPermissionService(UserDao userDao, ResourceDao resourceDao, PermissionFacade permissionFacade, PermissionFinder finder) {
+  public InternalPermissionService(UserDao userDao, ResourceDao resourceDao, PermissionFacade permissionFacade, PermissionFinder finder,
+                                   UserPermissionCache permissionCache) {
     this.userDao = userDao;
     this.resourceDao = resourceDao;
     this.permissionFacade = permissionFacade;
     this.finder = finder;
+    this.permissionCache = permissionCache;
   }
 
   public List<String> globalPermissions() {
@@ -108,6 +112,7 @@ public class InternalPermissionService implements ServerComponent {
     }
 
     permissionFacade.grantDefaultRoles(component.getId(), component.qualifier());
+    permissionCache.clear();
   }
 
   public void applyPermissionTemplate(Map<String, Object> params) {
@@ -132,6 +137,7 @@ public class InternalPermissionService implements ServerComponent {
       }
       permissionFacade.applyPermissionTemplate(query.getTemplateKey(), component.getId());
     }
+    permissionCache.clear();
   }
 
   private void changePermission(String permissionChange, Map<String, Object> params) {
@@ -164,6 +170,7 @@ public class InternalPermissionService implements ServerComponent {
       } else {
         permissionFacade.deleteGroupPermission(componentId, targetedGroup, permissionChangeQuery.permission());
       }
+      permissionCache.clear();
     }
   }
 
@@ -182,6 +189,7 @@ public class InternalPermissionService implements ServerComponent {
       } else {
         permissionFacade.deleteUserPermission(componentId, targetedUser, permissionChangeQuery.permission());
       }
+      permissionCache.clear();
     }
   }
 
@@ -82,6 +82,10 @@ import org.sonar.server.batch.*;
 import org.sonar.server.charts.ChartFactory;
 import org.sonar.server.component.DefaultComponentFinder;
 import org.sonar.server.component.DefaultRubyComponentService;
+import org.sonar.server.component.index.ComponentIndex;
+import org.sonar.server.component.index.ComponentNormalizer;
+import org.sonar.server.component.index.ComponentSearch;
+import org.sonar.server.component.index.ComponentSynchronizer;
 import org.sonar.server.component.persistence.ComponentDao;
 import org.sonar.server.component.persistence.SnapshotDao;
 import org.sonar.server.component.ws.*;
@@ -99,6 +103,9 @@ import org.sonar.server.issue.*;
 import org.sonar.server.issue.actionplan.ActionPlanService;
 import org.sonar.server.issue.actionplan.ActionPlanWs;
 import org.sonar.server.issue.db.IssueDao;
+import org.sonar.server.issue.index.IssueIndex;
+import org.sonar.server.issue.index.IssueNormalizer;
+import org.sonar.server.issue.index.IssueSynchronizer;
 import org.sonar.server.issue.filter.IssueFilterService;
 import org.sonar.server.issue.filter.IssueFilterWriter;
 import org.sonar.server.issue.filter.IssueFilterWs;
@@ -227,6 +234,10 @@ class ServerComponents {
       IndexClient.class,
       ActivityNormalizer.class,
       ActivityIndex.class,
+      IssueNormalizer.class,
+      IssueIndex.class,
+      ComponentNormalizer.class,
+      ComponentIndex.class,
       SearchHealth.class,
 
       // LogService
@@ -417,6 +428,7 @@ class ServerComponents {
     pico.addSingleton(NewUserNotifier.class);
     pico.addSingleton(DefaultUserFinder.class);
     pico.addSingleton(DefaultUserService.class);
+    pico.addSingleton(UserPermissionCache.class);
     pico.addSingleton(UsersWs.class);
     pico.addSingleton(FavoritesWs.class);
     pico.addSingleton(UserPropertiesWs.class);
@@ -435,6 +447,8 @@ class ServerComponents {
     // components
     pico.addSingleton(DefaultComponentFinder.class);
     pico.addSingleton(DefaultRubyComponentService.class);
+    pico.addSingleton(ComponentSearch.class);
+    pico.addSingleton(ComponentSynchronizer.class);
     pico.addSingleton(ComponentDao.class);
     pico.addSingleton(ResourcesWs.class);
     pico.addSingleton(ComponentsWs.class);
@@ -450,6 +464,8 @@ class ServerComponents {
     pico.addSingleton(IssueService.class);
     pico.addSingleton(IssueCommentService.class);
     pico.addSingleton(DefaultIssueFinder.class);
+    pico.addSingleton(IssueSynchronizer.class);
+    pico.addSingleton(ProjectSynchronizationQueue.class);
     pico.addSingleton(IssueStatsFinder.class);
     pico.addSingleton(PublicRubyIssueService.class);
     pico.addSingleton(InternalRubyIssueService.class);
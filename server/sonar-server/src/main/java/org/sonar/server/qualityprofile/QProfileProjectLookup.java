@@ -29,11 +29,11 @@ import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.qualityprofile.db.QualityProfileDto;
 import org.sonar.server.db.DbClient;
+import org.sonar.server.user.UserPermissionCache;
 import org.sonar.server.user.UserSession;
 
 import javax.annotation.CheckForNull;
 
-import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -41,9 +41,11 @@ public class QProfileProjectLookup implements ServerComponent {
 
   public static final String PROFILE_PROPERTY_PREFIX = "sonar.profile.";
   private final DbClient db;
+  private final UserPermissionCache permissionCache;
 
-  public QProfileProjectLookup(DbClient db) {
+  public QProfileProjectLookup(DbClient db, UserPermissionCache permissionCache) {
     this.db = db;
+    this.permissionCache = permissionCache;
   }
 
   public List<Component> projects(int profileId) {
@@ -60,11 +62,8 @@ public class QProfileProjectLookup implements ServerComponent {
 
       UserSession userSession = UserSession.get();
       List<Component> result = Lists.newArrayList();
-      Collection<String> authorizedProjectKeys = db.authorizationDao().selectAuthorizedRootProjectsKeys(userSession.userId(), UserRole.USER);
-      for (String key : componentsByKeys.keySet()) {
-        if (authorizedProjectKeys.contains(key)) {
-          result.add(componentsByKeys.get(key));
-        }
+      for (String key : permissionCache.keepAuthorizedRootProjectKeys(componentsByKeys.keySet(), userSession.userId(), UserRole.USER)) {
+        result.add(componentsByKeys.get(key));
       }
 
       return result;
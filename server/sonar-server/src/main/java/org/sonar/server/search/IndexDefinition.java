@@ -53,6 +53,8 @@ public class IndexDefinition {
   public static final IndexDefinition RULE = new IndexDefinition("rules", "rules");
   public static final IndexDefinition ACTIVE_RULE = new IndexDefinition("rules", "activeRules");
   public static final IndexDefinition LOG = new IndexDefinition("logs", "sonarLogs");
+  public static final IndexDefinition ISSUES = new IndexDefinition("issues", "issues");
+  public static final IndexDefinition COMPONENTS = new IndexDefinition("components", "components");
 
 
   @VisibleForTesting
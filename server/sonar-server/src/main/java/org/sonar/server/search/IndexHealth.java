@@ -30,6 +30,9 @@ public class IndexHealth {
   Date lastSync;
   long segmentCount;
   long pendingDeletion;
+  long pendingActions;
+  long failedActions;
+  long lastIndexingTime;
 
   public String getName() {
     return name;
@@ -54,4 +57,16 @@ public class IndexHealth {
   public long getPendingDeletion() {
     return pendingDeletion;
   }
+
+  public long getPendingActions() {
+    return pendingActions;
+  }
+
+  public long getFailedActions() {
+    return failedActions;
+  }
+
+  public long getLastIndexingTime() {
+    return lastIndexingTime;
+  }
 }
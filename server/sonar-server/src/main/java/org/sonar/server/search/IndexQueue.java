@@ -19,13 +19,18 @@
  */
 package org.sonar.server.search;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.refresh.RefreshRequestBuilder;
 import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.picocontainer.Startable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.ServerComponent;
@@ -35,16 +40,29 @@ import org.sonar.core.cluster.WorkQueue;
 import org.sonar.core.profiling.Profiling;
 import org.sonar.server.search.action.IndexActionRequest;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class IndexQueue implements ServerComponent, WorkQueue<IndexActionRequest> {
+/**
+ * Sends the index actions of committed sessions to Elasticsearch. Actions are normalized
+ * on a pool shared by all the sessions, then sent through bulk requests bounded both in number
+ * of actions and in size. Items rejected by Elasticsearch are retried, and refreshes required
+ * by concurrent sessions on a same index are coalesced.
+ */
+public class IndexQueue implements ServerComponent, WorkQueue<IndexActionRequest>, Startable {
 
   protected final Profiling profiling;
 
@@ -53,12 +71,52 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexActionRequest
 
   private static final Logger LOGGER = LoggerFactory.getLogger(IndexQueue.class);
 
-  private static final Integer CONCURRENT_NORMALIZATION_FACTOR = 3;
+  private static final int CONCURRENT_NORMALIZATION_FACTOR = 3;
+
+  /**
+   * Maximum number of actions waiting for a normalization thread. When reached, the
+   * normalization is executed by the thread committing the session.
+   */
+  private static final int MAX_PENDING_NORMALIZATIONS = 1000;
+
+  static final int MAX_BULK_ACTIONS = 1000;
+  static final int MIN_BULK_ACTIONS = 50;
+  static final long MAX_BULK_SIZE_IN_BYTES = 5L * 1024 * 1024;
+  static final int MAX_RETRIES = 3;
+
+  private final ThreadPoolExecutor normalizationExecutor;
+
+  /**
+   * Number of actions per bulk request. Halved when Elasticsearch rejects some items
+   * and doubled back after each successful bulk.
+   */
+  private final AtomicInteger bulkActions = new AtomicInteger(MAX_BULK_ACTIONS);
+
+  /**
+   * Per index name, the date of the last refresh. A refresh started after the date when
+   * documents have been indexed makes them visible, so it does not need to be requested again.
+   */
+  private final ConcurrentMap<String, AtomicLong> lastRefreshByIndex = Maps.newConcurrentMap();
+
+  private final ConcurrentMap<String, QueueStat> statsByIndexType = Maps.newConcurrentMap();
 
   public IndexQueue(Settings settings, SearchClient searchClient, ComponentContainer container) {
     this.searchClient = searchClient;
     this.container = container;
     this.profiling = new Profiling(settings);
+    this.normalizationExecutor = new ThreadPoolExecutor(CONCURRENT_NORMALIZATION_FACTOR, CONCURRENT_NORMALIZATION_FACTOR,
+      0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(MAX_PENDING_NORMALIZATIONS),
+      new CallerRunsUnlessShutdownPolicy());
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    normalizationExecutor.shutdown();
   }
 
   @Override
@@ -67,6 +125,12 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexActionRequest
     if (actions.isEmpty()) {
       return;
     }
+    long start = System.currentTimeMillis();
+    Map<String, Integer> actionsByIndexType = countActionsByIndexType(actions);
+    for (Map.Entry<String, Integer> entry : actionsByIndexType.entrySet()) {
+      getStat(entry.getKey()).pending.addAndGet(entry.getValue());
+    }
+    boolean success = false;
     try {
 
       Map<String, Index> indexes = getIndexMap();
@@ -79,68 +143,198 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexActionRequest
         }
       }
 
-      BulkRequestBuilder bulkRequestBuilder = new BulkRequestBuilder(searchClient);
+      long normTime = System.currentTimeMillis();
+      List<ActionRequest> requests = executeNormalization(actions);
+      normTime = System.currentTimeMillis() - normTime;
 
-      long normTime = executeNormalization(bulkRequestBuilder, actions);
-
-      //execute the request
       long indexTime = System.currentTimeMillis();
-      BulkResponse response = searchClient.execute(bulkRequestBuilder.setRefresh(false));
-      indexTime = System.currentTimeMillis() - indexTime;
+      int bulks = executeBulks(requests);
+      long indexedAt = System.currentTimeMillis();
+      indexTime = indexedAt - indexTime;
 
-      long refreshTime = this.refreshRequiredIndex(indices);
+      long refreshTime = this.refreshRequiredIndex(indices, indexedAt);
 
-      LOGGER.debug("-- submitted {} items with {}ms in normalization, {}ms indexing and {}ms refresh({}). Total: {}ms",
-        bulkRequestBuilder.numberOfActions(), normTime, indexTime, refreshTime, indices, (normTime + indexTime + refreshTime));
-
-      if (response.hasFailures()) {
-        throw new IllegalStateException("Errors while indexing stack: " + response.buildFailureMessage());
-      }
+      LOGGER.debug("-- submitted {} items in {} bulk(s) with {}ms in normalization, {}ms indexing and {}ms refresh({}). Total: {}ms",
+        requests.size(), bulks, normTime, indexTime, refreshTime, indices, (normTime + indexTime + refreshTime));
+      success = true;
 
     } catch (Exception e) {
       LOGGER.error("Could not commit to ElasticSearch", e);
+    } finally {
+      long latency = System.currentTimeMillis() - start;
+      for (Map.Entry<String, Integer> entry : actionsByIndexType.entrySet()) {
+        getStat(entry.getKey()).done(entry.getValue(), success, latency);
+      }
     }
   }
 
+  /**
+   * Completes the statistics of an index with the activity of the queue
+   */
+  public IndexStat completeStat(String indexType, IndexStat stat) {
+    QueueStat queueStat = getStat(indexType);
+    stat.setPendingActions(queueStat.pending.get());
+    stat.setIndexedActions(queueStat.indexed.get());
+    stat.setFailedActions(queueStat.failed.get());
+    stat.setLastIndexingTime(queueStat.lastLatency.get());
+    return stat;
+  }
 
-  private long refreshRequiredIndex(Set<String> indices) {
+  @VisibleForTesting
+  long refreshRequiredIndex(Set<String> indices, long indexedAt) {
 
     long refreshTime = System.currentTimeMillis();
-    if (!indices.isEmpty()) {
-      RefreshRequestBuilder refreshRequest = searchClient.admin().indices()
-        .prepareRefresh(indices.toArray(new String[indices.size()]))
-        .setForce(false);
+    for (String indexName : indices) {
+      AtomicLong lastRefresh = getLastRefresh(indexName);
+      synchronized (lastRefresh) {
+        if (lastRefresh.get() > indexedAt) {
+          // documents have already been made visible by the refresh requested by another session
+          continue;
+        }
+        lastRefresh.set(System.currentTimeMillis());
+        RefreshRequestBuilder refreshRequest = searchClient.admin().indices()
+          .prepareRefresh(indexName)
+          .setForce(false);
 
-      RefreshResponse refreshResponse = searchClient.execute(refreshRequest);
+        RefreshResponse refreshResponse = searchClient.execute(refreshRequest);
 
-      if (refreshResponse.getFailedShards() > 0) {
-        LOGGER.warn("{} Shard(s) did not refresh", refreshResponse.getFailedShards());
+        if (refreshResponse.getFailedShards() > 0) {
+          LOGGER.warn("{} Shard(s) did not refresh", refreshResponse.getFailedShards());
+        }
       }
     }
     return System.currentTimeMillis() - refreshTime;
   }
 
-  private long executeNormalization(BulkRequestBuilder bulkRequestBuilder, List<IndexActionRequest> actions) {
-    long normTime = System.currentTimeMillis();
+  private List<ActionRequest> executeNormalization(List<IndexActionRequest> actions) {
+    List<ActionRequest> requests = new ArrayList<ActionRequest>();
     try {
-      ExecutorService executorService = Executors.newFixedThreadPool(CONCURRENT_NORMALIZATION_FACTOR);
       //invokeAll() blocks until ALL tasks submitted to executor complete
-      for (Future<List<ActionRequest>> updateRequests : executorService.invokeAll(actions)) {
-        for (ActionRequest update : updateRequests.get()) {
-          if (UpdateRequest.class.isAssignableFrom(update.getClass())) {
-            bulkRequestBuilder.add(((UpdateRequest) update).refresh(false));
-          } else if (DeleteRequest.class.isAssignableFrom(update.getClass())) {
-            bulkRequestBuilder.add(((DeleteRequest) update).refresh(false));
-          } else {
-            throw new IllegalStateException("Un-managed request type: " + update.getClass());
-          }
-        }
+      for (Future<List<ActionRequest>> updateRequests : normalizationExecutor.invokeAll(actions)) {
+        requests.addAll(updateRequests.get());
       }
-      executorService.shutdown();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Normalization of stack has been interrupted", e);
     } catch (Exception e) {
       throw new IllegalStateException("Could not execute normalization for stack", e);
     }
-    return System.currentTimeMillis() - normTime;
+    return requests;
+  }
+
+  /**
+   * Sends the requests through bulks limited in number of actions and in size. When an item fails,
+   * the requests are sent again from this item, so that they are always applied in their original order.
+   *
+   * @return the number of executed bulk requests
+   */
+  @VisibleForTesting
+  int executeBulks(List<ActionRequest> requests) {
+    int bulks = 0;
+    int retries = 0;
+    int next = 0;
+    while (next < requests.size()) {
+      BulkRequestBuilder bulk = newBulk();
+      int end = next;
+      while (end < requests.size() && bulk.numberOfActions() < bulkActions.get() && bulk.request().estimatedSizeInBytes() < MAX_BULK_SIZE_IN_BYTES) {
+        addToBulk(bulk, requests.get(end));
+        end++;
+      }
+      bulks++;
+      int firstFailure = executeBulk(bulk);
+      if (firstFailure < 0) {
+        next = end;
+        retries = 0;
+      } else {
+        if (firstFailure > 0) {
+          next += firstFailure;
+          retries = 0;
+        }
+        retries++;
+        if (retries > MAX_RETRIES) {
+          throw new IllegalStateException(String.format("Fail to index %d item(s) after %d retries", requests.size() - next, MAX_RETRIES));
+        }
+      }
+    }
+    return bulks;
+  }
+
+  /**
+   * @return the position in the bulk of the first failed item, or -1 if all items succeeded
+   */
+  private int executeBulk(BulkRequestBuilder bulk) {
+    BulkResponse response = searchClient.execute(bulk);
+    if (!response.hasFailures()) {
+      bulkActions.set(Math.min(MAX_BULK_ACTIONS, bulkActions.get() * 2));
+      return -1;
+    }
+    LOGGER.warn("Errors while indexing stack: {}", response.buildFailureMessage());
+    int firstFailure = -1;
+    boolean rejected = false;
+    for (BulkItemResponse item : response.getItems()) {
+      if (item.isFailed()) {
+        if (firstFailure < 0 || item.getItemId() < firstFailure) {
+          firstFailure = item.getItemId();
+        }
+        rejected |= isRejectedExecution(item);
+      }
+    }
+    if (rejected) {
+      // the cluster is overloaded, smaller bulks are sent until it recovers
+      bulkActions.set(Math.max(MIN_BULK_ACTIONS, bulkActions.get() / 2));
+    }
+    return firstFailure;
+  }
+
+  private static boolean isRejectedExecution(BulkItemResponse item) {
+    String message = item.getFailureMessage();
+    return message != null && message.contains(EsRejectedExecutionException.class.getSimpleName());
+  }
+
+  @VisibleForTesting
+  int bulkActions() {
+    return bulkActions.get();
+  }
+
+  private BulkRequestBuilder newBulk() {
+    return new BulkRequestBuilder(searchClient).setRefresh(false);
+  }
+
+  private static void addToBulk(BulkRequestBuilder bulk, ActionRequest request) {
+    if (UpdateRequest.class.isAssignableFrom(request.getClass())) {
+      bulk.add(((UpdateRequest) request).refresh(false));
+    } else if (DeleteRequest.class.isAssignableFrom(request.getClass())) {
+      bulk.add(((DeleteRequest) request).refresh(false));
+    } else {
+      throw new IllegalStateException("Un-managed request type: " + request.getClass());
+    }
+  }
+
+  private static Map<String, Integer> countActionsByIndexType(List<IndexActionRequest> actions) {
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    for (IndexActionRequest action : actions) {
+      Integer count = counts.get(action.getIndexType());
+      counts.put(action.getIndexType(), count == null ? 1 : (count + 1));
+    }
+    return counts;
+  }
+
+  private AtomicLong getLastRefresh(String indexName) {
+    AtomicLong lastRefresh = lastRefreshByIndex.get(indexName);
+    if (lastRefresh == null) {
+      lastRefreshByIndex.putIfAbsent(indexName, new AtomicLong(0L));
+      lastRefresh = lastRefreshByIndex.get(indexName);
+    }
+    return lastRefresh;
+  }
+
+  private QueueStat getStat(String indexType) {
+    QueueStat stat = statsByIndexType.get(indexType);
+    if (stat == null) {
+      statsByIndexType.putIfAbsent(indexType, new QueueStat());
+      stat = statsByIndexType.get(indexType);
+    }
+    return stat;
   }
 
   private Map<String, Index> getIndexMap() {
@@ -150,4 +344,31 @@ public class IndexQueue implements ServerComponent, WorkQueue<IndexActionRequest
     }
     return indexes;
   }
+
+  private static class QueueStat {
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong lastLatency = new AtomicLong();
+
+    void done(int actions, boolean success, long latency) {
+      pending.addAndGet(-actions);
+      (success ? indexed : failed).addAndGet(actions);
+      lastLatency.set(latency);
+    }
+  }
+
+  /**
+   * Normalizations are executed by the committing thread when the pool is busy. Once the queue is stopped,
+   * they are rejected, so that the commit fails instead of waiting for tasks which will never run.
+   */
+  private static class CallerRunsUnlessShutdownPolicy implements RejectedExecutionHandler {
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+        throw new RejectedExecutionException("Index queue is stopped");
+      }
+      task.run();
+    }
+  }
 }
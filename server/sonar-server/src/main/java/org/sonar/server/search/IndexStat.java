@@ -29,6 +29,10 @@ public class IndexStat {
   private final Date statTime;
   private Date lastUpdate;
   private Long documentCount;
+  private long pendingActions;
+  private long indexedActions;
+  private long failedActions;
+  private long lastIndexingTime;
 
   public IndexStat() {
     this.statTime = new Date();
@@ -53,4 +57,43 @@ public class IndexStat {
   public void setDocumentCount(Long documentCount) {
     this.documentCount = documentCount;
   }
+
+  /**
+   * Number of actions submitted to {@link IndexQueue} and not indexed yet
+   */
+  public long getPendingActions() {
+    return pendingActions;
+  }
+
+  public void setPendingActions(long pendingActions) {
+    this.pendingActions = pendingActions;
+  }
+
+  public long getIndexedActions() {
+    return indexedActions;
+  }
+
+  public void setIndexedActions(long indexedActions) {
+    this.indexedActions = indexedActions;
+  }
+
+  public long getFailedActions() {
+    return failedActions;
+  }
+
+  public void setFailedActions(long failedActions) {
+    this.failedActions = failedActions;
+  }
+
+  /**
+   * Time in milliseconds spent by {@link IndexQueue} to normalize, index and refresh the last
+   * committed stack of actions
+   */
+  public long getLastIndexingTime() {
+    return lastIndexingTime;
+  }
+
+  public void setLastIndexingTime(long lastIndexingTime) {
+    this.lastIndexingTime = lastIndexingTime;
+  }
 }
@@ -23,8 +23,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.server.activity.index.ActivityIndex;
+import org.sonar.server.component.index.ComponentIndex;
 import org.sonar.server.db.Dao;
 import org.sonar.server.db.DbClient;
+import org.sonar.server.issue.index.IssueIndex;
 import org.sonar.server.qualityprofile.index.ActiveRuleIndex;
 import org.sonar.server.rule.index.RuleIndex;
 
@@ -51,6 +53,8 @@ public class IndexSynchronizer {
     synchronize(session, db.ruleDao(), index.get(RuleIndex.class));
     synchronize(session, db.activeRuleDao(), index.get(ActiveRuleIndex.class));
     synchronize(session, db.activityDao(), index.get(ActivityIndex.class));
+    synchronize(session, db.issueDao(), index.get(IssueIndex.class));
+    synchronize(session, db.componentDao(), index.get(ComponentIndex.class));
     session.commit();
     LOG.info("Synchronization done in {}ms...", System.currentTimeMillis() - start);
     session.close();
@@ -0,0 +1,101 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.search;
+
+import com.google.common.collect.Sets;
+import org.picocontainer.Startable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.ServerComponent;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes the {@link ProjectSynchronizer}s in background, one project at a time, so that the requests
+ * notifying the end of an analysis or deleting a project never wait for, nor fail because of, the search index.
+ * Errors are logged. A synchronization requested while another one is pending on the same project is ignored.
+ * @since 4.5.4
+ */
+public class ProjectSynchronizationQueue implements ServerComponent, Startable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProjectSynchronizationQueue.class);
+
+  private final ProjectSynchronizer[] synchronizers;
+  private final Set<String> pendingSynchronizations = Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private ExecutorService executor;
+
+  public ProjectSynchronizationQueue(ProjectSynchronizer[] synchronizers) {
+    this.synchronizers = synchronizers;
+  }
+
+  @Override
+  public void start() {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @Override
+  public void stop() {
+    try {
+      executor.shutdown();
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      LOG.error("Error during stop of synchronization of projects", e);
+    }
+  }
+
+  public void enqueueSynchronization(final String projectKey) {
+    if (!pendingSynchronizations.add(projectKey)) {
+      return;
+    }
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        // changes committed from now are pushed by this synchronization
+        pendingSynchronizations.remove(projectKey);
+        for (ProjectSynchronizer synchronizer : synchronizers) {
+          try {
+            synchronizer.synchronizeProject(projectKey);
+          } catch (Exception e) {
+            LOG.error(String.format("Fail to synchronize project %s with %s", projectKey, synchronizer.getClass().getSimpleName()), e);
+          }
+        }
+      }
+    });
+  }
+
+  public void enqueueDeletion(final long projectId, final String projectKey) {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        for (ProjectSynchronizer synchronizer : synchronizers) {
+          try {
+            synchronizer.deleteProject(projectId, projectKey);
+          } catch (Exception e) {
+            LOG.error(String.format("Fail to delete project %s with %s", projectKey, synchronizer.getClass().getSimpleName()), e);
+          }
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.search;
+
+import org.sonar.api.ServerComponent;
+
+/**
+ * Keeps the documents of an index in line with the database when a project is analyzed or deleted.
+ * Synchronizers are executed in background by {@link ProjectSynchronizationQueue}.
+ * @since 4.5.4
+ */
+public interface ProjectSynchronizer extends ServerComponent {
+
+  /**
+   * Pushes to the index the changes of the given root project, for example at the end of its analysis.
+   */
+  void synchronizeProject(String projectKey);
+
+  /**
+   * Removes from the index the documents of a root project which has been deleted from database.
+   */
+  void deleteProject(long projectId, String projectKey);
+}
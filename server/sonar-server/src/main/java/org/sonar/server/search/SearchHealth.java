@@ -35,10 +35,12 @@ public class SearchHealth {
 
   private SearchClient searchClient;
   private IndexClient indexClient;
+  private IndexQueue indexQueue;
 
-  public SearchHealth(SearchClient searchClient, IndexClient indexClient) {
+  public SearchHealth(SearchClient searchClient, IndexClient indexClient, IndexQueue indexQueue) {
     this.searchClient = searchClient;
     this.indexClient = indexClient;
+    this.indexQueue = indexQueue;
   }
 
   public ClusterHealth getClusterHealth() {
@@ -48,11 +50,14 @@ public class SearchHealth {
   public Map<String, IndexHealth> getIndexHealth() {
     Builder<String, IndexHealth> builder = ImmutableMap.builder();
     for (Index index: indexClient.allIndices()) {
-      IndexStat indexStat = index.getIndexStat();
+      IndexStat indexStat = indexQueue.completeStat(index.getIndexType(), index.getIndexStat());
       IndexHealth newIndexHealth = new IndexHealth();
       newIndexHealth.name = index.getIndexName() + "/" + index.getIndexType();
       newIndexHealth.documentCount = indexStat.getDocumentCount();
       newIndexHealth.lastSync = indexStat.getLastUpdate();
+      newIndexHealth.pendingActions = indexStat.getPendingActions();
+      newIndexHealth.failedActions = indexStat.getFailedActions();
+      newIndexHealth.lastIndexingTime = indexStat.getLastIndexingTime();
 
       IndicesStatsRequestBuilder statRequest = searchClient.admin().indices().prepareStats(index.getIndexName())
         .setTypes(index.getIndexType());
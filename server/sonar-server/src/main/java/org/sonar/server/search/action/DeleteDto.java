@@ -21,6 +21,7 @@ package org.sonar.server.search.action;
 
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.client.Requests;
+import org.sonar.core.cluster.CoalescableAction;
 import org.sonar.core.persistence.Dto;
 import org.sonar.server.search.Index;
 
@@ -46,6 +47,14 @@ public class DeleteDto<DTO extends Dto> extends IndexActionRequest {
     return dto.getClass();
   }
 
+  /**
+   * Whatever the previous action on the document, it is deleted
+   */
+  @Override
+  public boolean replaces(CoalescableAction previous) {
+    return previous instanceof IndexActionRequest && coversRefreshOf((IndexActionRequest) previous);
+  }
+
   @Override
   public List<ActionRequest> doCall(Index index) throws Exception {
     List<ActionRequest> requests = new ArrayList<ActionRequest>();
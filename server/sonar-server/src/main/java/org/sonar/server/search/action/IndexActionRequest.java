@@ -22,13 +22,14 @@ package org.sonar.server.search.action;
 
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.update.UpdateRequest;
-import org.sonar.core.cluster.ClusterAction;
+import org.sonar.core.cluster.CoalescableAction;
 import org.sonar.server.search.Index;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-public abstract class IndexActionRequest implements ClusterAction<List<ActionRequest>> {
+public abstract class IndexActionRequest implements CoalescableAction<List<ActionRequest>> {
 
   protected final String indexType;
   private final boolean requiresRefresh;
@@ -52,6 +53,29 @@ public abstract class IndexActionRequest implements ClusterAction<List<ActionReq
     return indexType;
   }
 
+  /**
+   * The document of the index type
+   */
+  @Override
+  public Object getTarget() {
+    return Arrays.asList(indexType, getKey());
+  }
+
+  /**
+   * By default an action is always executed. Actions on whole documents override this method
+   * to discard the previous actions which they make useless.
+   */
+  @Override
+  public boolean replaces(CoalescableAction previous) {
+    return false;
+  }
+
+  /**
+   * The previous action can't be discarded if it requires a refresh that this one does not require
+   */
+  protected boolean coversRefreshOf(IndexActionRequest previous) {
+    return needsRefresh() || !previous.needsRefresh();
+  }
 
   public void setIndex(Index index) {
     this.index = index;
@@ -20,6 +20,7 @@
 package org.sonar.server.search.action;
 
 import org.elasticsearch.action.ActionRequest;
+import org.sonar.core.cluster.CoalescableAction;
 import org.sonar.core.persistence.Dto;
 import org.sonar.server.search.Index;
 
@@ -48,6 +49,15 @@ public class UpsertDto<DTO extends Dto> extends IndexActionRequest {
     return dto.getClass();
   }
 
+  /**
+   * The whole document is normalized again, so a previous upsert of the same document is useless.
+   * Nested items and deletions are kept.
+   */
+  @Override
+  public boolean replaces(CoalescableAction previous) {
+    return previous instanceof UpsertDto && coversRefreshOf((UpsertDto) previous);
+  }
+
   @Override
   public List<ActionRequest> doCall(Index index) throws Exception {
     return index.getNormalizer().normalize(dto);
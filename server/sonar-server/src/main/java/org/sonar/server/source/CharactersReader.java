@@ -43,6 +43,19 @@ class CharactersReader {
     this.openTags = new ArrayDeque<String>();
   }
 
+  /**
+   * Reader positioned at the given index of the text, the preceding characters being already read
+   *
+   * @param previousChar the character preceding the index
+   * @param openTags tags open at the index, the most recently opened first
+   */
+  CharactersReader(BufferedReader stringBuffer, int startIndex, char previousChar, Deque<String> openTags) {
+    this.stringBuffer = stringBuffer;
+    this.openTags = openTags;
+    this.currentValue = previousChar;
+    this.currentIndex = startIndex - 1;
+  }
+
   boolean readNextChar() throws IOException {
     previousValue = currentValue;
     currentValue = stringBuffer.read();
@@ -20,9 +20,13 @@
 package org.sonar.server.source;
 
 import com.google.common.collect.Lists;
+import org.sonar.core.source.DecorationDataFormat;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
 
 class DecorationDataHolder {
@@ -31,6 +35,12 @@ class DecorationDataHolder {
   private static final String FIELD_SEPARATOR = ",";
   private static final String SYMBOL_PREFIX = "sym-";
   private static final String HIGHLIGHTABLE = "sym";
+  private static final Comparator<OpeningHtmlTag> OPENING_TAG_COMPARATOR = new Comparator<OpeningHtmlTag>() {
+    @Override
+    public int compare(OpeningHtmlTag left, OpeningHtmlTag right) {
+      return left.getStartOffset() < right.getStartOffset() ? -1 : (left.getStartOffset() == right.getStartOffset() ? 0 : 1);
+    }
+  };
 
   private List<OpeningHtmlTag> openingTagsEntries;
   private int openingTagsIndex;
@@ -43,6 +53,17 @@ class DecorationDataHolder {
   }
 
   void loadSymbolReferences(String symbolsReferences) {
+    if (DecorationDataFormat.isCompact(symbolsReferences)) {
+      DecorationDataFormat.readSymbols(symbolsReferences, new DecorationDataFormat.SymbolHandler() {
+        @Override
+        public void onReference(int declarationStartOffset, int declarationEndOffset, int referenceStartOffset) {
+          loadSymbolOccurrence(declarationStartOffset, declarationEndOffset - declarationStartOffset, referenceStartOffset);
+        }
+      });
+      sortByOffset();
+      return;
+    }
+    // former text format
     String[] symbols = symbolsReferences.split(ENTITY_SEPARATOR);
     for (String symbol : symbols) {
       String[] symbolFields = symbol.split(FIELD_SEPARATOR);
@@ -52,15 +73,29 @@ class DecorationDataHolder {
       String[] symbolOccurrences = Arrays.copyOfRange(symbolFields, 2, symbolFields.length);
       loadSymbolOccurrences(declarationStartOffset, symbolLength, symbolOccurrences);
     }
+    sortByOffset();
   }
 
   void loadSyntaxHighlightingData(String syntaxHighlightingRules) {
+    if (DecorationDataFormat.isCompact(syntaxHighlightingRules)) {
+      DecorationDataFormat.readSyntaxHighlighting(syntaxHighlightingRules, new DecorationDataFormat.SyntaxHighlightingHandler() {
+        @Override
+        public void onRule(int startOffset, int endOffset, String cssClass) {
+          openingTagsEntries.add(new OpeningHtmlTag(startOffset, cssClass));
+          closingTagsOffsets.add(endOffset);
+        }
+      });
+      sortByOffset();
+      return;
+    }
+    // former text format
     String[] rules = syntaxHighlightingRules.split(ENTITY_SEPARATOR);
     for (String rule : rules) {
       String[] ruleFields = rule.split(FIELD_SEPARATOR);
-      insertAndPreserveOrder(new OpeningHtmlTag(Integer.parseInt(ruleFields[0]), ruleFields[2]), openingTagsEntries);
-      insertAndPreserveOrder(Integer.parseInt(ruleFields[1]), closingTagsOffsets);
+      openingTagsEntries.add(new OpeningHtmlTag(Integer.parseInt(ruleFields[0]), ruleFields[2]));
+      closingTagsOffsets.add(Integer.parseInt(ruleFields[1]));
     }
+    sortByOffset();
   }
 
   List<OpeningHtmlTag> getOpeningTagsEntries() {
@@ -89,28 +124,49 @@ class DecorationDataHolder {
 
   private void loadSymbolOccurrences(int declarationStartOffset, int symbolLength, String[] symbolOccurrences) {
     for (String symbolOccurrence : symbolOccurrences) {
-      int occurrenceStartOffset = Integer.parseInt(symbolOccurrence);
-      int occurrenceEndOffset = occurrenceStartOffset + symbolLength;
-      insertAndPreserveOrder(new OpeningHtmlTag(occurrenceStartOffset, SYMBOL_PREFIX + declarationStartOffset + " " + HIGHLIGHTABLE), openingTagsEntries);
-      insertAndPreserveOrder(occurrenceEndOffset, closingTagsOffsets);
+      loadSymbolOccurrence(declarationStartOffset, symbolLength, Integer.parseInt(symbolOccurrence));
     }
   }
 
-  private void insertAndPreserveOrder(OpeningHtmlTag newEntry, List<OpeningHtmlTag> openingHtmlTags) {
-    int insertionIndex = 0;
-    Iterator<OpeningHtmlTag> tagIterator = openingHtmlTags.iterator();
-    while (tagIterator.hasNext() && tagIterator.next().getStartOffset() <= newEntry.getStartOffset()) {
-      insertionIndex++;
-    }
-    openingHtmlTags.add(insertionIndex, newEntry);
+  private void loadSymbolOccurrence(int declarationStartOffset, int symbolLength, int occurrenceStartOffset) {
+    int occurrenceEndOffset = occurrenceStartOffset + symbolLength;
+    openingTagsEntries.add(new OpeningHtmlTag(occurrenceStartOffset, SYMBOL_PREFIX + declarationStartOffset + " " + HIGHLIGHTABLE));
+    closingTagsOffsets.add(occurrenceEndOffset);
   }
 
-  private void insertAndPreserveOrder(int newOffset, List<Integer> orderedOffsets) {
-    int insertionIndex = 0;
-    Iterator<Integer> entriesIterator = orderedOffsets.iterator();
-    while (entriesIterator.hasNext() && entriesIterator.next() <= newOffset) {
-      insertionIndex++;
+  /**
+   * Moves to the first tags opened or closed at the given offset or after.
+   *
+   * @return the tags still open at the given offset, the most recently opened first
+   */
+  Deque<String> seek(int offset) {
+    Deque<String> openTags = new ArrayDeque<String>();
+    openingTagsIndex = 0;
+    closingTagsIndex = 0;
+    while (true) {
+      int closingOffset = getCurrentClosingTagOffset();
+      OpeningHtmlTag openingTag = getCurrentOpeningTagEntry();
+      boolean closesBefore = closingOffset >= 0 && closingOffset < offset;
+      boolean opensBefore = openingTag != null && openingTag.getStartOffset() < offset;
+      // as when decorating text, tags closed at an offset are closed before the ones opened at the same offset
+      if (closesBefore && (!opensBefore || closingOffset <= openingTag.getStartOffset())) {
+        openTags.poll();
+        nextClosingTagOffset();
+      } else if (opensBefore) {
+        openTags.push(openingTag.getCssClass());
+        nextOpeningTagEntry();
+      } else {
+        return openTags;
+      }
     }
-    orderedOffsets.add(insertionIndex, newOffset);
+  }
+
+  /**
+   * Entries are loaded in the order of the data, then sorted once. As the sort is stable, entries
+   * starting at the same offset keep the order in which they have been loaded.
+   */
+  private void sortByOffset() {
+    Collections.sort(openingTagsEntries, OPENING_TAG_COMPARATOR);
+    Collections.sort(closingTagsOffsets);
   }
 }
@@ -51,17 +51,33 @@ class HtmlTextDecorator {
     return decorateTextWithHtml(text, decorationDataHolder, null, null);
   }
 
+  /**
+   * When a first line is requested, the text is decorated from the beginning of this line, with
+   * the tags still open at this position, instead of from the beginning of the text.
+   */
   List<String> decorateTextWithHtml(String text, DecorationDataHolder decorationDataHolder, @Nullable Integer from, @Nullable Integer to) {
 
     StringBuilder currentHtmlLine = new StringBuilder();
     List<String> decoratedHtmlLines = newArrayList();
-    int currentLine = 1;
+    int startOffset = from != null && from > 1 ? lineStartOffset(text, from) : 0;
+    if (startOffset < 0) {
+      return decoratedHtmlLines;
+    }
+    // the line preceding the start offset is read but not returned
+    int currentLine = startOffset > 0 ? (from - 1) : 1;
 
     BufferedReader stringBuffer = null;
     try {
-      stringBuffer = new BufferedReader(new StringReader(text));
-
-      CharactersReader charsReader = new CharactersReader(stringBuffer);
+      StringReader reader = new StringReader(text);
+      reader.skip(startOffset);
+      stringBuffer = new BufferedReader(reader);
+
+      CharactersReader charsReader;
+      if (startOffset > 0) {
+        charsReader = new CharactersReader(stringBuffer, startOffset, text.charAt(startOffset - 1), decorationDataHolder.seek(startOffset));
+      } else {
+        charsReader = new CharactersReader(stringBuffer);
+      }
 
       while (charsReader.readNextChar()) {
         if (shouldStop(currentLine, to)) {
@@ -98,6 +114,27 @@ class HtmlTextDecorator {
     return decoratedHtmlLines;
   }
 
+  /**
+   * Offset of the first character of the given line, or -1 if the text has less lines. Lines are
+   * ended by LF, CR+LF or CR, as when decorating the text.
+   */
+  static int lineStartOffset(String text, int line) {
+    int currentLine = 1;
+    int offset = 0;
+    int length = text.length();
+    while (currentLine < line) {
+      if (offset >= length) {
+        return -1;
+      }
+      char c = text.charAt(offset);
+      offset++;
+      if (c == LF_END_OF_LINE || (c == CR_END_OF_LINE && (offset >= length || text.charAt(offset) != LF_END_OF_LINE))) {
+        currentLine++;
+      }
+    }
+    return offset;
+  }
+
   private void addCharToCurrentLine(CharactersReader charsReader, StringBuilder currentHtmlLine, DecorationDataHolder decorationDataHolder) {
     if (shouldStartNewLine(charsReader)) {
       if (shouldReopenPendingTags(charsReader)) {
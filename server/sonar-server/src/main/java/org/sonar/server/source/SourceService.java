@@ -20,7 +20,6 @@
 
 package org.sonar.server.source;
 
-import com.google.common.base.Splitter;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.web.UserRole;
@@ -36,15 +35,10 @@ import org.sonar.server.user.UserSession;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
-import java.util.Collections;
 import java.util.List;
 
-import static com.google.common.collect.Lists.newArrayList;
-
 public class SourceService implements ServerComponent {
 
-  private static final int THREE_THOUSAND_LINES_SIZE = 3000 * 20;
-
   private final DbClient dbClient;
   private final SnapshotSourceDao snapshotSourceDao;
   private final HtmlSourceDecorator sourceDecorator;
@@ -74,10 +68,6 @@ public class SourceService implements ServerComponent {
       checkPermission(fileKey);
       String source = snapshotSourceDao.selectSnapshotSourceByComponentKey(fileKey, session);
       if (source != null) {
-        if (sizeBiggerThan3000Lines(source)) {
-          return getLinesAsTxt(source);
-        }
-
         List<String> decoratedSource = sourceDecorator.getDecoratedSourceAsHtml(session, fileKey, source, from, to);
         if (decoratedSource != null) {
           return decoratedSource;
@@ -120,15 +110,4 @@ public class SourceService implements ServerComponent {
     }
   }
 
-  private static boolean sizeBiggerThan3000Lines (String source){
-    return source.length() > THREE_THOUSAND_LINES_SIZE;
-  }
-
-  private static List<String> getLinesAsTxt(@Nullable String source) {
-    if (source != null) {
-      return newArrayList(Splitter.onPattern("\r?\n|\r").split(source));
-    }
-    return Collections.emptyList();
-  }
-
 }
@@ -38,6 +38,8 @@ import org.sonar.api.web.Widget;
 import org.sonar.core.persistence.Database;
 import org.sonar.core.preview.PreviewCache;
 import org.sonar.core.purge.PurgeDao;
+import org.sonar.core.resource.ResourceDao;
+import org.sonar.core.resource.ResourceDto;
 import org.sonar.core.resource.ResourceIndexerDao;
 import org.sonar.core.resource.ResourceKeyUpdaterDao;
 import org.sonar.core.timemachine.Periods;
@@ -54,6 +56,7 @@ import org.sonar.server.plugins.ServerPluginJarsInstaller;
 import org.sonar.server.plugins.ServerPluginRepository;
 import org.sonar.server.plugins.UpdateCenterMatrixFactory;
 import org.sonar.server.rule.RuleRepositories;
+import org.sonar.server.search.ProjectSynchronizationQueue;
 import org.sonar.server.source.CodeColorizers;
 import org.sonar.server.user.NewUserNotifier;
 import org.sonar.updatecenter.common.PluginReferential;
@@ -63,6 +66,7 @@ import org.sonar.updatecenter.common.Version;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
+import java.io.File;
 import java.net.InetAddress;
 import java.sql.Connection;
 import java.util.Collection;
@@ -340,7 +344,12 @@ public final class JRubyFacade {
 
   public void deleteResourceTree(long rootProjectId) {
     try {
+      ResourceDto project = get(ResourceDao.class).getResource(rootProjectId);
       get(PurgeDao.class).deleteResourceTree(rootProjectId);
+      if (project != null) {
+        // documents of the deleted project are removed from the search indexes in background
+        get(ProjectSynchronizationQueue.class).enqueueDeletion(rootProjectId, project.getKey());
+      }
     } catch (RuntimeException e) {
       LoggerFactory.getLogger(JRubyFacade.class).error("Fail to delete resource with ID: " + rootProjectId, e);
       throw e;
@@ -401,8 +410,8 @@ public final class JRubyFacade {
     }
   }
 
-  public byte[] createDatabaseForPreview(@Nullable Long projectId) {
-    return get(PreviewCache.class).getDatabaseForPreview(projectId);
+  public File getDatabaseFileForPreview(@Nullable Long projectId) {
+    return get(PreviewCache.class).getDatabaseFileForPreview(projectId);
   }
 
   public String getPeriodLabel(int periodIndex) {
@@ -0,0 +1,131 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.collect.ImmutableSet;
+import org.sonar.api.ServerComponent;
+import org.sonar.api.utils.System2;
+import org.sonar.core.user.AuthorizationDao;
+
+import javax.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.collect.Sets.newHashSet;
+
+/**
+ * Keeps for a short time the root projects (qualifier TRK, views excluded) on which users have a given permission, so that
+ * the permission checks of successive web service requests do not all query the user_roles and
+ * group_roles tables. Entries are dropped as soon as permissions are changed through
+ * {@link org.sonar.server.permission.InternalPermissionService}; the other changes (group membership,
+ * provisioning...) are visible once the entries expire.
+ *
+ * @since 4.5.4
+ */
+public class UserPermissionCache implements ServerComponent {
+
+  static final long TTL_MS = 10000L;
+
+  private final AuthorizationDao authorizationDao;
+  private final System2 system;
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+  private final AtomicLong generation = new AtomicLong();
+
+  public UserPermissionCache(AuthorizationDao authorizationDao) {
+    this(authorizationDao, System2.INSTANCE);
+  }
+
+  public UserPermissionCache(AuthorizationDao authorizationDao, System2 system) {
+    this.authorizationDao = authorizationDao;
+    this.system = system;
+  }
+
+  /**
+   * Keys of the root projects on which the user, or anonymous if userId is null, has the given permission.
+   * Views are not included.
+   */
+  public Set<String> authorizedRootProjectKeys(@Nullable Integer userId, String permission) {
+    String key = userId + ":" + permission;
+    long now = system.now();
+    Entry entry = entries.get(key);
+    if (entry == null || entry.expiresAt <= now) {
+      if (entry == null) {
+        purgeExpired(now);
+      }
+      long loadedGeneration = generation.get();
+      entry = new Entry(ImmutableSet.copyOf(authorizationDao.selectAuthorizedRootProjectsKeys(userId, permission)), now + TTL_MS);
+      entries.put(key, entry);
+      if (generation.get() != loadedGeneration) {
+        // permissions changed while loading, the loaded keys may already be stale
+        entries.remove(key, entry);
+      }
+    }
+    return entry.projectKeys;
+  }
+
+  /**
+   * Subset of the given root project keys on which the user has the given permission.
+   */
+  public Set<String> keepAuthorizedRootProjectKeys(Collection<String> projectKeys, @Nullable Integer userId, String permission) {
+    Set<String> authorized = authorizedRootProjectKeys(userId, permission);
+    Set<String> result = newHashSet();
+    for (String projectKey : projectKeys) {
+      if (authorized.contains(projectKey)) {
+        result.add(projectKey);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Must be called when permissions are granted or revoked.
+   */
+  public void clear() {
+    generation.incrementAndGet();
+    entries.clear();
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  private void purgeExpired(long now) {
+    for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+      if (it.next().expiresAt <= now) {
+        it.remove();
+      }
+    }
+  }
+
+  private static class Entry {
+    private final Set<String> projectKeys;
+    private final long expiresAt;
+
+    Entry(Set<String> projectKeys, long expiresAt) {
+      this.projectKeys = projectKeys;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -165,7 +165,7 @@ public class UserSession {
    */
   public boolean hasProjectPermission(String permission, String projectKey) {
     if (!projectPermissions.contains(permission)) {
-      Collection<String> projectKeys = authorizationDao().selectAuthorizedRootProjectsKeys(userId, permission);
+      Collection<String> projectKeys = permissionCache().authorizedRootProjectKeys(userId, permission);
       for (String key : projectKeys) {
         projectKeyByPermission.put(permission, key);
       }
@@ -212,6 +212,10 @@ public class UserSession {
     return Platform.component(ResourceDao.class);
   }
 
+  UserPermissionCache permissionCache() {
+    return Platform.component(UserPermissionCache.class);
+  }
+
   public static UserSession get() {
     return Objects.firstNonNull(THREAD_LOCAL.get(), ANONYMOUS);
   }
@@ -0,0 +1,116 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.index;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.sonar.api.resources.Qualifiers;
+import org.sonar.core.component.ComponentDto;
+import org.sonar.core.component.SnapshotDto;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.server.component.ComponentTesting;
+import org.sonar.server.component.SnapshotTesting;
+import org.sonar.server.db.DbClient;
+import org.sonar.server.search.IndexClient;
+import org.sonar.server.search.Result;
+import org.sonar.server.tester.ServerTester;
+
+import java.sql.PreparedStatement;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ComponentIndexMediumTest {
+
+  @ClassRule
+  public static ServerTester tester = new ServerTester();
+
+  DbClient db;
+  IndexClient index;
+  DbSession dbSession;
+
+  @Before
+  public void setUp() throws Exception {
+    tester.clearDbAndIndexes();
+    db = tester.get(DbClient.class);
+    index = tester.get(IndexClient.class);
+    dbSession = db.openSession(false);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    dbSession.close();
+  }
+
+  @Test
+  public void synchronize_and_search_components_by_name() throws Exception {
+    ComponentDto project = ComponentTesting.newProjectDto().setName("Struts");
+    db.componentDao().insert(dbSession, project);
+    SnapshotDto projectSnapshot = SnapshotTesting.createForProject(project);
+    db.snapshotDao().insert(dbSession, projectSnapshot);
+    ComponentDto servlet = ComponentTesting.newFileDto(project, "servlet").setName("ActionServlet.java");
+    ComponentDto action = ComponentTesting.newFileDto(project, "action").setName("Action.java");
+    for (ComponentDto file : ImmutableList.of(servlet, action)) {
+      db.componentDao().insert(dbSession, file);
+      db.snapshotDao().insert(dbSession, SnapshotTesting.createForComponent(file, project, projectSnapshot));
+    }
+    dbSession.commit();
+
+    tester.get(ComponentSynchronizer.class).synchronizeProject(project.getKey());
+
+    List<Long> authorizedProjects = ImmutableList.of(project.getId());
+    Result<ComponentDoc> result = search("action", authorizedProjects);
+    assertThat(result.getTotal()).isEqualTo(2);
+    // shortest names first
+    assertThat(result.getHits().get(0).name()).isEqualTo("Action.java");
+    assertThat(result.getHits().get(1).name()).isEqualTo("ActionServlet.java");
+
+    assertThat(search("SERVLET", authorizedProjects).getTotal()).isEqualTo(1);
+    assertThat(search("actionservlet.java", authorizedProjects).getTotal()).isEqualTo(1);
+    assertThat(search("actionservlet.javax", authorizedProjects).getTotal()).isEqualTo(0);
+    assertThat(index.get(ComponentIndex.class).searchByName("str", Qualifiers.PROJECT, authorizedProjects, 10).getTotal()).isEqualTo(1);
+
+    // components of projects which are not authorized are not returned
+    assertThat(search("action", Collections.<Long>emptyList()).getTotal()).isEqualTo(0);
+
+    // only the renamed component is indexed again
+    PreparedStatement rename = dbSession.getConnection().prepareStatement("update projects set name='Dispatcher.java' where id=?");
+    rename.setLong(1, action.getId());
+    rename.executeUpdate();
+    rename.close();
+    dbSession.commit();
+    tester.get(ComponentSynchronizer.class).synchronizeProject(project.getKey());
+
+    assertThat(search("action", authorizedProjects).getTotal()).isEqualTo(1);
+    assertThat(search("patch", authorizedProjects).getHits().get(0).id()).isEqualTo(action.getId());
+
+    // components of a deleted project are removed from the index
+    tester.get(ComponentSynchronizer.class).deleteProject(project.getId(), project.getKey());
+    assertThat(search("servlet", authorizedProjects).getTotal()).isEqualTo(0);
+  }
+
+  private Result<ComponentDoc> search(String text, List<Long> authorizedProjects) {
+    return index.get(ComponentIndex.class).searchByName(text, Qualifiers.FILE, authorizedProjects, 10);
+  }
+}
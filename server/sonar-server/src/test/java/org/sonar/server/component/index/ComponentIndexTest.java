@@ -0,0 +1,38 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.index;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ComponentIndexTest {
+
+  @Test
+  public void search_short_text_as_a_single_substring() throws Exception {
+    assertThat(ComponentIndex.searchGrams("Struts")).containsExactly("struts");
+    assertThat(ComponentIndex.searchGrams("ActionServlet.j")).containsExactly("actionservlet.j");
+  }
+
+  @Test
+  public void split_long_text_into_overlapping_substrings() throws Exception {
+    assertThat(ComponentIndex.searchGrams("ActionServlet.java")).containsExactly("actionservlet.j", "ctionservlet.ja", "tionservlet.jav", "ionservlet.java");
+  }
+}
@@ -34,6 +34,7 @@ import org.sonar.server.exceptions.NotFoundException;
 import java.util.Date;
 import java.util.List;
 
+import static com.google.common.collect.Lists.newArrayList;
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -292,8 +293,12 @@ public class ComponentDaoTest extends AbstractDaoTestCase {
       );
   }
 
-  @Test(expected = IllegalStateException.class)
-  public void synchronize_after() {
-    dao.synchronizeAfter(session, new Date(0L));
+  @Test
+  public void find_after_date() {
+    setupData("shared");
+
+    // creation date is not set on the components of the dataset
+    assertThat(newArrayList(dao.findAfterDate(session, new Date(0L)))).onProperty("id").containsOnly(1L, 2L, 4L);
+    assertThat(newArrayList(dao.findAfterDate(session, DateUtils.parseDate("2008-01-01")))).isEmpty();
   }
 }
@@ -21,6 +21,7 @@ package org.sonar.server.issue;
 
 import com.google.common.collect.Lists;
 import org.apache.ibatis.session.SqlSession;
+import org.elasticsearch.index.query.FilterBuilder;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.CoreProperties;
@@ -41,15 +42,24 @@ import org.sonar.core.issue.db.IssueDao;
 import org.sonar.core.issue.db.IssueDto;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.resource.ResourceDao;
+import org.sonar.core.user.AuthorizationDao;
 import org.sonar.server.rule.DefaultRuleFinder;
 import org.sonar.core.user.DefaultUser;
 import org.sonar.server.issue.actionplan.ActionPlanService;
+import org.sonar.server.issue.index.IssueDoc;
+import org.sonar.server.issue.index.IssueIndex;
+import org.sonar.server.issue.index.IssueNormalizer;
+import org.sonar.server.search.IndexClient;
+import org.sonar.server.search.QueryOptions;
+import org.sonar.server.search.Result;
+import org.sonar.server.user.UserPermissionCache;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static com.google.common.collect.Lists.newArrayList;
-import static com.google.common.collect.Sets.newHashSet;
+import static com.google.common.collect.Maps.newHashMap;
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyCollection;
@@ -70,13 +80,18 @@ public class
   ResourceDao resourceDao = mock(ResourceDao.class);
   ActionPlanService actionPlanService = mock(ActionPlanService.class);
   UserFinder userFinder = mock(UserFinder.class);
+  AuthorizationDao authorizationDao = mock(AuthorizationDao.class);
+  IssueIndex issueIndex = mock(IssueIndex.class);
   DefaultIssueFinder finder;
 
   @Before
   public void setUp() throws Exception {
     Settings settings = new Settings();
     settings.setProperty(CoreProperties.HOURS_IN_DAY, HOURS_IN_DAY);
-    finder = new DefaultIssueFinder(mybatis, issueDao, issueChangeDao, ruleFinder, userFinder, resourceDao, actionPlanService);
+    IndexClient indexClient = mock(IndexClient.class);
+    when(indexClient.get(IssueIndex.class)).thenReturn(issueIndex);
+    searchReturns(0);
+    finder = new DefaultIssueFinder(mybatis, issueDao, issueChangeDao, ruleFinder, userFinder, resourceDao, actionPlanService, new UserPermissionCache(authorizationDao), indexClient);
   }
 
   @Test
@@ -94,10 +109,11 @@ public class
       .setRuleKey_unit_test_only("squid", "AvoidCycle")
       .setStatus("OPEN").setResolution("OPEN");
     List<IssueDto> dtoList = newArrayList(issue1, issue2);
+    searchReturns(2, 1L, 2L);
     when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(dtoList);
 
     IssueQueryResult results = finder.find(query);
-    verify(issueDao).selectIssueIds(eq(query), anyInt(), any(SqlSession.class));
+    verify(issueIndex).search(eq(query), any(QueryOptions.class), any(FilterBuilder.class));
 
     assertThat(results.issues()).hasSize(2);
     DefaultIssue issue = (DefaultIssue) results.issues().iterator().next();
@@ -121,16 +137,17 @@ public class
       .setRuleKey_unit_test_only("squid", "AvoidCycle")
       .setStatus("OPEN").setResolution("OPEN");
     List<IssueDto> dtoList = newArrayList(issue1, issue2);
-    when(issueDao.selectIssueIds(eq(query), anyInt(), any(SqlSession.class))).thenReturn(dtoList);
+    searchReturns(2, 1L);
     when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(dtoList);
 
     IssueQueryResult results = finder.find(query);
+    assertThat(results.issues()).hasSize(1);
     assertThat(results.paging().offset()).isEqualTo(0);
     assertThat(results.paging().total()).isEqualTo(2);
     assertThat(results.paging().pages()).isEqualTo(2);
 
     // Only one result is expected because the limit is 1
-    verify(issueDao).selectByIds(eq(newHashSet(1L)), any(SqlSession.class));
+    verify(issueDao).selectByIds(eq(newArrayList(1L)), any(SqlSession.class));
   }
 
   @Test
@@ -166,6 +183,7 @@ public class
       .setRuleKey_unit_test_only("squid", "AvoidCycle")
       .setStatus("OPEN").setResolution("OPEN");
     List<IssueDto> dtoList = newArrayList(issue1, issue2);
+    searchReturns(2, 1L, 2L);
     when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(dtoList);
 
     IssueQueryResult results = finder.find(query);
@@ -188,6 +206,7 @@ public class
       .setRootComponentKey_unit_test_only("struts")
       .setRuleKey_unit_test_only("squid", "AvoidCycle")
       .setStatus("OPEN").setResolution("OPEN");
+    searchReturns(1, 1L);
     when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(newArrayList(issue));
 
     IssueQueryResult results = finder.find(query);
@@ -214,6 +233,7 @@ public class
       .setRuleKey_unit_test_only("squid", "AvoidCycle")
       .setStatus("OPEN").setResolution("OPEN");
     List<IssueDto> dtoList = newArrayList(issue1, issue2);
+    searchReturns(2, 1L, 2L);
     when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(dtoList);
 
     IssueQueryResult results = finder.find(query);
@@ -241,6 +261,7 @@ public class
       .setRuleKey_unit_test_only("squid", "AvoidCycle")
       .setStatus("OPEN").setResolution("OPEN");
     List<IssueDto> dtoList = newArrayList(issue1, issue2);
+    searchReturns(2, 1L, 2L);
     when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(dtoList);
 
     IssueQueryResult results = finder.find(query);
@@ -268,6 +289,7 @@ public class
       .setRuleKey_unit_test_only("squid", "AvoidCycle")
       .setStatus("OPEN").setResolution("OPEN");
     List<IssueDto> dtoList = newArrayList(issue1, issue2);
+    searchReturns(2, 1L, 2L);
     when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(dtoList);
     when(actionPlanService.findByKeys(anyCollection())).thenReturn(newArrayList(actionPlan1, actionPlan2));
 
@@ -294,6 +316,7 @@ public class
       .setRuleKey_unit_test_only("squid", "AvoidCycle")
       .setStatus("OPEN").setResolution("OPEN");
     List<IssueDto> dtoList = newArrayList(issue1, issue2);
+    searchReturns(2, 1L, 2L);
     when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(dtoList);
 
     IssueQueryResult results = finder.find(query);
@@ -307,7 +330,6 @@ public class
   @Test
   public void get_empty_result_when_no_issue() {
     IssueQuery query = IssueQuery.builder().build();
-    when(issueDao.selectIssueIds(eq(query), anyInt(), any(SqlSession.class))).thenReturn(Collections.<IssueDto>emptyList());
     when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(Collections.<IssueDto>emptyList());
 
     IssueQueryResult results = finder.find(query);
@@ -328,14 +350,91 @@ public class
       .setStatus("OPEN").setResolution("OPEN")
       .setDebt(10L);
     List<IssueDto> dtoList = newArrayList(issue);
+    searchReturns(1, 1L);
     when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(dtoList);
 
     IssueQueryResult results = finder.find(query);
-    verify(issueDao).selectIssueIds(eq(query), anyInt(), any(SqlSession.class));
+    verify(issueIndex).search(eq(query), any(QueryOptions.class), any(FilterBuilder.class));
 
     assertThat(results.issues()).hasSize(1);
     DefaultIssue result = (DefaultIssue) results.issues().iterator().next();
     assertThat(result.debt()).isEqualTo(Duration.create(10L));
   }
 
+  @Test
+  public void keep_order_of_index() {
+    IssueQuery query = IssueQuery.builder().sort(IssueQuery.SORT_BY_SEVERITY).asc(false).build();
+
+    IssueDto issue1 = new IssueDto().setId(1L).setKee("ABC").setRuleId(50).setComponentId(123l).setRootComponentId(100l)
+      .setRuleKey_unit_test_only("squid", "AvoidCycle")
+      .setStatus("OPEN").setSeverity("MINOR");
+    IssueDto issue2 = new IssueDto().setId(2L).setKee("DEF").setRuleId(50).setComponentId(123l).setRootComponentId(100l)
+      .setRuleKey_unit_test_only("squid", "AvoidCycle")
+      .setStatus("OPEN").setSeverity("BLOCKER");
+    searchReturns(2, 2L, 1L);
+    when(issueDao.selectByIds(anyCollection(), any(SqlSession.class))).thenReturn(newArrayList(issue1, issue2));
+
+    IssueQueryResult results = finder.find(query);
+    assertThat(results.issues()).hasSize(2);
+    assertThat(results.issues().get(0).key()).isEqualTo("DEF");
+    assertThat(results.issues().get(1).key()).isEqualTo("ABC");
+  }
+
+  @Test
+  public void restrict_search_to_authorized_projects() {
+    IssueQuery query = IssueQuery.builder().build();
+    when(authorizationDao.selectAuthorizedRootProjectsKeys(anyInt(), eq("user"))).thenReturn(newArrayList("struts"));
+
+    finder.find(query);
+
+    verify(authorizationDao).selectAuthorizedRootProjectsKeys(anyInt(), eq("user"));
+    verify(issueIndex).search(eq(query), any(QueryOptions.class), any(FilterBuilder.class));
+    verifyZeroInteractions(resourceDao);
+  }
+
+  @Test
+  public void restrict_search_to_authorized_components_of_component_roots() {
+    IssueQuery query = IssueQuery.builder().componentRoots(newArrayList("struts")).build();
+    when(resourceDao.findAuthorizedChildrenComponentIds(anyCollection(), anyInt(), eq("user"))).thenReturn(newArrayList(123, 135));
+
+    finder.find(query);
+
+    verify(resourceDao).findAuthorizedChildrenComponentIds(eq(newArrayList("struts")), anyInt(), eq("user"));
+    verifyZeroInteractions(authorizationDao);
+  }
+
+  @Test
+  public void load_large_page_by_several_requests() {
+    IssueQuery query = IssueQuery.builder().components(newArrayList("Action.java")).build();
+    Long[] ids = new Long[QueryOptions.MAX_LIMIT];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = (long) i;
+    }
+    Result<IssueDoc> firstPage = newResult(QueryOptions.MAX_LIMIT + 1, ids);
+    Result<IssueDoc> secondPage = newResult(QueryOptions.MAX_LIMIT + 1, 500L);
+    when(issueIndex.search(any(IssueQuery.class), any(QueryOptions.class), any(FilterBuilder.class))).thenReturn(firstPage, secondPage);
+
+    IssueQueryResult results = finder.find(query);
+
+    verify(issueIndex, times(2)).search(eq(query), any(QueryOptions.class), any(FilterBuilder.class));
+    assertThat(results.paging().total()).isEqualTo(QueryOptions.MAX_LIMIT + 1);
+  }
+
+  private void searchReturns(int total, Long... ids) {
+    Result<IssueDoc> result = newResult(total, ids);
+    when(issueIndex.search(any(IssueQuery.class), any(QueryOptions.class), any(FilterBuilder.class))).thenReturn(result);
+  }
+
+  private Result<IssueDoc> newResult(int total, Long... ids) {
+    List<IssueDoc> docs = newArrayList();
+    for (Long id : ids) {
+      Map<String, Object> fields = newHashMap();
+      fields.put(IssueNormalizer.IssueField.ID.field(), id);
+      docs.add(new IssueDoc(fields));
+    }
+    Result<IssueDoc> result = mock(Result.class);
+    when(result.getHits()).thenReturn(docs);
+    when(result.getTotal()).thenReturn((long) total);
+    return result;
+  }
 }
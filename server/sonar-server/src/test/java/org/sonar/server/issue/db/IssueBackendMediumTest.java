@@ -22,12 +22,31 @@ package org.sonar.server.issue.db;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.ClassRule;
+import org.junit.Test;
+import org.sonar.api.issue.IssueQuery;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.core.component.ComponentDto;
+import org.sonar.core.issue.db.IssueDto;
+import org.sonar.core.issue.db.IssueMapper;
 import org.sonar.core.persistence.DbSession;
+import org.sonar.core.rule.RuleDto;
+import org.sonar.server.component.ComponentTesting;
 import org.sonar.server.db.DbClient;
+import org.sonar.server.issue.index.IssueDoc;
+import org.sonar.server.issue.index.IssueIndex;
 import org.sonar.server.platform.Platform;
+import org.sonar.server.rule.RuleTesting;
 import org.sonar.server.search.IndexClient;
+import org.sonar.server.search.QueryOptions;
+import org.sonar.server.search.Result;
 import org.sonar.server.tester.ServerTester;
 
+import java.util.Date;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.fest.assertions.Assertions.assertThat;
+
 public class IssueBackendMediumTest {
 
   @ClassRule
@@ -53,4 +72,49 @@ public class IssueBackendMediumTest {
       dbSession.close();
     }
   }
+
+  @Test
+  public void synchronize_and_search_issues() throws Exception {
+    RuleDto rule = RuleTesting.newDto(RuleKey.of("squid", "AvoidCycle")).setLanguage("java");
+    dbClient.ruleDao().insert(dbSession, rule);
+    ComponentDto project = ComponentTesting.newProjectDto();
+    dbClient.componentDao().insert(dbSession, project);
+    ComponentDto file = ComponentTesting.newFileDto(project);
+    dbClient.componentDao().insert(dbSession, file);
+    insertIssue(rule, project, file, "ABCD", Severity.MINOR);
+    insertIssue(rule, project, file, "BCDE", Severity.BLOCKER);
+    insertIssue(rule, project, file, "CDEF", Severity.MAJOR);
+    dbSession.commit();
+
+    dbClient.issueDao().synchronizeAfter(dbSession, new Date(0L));
+    IssueIndex index = indexClient.get(IssueIndex.class);
+
+    Result<IssueDoc> result = index.search(IssueQuery.builder().sort(IssueQuery.SORT_BY_SEVERITY).asc(false).build(), new QueryOptions());
+    assertThat(result.getTotal()).isEqualTo(3);
+    assertThat(result.getHits().get(0).key()).isEqualTo("BCDE");
+    assertThat(result.getHits().get(1).key()).isEqualTo("CDEF");
+    assertThat(result.getHits().get(2).key()).isEqualTo("ABCD");
+
+    result = index.search(IssueQuery.builder().severities(newArrayList(Severity.MAJOR)).languages(newArrayList("java")).build(), new QueryOptions());
+    assertThat(result.getTotal()).isEqualTo(1);
+
+    result = index.search(IssueQuery.builder().build(), new QueryOptions().setLimit(1).setFacet(true));
+    assertThat(result.getHits()).hasSize(1);
+    assertThat(result.getFacetValues(IssueIndex.FACET_SEVERITIES)).hasSize(3);
+    assertThat(result.getFacetKeys(IssueIndex.FACET_RULES)).containsOnly("squid:AvoidCycle");
+  }
+
+  private void insertIssue(RuleDto rule, ComponentDto project, ComponentDto file, String key, String severity) {
+    Date now = new Date();
+    dbSession.getMapper(IssueMapper.class).insert(new IssueDto()
+      .setKee(key)
+      .setRuleId(rule.getId())
+      .setComponentId(file.getId())
+      .setRootComponentId(project.getId())
+      .setSeverity(severity)
+      .setStatus("OPEN")
+      .setIssueCreationDate(now)
+      .setCreatedAt(now)
+      .setUpdatedAt(now));
+  }
 }
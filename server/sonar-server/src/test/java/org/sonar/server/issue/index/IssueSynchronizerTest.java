@@ -0,0 +1,87 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.server.db.DbClient;
+import org.sonar.server.issue.db.IssueDao;
+import org.sonar.server.search.IndexClient;
+import org.sonar.server.search.action.DeleteKey;
+import org.sonar.server.search.action.IndexActionRequest;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IssueSynchronizerTest {
+
+  DbClient db = mock(DbClient.class);
+  DbSession session = mock(DbSession.class);
+  IssueDao issueDao = mock(IssueDao.class);
+  IssueIndex issueIndex = mock(IssueIndex.class);
+  IssueSynchronizer synchronizer;
+
+  @Before
+  public void setUp() {
+    when(db.openSession(false)).thenReturn(session);
+    when(db.issueDao()).thenReturn(issueDao);
+    when(issueDao.getIndexType()).thenReturn("issue");
+    IndexClient index = mock(IndexClient.class);
+    when(index.get(IssueIndex.class)).thenReturn(issueIndex);
+    synchronizer = new IssueSynchronizer(db, index);
+  }
+
+  @Test
+  public void push_changed_issues_and_remove_the_ones_deleted_from_database() {
+    Date lastSynchronization = new Date();
+    when(issueIndex.getLastSynchronization("struts")).thenReturn(lastSynchronization);
+    when(issueIndex.scrollByProject("struts")).thenReturn(Arrays.asList(newDoc("ABCD", 1L), newDoc("BCDE", 2L)).iterator());
+    when(issueDao.findExistingIds(eq(session), anyCollection())).thenReturn(Arrays.asList(1L));
+
+    synchronizer.synchronizeProject("struts");
+
+    verify(issueDao).synchronizeProjectAfter(session, "struts", lastSynchronization);
+    ArgumentCaptor<IndexActionRequest> action = ArgumentCaptor.forClass(IndexActionRequest.class);
+    verify(session).enqueue(action.capture());
+    assertThat(((DeleteKey) action.getValue()).getKey()).isEqualTo("BCDE");
+    verify(session).close();
+  }
+
+  @Test
+  public void remove_issues_of_deleted_project() {
+    synchronizer.deleteProject(123L, "struts");
+
+    verify(issueIndex).deleteByProject("struts");
+  }
+
+  private static IssueDoc newDoc(String key, long id) {
+    return new IssueDoc(ImmutableMap.<String, Object>of(IssueNormalizer.IssueField.KEY.field(), key, IssueNormalizer.IssueField.ID.field(), id));
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.notifications;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DeliveryRateLimiterTest {
+
+  @Test
+  public void spread_deliveries() throws Exception {
+    DeliveryRateLimiter limiter = new DeliveryRateLimiter(20);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 5; i++) {
+      limiter.acquire();
+    }
+
+    // the first delivery is immediate, the 4 others are delayed by 50ms each
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(190L);
+  }
+
+  @Test
+  public void no_limit() throws Exception {
+    DeliveryRateLimiter limiter = new DeliveryRateLimiter(0);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 1000; i++) {
+      limiter.acquire();
+    }
+
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000L);
+  }
+}
@@ -19,7 +19,9 @@
  */
 package org.sonar.server.notifications;
 
+import com.google.common.collect.ImmutableSet;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.config.Settings;
@@ -29,15 +31,23 @@ import org.sonar.api.notifications.NotificationDispatcher;
 import org.sonar.core.notification.DefaultNotificationManager;
 import org.sonar.jpa.session.DatabaseSessionFactory;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -60,7 +70,7 @@ public class NotificationServiceTest {
     when(gtalkChannel.getKey()).thenReturn("gtalk");
     when(commentOnReviewAssignedToMe.getKey()).thenReturn("comment on review assigned to me");
     when(commentOnReviewCreatedByMe.getKey()).thenReturn("comment on review created by me");
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(null);
+    when(manager.readFromQueue(anyInt())).thenReturn(queue(notification), queue());
 
     Settings settings = new Settings().setProperty("sonar.notifications.delay", 1L);
 
@@ -167,7 +177,8 @@ public class NotificationServiceTest {
   @Test
   public void shouldNotStopWhenException() {
     setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
-    when(manager.getFromQueue()).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(notification).thenReturn(null);
+    when(manager.readFromQueue(anyInt())).thenThrow(new RuntimeException("Unexpected exception"))
+      .thenReturn(queue(notification), queue());
     doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnReviewAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
     doAnswer(addUser(CREATOR_SIMON, emailChannel)).when(commentOnReviewCreatedByMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
 
@@ -190,6 +201,44 @@ public class NotificationServiceTest {
     verify(gtalkChannel, never()).deliver(any(Notification.class), anyString());
   }
 
+  @Test
+  public void shouldDeliverBatchOfNotifications() {
+    setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
+    Notification otherNotification = mock(Notification.class);
+    when(manager.readFromQueue(anyInt())).thenReturn(queue(notification, otherNotification), queue());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnReviewAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+    doThrow(new IllegalStateException("SMTP server is down")).when(gtalkChannel).deliver(otherNotification, CREATOR_EVGENY);
+    doAnswer(addUser(CREATOR_EVGENY, gtalkChannel)).when(commentOnReviewCreatedByMe).dispatch(same(otherNotification), any(NotificationDispatcher.Context.class));
+
+    service.start();
+    verify(emailChannel, timeout(2000)).deliver(notification, ASSIGNEE_SIMON);
+    verify(emailChannel, timeout(2000)).deliver(otherNotification, ASSIGNEE_SIMON);
+    verify(gtalkChannel, timeout(2000)).deliver(otherNotification, CREATOR_EVGENY);
+    service.stop();
+
+    // subscribers are resolved once for the whole batch
+    verify(manager).enableSubscribersCache();
+    verify(manager).disableSubscribersCache();
+    assertThat(service.getDeliveredCount()).isEqualTo(2);
+    assertThat(service.getFailedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldRemoveBatchFromQueueOnceDelivered() {
+    setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
+    Notification otherNotification = mock(Notification.class);
+    when(manager.readFromQueue(anyInt())).thenReturn(queue(notification, otherNotification), queue());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnReviewAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+
+    service.start();
+    verify(manager, timeout(2000)).removeFromQueue(ImmutableSet.of(1L, 2L));
+    service.stop();
+
+    InOrder inOrder = inOrder(emailChannel, manager);
+    inOrder.verify(emailChannel, times(2)).deliver(any(Notification.class), anyString());
+    inOrder.verify(manager).removeFromQueue(ImmutableSet.of(1L, 2L));
+  }
+
   @Test
   public void shouldReturnDispatcherList() {
     setUpMocks(CREATOR_SIMON, ASSIGNEE_SIMON);
@@ -209,7 +258,7 @@ public class NotificationServiceTest {
   public void shouldLogEvery10Minutes() throws InterruptedException {
     setUpMocks(CREATOR_EVGENY, ASSIGNEE_SIMON);
     // Emulate 2 notifications in DB
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(notification).thenReturn(null);
+    when(manager.readFromQueue(anyInt())).thenReturn(queue(notification), queue(notification), queue());
     when(manager.count()).thenReturn(1L).thenReturn(0L);
     service = spy(service);
     // Emulate processing of each notification take 10 min to have a log each time
@@ -220,6 +269,17 @@ public class NotificationServiceTest {
     service.stop();
   }
 
+  /**
+   * Notifications of the queue, with ids starting from 1
+   */
+  private static Map<Long, Notification> queue(Notification... notifications) {
+    Map<Long, Notification> queue = new LinkedHashMap<Long, Notification>();
+    for (Notification notification : notifications) {
+      queue.put(queue.size() + 1L, notification);
+    }
+    return queue;
+  }
+
   private static Answer<Object> addUser(final String user, final NotificationChannel channel) {
     return addUser(user, new NotificationChannel[] {channel});
   }
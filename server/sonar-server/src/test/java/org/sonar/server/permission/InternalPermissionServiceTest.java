@@ -48,6 +48,7 @@ import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.UnauthorizedException;
 import org.sonar.server.user.MockUserSession;
+import org.sonar.server.user.UserPermissionCache;
 
 import java.util.Map;
 
@@ -76,6 +77,9 @@ public class InternalPermissionServiceTest {
   @Mock
   PermissionFinder finder;
 
+  @Mock
+  UserPermissionCache permissionCache;
+
   Map<String, Object> params;
   InternalPermissionService service;
 
@@ -86,7 +90,7 @@ public class InternalPermissionServiceTest {
 
     MockUserSession.set().setLogin("admin").setGlobalPermissions(GlobalPermissions.SYSTEM_ADMIN);
 
-    service = new InternalPermissionService(userDao, resourceDao, permissionFacade, finder);
+    service = new InternalPermissionService(userDao, resourceDao, permissionFacade, finder, permissionCache);
   }
 
   @Test
@@ -136,6 +140,7 @@ public class InternalPermissionServiceTest {
     service.addPermission(params);
 
     verify(permissionFacade).insertUserPermission(eq((Long) null), eq(2L), eq("shareDashboard"));
+    verify(permissionCache).clear();
   }
 
   @Test
@@ -278,6 +283,7 @@ public class InternalPermissionServiceTest {
     service.addPermission(params);
 
     verify(permissionFacade, never()).insertUserPermission(anyLong(), anyLong(), anyString());
+    verify(permissionCache, never()).clear();
   }
 
   @Test
@@ -414,6 +420,7 @@ public class InternalPermissionServiceTest {
     verify(permissionFacade).applyPermissionTemplate("my_template_key", 1L);
     verify(permissionFacade).applyPermissionTemplate("my_template_key", 2L);
     verify(permissionFacade).applyPermissionTemplate("my_template_key", 3L);
+    verify(permissionCache).clear();
   }
 
   @Test(expected = ForbiddenException.class)
@@ -0,0 +1,217 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.search;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang.StringUtils;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequestBuilder;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.AdminClient;
+import org.elasticsearch.client.IndicesAdminClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.config.Settings;
+import org.sonar.api.platform.ComponentContainer;
+import org.sonar.server.search.action.IndexActionRequest;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IndexQueueTest {
+
+  SearchClient searchClient = mock(SearchClient.class);
+  IndicesAdminClient indicesClient = mock(IndicesAdminClient.class);
+  ComponentContainer container = mock(ComponentContainer.class);
+  IndexQueue queue;
+
+  /**
+   * Ids of the documents of each executed bulk
+   */
+  List<List<String>> bulks = Lists.newArrayList();
+
+  /**
+   * Responses of the next bulks. Bulks succeed when empty.
+   */
+  LinkedList<BulkResponse> responses = new LinkedList<BulkResponse>();
+
+  @Before
+  public void setUp() {
+    AdminClient adminClient = mock(AdminClient.class);
+    when(searchClient.admin()).thenReturn(adminClient);
+    when(adminClient.indices()).thenReturn(indicesClient);
+    RefreshRequestBuilder refreshRequest = mock(RefreshRequestBuilder.class);
+    when(indicesClient.prepareRefresh(anyString())).thenReturn(refreshRequest);
+    when(refreshRequest.setForce(false)).thenReturn(refreshRequest);
+    when(searchClient.execute(any(org.elasticsearch.action.ActionRequestBuilder.class))).thenAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        Object request = invocation.getArguments()[0];
+        if (request instanceof BulkRequestBuilder) {
+          List<String> ids = Lists.newArrayList();
+          for (ActionRequest item : ((BulkRequestBuilder) request).request().requests()) {
+            ids.add(((UpdateRequest) item).id());
+          }
+          bulks.add(ids);
+          return responses.isEmpty() ? success() : responses.removeFirst();
+        }
+        return mock(RefreshResponse.class);
+      }
+    });
+    queue = new IndexQueue(new Settings(), searchClient, container);
+  }
+
+  @After
+  public void tearDown() {
+    queue.stop();
+  }
+
+  @Test
+  public void split_bulks_by_number_of_actions() {
+    assertThat(queue.executeBulks(requests(2500, "value"))).isEqualTo(3);
+
+    assertThat(bulks.get(0)).hasSize(IndexQueue.MAX_BULK_ACTIONS);
+    assertThat(bulks.get(1)).hasSize(IndexQueue.MAX_BULK_ACTIONS);
+    assertThat(bulks.get(2)).hasSize(500);
+  }
+
+  @Test
+  public void split_bulks_by_size() {
+    String largeValue = StringUtils.repeat("x", (int) (IndexQueue.MAX_BULK_SIZE_IN_BYTES * 3 / 5));
+
+    assertThat(queue.executeBulks(requests(3, largeValue))).isEqualTo(2);
+
+    assertThat(bulks.get(0)).containsExactly("0", "1");
+    assertThat(bulks.get(1)).containsExactly("2");
+  }
+
+  @Test
+  public void retry_from_first_failed_item_to_keep_order() {
+    responses.add(failure(1, "MapperParsingException[failed to parse]"));
+
+    assertThat(queue.executeBulks(requests(3, "value"))).isEqualTo(2);
+
+    assertThat(bulks.get(0)).containsExactly("0", "1", "2");
+    // the items following the failed one are sent again, after it
+    assertThat(bulks.get(1)).containsExactly("1", "2");
+    // not a rejection, so size of bulks is not changed
+    assertThat(queue.bulkActions()).isEqualTo(IndexQueue.MAX_BULK_ACTIONS);
+  }
+
+  @Test
+  public void give_up_after_max_retries() {
+    for (int i = 0; i <= IndexQueue.MAX_RETRIES; i++) {
+      responses.add(failure(0, "MapperParsingException[failed to parse]"));
+    }
+
+    try {
+      queue.executeBulks(requests(2, "value"));
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to index 2 item(s) after " + IndexQueue.MAX_RETRIES + " retries");
+    }
+    assertThat(bulks).hasSize(IndexQueue.MAX_RETRIES + 1);
+  }
+
+  @Test
+  public void reduce_size_of_bulks_when_rejected() {
+    responses.add(failure(0, "RemoteTransportException[...]; nested: EsRejectedExecutionException[rejected execution]"));
+    responses.add(failure(0, "EsRejectedExecutionException[rejected execution]"));
+
+    queue.executeBulks(requests(1, "value"));
+
+    // size is halved on each rejection, then doubled after the successful bulk
+    assertThat(bulks).hasSize(3);
+    assertThat(queue.bulkActions()).isEqualTo(IndexQueue.MAX_BULK_ACTIONS / 2);
+
+    queue.executeBulks(requests(1, "value"));
+    assertThat(queue.bulkActions()).isEqualTo(IndexQueue.MAX_BULK_ACTIONS);
+  }
+
+  @Test
+  public void skip_refresh_already_done_after_indexation() {
+    queue.refreshRequiredIndex(ImmutableSet.of("issues"), System.currentTimeMillis());
+    // documents indexed before the last refresh are already visible
+    queue.refreshRequiredIndex(ImmutableSet.of("issues"), 0L);
+
+    verify(indicesClient, times(1)).prepareRefresh("issues");
+  }
+
+  @Test(timeout = 10000)
+  public void fail_to_enqueue_once_stopped() {
+    Index index = mock(Index.class);
+    when(index.getIndexType()).thenReturn("issue");
+    when(container.getComponentsByType(Index.class)).thenReturn(Arrays.asList(index));
+    IndexActionRequest action = mock(IndexActionRequest.class);
+    when(action.getIndexType()).thenReturn("issue");
+
+    queue.stop();
+    queue.enqueue(Arrays.asList(action));
+
+    assertThat(queue.completeStat("issue", new IndexStat()).getFailedActions()).isEqualTo(1);
+    assertThat(bulks).isEmpty();
+    verify(indicesClient, never()).prepareRefresh(anyString());
+  }
+
+  private static List<ActionRequest> requests(int count, String value) {
+    List<ActionRequest> requests = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      requests.add(new UpdateRequest("issues", "issue", String.valueOf(i)).doc(ImmutableMap.of("field", value)));
+    }
+    return requests;
+  }
+
+  private static BulkResponse success() {
+    BulkResponse response = mock(BulkResponse.class);
+    when(response.hasFailures()).thenReturn(false);
+    return response;
+  }
+
+  private static BulkResponse failure(int itemId, String message) {
+    BulkItemResponse item = mock(BulkItemResponse.class);
+    when(item.isFailed()).thenReturn(true);
+    when(item.getItemId()).thenReturn(itemId);
+    when(item.getFailureMessage()).thenReturn(message);
+    BulkResponse response = mock(BulkResponse.class);
+    when(response.hasFailures()).thenReturn(true);
+    when(response.getItems()).thenReturn(new BulkItemResponse[] {item});
+    return response;
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.search;
+
+import org.junit.Test;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class ProjectSynchronizationQueueTest {
+
+  ProjectSynchronizer failing = mock(ProjectSynchronizer.class);
+  ProjectSynchronizer synchronizer = mock(ProjectSynchronizer.class);
+  ProjectSynchronizationQueue queue = new ProjectSynchronizationQueue(new ProjectSynchronizer[] {failing, synchronizer});
+
+  @Test
+  public void synchronize_project_in_background() {
+    doThrow(new IllegalStateException("ES error")).when(failing).synchronizeProject(anyString());
+
+    queue.start();
+    queue.enqueueSynchronization("struts");
+    // waits for pending tasks
+    queue.stop();
+
+    // failure of a synchronizer is logged and does not prevent the next ones from being executed
+    verify(failing).synchronizeProject("struts");
+    verify(synchronizer).synchronizeProject("struts");
+  }
+
+  @Test
+  public void delete_project_in_background() {
+    queue.start();
+    queue.enqueueDeletion(123L, "struts");
+    queue.stop();
+
+    verify(failing).deleteProject(123L, "struts");
+    verify(synchronizer).deleteProject(123L, "struts");
+  }
+}
@@ -72,6 +72,8 @@ public class SearchHealthMediumTest {
       assertThat(index.getDocumentCount()).isGreaterThanOrEqualTo(0L);
       assertThat(index.getLastSynchronization().before(now)).isTrue();
       assertThat(index.isOptimized()).isIn(true, false);
+      assertThat(index.getPendingActions()).isEqualTo(0L);
+      assertThat(index.getFailedActions()).isEqualTo(0L);
     }
   }
 
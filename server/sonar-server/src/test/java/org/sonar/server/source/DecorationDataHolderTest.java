@@ -22,7 +22,9 @@ package org.sonar.server.source;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.core.source.DecorationDataFormat;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -72,4 +74,18 @@ public class DecorationDataHolderTest {
     assertThat(offsets.get(7)).isEqualTo(130);
     assertThat(offsets.get(8)).isEqualTo(145);
   }
+
+  @Test
+  public void should_load_compact_data_like_text_data() throws Exception {
+    DecorationDataHolder compactDataHolder = new DecorationDataHolder();
+    compactDataHolder.loadSyntaxHighlightingData(new DecorationDataFormat.SyntaxHighlightingWriter()
+      .add(0, 8, "k").add(0, 52, "cppd").add(54, 67, "a").add(69, 75, "k").add(106, 130, "cppd").add(114, 130, "k")
+      .write());
+    compactDataHolder.loadSymbolReferences(new DecorationDataFormat.SymbolsWriter()
+      .add(80, 85, Arrays.asList(80, 90, 140))
+      .write());
+
+    assertThat(compactDataHolder.getOpeningTagsEntries()).isEqualTo(decorationDataHolder.getOpeningTagsEntries());
+    assertThat(compactDataHolder.getClosingTagsOffsets()).isEqualTo(decorationDataHolder.getClosingTagsOffsets());
+  }
 }
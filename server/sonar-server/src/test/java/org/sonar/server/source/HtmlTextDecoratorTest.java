@@ -401,4 +401,42 @@ public class HtmlTextDecoratorTest {
       "<span class=\"cppd\"> *   &lt;li&gt;Create a javadoc generator&lt;/li&gt;</span>"
     );
   }
+
+  @Test
+  public void should_reopen_tags_spanning_before_first_returned_line() throws Exception {
+
+    String text = "/*\r\n * a <b>\r\n */\rint i = 0;\n";
+
+    DecorationDataHolder decorationData = new DecorationDataHolder();
+    decorationData.loadSyntaxHighlightingData("0,17,cppd;5,11,a;22,25,k;");
+
+    HtmlTextDecorator htmlTextDecorator = new HtmlTextDecorator();
+    List<String> htmlOutput = htmlTextDecorator.decorateTextWithHtml(text, decorationData, 3, 4);
+
+    assertThat(htmlOutput).containsExactly(
+      "<span class=\"cppd\"> */</span>",
+      "int <span class=\"k\">i =</span> 0;"
+    );
+  }
+
+  @Test
+  public void should_return_no_line_when_first_line_is_after_end_of_text() throws Exception {
+    DecorationDataHolder decorationData = new DecorationDataHolder();
+    decorationData.loadSyntaxHighlightingData("0,3,k;");
+
+    HtmlTextDecorator htmlTextDecorator = new HtmlTextDecorator();
+
+    assertThat(htmlTextDecorator.decorateTextWithHtml("int i;", decorationData, 2, null)).isEmpty();
+  }
+
+  @Test
+  public void should_find_offset_of_line() throws Exception {
+    String text = "a\nbc\r\nd\re";
+
+    assertThat(HtmlTextDecorator.lineStartOffset(text, 1)).isEqualTo(0);
+    assertThat(HtmlTextDecorator.lineStartOffset(text, 2)).isEqualTo(2);
+    assertThat(HtmlTextDecorator.lineStartOffset(text, 3)).isEqualTo(6);
+    assertThat(HtmlTextDecorator.lineStartOffset(text, 4)).isEqualTo(8);
+    assertThat(HtmlTextDecorator.lineStartOffset(text, 5)).isEqualTo(-1);
+  }
 }
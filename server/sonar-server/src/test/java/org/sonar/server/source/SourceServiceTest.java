@@ -38,8 +38,6 @@ import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.measure.persistence.MeasureDao;
 import org.sonar.server.user.MockUserSession;
 
-import java.util.List;
-
 import static org.fest.assertions.Assertions.assertThat;
 import static org.fest.assertions.Fail.fail;
 import static org.mockito.Mockito.*;
@@ -167,16 +165,13 @@ public class SourceServiceTest {
   }
 
   @Test
-  public void return_txt_when_source_is_too_big() throws Exception {
+  public void decorate_big_source() throws Exception {
     MockUserSession.set().addComponentPermission(UserRole.CODEVIEWER, PROJECT_KEY, COMPONENT_KEY);
+    String bigSource = Strings.repeat("a\n", 70000);
+    when(snapshotSourceDao.selectSnapshotSourceByComponentKey(COMPONENT_KEY, session)).thenReturn(bigSource);
 
-    when(snapshotSourceDao.selectSnapshotSourceByComponentKey(COMPONENT_KEY, session)).thenReturn(Strings.repeat("a\n", 70000));
-
-    List<String> lines = service.getLinesAsHtml(COMPONENT_KEY);
-    assertThat(lines).isNotEmpty();
-    assertThat(lines.size()).isGreaterThan(3000);
+    service.getLinesAsHtml(COMPONENT_KEY, 60000, 60010);
 
-    verifyZeroInteractions(sourceDecorator);
-    verifyZeroInteractions(deprecatedSourceDecorator);
+    verify(sourceDecorator).getDecoratedSourceAsHtml(session, COMPONENT_KEY, bigSource, 60000, 60010);
   }
 }
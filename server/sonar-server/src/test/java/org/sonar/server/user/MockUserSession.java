@@ -101,4 +101,9 @@ public class MockUserSession extends UserSession {
   ResourceDao resourceDao() {
     return resourceDao;
   }
+
+  @Override
+  UserPermissionCache permissionCache() {
+    return new UserPermissionCache(authorizationDao);
+  }
 }
@@ -0,0 +1,116 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.utils.System2;
+import org.sonar.api.web.UserRole;
+import org.sonar.core.user.AuthorizationDao;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UserPermissionCacheTest {
+
+  AuthorizationDao authorizationDao = mock(AuthorizationDao.class);
+  System2 system = mock(System2.class);
+  UserPermissionCache cache;
+
+  @Before
+  public void setUp() {
+    when(system.now()).thenReturn(1000000L);
+    when(authorizationDao.selectAuthorizedRootProjectsKeys(1, UserRole.USER)).thenReturn(newArrayList("struts", "sonar"));
+    when(authorizationDao.selectAuthorizedRootProjectsKeys(null, UserRole.USER)).thenReturn(newArrayList("sonar"));
+    cache = new UserPermissionCache(authorizationDao, system);
+  }
+
+  @Test
+  public void load_authorized_projects_once() {
+    assertThat(cache.authorizedRootProjectKeys(1, UserRole.USER)).containsOnly("struts", "sonar");
+    assertThat(cache.authorizedRootProjectKeys(1, UserRole.USER)).containsOnly("struts", "sonar");
+    assertThat(cache.authorizedRootProjectKeys(null, UserRole.USER)).containsOnly("sonar");
+
+    verify(authorizationDao, times(1)).selectAuthorizedRootProjectsKeys(1, UserRole.USER);
+    verify(authorizationDao, times(1)).selectAuthorizedRootProjectsKeys(null, UserRole.USER);
+  }
+
+  @Test
+  public void reload_authorized_projects_when_expired() {
+    cache.authorizedRootProjectKeys(1, UserRole.USER);
+
+    when(system.now()).thenReturn(1000000L + UserPermissionCache.TTL_MS - 1);
+    cache.authorizedRootProjectKeys(1, UserRole.USER);
+    verify(authorizationDao, times(1)).selectAuthorizedRootProjectsKeys(1, UserRole.USER);
+
+    when(system.now()).thenReturn(1000000L + UserPermissionCache.TTL_MS);
+    cache.authorizedRootProjectKeys(1, UserRole.USER);
+    verify(authorizationDao, times(2)).selectAuthorizedRootProjectsKeys(1, UserRole.USER);
+  }
+
+  @Test
+  public void purge_expired_entries() {
+    cache.authorizedRootProjectKeys(1, UserRole.USER);
+
+    when(system.now()).thenReturn(1000000L + UserPermissionCache.TTL_MS);
+    cache.authorizedRootProjectKeys(null, UserRole.USER);
+
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void reload_authorized_projects_when_cleared() {
+    cache.authorizedRootProjectKeys(1, UserRole.USER);
+    cache.clear();
+    cache.authorizedRootProjectKeys(1, UserRole.USER);
+
+    verify(authorizationDao, times(2)).selectAuthorizedRootProjectsKeys(1, UserRole.USER);
+  }
+
+  @Test
+  public void do_not_keep_projects_loaded_while_cleared() {
+    when(authorizationDao.selectAuthorizedRootProjectsKeys(2, UserRole.USER)).thenAnswer(new Answer<Collection<String>>() {
+      @Override
+      public Collection<String> answer(InvocationOnMock invocation) {
+        // permission revoked while the previous permissions are being loaded
+        cache.clear();
+        return newArrayList("struts");
+      }
+    });
+
+    assertThat(cache.authorizedRootProjectKeys(2, UserRole.USER)).containsOnly("struts");
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void keep_authorized_projects() {
+    assertThat(cache.keepAuthorizedRootProjectKeys(Arrays.asList("struts", "commons-lang"), 1, UserRole.USER)).containsOnly("struts");
+    assertThat(cache.keepAuthorizedRootProjectKeys(Arrays.asList("struts", "commons-lang"), null, UserRole.USER)).isEmpty();
+  }
+}
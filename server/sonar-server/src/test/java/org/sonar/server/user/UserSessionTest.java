@@ -190,6 +190,7 @@ public class UserSessionTest {
   static class SpyUserSession extends UserSession {
     private AuthorizationDao authorizationDao;
     private ResourceDao resourceDao;
+    private UserPermissionCache permissionCache;
 
     SpyUserSession(String login, AuthorizationDao authorizationDao) {
       this(login, authorizationDao, null);
@@ -198,6 +199,7 @@ public class UserSessionTest {
     SpyUserSession(String login, AuthorizationDao authorizationDao, @Nullable ResourceDao resourceDao) {
       this.authorizationDao = authorizationDao;
       this.resourceDao = resourceDao;
+      this.permissionCache = new UserPermissionCache(authorizationDao);
       setLogin(login);
     }
 
@@ -211,5 +213,10 @@ public class UserSessionTest {
       return resourceDao;
     }
 
+    @Override
+    UserPermissionCache permissionCache() {
+      return permissionCache;
+    }
+
   }
 }
@@ -27,29 +27,22 @@ class Api::ComponentsController < Api::ApiController
     search = params[:s]
     bad_request("Minimum search is #{ResourceIndex::MIN_SEARCH_SIZE} characters") if search.empty? || search.to_s.size<ResourceIndex::MIN_SEARCH_SIZE
 
-    # SONAR-5198 Escape '_' on Oracle and MsSQL
-    dialect = java_facade.getDatabase().getDialect().getId()
-    additional_escape = dialect == 'oracle' || dialect == 'mssql' ? "ESCAPE '\\'" : ''
+    # classes are displayed with files
+    qualifiers = java_facade.getResourceTypes().map { |resource_type| resource_type.getQualifier() }
+    qualifiers << 'CLA' unless qualifiers.include?('CLA')
+    results_by_qualifier = Internal.component(Java::OrgSonarServerComponentIndex::ComponentSearch.java_class).searchByName(search, qualifiers, MAX_RESULTS)
 
-    key = escape_like(search).downcase
-    results = ResourceIndex.all(:select => 'distinct(resource_id),root_project_id,qualifier,name_size', # optimization to not load unused columns like 'kee'
-                                :conditions => ['kee like ? ' + additional_escape, key + '%'],
-                                :order => 'name_size')
-
-    results = select_authorized(:user, results)
-
-    resource_ids=[]
-    resource_indexes_by_qualifier={}
-    results.each do |resource_index|
-      qualifier = fix_qualifier(resource_index.qualifier)
-      resource_indexes_by_qualifier[qualifier] ||= []
-      array = resource_indexes_by_qualifier[qualifier]
-      if array.size < MAX_RESULTS
-        resource_ids << resource_index.resource_id
-        array << resource_index
+    total = 0
+    docs_by_qualifier = {}
+    results_by_qualifier.each do |qualifier, result|
+      total += result.getTotal()
+      docs = (docs_by_qualifier[fix_qualifier(qualifier)] ||= [])
+      result.getHits().each do |doc|
+        docs << doc if docs.size < MAX_RESULTS
       end
     end
 
+    resource_ids = docs_by_qualifier.values.flatten.map { |doc| doc.id() }
     resources_by_id = {}
     unless resource_ids.empty?
       Project.find(:all, :conditions => ['id in (?)', resource_ids]).each do |resource|
@@ -57,7 +50,7 @@ class Api::ComponentsController < Api::ApiController
       end
     end
 
-    json = {'total' => results.size}
+    json = {'total' => total}
     json_results = []
     java_facade.getResourceTypes().each do |resource_type|
       qualifier_results={}
@@ -65,9 +58,10 @@ class Api::ComponentsController < Api::ApiController
       qualifier_results['q']=qualifier
       qualifier_results['icon']=resource_type.getIconPath()
       qualifier_results['name']=Api::Utils.message("qualifiers.#{qualifier}")
-      resource_indexes=resource_indexes_by_qualifier[qualifier]||[]
-      qualifier_results['items']=resource_indexes.map do |resource_index|
-        resource=resources_by_id[resource_index.resource_id]
+      docs=docs_by_qualifier[qualifier]||[]
+      # components deleted since their last indexing are ignored
+      resources=docs.map { |doc| resources_by_id[doc.id()] }.compact
+      qualifier_results['items']=resources.map do |resource|
         {
           'id' => resource.id,
           'name' => resource.name(true)
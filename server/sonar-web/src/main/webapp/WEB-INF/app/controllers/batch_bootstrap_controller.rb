@@ -30,9 +30,13 @@ class BatchBootstrapController < Api::ApiController
     return render_unauthorized("You're not authorized to execute a dry run analysis. Please contact your SonarQube administrator.") if !has_dryrun_role
     project = load_project()
     return render_unauthorized("You're not authorized to access to project '" + project.name + "', please contact your SonarQube administrator") if project && !has_role?(:user, project)
-    db_content = java_facade.createDatabaseForPreview(project && project.id)
+    db_file = java_facade.getDatabaseFileForPreview(project && project.id)
 
-    send_data String.from_java_bytes(db_content)
+    # the file name is the timestamp of the generation of the database, so a batch holding an up-to-date
+    # copy gets a 304 response. Otherwise the file is streamed instead of being loaded in memory.
+    if stale?(:etag => db_file.getName(), :last_modified => Time.at(db_file.lastModified() / 1000).utc)
+      send_file db_file.getAbsolutePath(), :type => 'application/octet-stream', :stream => true, :buffer_size => 65536
+    end
   end
 
   # PUT /batch_bootstrap/evict?project=<key or id>
@@ -45,6 +49,8 @@ class BatchBootstrapController < Api::ApiController
 
     if project
       Property.set(Java::OrgSonarCorePreview::PreviewCache::SONAR_PREVIEW_CACHE_LAST_UPDATE_KEY, java.lang.System.currentTimeMillis, project.root_project.id)
+      # push the issues and components changed by the analysis to the search indexes, in background
+      Internal.component(Java::OrgSonarServerSearch::ProjectSynchronizationQueue.java_class).enqueueSynchronization(project.root_project.kee)
       render_success('dryRun DB evicted')
     else
       render_bad_request('missing projectId')
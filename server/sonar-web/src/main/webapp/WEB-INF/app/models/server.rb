@@ -73,6 +73,7 @@ class Server
     add_property(sonar_info, 'Automatic User Creation') { sonar_property(org.sonar.api.CoreProperties.CORE_AUTHENTICATOR_CREATE_USERS) }
     add_property(sonar_info, 'Allow Users to Sign Up') { sonar_property(org.sonar.api.CoreProperties.CORE_ALLOW_USERS_TO_SIGNUP_PROPERTY) }
     add_property(sonar_info, 'Force Authentication') { sonar_property(org.sonar.api.CoreProperties.CORE_FORCE_AUTHENTICATION_PROPERTY) }
+    add_property(sonar_info, 'Notifications Queue') { notifications_queue }
     sonar_info
   end
 
@@ -87,6 +88,7 @@ class Server
       add_property(search_info, "#{name} - Document Count") { index_health.getDocumentCount() }
       add_property(search_info, "#{name} - Last Sync") { index_health.getLastSynchronization() }
       add_property(search_info, "#{name} - Optimization") { index_health.isOptimized() ? 'Optimized' : "Unoptimized (Segments: #{index_health.getSegmentcount()}, Pending Deletions: #{index_health.getPendingDeletion()})" }
+      add_property(search_info, "#{name} - Indexing Queue") { "Pending: #{index_health.getPendingActions()}, Failed: #{index_health.getFailedActions()}, Last: #{index_health.getLastIndexingTime()}ms" }
     end
 
     search_info
@@ -158,6 +160,11 @@ class Server
     java.text.SimpleDateFormat.new("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(date)
   end
 
+  def notifications_queue
+    notifications = Java::OrgSonarServerPlatform::Platform.component(Java::OrgSonarServerNotifications::NotificationService.java_class)
+    "Pending: #{notifications.getPendingCount()}, Delivered: #{notifications.getDeliveredCount()}, Failed: #{notifications.getFailedCount()}, Lag: #{notifications.getQueueLagInMillis() / 1000}s"
+  end
+
   def realm_name
     realm_factory = Api::Utils.java_facade.getCoreComponentByClassname('org.sonar.server.user.SecurityRealmFactory')
     if realm_factory && realm_factory.getRealm()
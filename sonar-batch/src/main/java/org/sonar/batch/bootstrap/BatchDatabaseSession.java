@@ -0,0 +1,188 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.bootstrap;
+
+import org.sonar.api.database.DatabaseSession;
+import org.sonar.jpa.session.DatabaseConnector;
+import org.sonar.jpa.session.JpaDatabaseSession;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JPA sessions are not thread-safe, so each thread accessing the database through this component
+ * works with its own {@link JpaDatabaseSession}. The main thread is the only one using the database
+ * when modules, sensors and decorators are executed sequentially (the default), so that the behaviour
+ * is the same as a single session. Worker threads must call {@link #closeThreadSession()} once their
+ * task is done.
+ *
+ * @since 4.5.4
+ */
+public class BatchDatabaseSession extends DatabaseSession {
+
+  private final DatabaseConnector connector;
+  private final ThreadLocal<JpaDatabaseSession> threadSessions = new ThreadLocal<JpaDatabaseSession>();
+  private final Set<JpaDatabaseSession> openSessions = Collections.newSetFromMap(new ConcurrentHashMap<JpaDatabaseSession, Boolean>());
+
+  public BatchDatabaseSession(DatabaseConnector connector) {
+    this.connector = connector;
+  }
+
+  /**
+   * Session of the current thread
+   */
+  JpaDatabaseSession session() {
+    JpaDatabaseSession session = threadSessions.get();
+    if (session == null) {
+      session = new JpaDatabaseSession(connector);
+      session.start();
+      threadSessions.set(session);
+      openSessions.add(session);
+    }
+    return session;
+  }
+
+  /**
+   * Commits and closes the session of the current thread, if any.
+   */
+  public void closeThreadSession() {
+    JpaDatabaseSession session = threadSessions.get();
+    if (session != null) {
+      threadSessions.remove();
+      openSessions.remove(session);
+      session.stop();
+    }
+  }
+
+  @Override
+  public EntityManager getEntityManager() {
+    return session().getEntityManager();
+  }
+
+  @Override
+  public void start() {
+    session();
+  }
+
+  @Override
+  public void stop() {
+    closeThreadSession();
+    // sessions that worker threads did not close
+    for (JpaDatabaseSession session : openSessions) {
+      session.stop();
+    }
+    openSessions.clear();
+  }
+
+  @Override
+  public void commit() {
+    session().commit();
+  }
+
+  @Override
+  public void commitAndClose() {
+    session().commitAndClose();
+  }
+
+  @Override
+  public void rollback() {
+    session().rollback();
+  }
+
+  @Override
+  public <T> T save(T entity) {
+    return session().save(entity);
+  }
+
+  @Override
+  public Object saveWithoutFlush(Object entity) {
+    return session().saveWithoutFlush(entity);
+  }
+
+  @Override
+  public boolean contains(Object entity) {
+    return session().contains(entity);
+  }
+
+  @Override
+  public void save(Object... entities) {
+    session().save(entities);
+  }
+
+  @Override
+  public Object merge(Object entity) {
+    return session().merge(entity);
+  }
+
+  @Override
+  public void remove(Object entity) {
+    session().remove(entity);
+  }
+
+  @Override
+  public void removeWithoutFlush(Object entity) {
+    session().removeWithoutFlush(entity);
+  }
+
+  @Override
+  public <T> T reattach(Class<T> entityClass, Object primaryKey) {
+    return session().reattach(entityClass, primaryKey);
+  }
+
+  @Override
+  public Query createQuery(String hql) {
+    return session().createQuery(hql);
+  }
+
+  @Override
+  public Query createNativeQuery(String sql) {
+    return session().createNativeQuery(sql);
+  }
+
+  @Override
+  public <T> T getSingleResult(Query query, T defaultValue) {
+    return session().getSingleResult(query, defaultValue);
+  }
+
+  @Override
+  public <T> T getEntity(Class<T> entityClass, Object id) {
+    return session().getEntity(entityClass, id);
+  }
+
+  @Override
+  public <T> T getSingleResult(Class<T> entityClass, Object... criterias) {
+    return session().getSingleResult(entityClass, criterias);
+  }
+
+  @Override
+  public <T> List<T> getResults(Class<T> entityClass, Object... criterias) {
+    return session().getResults(entityClass, criterias);
+  }
+
+  @Override
+  public <T> List<T> getResults(Class<T> entityClass) {
+    return session().getResults(entityClass);
+  }
+}
@@ -58,7 +58,7 @@ public class BatchExtensionDictionnary extends org.sonar.api.batch.BatchExtensio
   }
 
   @Override
-  protected Phase.Name evaluatePhase(Object extension) {
+  public Phase.Name evaluatePhase(Object extension) {
     if (extension instanceof SensorWrapper) {
       return super.evaluatePhase(((SensorWrapper) extension).wrappedSensor());
     } else {
@@ -66,6 +66,11 @@ public class BatchExtensionDictionnary extends org.sonar.api.batch.BatchExtensio
     }
   }
 
+  @Override
+  public <T> List<Object> getDependencies(T extension) {
+    return super.getDependencies(extension);
+  }
+
   private <T> List<T> getFilteredExtensions(Class<T> type, @Nullable Project project, @Nullable ExtensionMatcher matcher) {
     List<T> result = Lists.newArrayList();
     for (Object extension : getExtensions(type)) {
@@ -55,7 +55,6 @@ import org.sonar.core.rule.CacheRuleFinder;
 import org.sonar.core.user.HibernateUserFinder;
 import org.sonar.jpa.dao.MeasuresDao;
 import org.sonar.jpa.session.DefaultDatabaseConnector;
-import org.sonar.jpa.session.JpaDatabaseSession;
 
 import java.util.List;
 import java.util.Map;
@@ -128,7 +127,7 @@ public class BootstrapContainer extends ComponentContainer {
       // TODO check that it still works (see @Freddy)
       DatabaseCompatibility.class,
       DefaultDatabaseConnector.class,
-      JpaDatabaseSession.class,
+      BatchDatabaseSession.class,
       BatchDatabaseSessionFactory.class,
       DaoUtils.getDaoClasses(),
       PurgeProfiler.class,
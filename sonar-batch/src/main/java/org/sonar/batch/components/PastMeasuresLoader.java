@@ -19,9 +19,15 @@
  */
 package org.sonar.batch.components;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.ejb.HibernateQuery;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.model.Snapshot;
@@ -29,10 +35,13 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.Scopes;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.persistence.Query;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -40,9 +49,19 @@ import java.util.Map;
 
 public class PastMeasuresLoader implements BatchExtension {
 
+  private static final int PATH_INDEX = 5;
+  private static final int KEY_INDEX = 6;
+  private static final int SNAPSHOT_ID_INDEX = 7;
+  private static final int FETCH_SIZE = 1000;
+
   private Map<Integer, Metric> metricByIds;
   private DatabaseSession session;
 
+  /**
+   * Past measures of projects, modules and directories, per past root snapshot id and then per resource key
+   */
+  private final Map<Integer, TreePastMeasures> treeMeasuresByRootSnapshotId = Maps.newHashMap();
+
   public PastMeasuresLoader(DatabaseSession session, MetricFinder metricFinder) {
     this(session, metricFinder.findAll());
   }
@@ -61,13 +80,78 @@ public class PastMeasuresLoader implements BatchExtension {
     return metricByIds.values();
   }
 
+  /**
+   * Past measures of projects, modules and directories are loaded for the whole past analysis on the first call,
+   * then read from memory. Past measures of other resources are loaded on each call.
+   */
   public List<Object[]> getPastMeasures(Resource resource, PastSnapshot projectPastSnapshot) {
     if (projectPastSnapshot != null && projectPastSnapshot.getProjectSnapshot() != null) {
+      if (isTreeScope(resource.getScope())) {
+        return getTreePastMeasures(resource.getEffectiveKey(), resource.getPath(), projectPastSnapshot.getProjectSnapshot());
+      }
       return getPastMeasures(resource.getEffectiveKey(), resource.getPath(), projectPastSnapshot.getProjectSnapshot());
     }
     return Collections.emptyList();
   }
 
+  private static boolean isTreeScope(@Nullable String scope) {
+    return Scopes.PROJECT.equals(scope) || Scopes.DIRECTORY.equals(scope);
+  }
+
+  private synchronized List<Object[]> getTreePastMeasures(String resourceKey, @Nullable String path, Snapshot projectPastSnapshot) {
+    Integer rootSnapshotId = (Integer) ObjectUtils.defaultIfNull(projectPastSnapshot.getRootId(), projectPastSnapshot.getId());
+    TreePastMeasures measures = treeMeasuresByRootSnapshotId.get(rootSnapshotId);
+    if (measures == null) {
+      measures = loadTreePastMeasures(rootSnapshotId);
+      treeMeasuresByRootSnapshotId.put(rootSnapshotId, measures);
+    }
+    return measures.get(resourceKey, path);
+  }
+
+  /**
+   * Drops the past measures of projects, modules and directories kept in memory. To be called once the root project
+   * is decorated, as no other resource of the tree is decorated after it.
+   */
+  public synchronized void releaseTreePastMeasures() {
+    treeMeasuresByRootSnapshotId.clear();
+  }
+
+  /**
+   * Single query on all the projects, modules and directories of the past analysis. Rows are scrolled rather than
+   * fetched in a single list when the JPA provider allows it.
+   */
+  private TreePastMeasures loadTreePastMeasures(Integer rootSnapshotId) {
+    String sql = "select m.metric_id, m.characteristic_id, m.person_id, m.rule_id, m.value, p.path, p.kee, m.snapshot_id" +
+      " from project_measures m, snapshots s, projects p" +
+      " where m.snapshot_id=s.id and s.project_id=p.id and m.metric_id in (:metricIds) " +
+      "       and (s.root_snapshot_id=:rootSnapshotId or s.id=:rootSnapshotId) " +
+      "       and s.status=:status and s.scope in (:scopes) and p.qualifier<>:lib" +
+      " order by m.snapshot_id";
+    Query q = session.createNativeQuery(sql)
+      .setParameter("metricIds", metricByIds.keySet())
+      .setParameter("rootSnapshotId", rootSnapshotId)
+      .setParameter("scopes", Arrays.asList(Scopes.PROJECT, Scopes.DIRECTORY))
+      .setParameter("lib", Qualifiers.LIBRARY)
+      .setParameter("status", Snapshot.STATUS_PROCESSED);
+    TreePastMeasures measures = new TreePastMeasures();
+    if (q instanceof HibernateQuery) {
+      ScrollableResults rows = ((HibernateQuery) q).getHibernateQuery().setFetchSize(FETCH_SIZE).scroll(ScrollMode.FORWARD_ONLY);
+      try {
+        while (rows.next()) {
+          measures.add(rows.get());
+        }
+      } finally {
+        rows.close();
+      }
+    } else {
+      for (Object[] row : (List<Object[]>) q.getResultList()) {
+        measures.add(row);
+      }
+    }
+    measures.trimToSize();
+    return measures;
+  }
+
   public List<Object[]> getPastMeasures(String resourceKey, Snapshot projectPastSnapshot) {
     return getPastMeasures(resourceKey, null, projectPastSnapshot);
   }
@@ -122,4 +206,92 @@ public class PastMeasuresLoader implements BatchExtension {
     return ((Number) row[4]).doubleValue();
   }
 
+  /**
+   * Past measures of a tree of resources, stored column by column in arrays of primitives instead of
+   * one Object[] per measure. Rows are sorted by snapshot, so the measures of a resource are contiguous.
+   */
+  private static final class TreePastMeasures {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int NULL_ID = -1;
+
+    private final ListMultimap<String, ResourceRows> rowsByResourceKey = ArrayListMultimap.create();
+    private ResourceRows currentResource;
+    private int currentSnapshotId;
+    private int size = 0;
+    private int[] metricIds = new int[INITIAL_CAPACITY];
+    private int[] characteristicIds = new int[INITIAL_CAPACITY];
+    private int[] personIds = new int[INITIAL_CAPACITY];
+    private int[] ruleIds = new int[INITIAL_CAPACITY];
+    private double[] values = new double[INITIAL_CAPACITY];
+
+    void add(Object[] row) {
+      int snapshotId = ((Number) row[SNAPSHOT_ID_INDEX]).intValue();
+      if (currentResource == null || snapshotId != currentSnapshotId) {
+        currentResource = new ResourceRows((String) row[PATH_INDEX], size);
+        currentSnapshotId = snapshotId;
+        rowsByResourceKey.put((String) row[KEY_INDEX], currentResource);
+      }
+      if (size == metricIds.length) {
+        resize(size * 2);
+      }
+      metricIds[size] = getMetricId(row);
+      characteristicIds[size] = toPrimitive(getCharacteristicId(row));
+      personIds[size] = toPrimitive(getPersonId(row));
+      ruleIds[size] = toPrimitive(getRuleId(row));
+      values[size] = hasValue(row) ? getValue(row) : Double.NaN;
+      size++;
+      currentResource.to = size;
+    }
+
+    void trimToSize() {
+      resize(size);
+      currentResource = null;
+    }
+
+    private void resize(int capacity) {
+      metricIds = Arrays.copyOf(metricIds, capacity);
+      characteristicIds = Arrays.copyOf(characteristicIds, capacity);
+      personIds = Arrays.copyOf(personIds, capacity);
+      ruleIds = Arrays.copyOf(ruleIds, capacity);
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    /**
+     * Rows have the same layout as the ones returned by the other queries of {@link PastMeasuresLoader}, plus the path
+     */
+    List<Object[]> get(String resourceKey, @Nullable String path) {
+      List<Object[]> measures = Lists.newArrayList();
+      for (ResourceRows resource : rowsByResourceKey.get(resourceKey)) {
+        if (StringUtils.isBlank(path) || path.equals(resource.path)) {
+          for (int i = resource.from; i < resource.to; i++) {
+            measures.add(new Object[] {
+              metricIds[i], toObject(characteristicIds[i]), toObject(personIds[i]), toObject(ruleIds[i]), Double.isNaN(values[i]) ? null : values[i], resource.path
+            });
+          }
+        }
+      }
+      return measures;
+    }
+
+    private static int toPrimitive(@Nullable Integer id) {
+      return id != null ? id : NULL_ID;
+    }
+
+    @CheckForNull
+    private static Integer toObject(int id) {
+      return id != NULL_ID ? id : null;
+    }
+  }
+
+  private static final class ResourceRows {
+    private final String path;
+    private final int from;
+    private int to;
+
+    ResourceRows(@Nullable String path, int from) {
+      this.path = path;
+      this.from = from;
+      this.to = from;
+    }
+  }
 }
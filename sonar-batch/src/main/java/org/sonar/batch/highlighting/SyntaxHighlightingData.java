@@ -20,15 +20,13 @@
 package org.sonar.batch.highlighting;
 
 import org.sonar.batch.index.Data;
+import org.sonar.core.source.DecorationDataFormat;
 
 import java.util.ArrayList;
 import java.util.Collection;
 
 public class SyntaxHighlightingData implements Data {
 
-  private static final String FIELD_SEPARATOR = ",";
-  private static final String RULE_SEPARATOR = ";";
-
   private Collection<SyntaxHighlightingRule> syntaxHighlightingRuleSet;
 
   public SyntaxHighlightingData(Collection<SyntaxHighlightingRule> syntaxHighlightingRuleSet) {
@@ -41,17 +39,11 @@ public class SyntaxHighlightingData implements Data {
 
   @Override
   public String writeString() {
-    StringBuilder sb = new StringBuilder();
+    DecorationDataFormat.SyntaxHighlightingWriter writer = new DecorationDataFormat.SyntaxHighlightingWriter();
     for (SyntaxHighlightingRule highlightingRule : syntaxHighlightingRuleSet) {
-      sb.append(highlightingRule.getStartPosition())
-        .append(FIELD_SEPARATOR)
-        .append(highlightingRule.getEndPosition())
-        .append(FIELD_SEPARATOR)
-        .append(highlightingRule.getTextType().cssClass())
-        .append(RULE_SEPARATOR);
+      writer.add(highlightingRule.getStartPosition(), highlightingRule.getEndPosition(), highlightingRule.getTextType().cssClass());
     }
-
-    return sb.toString();
+    return writer.write();
   }
 
 }
@@ -23,6 +23,9 @@ import com.google.common.collect.Sets;
 import com.persistit.Exchange;
 import com.persistit.Key;
 import com.persistit.KeyFilter;
+import com.persistit.Persistit;
+import com.persistit.Value;
+import com.persistit.Volume;
 import com.persistit.exception.PersistitException;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
@@ -34,40 +37,85 @@ import java.util.Set;
 
 /**
  * <p>
- * This cache is not thread-safe, due to direct usage of {@link com.persistit.Exchange}
+ * This cache is thread-safe. A {@link com.persistit.Exchange}, which is not thread-safe, is
+ * lazily created for each thread accessing the cache. All exchanges share the same Persistit tree,
+ * so values written by a thread are immediately visible to the others.
+ * </p>
+ * <p>
+ * Iterables returned by the cache must not be shared between threads. Worker threads must return their
+ * exchange to Persistit once their task is done, see {@link Caches#releaseExchanges()}.
  * </p>
  */
 public class Cache<V> {
 
   private final String name;
-  private final Exchange exchange;
+  private final Persistit persistit;
+  private final Volume volume;
+  private final ThreadLocal<Exchange> exchanges = new ThreadLocal<Exchange>();
 
-  Cache(String name, Exchange exchange) {
+  Cache(String name, Persistit persistit, Volume volume) {
     this.name = name;
-    this.exchange = exchange;
+    this.persistit = persistit;
+    this.volume = volume;
+    // fail fast and create the tree from the calling thread
+    exchanges.set(newExchange());
+  }
+
+  private Exchange newExchange() {
+    try {
+      Exchange exchange = persistit.getExchange(volume, name, true);
+      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
+      return exchange;
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to create cache: " + name, e);
+    }
+  }
+
+  /**
+   * Exchange of the current thread
+   */
+  private Exchange exchange() {
+    Exchange exchange = exchanges.get();
+    if (exchange == null) {
+      exchange = newExchange();
+      exchanges.set(exchange);
+    }
+    return exchange;
+  }
+
+  /**
+   * Returns the exchange of the current thread to Persistit, if any. The cache can still be used afterwards,
+   * a new exchange is then created.
+   */
+  void releaseExchange() {
+    Exchange exchange = exchanges.get();
+    if (exchange != null) {
+      exchanges.remove();
+      persistit.releaseExchange(exchange);
+    }
   }
 
   public Cache<V> put(Object key, V value) {
-    resetKey(key);
-    return doPut(value);
+    Exchange exchange = resetKey(key);
+    return doPut(exchange, value);
   }
 
   public Cache<V> put(Object firstKey, Object secondKey, V value) {
-    resetKey(firstKey, secondKey);
-    return doPut(value);
+    Exchange exchange = resetKey(firstKey, secondKey);
+    return doPut(exchange, value);
   }
 
   public Cache<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doPut(value);
+    Exchange exchange = resetKey(firstKey, secondKey, thirdKey);
+    return doPut(exchange, value);
   }
 
   public Cache<V> put(Object[] key, V value) {
-    resetKey(key);
-    return doPut(value);
+    Exchange exchange = resetKey(key);
+    return doPut(exchange, value);
   }
 
-  private Cache<V> doPut(V value) {
+  private Cache<V> doPut(Exchange exchange, V value) {
     try {
       exchange.getValue().put(value);
       exchange.store();
@@ -81,8 +129,8 @@ public class Cache<V> {
    * Returns the value object associated with keys, or null if not found.
    */
   public V get(Object key) {
-    resetKey(key);
-    return doGet();
+    Exchange exchange = resetKey(key);
+    return doGet(exchange);
   }
 
   /**
@@ -90,8 +138,8 @@ public class Cache<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doGet();
+    Exchange exchange = resetKey(firstKey, secondKey);
+    return doGet(exchange);
   }
 
   /**
@@ -99,8 +147,8 @@ public class Cache<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doGet();
+    Exchange exchange = resetKey(firstKey, secondKey, thirdKey);
+    return doGet(exchange);
   }
 
   /**
@@ -108,13 +156,13 @@ public class Cache<V> {
    */
   @CheckForNull
   public V get(Object[] key) {
-    resetKey(key);
-    return doGet();
+    Exchange exchange = resetKey(key);
+    return doGet(exchange);
   }
 
   @SuppressWarnings("unchecked")
   @CheckForNull
-  private V doGet() {
+  private V doGet(Exchange exchange) {
     try {
       exchange.fetch();
       if (!exchange.getValue().isDefined()) {
@@ -128,26 +176,26 @@ public class Cache<V> {
   }
 
   public boolean containsKey(Object key) {
-    resetKey(key);
-    return doContainsKey();
+    Exchange exchange = resetKey(key);
+    return doContainsKey(exchange);
   }
 
   public boolean containsKey(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doContainsKey();
+    Exchange exchange = resetKey(firstKey, secondKey);
+    return doContainsKey(exchange);
   }
 
   public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doContainsKey();
+    Exchange exchange = resetKey(firstKey, secondKey, thirdKey);
+    return doContainsKey(exchange);
   }
 
   public boolean containsKey(Object[] key) {
-    resetKey(key);
-    return doContainsKey();
+    Exchange exchange = resetKey(key);
+    return doContainsKey(exchange);
   }
 
-  private boolean doContainsKey() {
+  private boolean doContainsKey(Exchange exchange) {
     try {
       exchange.fetch();
       return exchange.isValueDefined();
@@ -158,26 +206,26 @@ public class Cache<V> {
   }
 
   public boolean remove(Object key) {
-    resetKey(key);
-    return doRemove();
+    Exchange exchange = resetKey(key);
+    return doRemove(exchange);
   }
 
   public boolean remove(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doRemove();
+    Exchange exchange = resetKey(firstKey, secondKey);
+    return doRemove(exchange);
   }
 
   public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doRemove();
+    Exchange exchange = resetKey(firstKey, secondKey, thirdKey);
+    return doRemove(exchange);
   }
 
   public boolean remove(Object[] key) {
-    resetKey(key);
-    return doRemove();
+    Exchange exchange = resetKey(key);
+    return doRemove(exchange);
   }
 
-  private boolean doRemove() {
+  private boolean doRemove(Exchange exchange) {
     try {
       return exchange.remove();
     } catch (Exception e) {
@@ -192,26 +240,26 @@ public class Cache<V> {
    * @param group The group name.
    */
   public Cache<V> clear(Object key) {
-    resetKey(key);
-    return doClear();
+    Exchange exchange = resetKey(key);
+    return doClear(exchange);
   }
 
   public Cache<V> clear(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doClear();
+    Exchange exchange = resetKey(firstKey, secondKey);
+    return doClear(exchange);
   }
 
   public Cache<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doClear();
+    Exchange exchange = resetKey(firstKey, secondKey, thirdKey);
+    return doClear(exchange);
   }
 
   public Cache<V> clear(Object[] key) {
-    resetKey(key);
-    return doClear();
+    Exchange exchange = resetKey(key);
+    return doClear(exchange);
   }
 
-  private Cache<V> doClear() {
+  private Cache<V> doClear(Exchange exchange) {
     try {
       Key to = new Key(exchange.getKey());
       to.append(Key.AFTER);
@@ -227,6 +275,7 @@ public class Cache<V> {
    */
   public void clear() {
     try {
+      Exchange exchange = exchange();
       exchange.clear();
       exchange.removeAll();
     } catch (Exception e) {
@@ -245,6 +294,7 @@ public class Cache<V> {
   public Set keySet(Object key) {
     try {
       Set<Object> keys = Sets.newLinkedHashSet();
+      Exchange exchange = exchange();
       exchange.clear();
       Exchange iteratorExchange = new Exchange(exchange);
       iteratorExchange.append(key);
@@ -262,6 +312,7 @@ public class Cache<V> {
   public Set keySet(Object firstKey, Object secondKey) {
     try {
       Set<Object> keys = Sets.newLinkedHashSet();
+      Exchange exchange = exchange();
       exchange.clear();
       Exchange iteratorExchange = new Exchange(exchange);
       iteratorExchange.append(firstKey);
@@ -284,6 +335,7 @@ public class Cache<V> {
   public Set<Object> keySet() {
     try {
       Set<Object> keys = Sets.newLinkedHashSet();
+      Exchange exchange = exchange();
       exchange.clear();
       Exchange iteratorExchange = new Exchange(exchange);
       iteratorExchange.append(Key.BEFORE);
@@ -300,7 +352,7 @@ public class Cache<V> {
    * Lazy-loading values for given keys
    */
   public Iterable<V> values(Object firstKey, Object secondKey) {
-    return new ValueIterable<V>(exchange, firstKey, secondKey);
+    return new ValueIterable<V>(exchange(), firstKey, secondKey);
   }
 
   private IllegalStateException failToGetValues(Exception e) {
@@ -311,44 +363,52 @@ public class Cache<V> {
    * Lazy-loading values for a given key
    */
   public Iterable<V> values(Object firstKey) {
-    return new ValueIterable<V>(exchange, firstKey);
+    return new ValueIterable<V>(exchange(), firstKey);
   }
 
   /**
    * Lazy-loading values
    */
   public Iterable<V> values() {
-    return new ValueIterable<V>(exchange);
+    return new ValueIterable<V>(exchange());
   }
 
   public Iterable<Entry<V>> entries() {
-    return new EntryIterable<V>(exchange);
+    return new EntryIterable<V>(exchange());
   }
 
   public Iterable<Entry<V>> entries(Object firstKey) {
-    return new EntryIterable<V>(exchange, firstKey);
+    return new EntryIterable<V>(exchange(), firstKey);
   }
 
-  private void resetKey(Object key) {
+  private Exchange resetKey(Object key) {
+    Exchange exchange = exchange();
     exchange.clear();
     exchange.append(key);
+    return exchange;
   }
 
-  private void resetKey(Object first, Object second) {
+  private Exchange resetKey(Object first, Object second) {
+    Exchange exchange = exchange();
     exchange.clear();
     exchange.append(first).append(second);
+    return exchange;
   }
 
-  private void resetKey(Object first, Object second, Object third) {
+  private Exchange resetKey(Object first, Object second, Object third) {
+    Exchange exchange = exchange();
     exchange.clear();
     exchange.append(first).append(second).append(third);
+    return exchange;
   }
 
-  private void resetKey(Object[] keys) {
+  private Exchange resetKey(Object[] keys) {
+    Exchange exchange = exchange();
     exchange.clear();
     for (Object o : keys) {
       exchange.append(o);
     }
+    return exchange;
   }
 
   //
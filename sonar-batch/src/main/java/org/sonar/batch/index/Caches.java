@@ -21,9 +21,7 @@ package org.sonar.batch.index;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
-import com.persistit.Exchange;
 import com.persistit.Persistit;
-import com.persistit.Value;
 import com.persistit.Volume;
 import com.persistit.encoding.CoderManager;
 import com.persistit.encoding.ValueCoder;
@@ -36,8 +34,10 @@ import org.sonar.api.BatchComponent;
 import org.sonar.api.utils.TempFolder;
 
 import java.io.File;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Factory of caches
@@ -47,6 +47,7 @@ import java.util.Set;
 public class Caches implements BatchComponent, Startable {
 
   private final Set<String> cacheNames = Sets.newHashSet();
+  private final List<Cache<?>> caches = new CopyOnWriteArrayList<Cache<?>>();
   private File tempDir;
   private Persistit persistit;
   private Volume volume;
@@ -84,17 +85,27 @@ public class Caches implements BatchComponent, Startable {
     cm.registerValueCoder(clazz, coder);
   }
 
-  public <V> Cache<V> createCache(String cacheName) {
+  /**
+   * Creates a thread-safe cache. See {@link Cache}.
+   */
+  public synchronized <V> Cache<V> createCache(String cacheName) {
     Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
     Preconditions.checkState(!cacheNames.contains(cacheName), "Cache is already created: " + cacheName);
-    try {
-      Exchange exchange = persistit.getExchange(volume, cacheName, true);
-      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Cache<V> cache = new Cache<V>(cacheName, exchange);
-      cacheNames.add(cacheName);
-      return cache;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to create cache: " + cacheName, e);
+    Cache<V> cache = new Cache<V>(cacheName, persistit, volume);
+    cacheNames.add(cacheName);
+    caches.add(cache);
+    return cache;
+  }
+
+  /**
+   * Returns to Persistit the exchanges opened by the current thread. Must be called by worker threads
+   * when their task is done, otherwise exchanges leak as long as the threads are alive.
+   *
+   * @since 4.5.4
+   */
+  public void releaseExchanges() {
+    for (Cache<?> cache : caches) {
+      cache.releaseExchange();
     }
   }
 
@@ -104,7 +115,7 @@ public class Caches implements BatchComponent, Startable {
   }
 
   @Override
-  public void stop() {
+  public synchronized void stop() {
     if (persistit != null) {
       try {
         persistit.close(false);
@@ -117,6 +128,7 @@ public class Caches implements BatchComponent, Startable {
     FileUtils.deleteQuietly(tempDir);
     tempDir = null;
     cacheNames.clear();
+    caches.clear();
   }
 
   File tempDir() {
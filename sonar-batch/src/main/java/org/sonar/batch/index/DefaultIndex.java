@@ -80,6 +80,9 @@ public class DefaultIndex extends SonarIndex {
 
   // caches
   private Project currentProject;
+  // module analyzed by the current thread, when modules are analyzed in parallel
+  private final ThreadLocal<Project> currentModule = new ThreadLocal<Project>();
+  private final ThreadLocal<ModuleIssues> currentModuleIssues = new ThreadLocal<ModuleIssues>();
   private Map<Resource, Bucket> buckets = Maps.newHashMap();
   private Map<String, Bucket> bucketsByDeprecatedKey = Maps.newHashMap();
   private Set<Dependency> dependencies = Sets.newHashSet();
@@ -87,7 +90,6 @@ public class DefaultIndex extends SonarIndex {
   private Map<Resource, Map<Resource, Dependency>> incomingDependenciesByResource = Maps.newHashMap();
   private ProjectTree projectTree;
   private final DeprecatedViolations deprecatedViolations;
-  private ModuleIssues moduleIssues;
   private final MeasureCache measureCache;
 
   private ResourceKeyMigration migration;
@@ -141,51 +143,89 @@ public class DefaultIndex extends SonarIndex {
     }
   }
 
+  /**
+   * Module analyzed by the current thread. Defaults to the root project for the threads which are not
+   * attached to a module, see {@link org.sonar.batch.scan.ModuleTaskContext}.
+   */
   @Override
   public Project getProject() {
-    return currentProject;
+    Project module = currentModule.get();
+    return module != null ? module : currentProject;
   }
 
+  /**
+   * Sets the module analyzed by the current thread
+   */
   public void setCurrentProject(Project project, ModuleIssues moduleIssues) {
-    this.currentProject = project;
+    this.currentModule.set(project);
 
     // the following components depend on the current module, so they need to be reloaded.
-    this.moduleIssues = moduleIssues;
+    this.currentModuleIssues.set(moduleIssues);
   }
 
   /**
-   * Keep only project stuff
+   * Detaches the current thread from the module it was analyzing
    */
-  public void clear() {
+  public void clearCurrentProject() {
+    this.currentModule.remove();
+    this.currentModuleIssues.remove();
+  }
+
+  /**
+   * Keep only project stuff. Resources of the other modules, which may be analyzed at the same time, are kept.
+   */
+  public synchronized void clear(Project module) {
+    Set<Resource> removedResources = Sets.newHashSet();
     Iterator<Map.Entry<Resource, Bucket>> it = buckets.entrySet().iterator();
     while (it.hasNext()) {
       Map.Entry<Resource, Bucket> entry = it.next();
       Resource resource = entry.getKey();
-      if (!ResourceUtils.isSet(resource)) {
+      if (!ResourceUtils.isSet(resource) && isInModule(entry.getValue(), module)) {
         entry.getValue().clear();
         it.remove();
+        removedResources.add(resource);
       }
     }
 
+    Set<Dependency> keptDependencies = Sets.newLinkedHashSet();
+    for (Dependency dependency : dependencies) {
+      if (!removedResources.contains(dependency.getFrom()) && !removedResources.contains(dependency.getTo())) {
+        keptDependencies.add(dependency);
+      }
+    }
     Set<Dependency> projectDependencies = getDependenciesBetweenProjects();
     dependencies.clear();
     incomingDependenciesByResource.clear();
     outgoingDependenciesByResource.clear();
-    for (Dependency projectDependency : projectDependencies) {
-      projectDependency.setId(null);
-      registerDependency(projectDependency);
+    for (Dependency dependency : keptDependencies) {
+      if (projectDependencies.contains(dependency)) {
+        dependency.setId(null);
+      }
+      registerDependency(dependency);
     }
   }
 
+  /**
+   * The module of a resource is the first project found when walking up the tree of buckets.
+   * Resources attached to no module are considered to belong to any module.
+   */
+  private static boolean isInModule(Bucket bucket, Project module) {
+    Bucket parent = bucket.getParent();
+    while (parent != null && !(parent.getResource() instanceof Project)) {
+      parent = parent.getParent();
+    }
+    return parent == null || module.equals(parent.getResource());
+  }
+
   @CheckForNull
   @Override
-  public Measure getMeasure(Resource resource, org.sonar.api.batch.measure.Metric<?> metric) {
+  public synchronized Measure getMeasure(Resource resource, org.sonar.api.batch.measure.Metric<?> metric) {
     return getMeasures(resource, MeasuresFilters.metric(metric));
   }
 
   @CheckForNull
   @Override
-  public <M> M getMeasures(Resource resource, MeasuresFilter<M> filter) {
+  public synchronized <M> M getMeasures(Resource resource, MeasuresFilter<M> filter) {
     // Reload resource so that effective key is populated
     Resource indexedResource = getResource(resource);
     if (indexedResource == null) {
@@ -208,7 +248,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public Measure addMeasure(Resource resource, Measure measure) {
+  public synchronized Measure addMeasure(Resource resource, Measure measure) {
     Bucket bucket = getBucket(resource);
     if (bucket != null) {
       Metric metric = metricFinder.findByKey(measure.getMetricKey());
@@ -235,7 +275,7 @@ public class DefaultIndex extends SonarIndex {
   //
 
   @Override
-  public Dependency addDependency(Dependency dependency) {
+  public synchronized Dependency addDependency(Dependency dependency) {
     Dependency existingDep = getEdge(dependency.getFrom(), dependency.getTo());
     if (existingDep != null) {
       return existingDep;
@@ -247,7 +287,7 @@ public class DefaultIndex extends SonarIndex {
     }
 
     if (registerDependency(dependency)) {
-      persistence.saveDependency(currentProject, dependency, parentDependency);
+      persistence.saveDependency(getProject(), dependency, parentDependency);
     }
     return dependency;
   }
@@ -284,11 +324,11 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public Set<Dependency> getDependencies() {
-    return dependencies;
+  public synchronized Set<Dependency> getDependencies() {
+    return Sets.newLinkedHashSet(dependencies);
   }
 
-  public Dependency getEdge(Resource from, Resource to) {
+  public synchronized Dependency getEdge(Resource from, Resource to) {
     Map<Resource, Dependency> map = outgoingDependenciesByResource.get(from);
     if (map != null) {
       return map.get(to);
@@ -296,26 +336,26 @@ public class DefaultIndex extends SonarIndex {
     return null;
   }
 
-  public boolean hasEdge(Resource from, Resource to) {
+  public synchronized boolean hasEdge(Resource from, Resource to) {
     return getEdge(from, to) != null;
   }
 
-  public Set<Resource> getVertices() {
-    return buckets.keySet();
+  public synchronized Set<Resource> getVertices() {
+    return Sets.newHashSet(buckets.keySet());
   }
 
-  public Collection<Dependency> getOutgoingEdges(Resource from) {
+  public synchronized Collection<Dependency> getOutgoingEdges(Resource from) {
     Map<Resource, Dependency> deps = outgoingDependenciesByResource.get(from);
     if (deps != null) {
-      return deps.values();
+      return Lists.newArrayList(deps.values());
     }
     return Collections.emptyList();
   }
 
-  public Collection<Dependency> getIncomingEdges(Resource to) {
+  public synchronized Collection<Dependency> getIncomingEdges(Resource to) {
     Map<Resource, Dependency> deps = incomingDependenciesByResource.get(to);
     if (deps != null) {
-      return deps.values();
+      return Lists.newArrayList(deps.values());
     }
     return Collections.emptyList();
   }
@@ -342,7 +382,7 @@ public class DefaultIndex extends SonarIndex {
    * {@inheritDoc}
    */
   @Override
-  public List<Violation> getViolations(ViolationQuery violationQuery) {
+  public synchronized List<Violation> getViolations(ViolationQuery violationQuery) {
     Resource resource = violationQuery.getResource();
     if (resource == null) {
       throw new IllegalArgumentException("A resource must be set on the ViolationQuery in order to search for violations.");
@@ -384,10 +424,10 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public void addViolation(Violation violation, boolean force) {
+  public synchronized void addViolation(Violation violation, boolean force) {
     Resource resource = violation.getResource();
     if (resource == null) {
-      violation.setResource(currentProject);
+      violation.setResource(getProject());
     } else if (!Scopes.isHigherThanOrEquals(resource, Scopes.FILE)) {
       throw new IllegalArgumentException("Violations are only supported on files, directories and project");
     }
@@ -410,6 +450,10 @@ public class DefaultIndex extends SonarIndex {
     violation.setSeverity(null);
 
     violation.setResource(bucket.getResource());
+    ModuleIssues moduleIssues = currentModuleIssues.get();
+    if (moduleIssues == null) {
+      throw new IllegalStateException("Violations can only be added during the analysis of a module, thread: " + Thread.currentThread().getName());
+    }
     moduleIssues.initAndAddViolation(violation);
   }
 
@@ -422,13 +466,13 @@ public class DefaultIndex extends SonarIndex {
   //
 
   @Override
-  public void addLink(ProjectLink link) {
-    persistence.saveLink(currentProject, link);
+  public synchronized void addLink(ProjectLink link) {
+    persistence.saveLink(getProject(), link);
   }
 
   @Override
-  public void deleteLink(String key) {
-    persistence.deleteLink(currentProject, key);
+  public synchronized void deleteLink(String key) {
+    persistence.deleteLink(getProject(), key);
   }
 
   //
@@ -440,18 +484,18 @@ public class DefaultIndex extends SonarIndex {
   //
 
   @Override
-  public List<Event> getEvents(Resource resource) {
+  public synchronized List<Event> getEvents(Resource resource) {
     // currently events are not cached in memory
     return persistence.getEvents(resource);
   }
 
   @Override
-  public void deleteEvent(Event event) {
+  public synchronized void deleteEvent(Event event) {
     persistence.deleteEvent(event);
   }
 
   @Override
-  public Event addEvent(Resource resource, String name, String description, String category, Date date) {
+  public synchronized Event addEvent(Resource resource, String name, String description, String category, Date date) {
     Event event = new Event(name, description, category);
     event.setDate(date);
     event.setCreatedAt(new Date());
@@ -461,7 +505,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public void setSource(Resource reference, String source) {
+  public synchronized void setSource(Resource reference, String source) {
     Bucket bucket = getBucket(reference);
     if (bucket != null) {
       persistence.setSource(reference, source);
@@ -469,7 +513,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public String getSource(Resource resource) {
+  public synchronized String getSource(Resource resource) {
     return persistence.getSource(resource);
   }
 
@@ -477,14 +521,14 @@ public class DefaultIndex extends SonarIndex {
    * Does nothing if the resource is already registered.
    */
   @Override
-  public Resource addResource(Resource resource) {
+  public synchronized Resource addResource(Resource resource) {
     Bucket bucket = doIndex(resource);
     return bucket != null ? bucket.getResource() : null;
   }
 
   @Override
   @CheckForNull
-  public <R extends Resource> R getResource(@Nullable R reference) {
+  public synchronized <R extends Resource> R getResource(@Nullable R reference) {
     Bucket bucket = getBucket(reference);
     if (bucket != null) {
       return (R) bucket.getResource();
@@ -493,7 +537,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public List<Resource> getChildren(Resource resource) {
+  public synchronized List<Resource> getChildren(Resource resource) {
     List<Resource> children = Lists.newLinkedList();
     Bucket bucket = getBucket(resource);
     if (bucket != null) {
@@ -505,7 +549,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public Resource getParent(Resource resource) {
+  public synchronized Resource getParent(Resource resource) {
     Bucket bucket = getBucket(resource);
     if (bucket != null && bucket.getParent() != null) {
       return bucket.getParent().getResource();
@@ -514,7 +558,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public boolean index(Resource resource) {
+  public synchronized boolean index(Resource resource) {
     Bucket bucket = doIndex(resource);
     return bucket != null;
   }
@@ -527,7 +571,7 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public boolean index(Resource resource, Resource parentReference) {
+  public synchronized boolean index(Resource resource, Resource parentReference) {
     Bucket bucket = doIndex(resource, parentReference);
     return bucket != null;
   }
@@ -546,7 +590,7 @@ public class DefaultIndex extends SonarIndex {
     Resource parent = null;
     if (!ResourceUtils.isLibrary(resource)) {
       // a library has no parent
-      parent = (Resource) ObjectUtils.defaultIfNull(parentReference, currentProject);
+      parent = (Resource) ObjectUtils.defaultIfNull(parentReference, getProject());
     }
 
     Bucket parentBucket = getBucket(parent);
@@ -555,12 +599,12 @@ public class DefaultIndex extends SonarIndex {
       return null;
     }
 
-    resource.setEffectiveKey(ComponentKeys.createEffectiveKey(currentProject, resource));
+    resource.setEffectiveKey(ComponentKeys.createEffectiveKey(getProject(), resource));
     bucket = new Bucket(resource).setParent(parentBucket);
     addBucket(resource, bucket);
 
     Resource parentSnapshot = parentBucket != null ? parentBucket.getResource() : null;
-    Snapshot snapshot = persistence.saveResource(currentProject, resource, parentSnapshot);
+    Snapshot snapshot = persistence.saveResource(getProject(), resource, parentSnapshot);
     if (ResourceUtils.isPersistable(resource) && !Qualifiers.LIBRARY.equals(resource.getQualifier())) {
       graph.addComponent(resource, snapshot);
     }
@@ -569,12 +613,12 @@ public class DefaultIndex extends SonarIndex {
   }
 
   @Override
-  public boolean isExcluded(@Nullable Resource reference) {
+  public synchronized boolean isExcluded(@Nullable Resource reference) {
     return false;
   }
 
   @Override
-  public boolean isIndexed(@Nullable Resource reference, boolean acceptExcluded) {
+  public synchronized boolean isIndexed(@Nullable Resource reference, boolean acceptExcluded) {
     return getBucket(reference) != null;
   }
 
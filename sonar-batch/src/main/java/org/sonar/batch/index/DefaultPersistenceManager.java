@@ -48,8 +48,8 @@ public final class DefaultPersistenceManager implements PersistenceManager {
     this.eventPersister = eventPersister;
   }
 
-  public void clear() {
-    resourcePersister.clear();
+  public void clear(Project module) {
+    resourcePersister.clear(module);
     sourcePersister.clear();
   }
 
@@ -22,6 +22,7 @@ package org.sonar.batch.index;
 import org.sonar.api.resources.Language;
 
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.batch.fs.InputFile;
@@ -47,6 +48,7 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public final class DefaultResourcePersister implements ResourcePersister {
 
@@ -58,6 +60,8 @@ public final class DefaultResourcePersister implements ResourcePersister {
 
   private final DatabaseSession session;
   private final Map<Resource, Snapshot> snapshotsByResource = Maps.newHashMap();
+  private final Map<Resource, Project> modulesByResource = Maps.newHashMap();
+  private final Map<Project, Set<String>> persistedKeysByModule = Maps.newHashMap();
   private final ResourcePermissions permissions;
   private final SnapshotCache snapshotCache;
   private final ResourceCache resourceCache;
@@ -69,7 +73,7 @@ public final class DefaultResourcePersister implements ResourcePersister {
     this.resourceCache = resourceCache;
   }
 
-  public Snapshot saveProject(Project project, @Nullable Project parent) {
+  public synchronized Snapshot saveProject(Project project, @Nullable Project parent) {
     Snapshot snapshot = snapshotsByResource.get(project);
     if (snapshot == null) {
       snapshot = persistProject(project, parent);
@@ -130,11 +134,11 @@ public final class DefaultResourcePersister implements ResourcePersister {
   }
 
   @CheckForNull
-  public Snapshot getSnapshot(@Nullable Resource reference) {
+  public synchronized Snapshot getSnapshot(@Nullable Resource reference) {
     return snapshotsByResource.get(reference);
   }
 
-  public Snapshot getSnapshotOrFail(Resource resource) {
+  public synchronized Snapshot getSnapshotOrFail(Resource resource) {
     Snapshot snapshot = getSnapshot(resource);
     if (snapshot == null) {
       throw new ResourceNotPersistedException(resource);
@@ -143,7 +147,7 @@ public final class DefaultResourcePersister implements ResourcePersister {
   }
 
   @Override
-  public Snapshot getSnapshotOrFail(InputFile inputFile) {
+  public synchronized Snapshot getSnapshotOrFail(InputFile inputFile) {
     return getSnapshotOrFail(fromInputFile(inputFile));
   }
 
@@ -158,15 +162,16 @@ public final class DefaultResourcePersister implements ResourcePersister {
     return snapshotsByResource;
   }
 
-  public Snapshot saveResource(Project project, Resource resource) {
+  public synchronized Snapshot saveResource(Project project, Resource resource) {
     return saveResource(project, resource, null);
   }
 
-  public Snapshot saveResource(Project project, Resource resource, @Nullable Resource parent) {
+  public synchronized Snapshot saveResource(Project project, Resource resource, @Nullable Resource parent) {
     Snapshot snapshot = snapshotsByResource.get(resource);
     if (snapshot == null) {
       snapshot = persist(project, resource, parent);
       addToCache(resource, snapshot);
+      modulesByResource.put(resource, project);
     }
     return snapshot;
   }
@@ -232,7 +237,7 @@ public final class DefaultResourcePersister implements ResourcePersister {
   private Snapshot persistFileOrDirectory(Project project, Resource resource, @Nullable Resource parentReference) {
     Snapshot moduleSnapshot = snapshotsByResource.get(project);
     Integer moduleId = moduleSnapshot.getResourceId();
-    ResourceModel model = findOrCreateModel(resource);
+    ResourceModel model = findOrCreateModel(resource, mayBePersisted(project, resource));
     model.setRootId(moduleId);
     model = session.save(model);
     resource.setId(model.getId());
@@ -246,7 +251,7 @@ public final class DefaultResourcePersister implements ResourcePersister {
   }
 
   @CheckForNull
-  public Snapshot getLastSnapshot(Snapshot snapshot, boolean onlyOlder) {
+  public synchronized Snapshot getLastSnapshot(Snapshot snapshot, boolean onlyOlder) {
     String hql = "SELECT s FROM " + Snapshot.class.getSimpleName() + " s WHERE s.last=:last AND s.resourceId=:resourceId";
     if (onlyOlder) {
       hql += " AND s.createdAt<:date";
@@ -260,20 +265,53 @@ public final class DefaultResourcePersister implements ResourcePersister {
     return session.getSingleResult(query, null);
   }
 
-  public void clear() {
-    // we keep cache of projects
+  public synchronized void clear(Project module) {
+    // we keep cache of projects, and the resources of the other modules which may be analyzed at the same time
     for (Iterator<Map.Entry<Resource, Snapshot>> it = snapshotsByResource.entrySet().iterator(); it.hasNext();) {
       Map.Entry<Resource, Snapshot> entry = it.next();
-      if (!ResourceUtils.isSet(entry.getKey())) {
+      Resource resource = entry.getKey();
+      Project resourceModule = modulesByResource.get(resource);
+      if (!ResourceUtils.isSet(resource) && (resourceModule == null || module.equals(resourceModule))) {
         it.remove();
+        modulesByResource.remove(resource);
       }
     }
+    persistedKeysByModule.remove(module);
+  }
+
+  /**
+   * Returns false if the resource is known to be missing from database, so that it can be created without being looked up.
+   * Keys of the resources of the module are loaded in a single query, as looking up each file is expensive on large projects.
+   */
+  private boolean mayBePersisted(Project module, Resource resource) {
+    String key = resource.getEffectiveKey();
+    if (module.getEffectiveKey() == null || key == null || !key.startsWith(module.getEffectiveKey() + ":")) {
+      return true;
+    }
+    Set<String> persistedKeys = persistedKeysByModule.get(module);
+    if (persistedKeys == null) {
+      persistedKeys = selectResourceKeys(module.getEffectiveKey() + ":");
+      persistedKeysByModule.put(module, persistedKeys);
+    }
+    // the key is registered as it's going to be persisted
+    return !persistedKeys.add(key);
+  }
+
+  private Set<String> selectResourceKeys(String keyPrefix) {
+    Query query = session.createQuery("SELECT r.key FROM " + ResourceModel.class.getSimpleName() + " r WHERE r.key LIKE :prefix");
+    query.setParameter("prefix", keyPrefix + "%");
+    List<String> keys = query.getResultList();
+    return Sets.newHashSet(keys);
   }
 
   private ResourceModel findOrCreateModel(Resource resource) {
+    return findOrCreateModel(resource, true);
+  }
+
+  private ResourceModel findOrCreateModel(Resource resource, boolean mayBePersisted) {
     ResourceModel model;
     try {
-      model = session.getSingleResult(ResourceModel.class, "key", resource.getEffectiveKey());
+      model = mayBePersisted ? session.getSingleResult(ResourceModel.class, "key", resource.getEffectiveKey()) : null;
       if (model == null) {
         if (StringUtils.isBlank(resource.getEffectiveKey())) {
           throw new SonarException("Unable to persist resource " + resource.toString() + ". Resource effective key is blank. This may be caused by an outdated plugin.");
@@ -20,6 +20,8 @@
 package org.sonar.batch.index;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+import org.sonar.api.config.Settings;
 import org.sonar.api.database.model.MeasureMapper;
 import org.sonar.api.database.model.MeasureModel;
 import org.sonar.api.database.model.Snapshot;
@@ -33,32 +35,53 @@ import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.technicaldebt.batch.Characteristic;
 import org.sonar.batch.index.Cache.Entry;
 import org.sonar.batch.scan.measure.MeasureCache;
+import org.sonar.core.persistence.BatchSession;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
+import org.sonar.core.profiling.Profiling;
+import org.sonar.core.profiling.StopWatch;
 
 import javax.annotation.Nullable;
 
+import java.util.Map;
+
 public final class MeasurePersister implements ScanPersister {
+
+  /**
+   * Number of measures sent to the database in a single JDBC batch.
+   */
+  static final String BATCH_SIZE_PROPERTY = "sonar.batch.measures.batchSize";
+
   private final MyBatis mybatis;
   private final RuleFinder ruleFinder;
   private final MeasureCache measureCache;
   private final SnapshotCache snapshotCache;
   private final ResourceCache resourceCache;
+  private final Settings settings;
+  private final Profiling profiling;
 
   public MeasurePersister(MyBatis mybatis, RuleFinder ruleFinder,
-    MeasureCache measureCache, SnapshotCache snapshotCache, ResourceCache resourceCache) {
+    MeasureCache measureCache, SnapshotCache snapshotCache, ResourceCache resourceCache, Settings settings) {
     this.mybatis = mybatis;
     this.ruleFinder = ruleFinder;
     this.measureCache = measureCache;
     this.snapshotCache = snapshotCache;
     this.resourceCache = resourceCache;
+    this.settings = settings;
+    this.profiling = new Profiling(settings);
   }
 
   @Override
   public void persist() {
-    DbSession session = mybatis.openSession(true);
+    int batchSize = settings.hasKey(BATCH_SIZE_PROPERTY) ? settings.getInt(BATCH_SIZE_PROPERTY) : BatchSession.MAX_BATCH_SIZE;
+    DbSession session = mybatis.openBatchSession(batchSize);
+    StopWatch watch = profiling.start("persistence", Profiling.Level.BASIC);
+    long start = System.currentTimeMillis();
+    int count = 0;
     try {
       MeasureMapper mapper = session.getMapper(MeasureMapper.class);
+      // rules are resolved only once, most rule measures being on the same few rules
+      Map<RuleKey, Integer> ruleIds = Maps.newHashMap();
 
       for (Entry<Measure> entry : measureCache.entries()) {
         String effectiveKey = entry.key()[0].toString();
@@ -67,8 +90,9 @@ public final class MeasurePersister implements ScanPersister {
 
         if (shouldPersistMeasure(resource, measure)) {
           Snapshot snapshot = snapshotCache.get(effectiveKey);
-          MeasureModel measureModel = model(measure, ruleFinder).setSnapshotId(snapshot.getId());
+          MeasureModel measureModel = model(measure, ruleFinder, ruleIds).setSnapshotId(snapshot.getId());
           mapper.insert(measureModel);
+          count++;
         }
       }
 
@@ -78,6 +102,8 @@ public final class MeasurePersister implements ScanPersister {
     } finally {
       MyBatis.closeQuietly(session);
     }
+    long duration = Math.max(1L, System.currentTimeMillis() - start);
+    watch.stop("%d measures persisted by batches of %d (%d rows/s)", count, batchSize, count * 1000L / duration);
   }
 
   @VisibleForTesting
@@ -99,6 +125,10 @@ public final class MeasurePersister implements ScanPersister {
   }
 
   static MeasureModel model(Measure measure, RuleFinder ruleFinder) {
+    return model(measure, ruleFinder, Maps.<RuleKey, Integer>newHashMap());
+  }
+
+  private static MeasureModel model(Measure measure, RuleFinder ruleFinder, Map<RuleKey, Integer> ruleIds) {
     MeasureModel model = new MeasureModel();
     // we assume that the index has updated the metric
     model.setMetricId(measure.getMetric().getId());
@@ -124,13 +154,22 @@ public final class MeasurePersister implements ScanPersister {
       model.setRulePriority(ruleMeasure.getSeverity());
       RuleKey ruleKey = ruleMeasure.ruleKey();
       if (ruleKey != null) {
-        Rule ruleWithId = ruleFinder.findByKey(ruleKey);
-        if (ruleWithId == null) {
-          throw new IllegalStateException("Can not save a measure with unknown rule " + ruleMeasure);
-        }
-        model.setRuleId(ruleWithId.getId());
+        model.setRuleId(ruleId(ruleMeasure, ruleKey, ruleFinder, ruleIds));
       }
     }
     return model;
   }
+
+  private static Integer ruleId(RuleMeasure ruleMeasure, RuleKey ruleKey, RuleFinder ruleFinder, Map<RuleKey, Integer> ruleIds) {
+    Integer ruleId = ruleIds.get(ruleKey);
+    if (ruleId == null) {
+      Rule ruleWithId = ruleFinder.findByKey(ruleKey);
+      if (ruleWithId == null) {
+        throw new IllegalStateException("Can not save a measure with unknown rule " + ruleMeasure);
+      }
+      ruleId = ruleWithId.getId();
+      ruleIds.put(ruleKey, ruleId);
+    }
+    return ruleId;
+  }
 }
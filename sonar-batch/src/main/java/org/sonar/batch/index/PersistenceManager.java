@@ -31,7 +31,7 @@ import javax.annotation.Nullable;
 import java.util.List;
 
 public interface PersistenceManager {
-  void clear();
+  void clear(Project module);
 
   void saveProject(Project project, @Nullable Project parent);
 
@@ -28,11 +28,13 @@ import org.sonar.api.resources.Resource;
 import java.util.Map;
 
 /**
+ * Shared by the modules analyzed concurrently, so it is thread-safe.
+ *
  * @since 3.6
  */
 public class ResourceCache implements BatchComponent {
   // resource by component key
-  private final Map<String, Resource> resources = Maps.newHashMap();
+  private final Map<String, Resource> resources = Maps.newConcurrentMap();
 
   public Resource get(String componentKey) {
     return resources.get(componentKey);
@@ -55,5 +55,8 @@ public interface ResourcePersister {
   @CheckForNull
   Snapshot getLastSnapshot(Snapshot snapshot, boolean onlyOlder);
 
-  void clear();
+  /**
+   * Removes from memory the resources of the given module, except projects
+   */
+  void clear(Project module);
 }
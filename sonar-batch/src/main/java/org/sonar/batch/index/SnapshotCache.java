@@ -29,10 +29,11 @@ import java.util.Set;
 
 /**
  * Does not contains snapshots of {@link Library} as effectiveKey can be the same than a project.
+ * Shared by the modules analyzed concurrently, so it is thread-safe.
  */
 public class SnapshotCache implements BatchComponent {
   // snapshots by component key
-  private final Map<String, Snapshot> snapshots = Maps.newHashMap();
+  private final Map<String, Snapshot> snapshots = Maps.newConcurrentMap();
 
   public Snapshot get(String componentKey) {
     return snapshots.get(componentKey);
@@ -41,7 +41,7 @@ public final class SourcePersister {
     this.sourceDao = sourceDao;
   }
 
-  public void saveSource(Resource resource, String source) {
+  public synchronized void saveSource(Resource resource, String source) {
     Snapshot snapshot = resourcePersister.getSnapshotOrFail(resource);
     if (isCached(snapshot)) {
       throw new DuplicatedSourceException(resource);
@@ -54,7 +54,7 @@ public final class SourcePersister {
   }
 
   @CheckForNull
-  public String getSource(Resource resource) {
+  public synchronized String getSource(Resource resource) {
     Snapshot snapshot = resourcePersister.getSnapshot(resource);
     if (snapshot != null && snapshot.getId() != null) {
       return sourceDao.selectSnapshotSource(snapshot.getId());
@@ -70,7 +70,7 @@ public final class SourcePersister {
     savedSnapshotIds.add(snapshot.getId());
   }
 
-  public void clear() {
+  public synchronized void clear() {
     savedSnapshotIds.clear();
   }
 }
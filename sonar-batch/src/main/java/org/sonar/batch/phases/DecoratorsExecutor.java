@@ -20,28 +20,48 @@
 package org.sonar.batch.phases;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.batch.BatchExtensionDictionnary;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.utils.AnnotationUtils;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.SonarException;
 import org.sonar.batch.DecoratorsSelector;
 import org.sonar.batch.DefaultDecoratorContext;
 import org.sonar.batch.duplication.DuplicationCache;
 import org.sonar.batch.events.EventBus;
+import org.sonar.batch.scan.ModuleTaskContext;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.core.measure.MeasurementFilters;
 
+import javax.annotation.Nullable;
+
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DecoratorsExecutor implements BatchComponent {
 
+  /**
+   * Number of threads used to decorate the subtrees of a module. Subtrees are decorated sequentially
+   * when the value is lower than 2, which is the default.
+   */
+  static final String THREADS_PROPERTY = "sonar.batch.decorators.threads";
+
   private DecoratorsSelector decoratorsSelector;
   private SonarIndex index;
   private EventBus eventBus;
@@ -50,10 +70,16 @@ public class DecoratorsExecutor implements BatchComponent {
   private MeasureCache measureCache;
   private MetricFinder metricFinder;
   private final DuplicationCache duplicationCache;
+  private final Settings settings;
+  private final ModuleTaskContext taskContext;
+
+  // decorators that are not annotated with @ConcurrentExecution are executed one at a time
+  private final Object sequentialLock = new Object();
+  private final Set<Decorator> concurrentDecorators = Sets.newIdentityHashSet();
 
   public DecoratorsExecutor(BatchExtensionDictionnary batchExtDictionnary,
     Project project, SonarIndex index, EventBus eventBus, MeasurementFilters measurementFilters, MeasureCache measureCache, MetricFinder metricFinder,
-    DuplicationCache duplicationCache) {
+    DuplicationCache duplicationCache, Settings settings, ModuleTaskContext taskContext) {
     this.measureCache = measureCache;
     this.metricFinder = metricFinder;
     this.duplicationCache = duplicationCache;
@@ -62,33 +88,105 @@ public class DecoratorsExecutor implements BatchComponent {
     this.eventBus = eventBus;
     this.project = project;
     this.measurementFilters = measurementFilters;
+    this.settings = settings;
+    this.taskContext = taskContext;
   }
 
   public void execute() {
     Collection<Decorator> decorators = decoratorsSelector.select(project);
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), true));
-    ((DefaultDecoratorContext) decorateResource(project, decorators, true)).end();
+    concurrentDecorators.clear();
+    for (Decorator decorator : decorators) {
+      if (AnnotationUtils.getAnnotation(decorator, ConcurrentExecution.class) != null) {
+        concurrentDecorators.add(decorator);
+      }
+    }
+    int threads = settings.getInt(THREADS_PROPERTY);
+    ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+    try {
+      ((DefaultDecoratorContext) decorateResource(project, decorators, true, executor)).end();
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), false));
   }
 
   DecoratorContext decorateResource(Resource resource, Collection<Decorator> decorators, boolean executeDecorators) {
-    List<DecoratorContext> childrenContexts = Lists.newArrayList();
+    return decorateResource(resource, decorators, executeDecorators, null);
+  }
+
+  /**
+   * When an executor is given, the children of the resource that are not modules are decorated in parallel. Each
+   * of these subtrees is then decorated sequentially by a single worker, so workers never wait for each other.
+   * Modules are still decorated by the calling thread, and the resource itself is decorated once all
+   * its children are done.
+   */
+  private DecoratorContext decorateResource(Resource resource, Collection<Decorator> decorators, boolean executeDecorators, @Nullable ExecutorService executor) {
+    List<Future<DecoratorContext>> children = Lists.newArrayList();
     for (Resource child : index.getChildren(resource)) {
       boolean isModule = child instanceof Project;
-      DefaultDecoratorContext childContext = (DefaultDecoratorContext) decorateResource(child, decorators, !isModule);
-      childrenContexts.add(childContext.end());
+      if (executor != null && !isModule) {
+        children.add(executor.submit(taskContext.wrap(new SubtreeDecoration(child, decorators))));
+      } else {
+        DefaultDecoratorContext childContext = (DefaultDecoratorContext) decorateResource(child, decorators, !isModule, executor);
+        children.add(Futures.<DecoratorContext>immediateFuture(childContext.end()));
+      }
     }
+    List<DecoratorContext> childrenContexts = join(children);
 
     DefaultDecoratorContext context = new DefaultDecoratorContext(resource, index, childrenContexts, measurementFilters, measureCache, metricFinder, duplicationCache);
     context.init();
     if (executeDecorators) {
       for (Decorator decorator : decorators) {
-        executeDecorator(decorator, context, resource);
+        if (concurrentDecorators.contains(decorator)) {
+          executeDecorator(decorator, context, resource);
+        } else {
+          synchronized (sequentialLock) {
+            executeDecorator(decorator, context, resource);
+          }
+        }
       }
     }
     return context;
   }
 
+  private static List<DecoratorContext> join(List<Future<DecoratorContext>> futures) {
+    List<DecoratorContext> result = Lists.newArrayList();
+    try {
+      for (Future<DecoratorContext> future : futures) {
+        result.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Decoration was interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException("Fail to decorate resources", cause);
+    }
+    return result;
+  }
+
+  private class SubtreeDecoration implements Callable<DecoratorContext> {
+    private final Resource resource;
+    private final Collection<Decorator> decorators;
+
+    SubtreeDecoration(Resource resource, Collection<Decorator> decorators) {
+      this.resource = resource;
+      this.decorators = decorators;
+    }
+
+    @Override
+    public DecoratorContext call() {
+      DefaultDecoratorContext context = (DefaultDecoratorContext) decorateResource(resource, decorators, true, null);
+      return context.end();
+    }
+  }
+
   void executeDecorator(Decorator decorator, DefaultDecoratorContext context, Resource resource) {
     try {
       eventBus.fireEvent(new DecoratorExecutionEvent(decorator, true));
@@ -20,7 +20,6 @@
 package org.sonar.batch.phases;
 
 import com.tinkerpop.blueprints.Graph;
-import org.apache.commons.io.IOUtils;
 import org.sonar.api.component.Perspective;
 import org.sonar.batch.index.ScanPersister;
 import org.sonar.core.component.ComponentVertex;
@@ -28,15 +27,13 @@ import org.sonar.core.component.GraphPerspectiveBuilder;
 import org.sonar.core.component.PerspectiveBuilder;
 import org.sonar.core.component.ScanGraph;
 import org.sonar.core.graph.SubGraph;
-import org.sonar.core.graph.graphson.GraphsonMode;
-import org.sonar.core.graph.graphson.GraphsonWriter;
+import org.sonar.core.graph.binary.BinaryGraphFormat;
+import org.sonar.core.graph.binary.BinaryGraphWriter;
 import org.sonar.core.graph.jdbc.GraphDto;
 import org.sonar.core.graph.jdbc.GraphDtoMapper;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 
-import java.io.StringWriter;
-
 public class GraphPersister implements ScanPersister {
   private final MyBatis myBatis;
   private final ScanGraph projectGraph;
@@ -77,25 +74,15 @@ public class GraphPersister implements ScanPersister {
   private void serializePerspectiveData(GraphDtoMapper mapper, ComponentVertex component, Long snapshotId,
                                         GraphPerspectiveBuilder builder) {
     Graph subGraph = SubGraph.extract(component.element(), builder.path());
-    String data = write(subGraph);
+    String data = new BinaryGraphWriter().write(subGraph);
     mapper.insert(new GraphDto()
       .setData(data)
-      .setFormat("graphson")
+      .setFormat(BinaryGraphFormat.FORMAT)
       .setPerspective(builder.getPerspectiveLoader().getPerspectiveKey())
-      .setVersion(1)
+      .setVersion(BinaryGraphFormat.VERSION)
       .setResourceId((Long) component.element().getProperty("rid"))
       .setSnapshotId(snapshotId)
       .setRootVertexId(component.element().getId().toString())
     );
   }
-
-  private String write(Graph graph) {
-    StringWriter output = new StringWriter();
-    try {
-      new GraphsonWriter().write(graph, output, GraphsonMode.EXTENDED);
-      return output.toString();
-    } finally {
-      IOUtils.closeQuietly(output);
-    }
-  }
 }
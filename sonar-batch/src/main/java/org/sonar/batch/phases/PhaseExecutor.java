@@ -132,7 +132,7 @@ public final class PhaseExecutor {
         postJobsExecutor.execute(sensorContext);
       }
     }
-    cleanMemory();
+    cleanMemory(module);
     eventBus.fireEvent(new ProjectAnalysisEvent(module, false));
   }
 
@@ -173,11 +173,11 @@ public final class PhaseExecutor {
     }
   }
 
-  private void cleanMemory() {
+  private void cleanMemory(Project module) {
     String cleanMemory = "Clean memory";
     eventBus.fireEvent(new BatchStepEvent(cleanMemory, true));
-    persistenceManager.clear();
-    index.clear();
+    persistenceManager.clear(module);
+    index.clear(module);
     eventBus.fireEvent(new BatchStepEvent(cleanMemory, false));
   }
 }
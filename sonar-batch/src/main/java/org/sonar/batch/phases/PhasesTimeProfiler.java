@@ -25,6 +25,7 @@ import org.apache.commons.lang.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.Decorator;
+import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.events.DecoratorExecutionHandler;
 import org.sonar.api.batch.events.DecoratorsPhaseHandler;
 import org.sonar.api.batch.events.SensorExecutionHandler;
@@ -39,7 +40,8 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, DecoratorExec
 
   private static final Logger LOG = LoggerFactory.getLogger(PhasesTimeProfiler.class);
 
-  private TimeProfiler profiler = new TimeProfiler(LOG);
+  // sensors may be executed concurrently
+  private Map<Sensor, TimeProfiler> sensorProfilers = new IdentityHashMap<Sensor, TimeProfiler>();
   private DecoratorsProfiler decoratorsProfiler = new DecoratorsProfiler();
 
   public void onSensorsPhase(SensorsPhaseEvent event) {
@@ -48,11 +50,14 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, DecoratorExec
     }
   }
 
-  public void onSensorExecution(SensorExecutionEvent event) {
+  public synchronized void onSensorExecution(SensorExecutionEvent event) {
     if (event.isStart()) {
-      profiler.start("Sensor " + event.getSensor());
+      sensorProfilers.put(event.getSensor(), new TimeProfiler(LOG).start("Sensor " + event.getSensor()));
     } else {
-      profiler.stop();
+      TimeProfiler profiler = sensorProfilers.remove(event.getSensor());
+      if (profiler != null) {
+        profiler.stop();
+      }
     }
   }
 
@@ -75,21 +80,33 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, DecoratorExec
     }
   }
 
+  /**
+   * Decorators can be executed concurrently on different resources, so the decorator being executed
+   * is tracked per thread.
+   */
   static class DecoratorsProfiler {
     List<Decorator> decorators = Lists.newArrayList();
     Map<Decorator, Long> durations = new IdentityHashMap<Decorator, Long>();
-    long startTime;
-    Decorator currentDecorator;
+    final ThreadLocal<Long> startTime = new ThreadLocal<Long>();
+    final ThreadLocal<Decorator> currentDecorator = new ThreadLocal<Decorator>();
 
     DecoratorsProfiler() {
     }
 
     void start(Decorator decorator) {
-      this.startTime = System.currentTimeMillis();
-      this.currentDecorator = decorator;
+      this.startTime.set(System.currentTimeMillis());
+      this.currentDecorator.set(decorator);
     }
 
     void stop() {
+      Decorator decorator = currentDecorator.get();
+      long duration = System.currentTimeMillis() - startTime.get();
+      synchronized (this) {
+        addDuration(decorator, duration);
+      }
+    }
+
+    private void addDuration(Decorator currentDecorator, long duration) {
       final Long cumulatedDuration;
       if (durations.containsKey(currentDecorator)) {
         cumulatedDuration = durations.get(currentDecorator);
@@ -97,7 +114,7 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, DecoratorExec
         decorators.add(currentDecorator);
         cumulatedDuration = 0L;
       }
-      durations.put(currentDecorator, cumulatedDuration + (System.currentTimeMillis() - startTime));
+      durations.put(currentDecorator, cumulatedDuration + duration);
     }
 
     void log() {
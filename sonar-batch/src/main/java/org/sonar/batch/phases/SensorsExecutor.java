@@ -27,19 +27,29 @@ import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.maven.DependsUponMavenPlugin;
 import org.sonar.api.batch.maven.MavenPluginHandler;
+import org.sonar.api.config.Settings;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.TimeProfiler;
 import org.sonar.batch.bootstrap.BatchExtensionDictionnary;
 import org.sonar.batch.events.EventBus;
+import org.sonar.batch.scan.ModuleTaskContext;
 import org.sonar.batch.scan.filesystem.DefaultModuleFileSystem;
 import org.sonar.batch.scan.maven.MavenPluginExecutor;
 
 import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class SensorsExecutor implements BatchComponent {
   private static final Logger LOG = LoggerFactory.getLogger(SensorsExecutor.class);
 
+  /**
+   * Number of threads used to execute sensors. Sensors are executed sequentially when the value
+   * is lower than 2, which is the default. See {@link SensorsScheduler}.
+   */
+  static final String THREADS_PROPERTY = "sonar.batch.sensors.threads";
+
   private MavenPluginExecutor mavenExecutor;
   private EventBus eventBus;
   private Project module;
@@ -47,9 +57,11 @@ public class SensorsExecutor implements BatchComponent {
   private BatchExtensionDictionnary selector;
   private final DatabaseSession session;
   private final SensorMatcher sensorMatcher;
+  private final Settings settings;
+  private final ModuleTaskContext taskContext;
 
   public SensorsExecutor(BatchExtensionDictionnary selector, Project project, DefaultModuleFileSystem fs, MavenPluginExecutor mavenExecutor, EventBus eventBus,
-    DatabaseSession session, SensorMatcher sensorMatcher) {
+    DatabaseSession session, SensorMatcher sensorMatcher, Settings settings, ModuleTaskContext taskContext) {
     this.selector = selector;
     this.mavenExecutor = mavenExecutor;
     this.eventBus = eventBus;
@@ -57,22 +69,53 @@ public class SensorsExecutor implements BatchComponent {
     this.fs = fs;
     this.session = session;
     this.sensorMatcher = sensorMatcher;
+    this.settings = settings;
+    this.taskContext = taskContext;
   }
 
   public void execute(SensorContext context) {
     Collection<Sensor> sensors = selector.select(Sensor.class, module, true, sensorMatcher);
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), true));
 
-    for (Sensor sensor : sensors) {
-      // SONAR-2965 In case the sensor takes too much time we close the session to not face a timeout
-      session.commitAndClose();
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads > 1 && sensors.size() > 1) {
+      executeConcurrently(context, sensors, threads);
+    } else {
+      for (Sensor sensor : sensors) {
+        // SONAR-2965 In case the sensor takes too much time we close the session to not face a timeout
+        session.commitAndClose();
 
-      executeSensor(context, sensor);
+        executeSensor(context, sensor);
+      }
     }
 
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), false));
   }
 
+  private void executeConcurrently(final SensorContext context, Collection<Sensor> sensors, int threads) {
+    // SONAR-2965 The session of the module thread is closed before sensors are started. Each sensor is executed
+    // with the database session of its worker thread, which is closed as soon as the sensor is done.
+    session.commitAndClose();
+
+    SensorsScheduler scheduler = new SensorsScheduler(Lists.newArrayList(sensors), selector);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      scheduler.execute(executor, new SensorsScheduler.SensorTask() {
+        @Override
+        public void execute(Sensor sensor) {
+          taskContext.attach();
+          try {
+            executeSensor(context, sensor);
+          } finally {
+            taskContext.detach();
+          }
+        }
+      });
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   private void executeSensor(SensorContext context, Sensor sensor) {
     eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
     executeMavenPlugin(sensor);
@@ -0,0 +1,192 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.phases;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.sonar.api.batch.ConcurrentExecution;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.sensor.internal.DefaultSensorDescriptor;
+import org.sonar.api.utils.AnnotationUtils;
+import org.sonar.batch.bootstrap.BatchExtensionDictionnary;
+import org.sonar.batch.scan.SensorWrapper;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Schedules sensors on a pool of threads. A sensor starts as soon as all the sensors that must run before it are done.
+ * <p/>
+ * Given two sensors in their sorted order, the first one must run before the second one if :
+ * <ul>
+ *   <li>one of them is not annotated with {@link ConcurrentExecution}</li>
+ *   <li>they are not executed in the same {@link org.sonar.api.batch.Phase}</li>
+ *   <li>the second one depends upon the first one, see {@link org.sonar.api.batch.DependsUpon} and {@link org.sonar.api.batch.DependedUpon}</li>
+ *   <li>their {@link DefaultSensorDescriptor} do not declare disjoint sets of languages</li>
+ * </ul>
+ * Sensors of the deprecated API do not have descriptors. When annotated with {@link ConcurrentExecution}, they
+ * work at module level and do not conflict with the sensors working on files.
+ *
+ * @since 4.5.4
+ */
+class SensorsScheduler {
+
+  interface SensorTask {
+    void execute(Sensor sensor);
+  }
+
+  private final List<Sensor> sensors;
+  private final Map<Sensor, Set<Sensor>> predecessors = new IdentityHashMap<Sensor, Set<Sensor>>();
+  private final BatchExtensionDictionnary dictionnary;
+
+  SensorsScheduler(List<Sensor> sortedSensors, BatchExtensionDictionnary dictionnary) {
+    this.sensors = sortedSensors;
+    this.dictionnary = dictionnary;
+    Map<Sensor, DefaultSensorDescriptor> descriptors = Maps.newIdentityHashMap();
+    for (Sensor sensor : sortedSensors) {
+      descriptors.put(sensor, describe(sensor));
+    }
+    for (int i = 0; i < sortedSensors.size(); i++) {
+      Sensor sensor = sortedSensors.get(i);
+      Set<Sensor> before = Sets.newIdentityHashSet();
+      for (int j = 0; j < i; j++) {
+        Sensor previous = sortedSensors.get(j);
+        if (mustRunBefore(previous, descriptors.get(previous), sensor, descriptors.get(sensor))) {
+          before.add(previous);
+        }
+      }
+      predecessors.put(sensor, before);
+    }
+  }
+
+  Set<Sensor> predecessors(Sensor sensor) {
+    return Collections.unmodifiableSet(predecessors.get(sensor));
+  }
+
+  private boolean mustRunBefore(Sensor first, @CheckForNull DefaultSensorDescriptor firstDescriptor, Sensor second, @CheckForNull DefaultSensorDescriptor secondDescriptor) {
+    return !isConcurrent(first) || !isConcurrent(second)
+      || dictionnary.evaluatePhase(first) != dictionnary.evaluatePhase(second)
+      || dependsUpon(second, first)
+      || !workOnDifferentFiles(firstDescriptor, secondDescriptor);
+  }
+
+  private static boolean isConcurrent(Sensor sensor) {
+    Object extension = sensor instanceof SensorWrapper ? ((SensorWrapper) sensor).wrappedSensor() : sensor;
+    return AnnotationUtils.getAnnotation(extension, ConcurrentExecution.class) != null;
+  }
+
+  private boolean dependsUpon(Sensor sensor, Sensor other) {
+    List<Object> dependencies = dictionnary.getDependencies(sensor);
+    if (dependencies.contains(other)) {
+      return true;
+    }
+    return !Collections.disjoint(dependencies, dictionnary.getDependents(other));
+  }
+
+  private static boolean workOnDifferentFiles(@CheckForNull DefaultSensorDescriptor first, @CheckForNull DefaultSensorDescriptor second) {
+    if (first == null || second == null) {
+      // concurrent sensor of the deprecated API, which does not work on files
+      return true;
+    }
+    // a sensor without declared languages can work on any file
+    return !first.languages().isEmpty() && !second.languages().isEmpty()
+      && Collections.disjoint(first.languages(), second.languages());
+  }
+
+  @CheckForNull
+  private static DefaultSensorDescriptor describe(Sensor sensor) {
+    if (sensor instanceof SensorWrapper) {
+      DefaultSensorDescriptor descriptor = new DefaultSensorDescriptor();
+      ((SensorWrapper) sensor).wrappedSensor().describe(descriptor);
+      return descriptor;
+    }
+    return null;
+  }
+
+  /**
+   * Executes all the sensors and returns once they are all done. The first failure is propagated and
+   * prevents the remaining sensors from being started.
+   */
+  void execute(ExecutorService executor, final SensorTask task) {
+    CompletionService<Sensor> completionService = new ExecutorCompletionService<Sensor>(executor);
+    Set<Sensor> started = Sets.newIdentityHashSet();
+    Set<Sensor> done = Sets.newIdentityHashSet();
+    int running = 0;
+    while (done.size() < sensors.size()) {
+      for (final Sensor sensor : sensors) {
+        if (!started.contains(sensor) && done.containsAll(predecessors.get(sensor))) {
+          started.add(sensor);
+          running++;
+          completionService.submit(new Callable<Sensor>() {
+            @Override
+            public Sensor call() {
+              task.execute(sensor);
+              return sensor;
+            }
+          });
+        }
+      }
+      if (running == 0) {
+        throw new IllegalStateException("Sensors can not be scheduled: " + notStarted(started));
+      }
+      done.add(waitForNext(completionService));
+      running--;
+    }
+  }
+
+  private Collection<Sensor> notStarted(Set<Sensor> started) {
+    List<Sensor> result = Lists.newArrayList();
+    for (Sensor sensor : sensors) {
+      if (!started.contains(sensor)) {
+        result.add(sensor);
+      }
+    }
+    return result;
+  }
+
+  private static Sensor waitForNext(CompletionService<Sensor> completionService) {
+    try {
+      Future<Sensor> future = completionService.take();
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Sensors execution was interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException("Fail to execute sensor", cause);
+    }
+  }
+}
@@ -140,7 +140,10 @@ public class PhasesSumUpTimeProfiler implements ProjectAnalysisHandler, SensorEx
     }
   }
 
-  public void onSensorExecution(SensorExecutionEvent event) {
+  /**
+   * Sensors may be executed concurrently, each of them being profiled separately.
+   */
+  public synchronized void onSensorExecution(SensorExecutionEvent event) {
     PhaseProfiling profiling = currentModuleProfiling.getProfilingPerPhase(Phases.Phase.SENSOR);
     if (event.isStart()) {
       profiling.newItemProfiling(event.getSensor());
@@ -166,7 +169,7 @@ public class PhasesSumUpTimeProfiler implements ProjectAnalysisHandler, SensorEx
     }
   }
 
-  public void onDecoratorExecution(DecoratorExecutionEvent event) {
+  public synchronized void onDecoratorExecution(DecoratorExecutionEvent event) {
     PhaseProfiling profiling = currentModuleProfiling.getProfilingPerPhase(Phases.Phase.DECORATOR);
     if (event.isStart()) {
       if (profiling.getProfilingPerItem(event.getDecorator()) == null) {
@@ -244,21 +247,33 @@ public class PhasesSumUpTimeProfiler implements ProjectAnalysisHandler, SensorEx
     }
   }
 
+  /**
+   * Decorators can be executed concurrently on different resources, so the decorator being executed
+   * is tracked per thread.
+   */
   class DecoratorsProfiler {
     private List<Decorator> decorators = Lists.newArrayList();
     private Map<Decorator, Long> durations = new IdentityHashMap<Decorator, Long>();
-    private long startTime;
-    private Decorator currentDecorator;
+    private final ThreadLocal<Long> startTime = new ThreadLocal<Long>();
+    private final ThreadLocal<Decorator> currentDecorator = new ThreadLocal<Decorator>();
 
     DecoratorsProfiler() {
     }
 
     void start(Decorator decorator) {
-      this.startTime = system.now();
-      this.currentDecorator = decorator;
+      this.startTime.set(system.now());
+      this.currentDecorator.set(decorator);
     }
 
     void stop() {
+      Decorator decorator = currentDecorator.get();
+      long duration = system.now() - startTime.get();
+      synchronized (this) {
+        addDuration(decorator, duration);
+      }
+    }
+
+    private void addDuration(Decorator currentDecorator, long duration) {
       final Long cumulatedDuration;
       if (durations.containsKey(currentDecorator)) {
         cumulatedDuration = durations.get(currentDecorator);
@@ -266,7 +281,7 @@ public class PhasesSumUpTimeProfiler implements ProjectAnalysisHandler, SensorEx
         decorators.add(currentDecorator);
         cumulatedDuration = 0L;
       }
-      durations.put(currentDecorator, cumulatedDuration + (system.now() - startTime));
+      durations.put(currentDecorator, cumulatedDuration + duration);
     }
 
     public Map<Decorator, Long> getDurations() {
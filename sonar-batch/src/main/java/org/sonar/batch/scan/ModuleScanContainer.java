@@ -148,6 +148,7 @@ public class ModuleScanContainer extends ComponentContainer {
       // issues
       IssuableFactory.class,
       ModuleIssues.class,
+      ModuleTaskContext.class,
 
       // issue exclusions
       IssueInclusionPatternInitializer.class,
@@ -190,8 +191,11 @@ public class ModuleScanContainer extends ComponentContainer {
     DefaultIndex index = getComponentByType(DefaultIndex.class);
     index.setCurrentProject(module,
       getComponentByType(ModuleIssues.class));
-
-    getComponentByType(PhaseExecutor.class).execute(module);
+    try {
+      getComponentByType(PhaseExecutor.class).execute(module);
+    } finally {
+      index.clearCurrentProject();
+    }
   }
 
 }
@@ -0,0 +1,86 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan;
+
+import org.sonar.api.BatchComponent;
+import org.sonar.api.resources.Project;
+import org.sonar.batch.bootstrap.BatchDatabaseSession;
+import org.sonar.batch.index.Caches;
+import org.sonar.batch.index.DefaultIndex;
+import org.sonar.batch.issue.ModuleIssues;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Prepares the tasks that the analysis of a module submits to worker threads. While the task runs, the worker
+ * thread is attached to the module, so that {@link DefaultIndex} resolves resources, issues and links against it.
+ * Once the task is done, the resources acquired by the worker thread are released.
+ *
+ * @since 4.5.4
+ */
+public class ModuleTaskContext implements BatchComponent {
+
+  private final Project module;
+  private final ModuleIssues moduleIssues;
+  private final DefaultIndex index;
+  private final BatchDatabaseSession session;
+  private final Caches caches;
+
+  public ModuleTaskContext(Project module, ModuleIssues moduleIssues, DefaultIndex index, BatchDatabaseSession session, Caches caches) {
+    this.module = module;
+    this.moduleIssues = moduleIssues;
+    this.index = index;
+    this.session = session;
+    this.caches = caches;
+  }
+
+  /**
+   * Attaches the current worker thread to the module. Must never be called by the thread analyzing the module.
+   */
+  public void attach() {
+    index.setCurrentProject(module, moduleIssues);
+  }
+
+  /**
+   * Detaches the current worker thread from the module and releases what it acquired during the task.
+   */
+  public void detach() {
+    index.clearCurrentProject();
+    session.closeThreadSession();
+    caches.releaseExchanges();
+  }
+
+  /**
+   * The returned task must be executed by a worker thread, see {@link #attach()}.
+   */
+  public <T> Callable<T> wrap(final Callable<T> task) {
+    return new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        attach();
+        try {
+          return task.call();
+        } finally {
+          detach();
+        }
+      }
+    };
+  }
+}
@@ -20,6 +20,9 @@
 package org.sonar.batch.scan;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.InstantiationStrategy;
@@ -35,6 +38,7 @@ import org.sonar.batch.DefaultFileLinesContextFactory;
 import org.sonar.batch.DefaultResourceCreationLock;
 import org.sonar.batch.ProjectConfigurator;
 import org.sonar.batch.ProjectTree;
+import org.sonar.batch.bootstrap.BatchDatabaseSession;
 import org.sonar.batch.bootstrap.ExtensionInstaller;
 import org.sonar.batch.bootstrap.ExtensionMatcher;
 import org.sonar.batch.bootstrap.ExtensionUtils;
@@ -88,7 +92,27 @@ import org.sonar.core.test.TestableBuilder;
 import org.sonar.core.test.TestablePerspectiveLoader;
 import org.sonar.core.user.DefaultUserFinder;
 
+import javax.annotation.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public class ProjectScanContainer extends ComponentContainer {
+
+  /**
+   * Number of threads used to analyze the modules of a multi-module project. Sibling modules
+   * are analyzed concurrently, a module being analyzed only once all its sub-modules are done.
+   * Each module thread has its own database session.
+   * Experimental : the extensions executed on modules must be thread-safe.
+   */
+  static final String MODULE_THREADS_PROPERTY = "sonar.batch.modules.threads";
+
   public ProjectScanContainer(ComponentContainer taskContainer) {
     super(taskContainer);
   }
@@ -218,7 +242,12 @@ public class ProjectScanContainer extends ComponentContainer {
   @Override
   protected void doAfterStart() {
     ProjectTree tree = getComponentByType(ProjectTree.class);
-    scanRecursively(tree.getRootProject());
+    int threads = getComponentByType(Settings.class).getInt(MODULE_THREADS_PROPERTY);
+    if (threads > 1 && !tree.getRootProject().getModules().isEmpty()) {
+      scanConcurrently(tree.getRootProject(), threads);
+    } else {
+      scanRecursively(tree.getRootProject());
+    }
   }
 
   private void scanRecursively(Project module) {
@@ -228,6 +257,87 @@ public class ProjectScanContainer extends ComponentContainer {
     scan(module);
   }
 
+  /**
+   * Modules without sub-modules are submitted first. A parent module is submitted as soon as the
+   * last of its sub-modules has been analyzed, so that aggregations are computed on complete data.
+   */
+  @VisibleForTesting
+  void scanConcurrently(Project root, int threads) {
+    Map<Project, Integer> pendingModulesByParent = Maps.newHashMap();
+    List<Project> leaves = Lists.newArrayList();
+    collectModules(root, pendingModulesByParent, leaves);
+
+    // each module thread works with its own database session, which must see the modules indexed so far
+    BatchDatabaseSession session = getComponentByType(BatchDatabaseSession.class);
+    if (session != null) {
+      session.commit();
+    }
+    Caches caches = getComponentByType(Caches.class);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CompletionService<Project> completionService = new ExecutorCompletionService<Project>(executor);
+    try {
+      int running = 0;
+      for (Project leaf : leaves) {
+        submit(completionService, leaf, session, caches);
+        running++;
+      }
+      while (running > 0) {
+        Project done = completionService.take().get();
+        running--;
+        Project parent = done.getParent();
+        if (parent != null) {
+          int pending = pendingModulesByParent.get(parent) - 1;
+          pendingModulesByParent.put(parent, pending);
+          if (pending == 0) {
+            submit(completionService, parent, session, caches);
+            running++;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException("Analysis of modules has been interrupted", e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new SonarException("Fail to analyze modules", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void collectModules(Project module, Map<Project, Integer> pendingModulesByParent, List<Project> leaves) {
+    List<Project> subModules = module.getModules();
+    if (subModules.isEmpty()) {
+      leaves.add(module);
+    } else {
+      pendingModulesByParent.put(module, subModules.size());
+      for (Project subModule : subModules) {
+        collectModules(subModule, pendingModulesByParent, leaves);
+      }
+    }
+  }
+
+  private void submit(CompletionService<Project> completionService, final Project module, @Nullable final BatchDatabaseSession session,
+    @Nullable final Caches caches) {
+    completionService.submit(new Callable<Project>() {
+      @Override
+      public Project call() {
+        try {
+          scan(module);
+        } finally {
+          if (session != null) {
+            session.closeThreadSession();
+          }
+          if (caches != null) {
+            caches.releaseExchanges();
+          }
+        }
+        return module;
+      }
+    });
+  }
+
   @VisibleForTesting
   void scan(Project module) {
     new ModuleScanContainer(this, module).execute();
@@ -35,6 +35,7 @@ import org.sonar.api.batch.fs.internal.DefaultInputDir;
 import org.sonar.api.batch.fs.internal.DeprecatedDefaultInputFile;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.utils.MessageException;
+import org.sonar.batch.index.Caches;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -63,14 +64,16 @@ public class FileIndexer implements BatchComponent {
   private final boolean isAggregator;
   private final ExclusionFilters exclusionFilters;
   private final InputFileBuilderFactory inputFileBuilderFactory;
+  private final Caches caches;
 
   public FileIndexer(List<InputFileFilter> filters, ExclusionFilters exclusionFilters, InputFileBuilderFactory inputFileBuilderFactory,
-    InputPathCache cache, ProjectDefinition def) {
-    this(filters, exclusionFilters, inputFileBuilderFactory, cache, !def.getSubProjects().isEmpty());
+    InputPathCache cache, ProjectDefinition def, Caches caches) {
+    this(filters, exclusionFilters, inputFileBuilderFactory, cache, !def.getSubProjects().isEmpty(), caches);
   }
 
   private FileIndexer(List<InputFileFilter> filters, ExclusionFilters exclusionFilters, InputFileBuilderFactory inputFileBuilderFactory,
-    InputPathCache cache, boolean isAggregator) {
+    InputPathCache cache, boolean isAggregator, Caches caches) {
+    this.caches = caches;
     this.filters = filters;
     this.exclusionFilters = exclusionFilters;
     this.inputFileBuilderFactory = inputFileBuilderFactory;
@@ -86,21 +89,15 @@ public class FileIndexer implements BatchComponent {
     LOG.info("Index files");
     exclusionFilters.prepare();
 
-    Progress progress = new Progress(fileCache.filesByModule(fileSystem.moduleKey()), fileCache.dirsByModule(fileSystem.moduleKey()));
+    Progress progress = new Progress(fileSystem, fileCache.filesByModule(fileSystem.moduleKey()), fileCache.dirsByModule(fileSystem.moduleKey()));
 
     InputFileBuilder inputFileBuilder = inputFileBuilderFactory.create(fileSystem);
     indexFiles(fileSystem, progress, inputFileBuilder, fileSystem.sources(), InputFile.Type.MAIN);
     indexFiles(fileSystem, progress, inputFileBuilder, fileSystem.tests(), InputFile.Type.TEST);
 
+    // FS is populated by indexing tasks as soon as files are completed
     indexAllConcurrently(progress);
-
-    // Populate FS in a synchronous way because PersistIt Exchange is not concurrent
-    for (InputFile indexed : progress.indexed) {
-      fileSystem.add(indexed);
-    }
-    for (InputDir indexed : progress.indexedDir) {
-      fileSystem.add(indexed);
-    }
+    inputFileBuilder.fileMetadataIndex().save();
 
     // Remove paths that have been removed since previous indexation
     for (InputFile removed : progress.removed) {
@@ -115,9 +112,13 @@ public class FileIndexer implements BatchComponent {
   }
 
   private void indexAllConcurrently(Progress progress) {
+    List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(progress.indexingTasks.size());
+    for (Callable<Void> task : progress.indexingTasks) {
+      tasks.add(releasingExchanges(task));
+    }
     ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() + 1);
     try {
-      List<Future<Void>> all = executor.invokeAll(progress.indexingTasks);
+      List<Future<Void>> all = executor.invokeAll(tasks);
       for (Future<Void> future : all) {
         future.get();
       }
@@ -130,8 +131,25 @@ public class FileIndexer implements BatchComponent {
       } else {
         throw new IllegalStateException("Error during file indexing", e);
       }
+    } finally {
+      executor.shutdown();
     }
-    executor.shutdown();
+  }
+
+  /**
+   * Indexing tasks write to {@link InputPathCache}, so the exchanges of the pool threads must be released
+   */
+  private Callable<Void> releasingExchanges(final Callable<Void> task) {
+    return new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        try {
+          return task.call();
+        } finally {
+          caches.releaseExchanges();
+        }
+      }
+    };
   }
 
   private void indexFiles(DefaultModuleFileSystem fileSystem, Progress progress, InputFileBuilder inputFileBuilder, List<File> sources, InputFile.Type type) {
@@ -194,13 +212,15 @@ public class FileIndexer implements BatchComponent {
   }
 
   private static class Progress {
+    private final DefaultModuleFileSystem fileSystem;
     private final Set<InputFile> removed;
     private final Set<InputDir> removedDir;
     private final Set<InputFile> indexed;
     private final Set<InputDir> indexedDir;
     private final List<Callable<Void>> indexingTasks;
 
-    Progress(Iterable<InputFile> removed, Iterable<InputDir> removedDir) {
+    Progress(DefaultModuleFileSystem fileSystem, Iterable<InputFile> removed, Iterable<InputDir> removedDir) {
+      this.fileSystem = fileSystem;
       this.removed = Sets.newHashSet(removed);
       this.removedDir = Sets.newHashSet(removedDir);
       this.indexed = new HashSet<InputFile>();
@@ -219,11 +239,15 @@ public class FileIndexer implements BatchComponent {
       }
       removed.remove(inputFile);
       indexed.add(inputFile);
+      // cache is thread-safe but the list of languages of the file system is not
+      fileSystem.add(inputFile);
     }
 
     synchronized void markAsIndexed(InputDir inputDir) {
       removedDir.remove(inputDir);
-      indexedDir.add(inputDir);
+      if (indexedDir.add(inputDir)) {
+        fileSystem.add(inputDir);
+      }
     }
 
     int count() {
@@ -23,7 +23,6 @@ import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -40,6 +39,7 @@ class FileMetadata {
 
   private static final char LINE_FEED = '\n';
   private static final char CARRIAGE_RETURN = '\r';
+  private static final int BUFFER_SIZE = 16 * 1024;
 
   // This singleton aims only to increase the coverage by allowing
   // to test the private method !
@@ -50,7 +50,11 @@ class FileMetadata {
 
   /**
    * Compute hash of a file ignoring line ends differences.
-   * Maximum performance is needed.
+   * Maximum performance is needed, so characters are decoded and digested by chunks of {@link #BUFFER_SIZE}
+   * without any allocation per character.
+   * <p/>
+   * The hash is the MD5 digest of the UTF-16BE representation of the file content, in which each
+   * end of line is replaced by a single line feed.
    */
   Metadata read(File file, Charset encoding) {
     Reader reader = null;
@@ -59,28 +63,35 @@ class FileMetadata {
     try {
       MessageDigest md5Digest = DigestUtils.getMd5Digest();
       md5Digest.reset();
-      reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), encoding));
-      int i = reader.read();
+      reader = new InputStreamReader(new FileInputStream(file), encoding);
+      char[] chars = new char[BUFFER_SIZE];
+      byte[] bytes = new byte[BUFFER_SIZE << 1];
       boolean afterCR = false;
-      while (i != -1) {
-        c = (char) i;
-        if (afterCR) {
-          afterCR = false;
+      int read = reader.read(chars, 0, BUFFER_SIZE);
+      while (read != -1) {
+        int length = 0;
+        for (int i = 0; i < read; i++) {
+          c = chars[i];
+          if (afterCR) {
+            afterCR = false;
+            if (c == LINE_FEED) {
+              // Ignore
+              continue;
+            }
+          }
+          if (c == CARRIAGE_RETURN) {
+            afterCR = true;
+            c = LINE_FEED;
+          }
           if (c == LINE_FEED) {
-            // Ignore
-            i = reader.read();
-            continue;
+            lines++;
           }
+          bytes[length] = (byte) (c >> 8);
+          bytes[length + 1] = (byte) c;
+          length += 2;
         }
-        if (c == CARRIAGE_RETURN) {
-          afterCR = true;
-          c = LINE_FEED;
-        }
-        if (c == LINE_FEED) {
-          lines++;
-        }
-        md5Digest.update(charToBytesUTF(c));
-        i = reader.read();
+        md5Digest.update(bytes, 0, length);
+        read = reader.read(chars, 0, BUFFER_SIZE);
       }
       if (c != (char) -1) {
         lines++;
@@ -95,22 +106,11 @@ class FileMetadata {
     }
   }
 
-  private byte[] charToBytesUTF(char c) {
-    char[] buffer = new char[] {c};
-    byte[] b = new byte[buffer.length << 1];
-    for (int i = 0; i < buffer.length; i++) {
-      int bpos = i << 1;
-      b[bpos] = (byte) ((buffer[i] & 0xFF00) >> 8);
-      b[bpos + 1] = (byte) (buffer[i] & 0x00FF);
-    }
-    return b;
-  }
-
   static class Metadata {
     int lines;
     String hash;
 
-    private Metadata(int lines, String hash) {
+    Metadata(int lines, String hash) {
       this.lines = lines;
       this.hash = hash;
     }
@@ -0,0 +1,165 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metadata of the files indexed during the previous analysis of a module, persisted in its working directory.
+ * The metadata of a file whose size and last modification date did not change is reused, so that
+ * the file does not have to be read again.
+ * <p/>
+ * The index is discarded if it was written by another version of the format or with another encoding.
+ * Files modified during the two seconds before the index was written are not trusted, because of the
+ * resolution of last modification dates on some file systems (two seconds on FAT).
+ */
+class FileMetadataIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FileMetadataIndex.class);
+
+  static final String FILENAME = "file-metadata.idx";
+  private static final int VERSION = 1;
+  private static final long MODIFICATION_DATE_RESOLUTION = 2000L;
+
+  private final File file;
+  private final Charset encoding;
+  private final Map<String, Entry> previousEntries;
+  private final long previousTimestamp;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+  FileMetadataIndex(File file, Charset encoding) {
+    this.file = file;
+    this.encoding = encoding;
+    Map<String, Entry> loaded = new HashMap<String, Entry>();
+    this.previousTimestamp = load(loaded);
+    this.previousEntries = Collections.unmodifiableMap(loaded);
+  }
+
+  static FileMetadataIndex create(DefaultModuleFileSystem fs) {
+    return new FileMetadataIndex(new File(fs.workDir(), FILENAME), fs.encoding());
+  }
+
+  /**
+   * Returns the metadata of the file, reusing the one of the previous analysis if the file did not change.
+   */
+  FileMetadata.Metadata read(File inputFile, String relativePath) {
+    long size = inputFile.length();
+    long lastModified = inputFile.lastModified();
+    Entry previous = previousEntries.get(relativePath);
+    FileMetadata.Metadata metadata;
+    if (previous != null && previous.size == size && previous.lastModified == lastModified
+      && lastModified + MODIFICATION_DATE_RESOLUTION < previousTimestamp) {
+      metadata = new FileMetadata.Metadata(previous.lines, previous.hash);
+    } else {
+      metadata = FileMetadata.INSTANCE.read(inputFile, encoding);
+    }
+    entries.put(relativePath, new Entry(size, lastModified, metadata.hash, metadata.lines));
+    return metadata;
+  }
+
+  /**
+   * Writes the metadata of all the files read since the index was loaded. Failures are only logged,
+   * as the index is an optimization.
+   */
+  void save() {
+    DataOutputStream output = null;
+    try {
+      FileUtils.forceMkdir(file.getParentFile());
+      output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      output.writeInt(VERSION);
+      output.writeUTF(encoding.name());
+      output.writeLong(System.currentTimeMillis());
+      output.writeInt(entries.size());
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        output.writeUTF(entry.getKey());
+        output.writeLong(entry.getValue().size);
+        output.writeLong(entry.getValue().lastModified);
+        output.writeUTF(entry.getValue().hash);
+        output.writeInt(entry.getValue().lines);
+      }
+    } catch (IOException e) {
+      LOG.warn("Fail to write file metadata index: " + file.getAbsolutePath(), e);
+      IOUtils.closeQuietly(output);
+      FileUtils.deleteQuietly(file);
+    } finally {
+      IOUtils.closeQuietly(output);
+    }
+  }
+
+  /**
+   * @return the date of the previous index, or 0 if there is none
+   */
+  private long load(Map<String, Entry> into) {
+    if (!file.isFile()) {
+      return 0L;
+    }
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (input.readInt() != VERSION || !encoding.name().equals(input.readUTF())) {
+        return 0L;
+      }
+      long timestamp = input.readLong();
+      int count = input.readInt();
+      for (int i = 0; i < count; i++) {
+        String relativePath = input.readUTF();
+        into.put(relativePath, new Entry(input.readLong(), input.readLong(), input.readUTF(), input.readInt()));
+      }
+      return timestamp;
+    } catch (IOException e) {
+      LOG.warn("Fail to read file metadata index, all files will be read: " + file.getAbsolutePath(), e);
+      into.clear();
+      return 0L;
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static class Entry {
+    private final long size;
+    private final long lastModified;
+    private final String hash;
+    private final int lines;
+
+    Entry(long size, long lastModified, String hash, int lines) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.hash = hash;
+      this.lines = lines;
+    }
+  }
+}
@@ -44,15 +44,17 @@ class InputFileBuilder {
   private final StatusDetection statusDetection;
   private final DefaultModuleFileSystem fs;
   private final AnalysisMode analysisMode;
+  private final FileMetadataIndex fileMetadataIndex;
 
   InputFileBuilder(String moduleKey, PathResolver pathResolver, LanguageDetection langDetection,
-    StatusDetection statusDetection, DefaultModuleFileSystem fs, AnalysisMode analysisMode) {
+    StatusDetection statusDetection, DefaultModuleFileSystem fs, AnalysisMode analysisMode, FileMetadataIndex fileMetadataIndex) {
     this.moduleKey = moduleKey;
     this.pathResolver = pathResolver;
     this.langDetection = langDetection;
     this.statusDetection = statusDetection;
     this.fs = fs;
     this.analysisMode = analysisMode;
+    this.fileMetadataIndex = fileMetadataIndex;
   }
 
   String moduleKey() {
@@ -75,6 +77,10 @@ class InputFileBuilder {
     return fs;
   }
 
+  FileMetadataIndex fileMetadataIndex() {
+    return fileMetadataIndex;
+  }
+
   @CheckForNull
   DeprecatedDefaultInputFile create(File file) {
     String relativePath = pathResolver.relativePath(fs.baseDir(), file);
@@ -96,7 +102,7 @@ class InputFileBuilder {
     inputFile.setType(type);
     inputFile.setKey(new StringBuilder().append(moduleKey).append(":").append(inputFile.relativePath()).toString());
     inputFile.setBasedir(fs.baseDir());
-    FileMetadata.Metadata metadata = FileMetadata.INSTANCE.read(inputFile.file(), fs.encoding());
+    FileMetadata.Metadata metadata = fileMetadataIndex.read(inputFile.file(), inputFile.relativePath());
     inputFile.setLines(metadata.lines);
     inputFile.setHash(metadata.hash);
     inputFile.setStatus(statusDetection.status(inputFile.relativePath(), metadata.hash));
@@ -23,14 +23,10 @@ package org.sonar.batch.symbol;
 import com.google.common.collect.SortedSetMultimap;
 import org.sonar.api.batch.sensor.symbol.Symbol;
 import org.sonar.batch.index.Data;
-
-import java.util.Collection;
+import org.sonar.core.source.DecorationDataFormat;
 
 public class SymbolData implements Data {
 
-  private static final String FIELD_SEPARATOR = ",";
-  private static final String SYMBOL_SEPARATOR = ";";
-
   private final SortedSetMultimap<Symbol, Integer> referencesBySymbol;
 
   public SymbolData(SortedSetMultimap<Symbol, Integer> referencesBySymbol) {
@@ -43,21 +39,11 @@ public class SymbolData implements Data {
 
   @Override
   public String writeString() {
-    StringBuilder sb = new StringBuilder();
-
+    DecorationDataFormat.SymbolsWriter writer = new DecorationDataFormat.SymbolsWriter();
     for (Symbol symbol : referencesBySymbol.keySet()) {
-
-      sb.append(symbol.getDeclarationStartOffset())
-        .append(FIELD_SEPARATOR)
-        .append(symbol.getDeclarationEndOffset());
-      Collection<Integer> symbolReferences = referencesBySymbol.get(symbol);
-      for (Integer symbolReference : symbolReferences) {
-        sb.append(FIELD_SEPARATOR).append(symbolReference);
-      }
-      sb.append(SYMBOL_SEPARATOR);
+      writer.add(symbol.getDeclarationStartOffset(), symbol.getDeclarationEndOffset(), referencesBySymbol.get(symbol));
     }
-
-    return sb.toString();
+    return writer.write();
   }
 
 }
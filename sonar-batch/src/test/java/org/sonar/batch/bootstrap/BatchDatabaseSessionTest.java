@@ -0,0 +1,87 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.bootstrap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.jpa.session.DatabaseConnector;
+import org.sonar.jpa.session.JpaDatabaseSession;
+
+import javax.persistence.EntityManager;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BatchDatabaseSessionTest {
+
+  DatabaseConnector connector = mock(DatabaseConnector.class);
+  BatchDatabaseSession session;
+
+  @Before
+  public void setUp() {
+    when(connector.createEntityManager()).thenAnswer(new Answer<EntityManager>() {
+      @Override
+      public EntityManager answer(InvocationOnMock invocation) {
+        EntityManager entityManager = mock(EntityManager.class);
+        when(entityManager.isOpen()).thenReturn(true);
+        return entityManager;
+      }
+    });
+    session = new BatchDatabaseSession(connector);
+  }
+
+  @Test
+  public void each_thread_has_its_own_session() throws Exception {
+    final JpaDatabaseSession mainSession = session.session();
+    assertThat(session.session()).isSameAs(mainSession);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      JpaDatabaseSession workerSession = executor.submit(new Callable<JpaDatabaseSession>() {
+        @Override
+        public JpaDatabaseSession call() {
+          return session.session();
+        }
+      }).get();
+      assertThat(workerSession).isNotSameAs(mainSession);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void close_session_of_current_thread() {
+    EntityManager entityManager = session.getEntityManager();
+    JpaDatabaseSession first = session.session();
+
+    session.closeThreadSession();
+
+    verify(entityManager).close();
+    assertThat(session.session()).isNotSameAs(first);
+  }
+}
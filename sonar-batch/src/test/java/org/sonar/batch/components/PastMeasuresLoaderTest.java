@@ -22,6 +22,8 @@ package org.sonar.batch.components;
 import org.junit.Test;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.Scopes;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
 import java.util.Arrays;
@@ -31,11 +33,14 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.hasItems;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class PastMeasuresLoaderTest extends AbstractDbUnitTestCase {
 
   private static final int PROJECT_SNAPSHOT_ID = 1000;
   private static final String PROJECT_KEY = "project";
+  private static final String PACKAGE_KEY = "project:org.foo";
   private static final String FILE_KEY = "project:org.foo.Bar";
 
   @Test
@@ -86,6 +91,35 @@ public class PastMeasuresLoaderTest extends AbstractDbUnitTestCase {
     assertThat(PastMeasuresLoader.getValue(pastMeasure), is(80.0));
   }
 
+  @Test
+  public void shouldGetPastMeasuresOfWholeTreeInMemory() {
+    setupData("shared");
+
+    List<Metric> metrics = selectMetrics();
+    Snapshot projectSnapshot = getSession().getSingleResult(Snapshot.class, "id", PROJECT_SNAPSHOT_ID);
+    PastSnapshot pastSnapshot = new PastSnapshot("previous_analysis", null, projectSnapshot);
+
+    PastMeasuresLoader loader = new PastMeasuresLoader(getSession(), metrics);
+    List<Object[]> measures = loader.getPastMeasures(mockResource(Scopes.DIRECTORY, PACKAGE_KEY), pastSnapshot);
+    assertThat(measures.size(), is(2));
+    assertThat(PastMeasuresLoader.getMetricId(measures.get(0)), is(1));
+    assertThat(PastMeasuresLoader.getValue(measures.get(0)), is(20.0));
+    assertThat(PastMeasuresLoader.getMetricId(measures.get(1)), is(2));
+    assertThat(PastMeasuresLoader.getValue(measures.get(1)), is(70.0));
+
+    measures = loader.getPastMeasures(mockResource(Scopes.PROJECT, PROJECT_KEY), pastSnapshot);
+    assertThat(measures.size(), is(2));
+    assertThat(PastMeasuresLoader.getCharacteristicId(measures.get(0)), nullValue());
+    assertThat(PastMeasuresLoader.getPersonId(measures.get(0)), nullValue());
+    assertThat(PastMeasuresLoader.getRuleId(measures.get(0)), nullValue());
+    assertThat(PastMeasuresLoader.getValue(measures.get(0)), is(60.0));
+    assertThat(PastMeasuresLoader.getValue(measures.get(1)), is(80.0));
+
+    loader.releaseTreePastMeasures();
+    measures = loader.getPastMeasures(mockResource(Scopes.PROJECT, PROJECT_KEY), pastSnapshot);
+    assertThat(measures.size(), is(2));
+  }
+
   @Test
   public void shouldKeepOnlyNumericalMetrics() {
     Metric ncloc = new Metric("ncloc", Metric.ValueType.INT);
@@ -102,6 +136,13 @@ public class PastMeasuresLoaderTest extends AbstractDbUnitTestCase {
     assertThat(loader.getMetrics(), hasItems(ncloc, complexity));
   }
 
+  private static Resource mockResource(String scope, String key) {
+    Resource resource = mock(Resource.class);
+    when(resource.getScope()).thenReturn(scope);
+    when(resource.getEffectiveKey()).thenReturn(key);
+    return resource;
+  }
+
   private List<Metric> selectMetrics() {
     return getSession().getResults(Metric.class);
   }
@@ -21,6 +21,7 @@ package org.sonar.batch.highlighting;
 
 import com.google.common.collect.Lists;
 import org.junit.Test;
+import org.sonar.core.source.DecorationDataFormat;
 
 import java.util.List;
 
@@ -44,6 +45,17 @@ public class SyntaxHighlightingDataTest {
       );
 
     String serializedRules = new SyntaxHighlightingData(orderedHighlightingRules).writeString();
-    assertThat(serializedRules).isEqualTo("0,10,cd;10,12,k;12,20,cd;24,38,k;24,65,cppd;42,50,k;");
+    assertThat(readRules(serializedRules)).containsExactly("0,10,cd", "10,12,k", "12,20,cd", "24,38,k", "24,65,cppd", "42,50,k");
+  }
+
+  private static List<String> readRules(String data) {
+    final List<String> rules = Lists.newArrayList();
+    DecorationDataFormat.readSyntaxHighlighting(data, new DecorationDataFormat.SyntaxHighlightingHandler() {
+      @Override
+      public void onRule(int startOffset, int endOffset, String cssClass) {
+        rules.add(startOffset + "," + endOffset + "," + cssClass);
+      }
+    });
+    return rules;
   }
 }
@@ -20,6 +20,7 @@
 package org.sonar.batch.index;
 
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -27,6 +28,12 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.batch.index.Cache.Entry;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class CacheTest {
@@ -267,4 +274,32 @@ public class CacheTest {
     cache.clear("foo", "bar", "baz");
     cache.clear();
   }
+
+  @Test
+  public void concurrent_access() throws Exception {
+    final Cache<String> cache = caches.createCache("concurrent");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Callable<Void>> tasks = Lists.newArrayList();
+    for (int thread = 0; thread < 4; thread++) {
+      final String threadKey = "thread" + thread;
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int i = 0; i < 500; i++) {
+            cache.put(threadKey, i, "value" + i);
+            assertThat(cache.get(threadKey, i)).isEqualTo("value" + i);
+          }
+          return null;
+        }
+      });
+    }
+    for (Future<Void> future : executor.invokeAll(tasks)) {
+      future.get();
+    }
+    executor.shutdown();
+
+    assertThat(cache.keySet()).containsOnly("thread0", "thread1", "thread2", "thread3");
+    assertThat(cache.keySet("thread2")).hasSize(500);
+    assertThat(cache.values()).hasSize(2000);
+  }
 }
@@ -32,6 +32,9 @@ import org.sonar.batch.bootstrap.TempFolderProvider;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.fest.assertions.Fail.fail;
@@ -95,6 +98,30 @@ public class CachesTest {
     }
   }
 
+  @Test
+  public void worker_thread_releases_its_exchanges() throws Exception {
+    final Cache<String> cache = caches.createCache("foo");
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() {
+          cache.put("first", "1");
+          caches.releaseExchanges();
+          // a new exchange is created on demand
+          cache.put("second", "2");
+          caches.releaseExchanges();
+          return null;
+        }
+      }).get();
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(cache.get("first")).isEqualTo("1");
+    assertThat(cache.get("second")).isEqualTo("2");
+  }
+
   static class Element implements Serializable {
 
   }
@@ -40,15 +40,21 @@ import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.Violation;
 import org.sonar.api.violations.ViolationQuery;
 import org.sonar.batch.ProjectTree;
+import org.sonar.batch.bootstrap.BatchDatabaseSession;
 import org.sonar.batch.issue.DeprecatedViolations;
 import org.sonar.batch.issue.ModuleIssues;
+import org.sonar.batch.scan.ModuleTaskContext;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.core.component.ScanGraph;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -241,6 +247,51 @@ public class DefaultIndexTest {
     assertThat(index.getViolations(ViolationQuery.create().forResource(file).setSwitchMode(ViolationQuery.SwitchMode.ON))).hasSize(1);
   }
 
+  @Test
+  public void fail_to_add_violation_when_thread_does_not_analyze_a_module() {
+    File file = File.create("src/org/foo/Bar.java", "org/foo/Bar.java", null, false);
+    index.index(file);
+    index.clearCurrentProject();
+
+    try {
+      index.addViolation(Violation.create(rule, file));
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).startsWith("Violations can only be added during the analysis of a module");
+    }
+  }
+
+  @Test
+  public void worker_thread_indexes_resources_of_the_module_it_is_attached_to() throws Exception {
+    ModuleTaskContext taskContext = new ModuleTaskContext(moduleA, mock(ModuleIssues.class), index, mock(BatchDatabaseSession.class), mock(Caches.class));
+    final File file = File.create("src/org/foo/Bar.java", "org/foo/Bar.java", null, false);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Project workerProject = executor.submit(taskContext.wrap(new Callable<Project>() {
+        @Override
+        public Project call() {
+          index.index(file);
+          return index.getProject();
+        }
+      })).get();
+      assertThat(workerProject).isSameAs(moduleA);
+
+      // the worker thread is detached once the task is done
+      assertThat(executor.submit(new Callable<Project>() {
+        @Override
+        public Project call() {
+          return index.getProject();
+        }
+      }).get()).isSameAs(project);
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(file.getEffectiveKey()).isEqualTo("moduleA:src/org/foo/Bar.java");
+    assertThat(index.getParent(index.getParent(file))).isSameAs(moduleA);
+  }
+
   @Test
   public void shouldComputePathOfIndexedModules() {
     assertThat(index.getResource(project).getPath()).isNull();
@@ -39,6 +39,7 @@ import static org.fest.assertions.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -156,13 +157,47 @@ public class DefaultResourcePersisterTest extends AbstractDbUnitTestCase {
     persister.saveProject(moduleA, multiModuleProject);
     persister.saveResource(moduleA, new Directory("org/foo").setEffectiveKey("a:org/foo"));
     persister.saveResource(moduleA, new File("org/foo/MyClass.java").setEffectiveKey("a:org/foo/MyClass.java"));
-    persister.clear();
+    persister.clear(moduleA);
 
     assertThat(persister.getSnapshotsByResource().size(), is(2));
     assertThat(persister.getSnapshotsByResource().get(multiModuleProject), notNullValue());
     assertThat(persister.getSnapshotsByResource().get(moduleA), notNullValue());
   }
 
+  @Test
+  public void shouldKeepResourcesOfOtherModulesOnClear() {
+    setupData("shared");
+
+    DefaultResourcePersister persister = new DefaultResourcePersister(getSession(), mock(ResourcePermissions.class), snapshotCache, resourceCache);
+    persister.saveProject(multiModuleProject, null);
+    persister.saveProject(moduleA, multiModuleProject);
+    persister.saveProject(moduleB, multiModuleProject);
+    Directory directoryOfA = new Directory("org/foo");
+    directoryOfA.setEffectiveKey("a:org/foo");
+    Directory directoryOfB = new Directory("org/bar");
+    directoryOfB.setEffectiveKey("b:org/bar");
+    persister.saveResource(moduleA, directoryOfA);
+    persister.saveResource(moduleB, directoryOfB);
+    persister.clear(moduleA);
+
+    assertThat(persister.getSnapshotsByResource().size(), is(4));
+    assertThat(persister.getSnapshotsByResource().get(directoryOfA), nullValue());
+    assertThat(persister.getSnapshotsByResource().get(directoryOfB), notNullValue());
+  }
+
+  @Test
+  public void shouldNotDuplicateResourceSavedAgainAfterClear() {
+    setupData("shared");
+
+    DefaultResourcePersister persister = new DefaultResourcePersister(getSession(), mock(ResourcePermissions.class), snapshotCache, resourceCache);
+    persister.saveProject(singleProject, null);
+    persister.saveResource(singleProject, Directory.create("src/main/java/org/foo", "org.foo").setEffectiveKey("foo:src/main/java/org/foo"));
+    persister.clear(singleProject);
+    persister.saveResource(singleProject, Directory.create("src/main/java/org/foo", "org.foo").setEffectiveKey("foo:src/main/java/org/foo"));
+
+    assertThat(getSession().getResults(ResourceModel.class, "key", "foo:src/main/java/org/foo")).hasSize(1);
+  }
+
   @Test
   public void shouldUpdateExistingResource() {
     setupData("shouldUpdateExistingResource");
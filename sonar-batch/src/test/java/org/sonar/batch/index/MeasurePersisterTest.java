@@ -23,6 +23,7 @@ import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.Settings;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
@@ -42,6 +43,8 @@ import java.util.Arrays;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class MeasurePersisterTest extends AbstractDaoTestCase {
@@ -77,7 +80,7 @@ public class MeasurePersisterTest extends AbstractDaoTestCase {
     when(resourceCache.get("foo:org/foo/Bar.java")).thenReturn(aFile);
     when(resourceCache.get("foo:org/foo")).thenReturn(aDirectory);
 
-    measurePersister = new MeasurePersister(getMyBatis(), ruleFinder, measureCache, snapshotCache, resourceCache);
+    measurePersister = new MeasurePersister(getMyBatis(), ruleFinder, measureCache, snapshotCache, resourceCache, new Settings());
   }
 
   @Test
@@ -119,6 +122,24 @@ public class MeasurePersisterTest extends AbstractDaoTestCase {
     checkTables("shouldInsertRuleMeasure", "project_measures");
   }
 
+  @Test
+  public void should_load_rule_only_once() {
+    setupData("empty");
+
+    Rule rule = Rule.create("pmd", "key");
+    when(ruleFinder.findByKey(rule.ruleKey())).thenReturn(rule);
+
+    Measure measure = new RuleMeasure(ncloc(), rule, RulePriority.MAJOR, 1).setValue(1234.0);
+    Measure other = new RuleMeasure(ncloc(), rule, RulePriority.MAJOR, 1).setValue(12.0);
+    when(measureCache.entries()).thenReturn(Arrays.asList(
+      new Cache.Entry<Measure>(new String[] {"foo", "ncloc"}, measure),
+      new Cache.Entry<Measure>(new String[] {"foo:org/foo", "ncloc"}, other)));
+
+    measurePersister.persist();
+
+    verify(ruleFinder, times(1)).findByKey(rule.ruleKey());
+  }
+
   @Test
   public void should_insert_measure_with_text_data() {
     setupData("empty");
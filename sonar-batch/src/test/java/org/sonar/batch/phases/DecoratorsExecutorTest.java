@@ -19,27 +19,47 @@
  */
 package org.sonar.batch.phases;
 
+import com.google.common.collect.Lists;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.BatchExtensionDictionnary;
+import org.sonar.api.batch.ConcurrentExecution;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MetricFinder;
+import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.utils.SonarException;
 import org.sonar.batch.DefaultDecoratorContext;
+import org.sonar.batch.bootstrap.BatchDatabaseSession;
 import org.sonar.batch.duplication.DuplicationCache;
 import org.sonar.batch.events.EventBus;
+import org.sonar.batch.index.Caches;
+import org.sonar.batch.index.DefaultIndex;
+import org.sonar.batch.issue.ModuleIssues;
+import org.sonar.batch.scan.ModuleTaskContext;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.core.measure.MeasurementFilters;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static org.fest.assertions.Assertions.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class DecoratorsExecutorTest {
 
@@ -67,7 +87,8 @@ public class DecoratorsExecutorTest {
     doThrow(new SonarException()).when(decorator).decorate(any(Resource.class), any(DecoratorContext.class));
 
     DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), new Project("key"), mock(SonarIndex.class),
-      mock(EventBus.class), mock(MeasurementFilters.class), mock(MeasureCache.class), mock(MetricFinder.class), mock(DuplicationCache.class));
+      mock(EventBus.class), mock(MeasurementFilters.class), mock(MeasureCache.class), mock(MetricFinder.class), mock(DuplicationCache.class), new Settings(),
+      mock(ModuleTaskContext.class));
     try {
       executor.executeDecorator(decorator, mock(DefaultDecoratorContext.class), File.create("src/org/foo/Bar.java", "org/foo/Bar.java", null, false));
       fail("Exception has not been thrown");
@@ -77,6 +98,67 @@ public class DecoratorsExecutorTest {
     }
   }
 
+  @Test
+  public void decorate_subtrees_in_parallel() {
+    Project project = new Project("key");
+    Directory dir1 = Directory.create("src/dir1");
+    Directory dir2 = Directory.create("src/dir2");
+    File file1 = File.create("src/dir1/Foo.java");
+    File file2 = File.create("src/dir2/Bar.java");
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(project)).thenReturn(Arrays.<Resource>asList(dir1, dir2));
+    when(index.getChildren(dir1)).thenReturn(Arrays.<Resource>asList(file1));
+    when(index.getChildren(dir2)).thenReturn(Arrays.<Resource>asList(file2));
+    MeasureCache measureCache = mock(MeasureCache.class);
+    when(measureCache.byResource(any(Resource.class))).thenReturn(Collections.<Measure>emptyList());
+
+    ConcurrentDecorator decorator = new ConcurrentDecorator();
+    BatchExtensionDictionnary dictionnary = mock(BatchExtensionDictionnary.class);
+    when(dictionnary.select(Decorator.class, project, false)).thenReturn(Arrays.<Decorator>asList(decorator));
+    when(dictionnary.sort(anyCollection())).thenAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) {
+        return invocation.getArguments()[0];
+      }
+    });
+
+    Settings settings = new Settings().setProperty(DecoratorsExecutor.THREADS_PROPERTY, 2);
+    ModuleIssues moduleIssues = mock(ModuleIssues.class);
+    DefaultIndex defaultIndex = mock(DefaultIndex.class);
+    BatchDatabaseSession session = mock(BatchDatabaseSession.class);
+    Caches caches = mock(Caches.class);
+    DecoratorsExecutor executor = new DecoratorsExecutor(dictionnary, project, index,
+      mock(EventBus.class), mock(MeasurementFilters.class), measureCache, mock(MetricFinder.class), mock(DuplicationCache.class), settings,
+      new ModuleTaskContext(project, moduleIssues, defaultIndex, session, caches));
+    executor.execute();
+
+    // each subtree is decorated by a worker thread attached to the module
+    verify(defaultIndex, times(2)).setCurrentProject(project, moduleIssues);
+    verify(defaultIndex, times(2)).clearCurrentProject();
+    verify(session, times(2)).closeThreadSession();
+    verify(caches, times(2)).releaseExchanges();
+
+    assertThat(decorator.decorated).hasSize(5);
+    assertThat(decorator.decorated.subList(0, 4)).containsOnly(dir1, dir2, file1, file2);
+    // parent is decorated after children
+    assertThat(decorator.decorated.get(4)).isEqualTo(project);
+    assertThat(decorator.decorated.indexOf(file1)).isLessThan(decorator.decorated.indexOf(dir1));
+    assertThat(decorator.decorated.indexOf(file2)).isLessThan(decorator.decorated.indexOf(dir2));
+  }
+
+  @ConcurrentExecution
+  static class ConcurrentDecorator implements Decorator {
+    final List<Resource> decorated = Collections.synchronizedList(Lists.<Resource>newArrayList());
+
+    public void decorate(Resource resource, DecoratorContext context) {
+      decorated.add(resource);
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
   static class Decorator1 implements Decorator {
     public void decorate(Resource resource, DecoratorContext context) {
     }
@@ -0,0 +1,199 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.phases;
+
+import org.junit.Test;
+import org.sonar.api.batch.ConcurrentExecution;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.platform.ComponentContainer;
+import org.sonar.api.resources.Project;
+import org.sonar.batch.bootstrap.BatchExtensionDictionnary;
+import org.sonar.batch.scan.SensorWrapper;
+import org.sonar.batch.scan2.AnalyzerOptimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+import static org.mockito.Mockito.mock;
+
+public class SensorsSchedulerTest {
+
+  BatchExtensionDictionnary dictionnary = new BatchExtensionDictionnary(new ComponentContainer(), mock(SensorContext.class), mock(AnalyzerOptimizer.class));
+
+  @Test
+  public void sensors_on_different_languages_are_not_ordered() {
+    Sensor java = wrap(new ConcurrentSensor("java"));
+    Sensor js = wrap(new ConcurrentSensor("js"));
+    Sensor otherJava = wrap(new ConcurrentSensor("java"));
+    Sensor allLanguages = wrap(new ConcurrentSensor());
+
+    SensorsScheduler scheduler = new SensorsScheduler(Arrays.asList(java, js, otherJava, allLanguages), dictionnary);
+
+    assertThat(scheduler.predecessors(java)).isEmpty();
+    assertThat(scheduler.predecessors(js)).isEmpty();
+    assertThat(scheduler.predecessors(otherJava)).containsOnly(java);
+    assertThat(scheduler.predecessors(allLanguages)).containsOnly(java, js, otherJava);
+  }
+
+  @Test
+  public void sensors_that_are_not_concurrent_are_executed_in_sequence() {
+    Sensor java = wrap(new ConcurrentSensor("java"));
+    Sensor legacy = new LegacySensor();
+    Sensor js = wrap(new ConcurrentSensor("js"));
+
+    SensorsScheduler scheduler = new SensorsScheduler(Arrays.asList(java, legacy, js), dictionnary);
+
+    assertThat(scheduler.predecessors(legacy)).containsOnly(java);
+    assertThat(scheduler.predecessors(js)).containsOnly(legacy);
+  }
+
+  @Test
+  public void concurrent_sensors_of_deprecated_api_are_not_ordered() {
+    Sensor java = wrap(new ConcurrentSensor("java"));
+    Sensor module = new ConcurrentLegacySensor();
+    Sensor allLanguages = wrap(new ConcurrentSensor());
+    Sensor legacy = new LegacySensor();
+
+    SensorsScheduler scheduler = new SensorsScheduler(Arrays.asList(java, module, allLanguages, legacy), dictionnary);
+
+    assertThat(scheduler.predecessors(module)).isEmpty();
+    assertThat(scheduler.predecessors(allLanguages)).containsOnly(java);
+    assertThat(scheduler.predecessors(legacy)).containsOnly(java, module, allLanguages);
+  }
+
+  @Test
+  public void execute_unordered_sensors_at_the_same_time() {
+    Sensor java = wrap(new ConcurrentSensor("java"));
+    Sensor module = new ConcurrentLegacySensor();
+    // each sensor waits for the other one to be started
+    final CountDownLatch started = new CountDownLatch(2);
+    final List<Sensor> overlapping = Collections.synchronizedList(new ArrayList<Sensor>());
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      new SensorsScheduler(Arrays.asList(java, module), dictionnary).execute(executor, new SensorsScheduler.SensorTask() {
+        @Override
+        public void execute(Sensor sensor) {
+          started.countDown();
+          try {
+            if (started.await(10, TimeUnit.SECONDS)) {
+              overlapping.add(sensor);
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(overlapping).containsOnly(java, module);
+  }
+
+  @Test
+  public void execute_all_sensors() {
+    Sensor java = wrap(new ConcurrentSensor("java"));
+    Sensor legacy = new LegacySensor();
+    Sensor js = wrap(new ConcurrentSensor("js"));
+    Sensor xoo = wrap(new ConcurrentSensor("xoo"));
+    final List<Sensor> executed = Collections.synchronizedList(new ArrayList<Sensor>());
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    new SensorsScheduler(Arrays.asList(java, legacy, js, xoo), dictionnary).execute(executor, new SensorsScheduler.SensorTask() {
+      @Override
+      public void execute(Sensor sensor) {
+        executed.add(sensor);
+      }
+    });
+    executor.shutdown();
+
+    assertThat(executed).hasSize(4);
+    assertThat(executed.get(0)).isSameAs(java);
+    assertThat(executed.get(1)).isSameAs(legacy);
+    assertThat(executed.subList(2, 4)).containsOnly(js, xoo);
+  }
+
+  @Test
+  public void propagate_sensor_failure() {
+    Sensor java = wrap(new ConcurrentSensor("java"));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      new SensorsScheduler(Arrays.asList(java), dictionnary).execute(executor, new SensorsScheduler.SensorTask() {
+        @Override
+        public void execute(Sensor sensor) {
+          throw new IllegalArgumentException("Boom");
+        }
+      });
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Boom");
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static Sensor wrap(org.sonar.api.batch.sensor.Sensor sensor) {
+    return new SensorWrapper(sensor, mock(SensorContext.class), mock(AnalyzerOptimizer.class));
+  }
+
+  @ConcurrentExecution
+  private static class ConcurrentSensor implements org.sonar.api.batch.sensor.Sensor {
+    private final String[] languages;
+
+    ConcurrentSensor(String... languages) {
+      this.languages = languages;
+    }
+
+    @Override
+    public void describe(SensorDescriptor descriptor) {
+      descriptor.name("Concurrent").workOnLanguages(languages);
+    }
+
+    @Override
+    public void execute(SensorContext context) {
+    }
+  }
+
+  @ConcurrentExecution
+  private static class ConcurrentLegacySensor extends LegacySensor {
+  }
+
+  private static class LegacySensor implements Sensor {
+    @Override
+    public void analyse(Project module, org.sonar.api.batch.SensorContext context) {
+    }
+
+    @Override
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+}
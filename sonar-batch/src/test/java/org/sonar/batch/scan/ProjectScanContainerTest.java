@@ -32,6 +32,7 @@ import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.config.PropertyDefinitions;
 import org.sonar.api.config.Settings;
 import org.sonar.api.platform.ComponentContainer;
+import org.sonar.api.resources.Project;
 import org.sonar.api.task.TaskExtension;
 import org.sonar.api.utils.System2;
 import org.sonar.batch.bootstrap.AnalysisMode;
@@ -45,7 +46,9 @@ import org.sonar.batch.protocol.input.ProjectReferentials;
 import org.sonar.batch.referential.ProjectReferentialsLoader;
 import org.sonar.batch.scan.maven.MavenPluginExecutor;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -119,6 +122,30 @@ public class ProjectScanContainerTest {
     assertThat(container.getComponentsByType(PhasesSumUpTimeProfiler.class)).hasSize(1);
   }
 
+  @Test
+  public void should_scan_parent_modules_after_their_sub_modules() {
+    Project root = new Project("root");
+    Project moduleA = new Project("a");
+    moduleA.setParent(root);
+    Project moduleA1 = new Project("a1");
+    moduleA1.setParent(moduleA);
+    Project moduleB = new Project("b");
+    moduleB.setParent(root);
+
+    final List<Project> scanned = Collections.synchronizedList(new ArrayList<Project>());
+    container = new ProjectScanContainer(parentContainer) {
+      @Override
+      void scan(Project module) {
+        scanned.add(module);
+      }
+    };
+    container.scanConcurrently(root, 2);
+
+    assertThat(scanned).hasSize(4);
+    assertThat(scanned.get(3)).isSameAs(root);
+    assertThat(scanned.indexOf(moduleA)).isGreaterThan(scanned.indexOf(moduleA1));
+  }
+
   @Test
   public void should_add_only_batch_extensions() {
     ProjectScanContainer.BatchExtensionFilter filter = new ProjectScanContainer.BatchExtensionFilter();
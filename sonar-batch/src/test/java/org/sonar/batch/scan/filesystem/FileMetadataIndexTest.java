@@ -0,0 +1,101 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FileMetadataIndexTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  File indexFile;
+  File file;
+
+  @Before
+  public void prepare() throws Exception {
+    indexFile = new File(temp.newFolder(), FileMetadataIndex.FILENAME);
+    file = temp.newFile();
+    FileUtils.write(file, "foo\nbar", Charsets.UTF_8);
+    // older than the resolution of modification dates
+    file.setLastModified(System.currentTimeMillis() - 60000L);
+  }
+
+  @Test
+  public void reuse_metadata_of_unchanged_file() throws Exception {
+    FileMetadataIndex index = new FileMetadataIndex(indexFile, Charsets.UTF_8);
+    FileMetadata.Metadata metadata = index.read(file, "src/Foo.java");
+    assertThat(metadata.lines).isEqualTo(2);
+    index.save();
+
+    // the file is not read again, so a different content of same size is not detected
+    long lastModified = file.lastModified();
+    FileUtils.write(file, "baz\nqix", Charsets.UTF_8);
+    file.setLastModified(lastModified);
+
+    FileMetadata.Metadata reused = new FileMetadataIndex(indexFile, Charsets.UTF_8).read(file, "src/Foo.java");
+    assertThat(reused.hash).isEqualTo(metadata.hash);
+    assertThat(reused.lines).isEqualTo(2);
+  }
+
+  @Test
+  public void read_modified_file() throws Exception {
+    FileMetadataIndex index = new FileMetadataIndex(indexFile, Charsets.UTF_8);
+    FileMetadata.Metadata metadata = index.read(file, "src/Foo.java");
+    index.save();
+
+    FileUtils.write(file, "foo\nbar\nbaz", Charsets.UTF_8);
+
+    FileMetadata.Metadata reread = new FileMetadataIndex(indexFile, Charsets.UTF_8).read(file, "src/Foo.java");
+    assertThat(reread.hash).isNotEqualTo(metadata.hash);
+    assertThat(reread.lines).isEqualTo(3);
+  }
+
+  @Test
+  public void discard_index_written_with_other_encoding() throws Exception {
+    FileMetadataIndex index = new FileMetadataIndex(indexFile, Charsets.UTF_8);
+    FileMetadata.Metadata metadata = index.read(file, "src/Foo.java");
+    index.save();
+
+    long lastModified = file.lastModified();
+    FileUtils.write(file, "baz\nqix", Charsets.UTF_8);
+    file.setLastModified(lastModified);
+
+    FileMetadata.Metadata reread = new FileMetadataIndex(indexFile, Charsets.ISO_8859_1).read(file, "src/Foo.java");
+    assertThat(reread.hash).isNotEqualTo(metadata.hash);
+  }
+
+  @Test
+  public void ignore_corrupted_index() throws Exception {
+    FileUtils.write(indexFile, "corrupted");
+
+    FileMetadata.Metadata metadata = new FileMetadataIndex(indexFile, Charsets.UTF_8).read(file, "src/Foo.java");
+    assertThat(metadata.lines).isEqualTo(2);
+  }
+}
@@ -20,6 +20,7 @@
 package org.sonar.batch.scan.filesystem;
 
 import com.google.common.base.Charsets;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
 import org.junit.Test;
@@ -151,4 +152,21 @@ public class FileMetadataTest {
     assertThat(hash1).isEqualTo(hash1a);
     assertThat(hash1).isNotEqualTo(hash2);
   }
+
+  @Test
+  public void same_hash_as_utf16_content_for_files_larger_than_buffer() throws Exception {
+    StringBuilder content = new StringBuilder();
+    StringBuilder normalized = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      // CR and LF are split over buffer boundaries
+      content.append("line \u00e9\u4e2d ").append(i).append(i % 2 == 0 ? "\r\n" : "\r");
+      normalized.append("line \u00e9\u4e2d ").append(i).append("\n");
+    }
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, content, Charsets.UTF_8, true);
+
+    FileMetadata.Metadata metadata = FileMetadata.INSTANCE.read(tempFile, Charsets.UTF_8);
+    assertThat(metadata.lines).isEqualTo(10001);
+    assertThat(metadata.hash).isEqualTo(DigestUtils.md5Hex(normalized.toString().getBytes(Charsets.UTF_16BE)));
+  }
 }
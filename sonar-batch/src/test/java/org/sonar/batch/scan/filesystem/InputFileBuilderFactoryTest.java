@@ -19,7 +19,10 @@
  */
 package org.sonar.batch.scan.filesystem;
 
+import org.apache.commons.io.Charsets;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.scan.filesystem.PathResolver;
@@ -27,14 +30,21 @@ import org.sonar.batch.bootstrap.AnalysisMode;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class InputFileBuilderFactoryTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   @Test
   public void create_builder() throws Exception {
     PathResolver pathResolver = new PathResolver();
     LanguageDetectionFactory langDetectionFactory = mock(LanguageDetectionFactory.class, Mockito.RETURNS_MOCKS);
     StatusDetectionFactory statusDetectionFactory = mock(StatusDetectionFactory.class, Mockito.RETURNS_MOCKS);
     DefaultModuleFileSystem fs = mock(DefaultModuleFileSystem.class);
+    when(fs.workDir()).thenReturn(temp.newFolder());
+    when(fs.encoding()).thenReturn(Charsets.UTF_8);
     AnalysisMode analysisMode = mock(AnalysisMode.class);
 
     InputFileBuilderFactory factory = new InputFileBuilderFactory(ProjectDefinition.create().setKey("struts"), pathResolver, langDetectionFactory,
@@ -46,5 +56,6 @@ public class InputFileBuilderFactoryTest {
     assertThat(builder.pathResolver()).isSameAs(pathResolver);
     assertThat(builder.fs()).isSameAs(fs);
     assertThat(builder.moduleKey()).isEqualTo("struts");
+    assertThat(builder.fileMetadataIndex()).isNotNull();
   }
 }
@@ -66,7 +66,7 @@ public class InputFileBuilderTest {
       .thenReturn(InputFile.Status.ADDED);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, analysisMode);
+      langDetection, statusDetection, fs, analysisMode, newFileMetadataIndex());
     DeprecatedDefaultInputFile inputFile = builder.create(srcFile);
     inputFile = builder.complete(inputFile, InputFile.Type.MAIN);
 
@@ -92,7 +92,7 @@ public class InputFileBuilderTest {
     when(fs.baseDir()).thenReturn(basedir);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, analysisMode);
+      langDetection, statusDetection, fs, analysisMode, newFileMetadataIndex());
     DeprecatedDefaultInputFile inputFile = builder.create(srcFile);
 
     assertThat(inputFile).isNull();
@@ -112,7 +112,7 @@ public class InputFileBuilderTest {
     when(langDetection.language(any(InputFile.class))).thenReturn(null);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, analysisMode);
+      langDetection, statusDetection, fs, analysisMode, newFileMetadataIndex());
     DeprecatedDefaultInputFile inputFile = builder.create(srcFile);
     inputFile = builder.complete(inputFile, InputFile.Type.MAIN);
 
@@ -139,7 +139,7 @@ public class InputFileBuilderTest {
       .thenReturn(InputFile.Status.ADDED);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, analysisMode);
+      langDetection, statusDetection, fs, analysisMode, newFileMetadataIndex());
     DeprecatedDefaultInputFile inputFile = builder.create(srcFile);
     inputFile = builder.complete(inputFile, InputFile.Type.MAIN);
 
@@ -168,7 +168,7 @@ public class InputFileBuilderTest {
       .thenReturn(InputFile.Status.ADDED);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, analysisMode);
+      langDetection, statusDetection, fs, analysisMode, newFileMetadataIndex());
     DeprecatedDefaultInputFile inputFile = builder.create(srcFile);
     inputFile = builder.complete(inputFile, InputFile.Type.MAIN);
 
@@ -177,4 +177,8 @@ public class InputFileBuilderTest {
     assertThat(inputFile.deprecatedKey()).isEqualTo("struts:foo/Bar.php");
 
   }
+
+  private FileMetadataIndex newFileMetadataIndex() throws Exception {
+    return new FileMetadataIndex(new File(temp.newFolder(), FileMetadataIndex.FILENAME), Charsets.UTF_8);
+  }
 }
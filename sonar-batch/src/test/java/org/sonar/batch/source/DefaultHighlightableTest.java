@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.source;
 
+import com.google.common.collect.Lists;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -26,8 +27,11 @@ import org.mockito.ArgumentCaptor;
 import org.sonar.api.component.Component;
 import org.sonar.batch.highlighting.SyntaxHighlightingData;
 import org.sonar.batch.index.ComponentDataCache;
+import org.sonar.core.source.DecorationDataFormat;
 import org.sonar.core.source.SnapshotDataTypes;
 
+import java.util.List;
+
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -62,6 +66,17 @@ public class DefaultHighlightableTest {
 
     ArgumentCaptor<SyntaxHighlightingData> argCaptor = ArgumentCaptor.forClass(SyntaxHighlightingData.class);
     verify(cache).setData(eq("myComponent"), eq(SnapshotDataTypes.SYNTAX_HIGHLIGHTING), argCaptor.capture());
-    assertThat(argCaptor.getValue().writeString()).isEqualTo("0,10,k;20,30,cppd;");
+    assertThat(readRules(argCaptor.getValue().writeString())).containsExactly("0,10,k", "20,30,cppd");
+  }
+
+  private static List<String> readRules(String data) {
+    final List<String> rules = Lists.newArrayList();
+    DecorationDataFormat.readSyntaxHighlighting(data, new DecorationDataFormat.SyntaxHighlightingHandler() {
+      @Override
+      public void onRule(int startOffset, int endOffset, String cssClass) {
+        rules.add(startOffset + "," + endOffset + "," + cssClass);
+      }
+    });
+    return rules;
   }
 }
@@ -20,6 +20,7 @@
 
 package org.sonar.batch.symbol;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.SortedSetMultimap;
 import org.junit.Rule;
 import org.junit.Test;
@@ -28,9 +29,11 @@ import org.mockito.ArgumentCaptor;
 import org.sonar.api.batch.sensor.symbol.Symbol;
 import org.sonar.api.batch.sensor.symbol.SymbolTableBuilder;
 import org.sonar.batch.index.ComponentDataCache;
+import org.sonar.core.source.DecorationDataFormat;
 import org.sonar.core.source.SnapshotDataTypes;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.eq;
@@ -64,7 +67,7 @@ public class DefaultSymbolTableBuilderTest {
     assertThat(new ArrayList<Integer>(referencesBySymbol.get(secondSymbol))).containsExactly(84, 124);
     assertThat(new ArrayList<Integer>(referencesBySymbol.get(thirdSymbol))).containsExactly(55, 70);
 
-    assertThat(argCaptor.getValue().writeString()).isEqualTo("10,20,10,32;55,62,55,70;84,92,84,124;");
+    assertThat(readReferences(argCaptor.getValue().writeString())).containsExactly("10,20,10", "10,20,32", "55,62,55", "55,62,70", "84,92,84", "84,92,124");
   }
 
   @Test
@@ -78,7 +81,7 @@ public class DefaultSymbolTableBuilderTest {
     ArgumentCaptor<SymbolData> argCaptor = ArgumentCaptor.forClass(SymbolData.class);
     verify(componentDataCache).setData(eq("foo"), eq(SnapshotDataTypes.SYMBOL_HIGHLIGHTING), argCaptor.capture());
 
-    assertThat(argCaptor.getValue().writeString()).isEqualTo("10,20,10;");
+    assertThat(readReferences(argCaptor.getValue().writeString())).containsExactly("10,20,10");
   }
 
   @Test
@@ -105,4 +108,14 @@ public class DefaultSymbolTableBuilderTest {
     symbolTableBuilder.newReference(symbol2, 15);
   }
 
+  private static List<String> readReferences(String data) {
+    final List<String> references = Lists.newArrayList();
+    DecorationDataFormat.readSymbols(data, new DecorationDataFormat.SymbolHandler() {
+      @Override
+      public void onReference(int declarationStartOffset, int declarationEndOffset, int referenceStartOffset) {
+        references.add(declarationStartOffset + "," + declarationEndOffset + "," + referenceStartOffset);
+      }
+    });
+    return references;
+  }
 }
@@ -0,0 +1,41 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.cluster;
+
+/**
+ * Action on a single target, for example a document of the search index, which may be
+ * discarded when a later action on the same target makes it useless.
+ *
+ * @since 4.5.4
+ */
+public interface CoalescableAction<K> extends ClusterAction<K> {
+
+  /**
+   * Identity of the data updated by this action. Actions with equal targets
+   * update the same data.
+   */
+  Object getTarget();
+
+  /**
+   * Whether executing this action makes useless the execution of the given action,
+   * enqueued just before on the same target.
+   */
+  boolean replaces(CoalescableAction previous);
+}
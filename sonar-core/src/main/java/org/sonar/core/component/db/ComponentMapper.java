@@ -20,12 +20,15 @@
 package org.sonar.core.component.db;
 
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.RowBounds;
 import org.sonar.core.component.AuthorizedComponentDto;
 import org.sonar.core.component.ComponentDto;
 import org.sonar.core.component.ProjectRefentialsComponentDto;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -62,5 +65,20 @@ public interface ComponentMapper {
 
   AuthorizedComponentDto selectAuthorizedComponentByKey(String key);
 
+  /**
+   * Return the enabled components which can be searched by name (projects, modules, views, sub-views, files,
+   * unit tests and classes) created since the given date, ordered by id and starting after the given id.
+   * All of them are returned when the date is null, including those without creation date.
+   * @since 4.5.4
+   */
+  List<ComponentDto> selectSearchableAfterDate(@Nullable @Param("date") Date date, @Param("lastId") long lastId, RowBounds rowBounds);
+
+  /**
+   * Return the enabled components of a root project which can be searched by name, ordered by id and starting
+   * after the given id.
+   * @since 4.5.4
+   */
+  List<ComponentDto> selectSearchableByRootProject(@Param("rootProjectKey") String rootProjectKey, @Param("lastId") long lastId, RowBounds rowBounds);
+
   void insert(ComponentDto rule);
 }
@@ -0,0 +1,50 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.graph.binary;
+
+/**
+ * Compact format of the graphs of perspectives, as an alternative to GraphSON.
+ * <p/>
+ * Data starts with the table of the distinct strings (ids, labels, property keys and values), which are then
+ * referenced by index. Numbers are written as varints, and lists of integers, like the lines covered by a test,
+ * as deltas. Bytes are stored in Base64 as the column of graphs is textual.
+ *
+ * @since 4.5.4
+ */
+public final class BinaryGraphFormat {
+
+  public static final String FORMAT = "binary";
+  public static final int VERSION = 1;
+
+  static final int TYPE_NULL = 0;
+  static final int TYPE_STRING = 1;
+  static final int TYPE_INTEGER = 2;
+  static final int TYPE_LONG = 3;
+  static final int TYPE_BOOLEAN = 4;
+  static final int TYPE_FLOAT = 5;
+  static final int TYPE_DOUBLE = 6;
+  static final int TYPE_LIST = 7;
+  static final int TYPE_INTEGER_LIST = 8;
+  static final int TYPE_MAP = 9;
+
+  private BinaryGraphFormat() {
+    // only constants
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.graph.binary;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import org.apache.commons.codec.binary.Base64;
+
+import javax.annotation.CheckForNull;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.sonar.core.graph.binary.BinaryGraphFormat.*;
+
+/**
+ * Not thread-safe
+ */
+public class BinaryGraphReader {
+
+  private byte[] bytes;
+  private int position;
+  private String[] strings;
+
+  public Graph read(String data, Graph toGraph) {
+    bytes = Base64.decodeBase64(data);
+    position = 0;
+    try {
+      strings = new String[(int) readUnsigned()];
+      for (int i = 0; i < strings.length; i++) {
+        int length = (int) readUnsigned();
+        strings[i] = new String(bytes, position, length, Charsets.UTF_8);
+        position += length;
+      }
+
+      long vertexCount = readUnsigned();
+      for (long i = 0; i < vertexCount; i++) {
+        Vertex vertex = toGraph.addVertex(readString());
+        readProperties(vertex);
+      }
+
+      long edgeCount = readUnsigned();
+      for (long i = 0; i < edgeCount; i++) {
+        String id = readString();
+        Vertex outVertex = toGraph.getVertex(readString());
+        Vertex inVertex = toGraph.getVertex(readString());
+        Edge edge = toGraph.addEdge(id, outVertex, inVertex, readString());
+        readProperties(edge);
+      }
+      toGraph.shutdown();
+      return toGraph;
+
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IllegalStateException("Unable to read graph: data is truncated", e);
+    } finally {
+      bytes = null;
+      strings = null;
+    }
+  }
+
+  private void readProperties(Element element) {
+    long count = readUnsigned();
+    for (long i = 0; i < count; i++) {
+      String key = readString();
+      Object value = readValue();
+      if (value != null) {
+        element.setProperty(key, value);
+      }
+    }
+  }
+
+  @CheckForNull
+  private Object readValue() {
+    int type = bytes[position++];
+    switch (type) {
+      case TYPE_NULL:
+        return null;
+      case TYPE_STRING:
+        return readString();
+      case TYPE_INTEGER:
+        return (int) readSigned();
+      case TYPE_LONG:
+        return readSigned();
+      case TYPE_BOOLEAN:
+        return bytes[position++] != 0;
+      case TYPE_FLOAT:
+        return Float.intBitsToFloat((int) readSigned());
+      case TYPE_DOUBLE:
+        return Double.longBitsToDouble(readSigned());
+      case TYPE_LIST:
+        return readList();
+      case TYPE_INTEGER_LIST:
+        return readIntegerList();
+      case TYPE_MAP:
+        return readMap();
+      default:
+        throw new IllegalStateException("Unknown type of property: " + type);
+    }
+  }
+
+  private List<Object> readList() {
+    int size = (int) readUnsigned();
+    List<Object> list = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      list.add(readValue());
+    }
+    return list;
+  }
+
+  private List<Integer> readIntegerList() {
+    int size = (int) readUnsigned();
+    List<Integer> list = Lists.newArrayListWithCapacity(size);
+    int value = 0;
+    for (int i = 0; i < size; i++) {
+      value += (int) readSigned();
+      list.add(value);
+    }
+    return list;
+  }
+
+  private Map<String, Object> readMap() {
+    int size = (int) readUnsigned();
+    Map<String, Object> map = Maps.newHashMap();
+    for (int i = 0; i < size; i++) {
+      String key = readString();
+      map.put(key, readValue());
+    }
+    return map;
+  }
+
+  private String readString() {
+    return strings[(int) readUnsigned()];
+  }
+
+  private long readUnsigned() {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = bytes[position++];
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  private long readSigned() {
+    long value = readUnsigned();
+    return (value >>> 1) ^ -(value & 1);
+  }
+}
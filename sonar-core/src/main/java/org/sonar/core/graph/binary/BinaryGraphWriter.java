@@ -0,0 +1,186 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.graph.binary;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import org.apache.commons.codec.binary.Base64;
+
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.sonar.core.graph.binary.BinaryGraphFormat.*;
+
+/**
+ * Not thread-safe
+ */
+public class BinaryGraphWriter {
+
+  private final Map<String, Integer> indexesByString = Maps.newLinkedHashMap();
+  private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+  public String write(Graph graph) {
+    indexesByString.clear();
+    body.reset();
+
+    int vertexCount = 0;
+    ByteArrayOutputStream vertices = new ByteArrayOutputStream();
+    for (Vertex vertex : graph.getVertices()) {
+      writeString(vertices, vertex.getId().toString());
+      writeProperties(vertices, vertex);
+      vertexCount++;
+    }
+    writeUnsigned(body, vertexCount);
+    writeBytes(body, vertices);
+
+    int edgeCount = 0;
+    ByteArrayOutputStream edges = new ByteArrayOutputStream();
+    for (Edge edge : graph.getEdges()) {
+      writeString(edges, edge.getId().toString());
+      writeString(edges, edge.getVertex(Direction.OUT).getId().toString());
+      writeString(edges, edge.getVertex(Direction.IN).getId().toString());
+      writeString(edges, edge.getLabel());
+      writeProperties(edges, edge);
+      edgeCount++;
+    }
+    writeUnsigned(body, edgeCount);
+    writeBytes(body, edges);
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    writeUnsigned(output, indexesByString.size());
+    for (String s : indexesByString.keySet()) {
+      byte[] utf8 = s.getBytes(Charsets.UTF_8);
+      writeUnsigned(output, utf8.length);
+      output.write(utf8, 0, utf8.length);
+    }
+    writeBytes(output, body);
+    return Base64.encodeBase64String(output.toByteArray());
+  }
+
+  private void writeProperties(ByteArrayOutputStream output, Element element) {
+    Set<String> keys = element.getPropertyKeys();
+    writeUnsigned(output, keys.size());
+    for (String key : keys) {
+      writeString(output, key);
+      writeValue(output, element.getProperty(key));
+    }
+  }
+
+  private void writeValue(ByteArrayOutputStream output, @Nullable Object value) {
+    if (value == null) {
+      output.write(TYPE_NULL);
+    } else if (value instanceof String) {
+      output.write(TYPE_STRING);
+      writeString(output, (String) value);
+    } else if (value instanceof Integer) {
+      output.write(TYPE_INTEGER);
+      writeSigned(output, (Integer) value);
+    } else if (value instanceof Long) {
+      output.write(TYPE_LONG);
+      writeSigned(output, (Long) value);
+    } else if (value instanceof Boolean) {
+      output.write(TYPE_BOOLEAN);
+      output.write((Boolean) value ? 1 : 0);
+    } else if (value instanceof Float) {
+      output.write(TYPE_FLOAT);
+      writeSigned(output, Float.floatToIntBits((Float) value));
+    } else if (value instanceof Double) {
+      output.write(TYPE_DOUBLE);
+      writeSigned(output, Double.doubleToLongBits((Double) value));
+    } else if (value instanceof List) {
+      writeList(output, (List<?>) value);
+    } else if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      output.write(TYPE_MAP);
+      writeUnsigned(output, map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        writeString(output, entry.getKey().toString());
+        writeValue(output, entry.getValue());
+      }
+    } else {
+      throw new IllegalArgumentException("Unsupported type of property: " + value.getClass());
+    }
+  }
+
+  private void writeList(ByteArrayOutputStream output, List<?> list) {
+    if (isIntegerList(list)) {
+      output.write(TYPE_INTEGER_LIST);
+      writeUnsigned(output, list.size());
+      int previous = 0;
+      for (Object item : list) {
+        int value = (Integer) item;
+        writeSigned(output, value - previous);
+        previous = value;
+      }
+    } else {
+      output.write(TYPE_LIST);
+      writeUnsigned(output, list.size());
+      for (Object item : list) {
+        writeValue(output, item);
+      }
+    }
+  }
+
+  private static boolean isIntegerList(List<?> list) {
+    for (Object item : list) {
+      if (!(item instanceof Integer)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void writeString(ByteArrayOutputStream output, String s) {
+    Integer index = indexesByString.get(s);
+    if (index == null) {
+      index = indexesByString.size();
+      indexesByString.put(s, index);
+    }
+    writeUnsigned(output, index);
+  }
+
+  private static void writeBytes(ByteArrayOutputStream output, ByteArrayOutputStream bytes) {
+    byte[] content = bytes.toByteArray();
+    output.write(content, 0, content.length);
+  }
+
+  private static void writeUnsigned(ByteArrayOutputStream output, long value) {
+    long remaining = value;
+    while ((remaining & ~0x7FL) != 0) {
+      output.write((int) ((remaining & 0x7F) | 0x80));
+      remaining >>>= 7;
+    }
+    output.write((int) remaining);
+  }
+
+  private static void writeSigned(ByteArrayOutputStream output, long value) {
+    // zigzag encoding, so that small negative values are written on few bytes
+    writeUnsigned(output, (value << 1) ^ (value >> 63));
+  }
+}
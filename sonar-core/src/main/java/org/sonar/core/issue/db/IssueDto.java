@@ -75,6 +75,7 @@ public final class IssueDto extends Dto<String> implements Serializable {
   private String ruleRepo;
   private String componentKey;
   private String rootComponentKey;
+  private String language;
 
   @Override
   public String getKey() {
@@ -320,6 +321,15 @@ public final class IssueDto extends Dto<String> implements Serializable {
     return rootComponentKey;
   }
 
+  /**
+   * Language of the rule
+   * @since 4.5.4
+   */
+  @CheckForNull
+  public String getLanguage() {
+    return language;
+  }
+
   @CheckForNull
   public Date getSelectedAt() {
     return selectedAt;
@@ -355,6 +365,14 @@ public final class IssueDto extends Dto<String> implements Serializable {
     return this;
   }
 
+  /**
+   * Only for unit tests
+   */
+  public IssueDto setLanguage_unit_test_only(@Nullable String language) {
+    this.language = language;
+    return this;
+  }
+
   @Override
   public String toString() {
     return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
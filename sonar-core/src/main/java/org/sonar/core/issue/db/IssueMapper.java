@@ -20,6 +20,7 @@
 package org.sonar.core.issue.db;
 
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.RowBounds;
 import org.sonar.api.issue.IssueQuery;
 import org.sonar.core.rule.RuleDto;
 
@@ -33,6 +34,26 @@ public interface IssueMapper {
 
   IssueDto selectByKey(String key);
 
+  /**
+   * The number of keys must be lower than 1000, because of the limit of Oracle on the "IN" clause
+   * @since 4.5.4
+   */
+  List<IssueDto> selectByKeys(@Param("keys") Collection<String> keys);
+
+  /**
+   * Return the issues updated since the given date, ordered by id and starting after the given id,
+   * optionally restricted to a project.
+   * @since 4.5.4
+   */
+  List<IssueDto> selectAfterDate(@Param("date") Date date, @Nullable @Param("projectKey") String projectKey,
+                                 @Param("lastId") long lastId, RowBounds rowBounds);
+
+  /**
+   * Return the ids, among the given ones, of the issues which still exist
+   * @since 4.5.4
+   */
+  List<Long> selectExistingIds(@Param("ids") Collection<Long> ids);
+
   /**
    * Return a paginated list of authorized issue ids for a user.
    * If the role is null, then the authorisation check is disabled.
@@ -19,8 +19,15 @@
  */
 package org.sonar.core.issue.db;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.managed.ManagedTransaction;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.IssueComment;
 import org.sonar.api.issue.internal.DefaultIssue;
@@ -32,9 +39,13 @@ import org.sonar.core.persistence.BatchSession;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 
+import java.sql.Statement;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Save issues into database. It is executed :
@@ -49,11 +60,23 @@ public abstract class IssueStorage {
 
   private final MyBatis mybatis;
   private final RuleFinder ruleFinder;
-  private final UpdateConflictResolver conflictResolver = new UpdateConflictResolver();
+  private final UpdateConflictResolver conflictResolver;
+
+  /**
+   * Whether the JDBC driver returns the number of rows updated by each statement of a batch, which is not the case
+   * of Oracle drivers before 12c. Null until the first batch of updates is flushed.
+   */
+  private volatile Boolean batchUpdateCounts = null;
 
   protected IssueStorage(MyBatis mybatis, RuleFinder ruleFinder) {
+    this(mybatis, ruleFinder, new UpdateConflictResolver());
+  }
+
+  @VisibleForTesting
+  IssueStorage(MyBatis mybatis, RuleFinder ruleFinder, UpdateConflictResolver conflictResolver) {
     this.mybatis = mybatis;
     this.ruleFinder = ruleFinder;
+    this.conflictResolver = conflictResolver;
   }
 
   public void save(DefaultIssue issue) {
@@ -61,8 +84,6 @@ public abstract class IssueStorage {
   }
 
   public void save(Iterable<DefaultIssue> issues) {
-    // Batch session can not be used for updates. It does not return the number of updated rows,
-    // required for detecting conflicts.
     Date now = new Date();
     List<DefaultIssue> toBeUpdated = batchInsert(issues, now);
     update(toBeUpdated, now);
@@ -104,13 +125,27 @@ public abstract class IssueStorage {
 
   private void update(List<DefaultIssue> toBeUpdated, Date now) {
     if (!toBeUpdated.isEmpty()) {
-      SqlSession session = mybatis.openSession(false);
+      // Statements are flushed explicitly, as the update counts of the JDBC batches are required for detecting conflicts
+      DbSession session = mybatis.openBatchSession(Integer.MAX_VALUE);
       try {
         IssueMapper issueMapper = session.getMapper(IssueMapper.class);
         IssueChangeMapper issueChangeMapper = session.getMapper(IssueChangeMapper.class);
+        List<DefaultIssue> conflicts = Lists.newArrayList();
+        for (List<DefaultIssue> issues : Lists.partition(toBeUpdated, BatchSession.MAX_BATCH_SIZE)) {
+          conflicts.addAll(update(session, issueMapper, issues, now));
+        }
+        for (DefaultIssue issue : conflicts) {
+          // End-user and scan changed the issue at the same time.
+          // See https://jira.codehaus.org/browse/SONAR-4309
+          conflictResolver.resolve(issue, issueMapper);
+        }
+        int count = 0;
         for (DefaultIssue issue : toBeUpdated) {
-          update(issueMapper, now, issue);
           insertChanges(issueChangeMapper, issue);
+          count++;
+          if (count % BatchSession.MAX_BATCH_SIZE == 0) {
+            session.flushStatements();
+          }
         }
         session.commit();
       } finally {
@@ -119,20 +154,88 @@ public abstract class IssueStorage {
     }
   }
 
-  private void update(IssueMapper issueMapper, Date now, DefaultIssue issue) {
-    IssueDto dto = IssueDto.toDtoForUpdate(issue, projectId(issue), now);
-    if (Issue.STATUS_CLOSED.equals(issue.status()) || issue.selectedAt() == null) {
-      // Issue is closed by scan or changed by end-user
-      issueMapper.update(dto);
+  /**
+   * Updates a batch of issues and returns the ones that may have been changed in the meantime by end-users.
+   */
+  private List<DefaultIssue> update(DbSession session, IssueMapper issueMapper, List<DefaultIssue> issues, Date now) {
+    // Statements of the same type are grouped in order to be sent in the same JDBC batch
+    Map<IssueDto, DefaultIssue> conditionalUpdates = Maps.newLinkedHashMap();
+    for (DefaultIssue issue : issues) {
+      IssueDto dto = IssueDto.toDtoForUpdate(issue, projectId(issue), now);
+      if (Issue.STATUS_CLOSED.equals(issue.status()) || issue.selectedAt() == null) {
+        // Issue is closed by scan or changed by end-user
+        issueMapper.update(dto);
+      } else {
+        conditionalUpdates.put(dto, issue);
+      }
+    }
 
+    List<DefaultIssue> conflicts = Lists.newArrayList();
+    Iterator<Map.Entry<IssueDto, DefaultIssue>> conditionalUpdatesIt = conditionalUpdates.entrySet().iterator();
+    if (batchUpdateCounts == null && conditionalUpdatesIt.hasNext()) {
+      // A single conditional update is sent with the other updates in order to know whether the driver returns update counts
+      Map.Entry<IssueDto, DefaultIssue> probe = conditionalUpdatesIt.next();
+      issueMapper.updateIfBeforeSelectedDate(probe.getKey());
+      conflicts.addAll(flushConditionalUpdates(session, Collections.singletonMap(probe.getKey(), probe.getValue())));
+    }
+    if (Boolean.FALSE.equals(batchUpdateCounts)) {
+      session.flushStatements();
+      conflicts.addAll(updateOneByOne(session, conditionalUpdatesIt));
     } else {
-      int count = issueMapper.updateIfBeforeSelectedDate(dto);
-      if (count == 0) {
-        // End-user and scan changed the issue at the same time.
-        // See https://jira.codehaus.org/browse/SONAR-4309
-        conflictResolver.resolve(issue, issueMapper);
+      Map<IssueDto, DefaultIssue> batchedUpdates = Maps.newIdentityHashMap();
+      while (conditionalUpdatesIt.hasNext()) {
+        Map.Entry<IssueDto, DefaultIssue> entry = conditionalUpdatesIt.next();
+        issueMapper.updateIfBeforeSelectedDate(entry.getKey());
+        batchedUpdates.put(entry.getKey(), entry.getValue());
+      }
+      conflicts.addAll(flushConditionalUpdates(session, batchedUpdates));
+    }
+    return conflicts;
+  }
+
+  private List<DefaultIssue> flushConditionalUpdates(DbSession session, Map<IssueDto, DefaultIssue> conditionalUpdates) {
+    List<DefaultIssue> conflicts = Lists.newArrayList();
+    for (BatchResult batchResult : session.flushStatements()) {
+      List<Object> parameters = batchResult.getParameterObjects();
+      int[] updateCounts = batchResult.getUpdateCounts();
+      for (int i = 0; i < updateCounts.length; i++) {
+        batchUpdateCounts = updateCounts[i] != Statement.SUCCESS_NO_INFO;
+        DefaultIssue issue = conditionalUpdates.get(parameters.get(i));
+        // Conflict resolution leaves unchanged the issues that were actually updated, so the issues
+        // with an unknown update count are resolved too.
+        if (issue != null && (updateCounts[i] == 0 || updateCounts[i] == Statement.SUCCESS_NO_INFO)) {
+          conflicts.add(issue);
+        }
+      }
+    }
+    return conflicts;
+  }
+
+  /**
+   * Conditional updates are executed one by one when the driver does not return the update counts of batches,
+   * so that only the issues actually changed by end-users go through conflict resolution. They are executed
+   * on the connection of the batch session, within the same transaction.
+   */
+  private List<DefaultIssue> updateOneByOne(DbSession session, Iterator<Map.Entry<IssueDto, DefaultIssue>> conditionalUpdates) {
+    List<DefaultIssue> conflicts = Lists.newArrayList();
+    if (conditionalUpdates.hasNext()) {
+      Configuration configuration = mybatis.getSessionFactory().getConfiguration();
+      // the connection is not closed with this session
+      SqlSession simpleSession = new DefaultSqlSession(configuration,
+        new SimpleExecutor(configuration, new ManagedTransaction(session.getConnection(), false)));
+      try {
+        IssueMapper issueMapper = simpleSession.getMapper(IssueMapper.class);
+        while (conditionalUpdates.hasNext()) {
+          Map.Entry<IssueDto, DefaultIssue> entry = conditionalUpdates.next();
+          if (issueMapper.updateIfBeforeSelectedDate(entry.getKey()) == 0) {
+            conflicts.add(entry.getValue());
+          }
+        }
+      } finally {
+        MyBatis.closeQuietly(simpleSession);
       }
     }
+    return conflicts;
   }
 
   private void insertChanges(IssueChangeMapper mapper, DefaultIssue issue) {
@@ -23,6 +23,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
 import org.slf4j.Logger;
@@ -36,12 +37,17 @@ import org.sonar.core.notification.db.NotificationQueueDao;
 import org.sonar.core.notification.db.NotificationQueueDto;
 import org.sonar.core.properties.PropertiesDao;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.io.IOException;
 import java.io.InvalidClassException;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @since 2.10
@@ -58,6 +64,11 @@ public class DefaultNotificationManager implements NotificationManager {
 
   private boolean alreadyLoggedDeserializationIssue = false;
 
+  /**
+   * Subscribers loaded from database by the current thread while the cache is enabled, by subscription
+   */
+  private final ThreadLocal<Map<List<Object>, List<String>>> subscribersCache = new ThreadLocal<Map<List<Object>, List<String>>>();
+
   /**
    * Default constructor used by Pico
    */
@@ -95,20 +106,80 @@ public class DefaultNotificationManager implements NotificationManager {
    * Give the notification queue so that it can be processed
    */
   public Notification getFromQueue() {
-    int batchSize = 1;
+    List<Notification> notifications = getFromQueue(1);
+    return notifications.isEmpty() ? null : notifications.get(0);
+  }
+
+  /**
+   * Give the oldest notifications of the queue so that they can be processed. They are removed from the queue.
+   * Notifications which cannot be read are ignored, so less notifications than requested can be returned
+   * even if the queue is not empty.
+   * @since 4.5.4
+   */
+  public List<Notification> getFromQueue(int batchSize) {
     List<NotificationQueueDto> notificationDtos = notificationQueueDao.findOldest(batchSize);
     if (notificationDtos.isEmpty()) {
-      return null;
+      return Collections.emptyList();
     }
     notificationQueueDao.delete(notificationDtos);
 
-    return convertToNotification(notificationDtos);
+    List<Notification> notifications = Lists.newArrayListWithCapacity(notificationDtos.size());
+    for (NotificationQueueDto notificationDto : notificationDtos) {
+      Notification notification = convertToNotification(notificationDto);
+      if (notification != null) {
+        notifications.add(notification);
+      }
+    }
+    return notifications;
   }
 
-  private Notification convertToNotification(List<NotificationQueueDto> notifications) {
+  /**
+   * Give the oldest notifications of the queue, by their id in the queue. Unlike {@link #getFromQueue(int)}, they stay
+   * in the queue until {@link #removeFromQueue(Collection)} is called, so that they are not lost if the server stops
+   * before they are delivered. Notifications which cannot be read are removed at once.
+   * @since 4.5.4
+   */
+  public Map<Long, Notification> readFromQueue(int batchSize) {
+    List<NotificationQueueDto> notificationDtos = notificationQueueDao.findOldest(batchSize);
+    Map<Long, Notification> notifications = Maps.newLinkedHashMap();
+    List<NotificationQueueDto> unreadableDtos = Lists.newArrayList();
+    for (NotificationQueueDto notificationDto : notificationDtos) {
+      Notification notification;
+      try {
+        notification = convertToNotification(notificationDto);
+      } catch (SonarException e) {
+        // do not block the queue
+        LOG.error(UNABLE_TO_READ_NOTIFICATION, e);
+        notification = null;
+      }
+      if (notification != null) {
+        notifications.put(notificationDto.getId(), notification);
+      } else {
+        unreadableDtos.add(notificationDto);
+      }
+    }
+    if (!unreadableDtos.isEmpty()) {
+      notificationQueueDao.delete(unreadableDtos);
+    }
+    return notifications;
+  }
+
+  /**
+   * Remove from the queue the notifications given by {@link #readFromQueue(int)}
+   * @since 4.5.4
+   */
+  public void removeFromQueue(Collection<Long> ids) {
+    List<NotificationQueueDto> notificationDtos = Lists.newArrayListWithCapacity(ids.size());
+    for (Long id : ids) {
+      notificationDtos.add(new NotificationQueueDto().setId(id));
+    }
+    notificationQueueDao.delete(notificationDtos);
+  }
+
+  @CheckForNull
+  private Notification convertToNotification(NotificationQueueDto notification) {
     try {
-      // If batchSize is increased then we should return a list instead of a single element
-      return notifications.get(0).toNotification();
+      return notification.toNotification();
     } catch (InvalidClassException e) {
       // SONAR-4739
       if (!alreadyLoggedDeserializationIssue) {
@@ -144,11 +215,11 @@ public class DefaultNotificationManager implements NotificationManager {
       String channelKey = channel.getKey();
 
       // Find users subscribed globally to the dispatcher (i.e. not on a specific project)
-      addUsersToRecipientListForChannel(propertiesDao.findUsersForNotification(dispatcherKey, channelKey, null), recipients, channel);
+      addUsersToRecipientListForChannel(findUsersForNotification(dispatcherKey, channelKey, null), recipients, channel);
 
       if (resourceId != null) {
         // Find users subscribed to the dispatcher specifically for the resource
-        addUsersToRecipientListForChannel(propertiesDao.findUsersForNotification(dispatcherKey, channelKey, resourceId.longValue()), recipients, channel);
+        addUsersToRecipientListForChannel(findUsersForNotification(dispatcherKey, channelKey, resourceId.longValue()), recipients, channel);
       }
     }
 
@@ -161,12 +232,54 @@ public class DefaultNotificationManager implements NotificationManager {
 
     SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
     for (NotificationChannel channel : notificationChannels) {
-      addUsersToRecipientListForChannel(propertiesDao.findNotificationSubscribers(dispatcherKey, channel.getKey(), componentKey), recipients, channel);
+      addUsersToRecipientListForChannel(findNotificationSubscribers(dispatcherKey, channel.getKey(), componentKey), recipients, channel);
     }
 
     return recipients;
   }
 
+  /**
+   * Keep in memory the subscribers loaded by the current thread until {@link #disableSubscribersCache()} is called,
+   * so that the subscribers of a same project are loaded only once when dispatching a batch of notifications.
+   * @since 4.5.4
+   */
+  public void enableSubscribersCache() {
+    subscribersCache.set(new HashMap<List<Object>, List<String>>());
+  }
+
+  /**
+   * @since 4.5.4
+   */
+  public void disableSubscribersCache() {
+    subscribersCache.remove();
+  }
+
+  private List<String> findUsersForNotification(String dispatcherKey, String channelKey, @Nullable Long resourceId) {
+    Map<List<Object>, List<String>> cache = subscribersCache.get();
+    List<Object> subscription = Arrays.<Object>asList("resourceId", dispatcherKey, channelKey, resourceId);
+    List<String> users = cache != null ? cache.get(subscription) : null;
+    if (users == null) {
+      users = propertiesDao.findUsersForNotification(dispatcherKey, channelKey, resourceId);
+      if (cache != null) {
+        cache.put(subscription, users);
+      }
+    }
+    return users;
+  }
+
+  private List<String> findNotificationSubscribers(String dispatcherKey, String channelKey, @Nullable String componentKey) {
+    Map<List<Object>, List<String>> cache = subscribersCache.get();
+    List<Object> subscription = Arrays.<Object>asList("componentKey", dispatcherKey, channelKey, componentKey);
+    List<String> users = cache != null ? cache.get(subscription) : null;
+    if (users == null) {
+      users = propertiesDao.findNotificationSubscribers(dispatcherKey, channelKey, componentKey);
+      if (cache != null) {
+        cache.put(subscription, users);
+      }
+    }
+    return users;
+  }
+
   @VisibleForTesting
   protected List<NotificationChannel> getChannels() {
     return Arrays.asList(notificationChannels);
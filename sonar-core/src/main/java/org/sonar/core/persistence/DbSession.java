@@ -25,18 +25,31 @@ import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.session.SqlSession;
 import org.sonar.core.cluster.ClusterAction;
+import org.sonar.core.cluster.CoalescableAction;
 import org.sonar.core.cluster.WorkQueue;
 
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 public class DbSession implements SqlSession {
 
   private static final Integer IMPLICIT_COMMIT_SIZE = 1000;
+
+  /**
+   * Enqueued actions. Actions replaced by a later action on the same target are set to null.
+   */
   private List<ClusterAction> actions;
 
+  /**
+   * Positions in {@link #actions} of the actions enqueued on each target
+   */
+  private Map<Object, LinkedList<Integer>> positionsByTarget;
+  private int coalescedActions = 0;
+
   private WorkQueue queue;
   private SqlSession session;
 
@@ -44,27 +57,61 @@ public class DbSession implements SqlSession {
     this.session = session;
     this.queue = queue;
     this.actions = new ArrayList<ClusterAction>();
+    this.positionsByTarget = new HashMap<Object, LinkedList<Integer>>();
   }
 
   public void enqueue(ClusterAction action) {
+    if (action instanceof CoalescableAction) {
+      coalesce((CoalescableAction) action);
+    }
     this.actions.add(action);
-    if (this.actions.size() > IMPLICIT_COMMIT_SIZE) {
+    if (this.actions.size() - coalescedActions > IMPLICIT_COMMIT_SIZE) {
       this.commit();
     }
   }
 
+  /**
+   * Discards the latest actions enqueued on the same target as long as they are replaced by the new one
+   */
+  private void coalesce(CoalescableAction action) {
+    LinkedList<Integer> positions = positionsByTarget.get(action.getTarget());
+    if (positions == null) {
+      positions = new LinkedList<Integer>();
+      positionsByTarget.put(action.getTarget(), positions);
+    }
+    while (!positions.isEmpty() && action.replaces((CoalescableAction) actions.get(positions.getLast()))) {
+      actions.set(positions.removeLast(), null);
+      coalescedActions++;
+    }
+    positions.add(actions.size());
+  }
+
   @Override
   public void commit() {
     session.commit();
-    queue.enqueue(actions);
-    actions.clear();
+    flushActions();
   }
 
   @Override
   public void commit(boolean force) {
     session.commit(force);
-    queue.enqueue(actions);
+    flushActions();
+  }
+
+  private void flushActions() {
+    List<ClusterAction> remainingActions = actions;
+    if (coalescedActions > 0) {
+      remainingActions = new ArrayList<ClusterAction>(actions.size() - coalescedActions);
+      for (ClusterAction action : actions) {
+        if (action != null) {
+          remainingActions.add(action);
+        }
+      }
+    }
+    queue.enqueue(remainingActions);
     actions.clear();
+    positionsByTarget.clear();
+    coalescedActions = 0;
   }
 
   /**
@@ -217,6 +217,15 @@ public class MyBatis implements BatchComponent, ServerComponent {
     return new DbSession(queue, session);
   }
 
+  /**
+   * Opens a batch session that flushes statements every <code>batchSize</code> inserts, updates or deletes.
+   * @since 4.5.4
+   */
+  public BatchSession openBatchSession(int batchSize) {
+    SqlSession session = sessionFactory.openSession(ExecutorType.BATCH);
+    return new BatchSession(queue, session, batchSize);
+  }
+
   public static void closeQuietly(SqlSession session) {
     if (session != null) {
       try {
@@ -71,7 +71,22 @@ public class PreviewCache implements ServerExtension {
     this.previewDatabaseFactory = previewDatabaseFactory;
   }
 
+  /**
+   * Content of the preview database. Prefer {@link #getDatabaseFileForPreview(Long)} which does not load
+   * the whole database in memory.
+   */
   public byte[] getDatabaseForPreview(@Nullable Long projectId) {
+    return fileToByte(getDatabaseFileForPreview(projectId));
+  }
+
+  /**
+   * File of the preview database, generated if it is not up-to-date. The name of the file is the timestamp
+   * of its generation. The file is kept when the next database is generated, so that it can still be read after
+   * this method returns, and is deleted only by the following generation.
+   *
+   * @since 4.5.4
+   */
+  public File getDatabaseFileForPreview(@Nullable Long projectId) {
     long notNullProjectId = projectId != null ? projectId.longValue() : 0L;
     ReadWriteLock rwl = getLock(notNullProjectId);
     try {
@@ -91,8 +106,7 @@ public class PreviewCache implements ServerExtension {
         // unlock write, still hold read
         rwl.writeLock().unlock();
       }
-      File dbFile = new File(getCacheLocation(projectId), lastTimestampPerProject.get(notNullProjectId) + PreviewDatabaseFactory.H2_FILE_SUFFIX);
-      return fileToByte(dbFile);
+      return new File(getCacheLocation(projectId), lastTimestampPerProject.get(notNullProjectId) + PreviewDatabaseFactory.H2_FILE_SUFFIX);
     } finally {
       rwl.readLock().unlock();
     }
@@ -122,12 +136,28 @@ public class PreviewCache implements ServerExtension {
     long notNullProjectId = projectId != null ? projectId.longValue() : 0L;
     long newTimestamp = System.currentTimeMillis();
     File cacheLocation = getCacheLocation(projectId);
-    FileUtils.deleteQuietly(cacheLocation);
+    deletePreviousDatabases(cacheLocation, lastTimestampPerProject.get(notNullProjectId));
     File dbFile = previewDatabaseFactory.createNewDatabaseForDryRun(projectId, cacheLocation, String.valueOf(newTimestamp));
     LOG.debug("Cached DB at {}", dbFile);
     lastTimestampPerProject.put(notNullProjectId, newTimestamp);
   }
 
+  /**
+   * Deletes the files of the cache location, except the ones of the last generated database which may
+   * be currently downloaded
+   */
+  private void deletePreviousDatabases(File cacheLocation, @Nullable Long lastTimestamp) {
+    File[] files = cacheLocation.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (lastTimestamp == null || !file.getName().startsWith(lastTimestamp + ".")) {
+        FileUtils.deleteQuietly(file);
+      }
+    }
+  }
+
   private byte[] fileToByte(File dbFile) {
     try {
       return Files.toByteArray(dbFile);
@@ -157,6 +157,19 @@ class PurgeCommands {
     deleteSnapshots(purgeMapper.selectSnapshotIds(query));
   }
 
+  /**
+   * Deletes the given root snapshots and all the snapshots of their trees. Ids are collected
+   * first so that each table is cleaned only once for the whole set.
+   */
+  void deleteSnapshotTrees(final List<Long> rootSnapshotIds) {
+    List<Long> snapshotIds = Lists.newArrayList();
+    for (List<Long> partRootSnapshotIds : Lists.partition(rootSnapshotIds, MAX_SNAPSHOTS_PER_QUERY)) {
+      snapshotIds.addAll(purgeMapper.selectSnapshotIdsByRootSnapshots(partRootSnapshotIds));
+    }
+    snapshotIds.addAll(rootSnapshotIds);
+    deleteSnapshots(snapshotIds);
+  }
+
   @VisibleForTesting
   protected void deleteSnapshots(final List<Long> snapshotIds) {
 
@@ -194,6 +194,24 @@ public class PurgeDao {
     }
   }
 
+  /**
+   * Delete the given project snapshots with all the snapshots of their trees. The deletion is done table by table
+   * for the whole set of snapshots, instead of once per snapshot.
+   */
+  public PurgeDao deleteSnapshotTrees(List<Long> rootSnapshotIds) {
+    if (rootSnapshotIds.isEmpty()) {
+      return this;
+    }
+    final DbSession session = mybatis.openSession(true);
+    try {
+      new PurgeCommands(session, profiler).deleteSnapshotTrees(rootSnapshotIds);
+      return this;
+
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
   /**
    * Load the whole tree of projects, including the project given in parameter.
    */
@@ -32,6 +32,8 @@ public interface PurgeMapper {
 
   List<Long> selectSnapshotIdsByResource(@Param("resourceIds") List<Long> resourceIds);
 
+  List<Long> selectSnapshotIdsByRootSnapshots(@Param("rootSnapshotIds") List<Long> rootSnapshotIds);
+
   List<Long> selectProjectIdsByRootId(long rootResourceId);
 
   void deleteSnapshot(@Param("snapshotIds") List<Long> snapshotIds);
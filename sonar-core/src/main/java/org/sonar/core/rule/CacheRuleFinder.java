@@ -39,6 +39,9 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Rules are cached per repository. Lookups are synchronized so that the finder can be shared
+ * by extensions executed concurrently.
+ *
  * @deprecated since 4.5
  */
 @Deprecated
@@ -54,7 +57,7 @@ public final class CacheRuleFinder implements RuleFinder {
   }
 
   @Override
-  public Rule findById(int ruleId) {
+  public synchronized Rule findById(int ruleId) {
     Rule rule = rulesById.get(ruleId);
     if (rule == null) {
       rule = doFindById(ruleId);
@@ -66,7 +69,7 @@ public final class CacheRuleFinder implements RuleFinder {
   }
 
   @Override
-  public Rule findByKey(String repositoryKey, String ruleKey) {
+  public synchronized Rule findByKey(String repositoryKey, String ruleKey) {
     Map<String, Rule> repository = loadRepository(repositoryKey);
     return repository.get(ruleKey);
   }
@@ -0,0 +1,229 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.source;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import org.apache.commons.codec.binary.Base64;
+
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Compact encoding of the syntax highlighting and symbol data stored in snapshot_data.
+ * <p/>
+ * Values are written as varints. Offsets are stored as deltas from the previous ones and CSS classes are written
+ * once, then referenced by index. The bytes are stored in Base64 after a version prefix, which distinguishes them
+ * from the former text format.
+ *
+ * @since 4.5.4
+ */
+public final class DecorationDataFormat {
+
+  static final String VERSION_1 = "#1:";
+
+  private DecorationDataFormat() {
+    // only static methods
+  }
+
+  /**
+   * Whether the data is written with this format rather than with the former text format
+   */
+  public static boolean isCompact(@Nullable String data) {
+    return data != null && data.startsWith(VERSION_1);
+  }
+
+  public interface SyntaxHighlightingHandler {
+    void onRule(int startOffset, int endOffset, String cssClass);
+  }
+
+  public interface SymbolHandler {
+    void onReference(int declarationStartOffset, int declarationEndOffset, int referenceStartOffset);
+  }
+
+  public static void readSyntaxHighlighting(String data, SyntaxHighlightingHandler handler) {
+    Input input = new Input(data);
+    String[] cssClasses = new String[input.readUnsigned()];
+    for (int i = 0; i < cssClasses.length; i++) {
+      cssClasses[i] = input.readString();
+    }
+    int startOffset = 0;
+    while (input.hasMore()) {
+      startOffset += input.readSigned();
+      int endOffset = startOffset + input.readSigned();
+      handler.onRule(startOffset, endOffset, cssClasses[input.readUnsigned()]);
+    }
+  }
+
+  public static void readSymbols(String data, SymbolHandler handler) {
+    Input input = new Input(data);
+    int declarationStartOffset = 0;
+    while (input.hasMore()) {
+      declarationStartOffset += input.readSigned();
+      int declarationEndOffset = declarationStartOffset + input.readSigned();
+      int referenceCount = input.readUnsigned();
+      int referenceStartOffset = declarationStartOffset;
+      for (int i = 0; i < referenceCount; i++) {
+        referenceStartOffset += input.readSigned();
+        handler.onReference(declarationStartOffset, declarationEndOffset, referenceStartOffset);
+      }
+    }
+  }
+
+  public static class SyntaxHighlightingWriter {
+    private final Map<String, Integer> indexesByCssClass = Maps.newLinkedHashMap();
+    private final Output rules = new Output();
+    private int previousStartOffset = 0;
+
+    public SyntaxHighlightingWriter add(int startOffset, int endOffset, String cssClass) {
+      Integer index = indexesByCssClass.get(cssClass);
+      if (index == null) {
+        index = indexesByCssClass.size();
+        indexesByCssClass.put(cssClass, index);
+      }
+      rules.writeSigned(startOffset - previousStartOffset);
+      rules.writeSigned(endOffset - startOffset);
+      rules.writeUnsigned(index);
+      previousStartOffset = startOffset;
+      return this;
+    }
+
+    /**
+     * @return the encoded data, or an empty string if no rules were added
+     */
+    public String write() {
+      if (indexesByCssClass.isEmpty()) {
+        return "";
+      }
+      Output output = new Output();
+      output.writeUnsigned(indexesByCssClass.size());
+      for (String cssClass : indexesByCssClass.keySet()) {
+        output.writeString(cssClass);
+      }
+      output.writeBytes(rules);
+      return output.encode();
+    }
+  }
+
+  public static class SymbolsWriter {
+    private final Output symbols = new Output();
+    private int previousDeclarationStartOffset = 0;
+    private boolean empty = true;
+
+    public SymbolsWriter add(int declarationStartOffset, int declarationEndOffset, Collection<Integer> referenceStartOffsets) {
+      symbols.writeSigned(declarationStartOffset - previousDeclarationStartOffset);
+      symbols.writeSigned(declarationEndOffset - declarationStartOffset);
+      symbols.writeUnsigned(referenceStartOffsets.size());
+      int previousReferenceStartOffset = declarationStartOffset;
+      for (Integer referenceStartOffset : referenceStartOffsets) {
+        symbols.writeSigned(referenceStartOffset - previousReferenceStartOffset);
+        previousReferenceStartOffset = referenceStartOffset;
+      }
+      previousDeclarationStartOffset = declarationStartOffset;
+      empty = false;
+      return this;
+    }
+
+    /**
+     * @return the encoded data, or an empty string if no symbols were added
+     */
+    public String write() {
+      return empty ? "" : symbols.encode();
+    }
+  }
+
+  private static class Output {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    void writeUnsigned(int value) {
+      int remaining = value;
+      while ((remaining & ~0x7F) != 0) {
+        bytes.write((remaining & 0x7F) | 0x80);
+        remaining >>>= 7;
+      }
+      bytes.write(remaining);
+    }
+
+    /**
+     * Zigzag encoding, so that small negative values are written on few bytes
+     */
+    void writeSigned(int value) {
+      writeUnsigned((value << 1) ^ (value >> 31));
+    }
+
+    void writeString(String value) {
+      byte[] utf8 = value.getBytes(Charsets.UTF_8);
+      writeUnsigned(utf8.length);
+      bytes.write(utf8, 0, utf8.length);
+    }
+
+    void writeBytes(Output output) {
+      byte[] content = output.bytes.toByteArray();
+      bytes.write(content, 0, content.length);
+    }
+
+    String encode() {
+      return VERSION_1 + Base64.encodeBase64String(bytes.toByteArray());
+    }
+  }
+
+  private static class Input {
+    private final byte[] bytes;
+    private int position = 0;
+
+    Input(String data) {
+      if (!isCompact(data)) {
+        throw new IllegalArgumentException("Unsupported format of decoration data");
+      }
+      this.bytes = Base64.decodeBase64(data.substring(VERSION_1.length()));
+    }
+
+    boolean hasMore() {
+      return position < bytes.length;
+    }
+
+    int readUnsigned() {
+      int value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = bytes[position++];
+        value |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+
+    int readSigned() {
+      int value = readUnsigned();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    String readString() {
+      int length = readUnsigned();
+      String value = new String(bytes, position, length, Charsets.UTF_8);
+      position += length;
+      return value;
+    }
+  }
+}
@@ -39,6 +39,7 @@ import java.util.Map;
 import java.util.SortedSet;
 
 import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Sets.newHashSet;
 
 public class DefaultTestable extends BeanVertex implements MutableTestable {
 
@@ -77,9 +78,14 @@ public class DefaultTestable extends BeanVertex implements MutableTestable {
   }
 
   public Map<Integer, Integer> testCasesByLines() {
+    // single pass over the coverage edges, instead of browsing them for each tested line
     Map<Integer, Integer> testCasesByLines = newHashMap();
-    for (Integer line : testedLines()) {
-      testCasesByLines.put(line, countTestCasesOfLine(line));
+    for (Edge edge : coverEdges()) {
+      // a line is counted once per test case, even if listed several times by the edge
+      for (Integer line : newHashSet(lines(edge))) {
+        Integer count = testCasesByLines.get(line);
+        testCasesByLines.put(line, count == null ? 1 : (count + 1));
+      }
     }
     return testCasesByLines;
   }
@@ -95,6 +95,22 @@ public class AuthorizationDao implements ServerComponent, DaoComponent {
     return session.selectList(sql, params);
   }
 
+  /**
+   * Ids of the root projects and views on which the user has the given role.
+   * @since 4.5.4
+   */
+  public Collection<Long> selectAuthorizedRootProjectsIds(@Nullable Integer userId, String role) {
+    SqlSession session = mybatis.openSession(false);
+    try {
+      Map<String, Object> params = newHashMap();
+      params.put("userId", userId);
+      params.put("role", role);
+      return session.selectList("selectAuthorizedRootProjectsIds", params);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
   public List<String> selectGlobalPermissions(@Nullable String userLogin) {
     SqlSession session = mybatis.openSession(false);
     try {
@@ -0,0 +1,85 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.component;
+
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Test;
+import org.sonar.api.test.MutableTestable;
+import org.sonar.core.graph.binary.BinaryGraphFormat;
+import org.sonar.core.graph.binary.BinaryGraphWriter;
+import org.sonar.core.graph.graphson.GraphsonMode;
+import org.sonar.core.graph.graphson.GraphsonWriter;
+import org.sonar.core.graph.jdbc.GraphDao;
+import org.sonar.core.graph.jdbc.GraphDto;
+import org.sonar.core.test.TestablePerspectiveLoader;
+
+import java.io.StringWriter;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SnapshotPerspectivesTest {
+
+  GraphDao dao = mock(GraphDao.class);
+  SnapshotPerspectives perspectives = new SnapshotPerspectives(dao, new GraphPerspectiveLoader[] {new TestablePerspectiveLoader()});
+
+  @Test
+  public void read_binary_graph() {
+    GraphDto dto = new GraphDto()
+      .setFormat(BinaryGraphFormat.FORMAT)
+      .setVersion(BinaryGraphFormat.VERSION)
+      .setRootVertexId("1")
+      .setData(new BinaryGraphWriter().write(createGraph()));
+    when(dao.selectByComponent("testable", "org.struts:Action")).thenReturn(dto);
+
+    MutableTestable testable = perspectives.as(MutableTestable.class, "org.struts:Action");
+
+    assertThat(testable).isNotNull();
+    assertThat(testable.component().key()).isEqualTo("org.struts:Action");
+  }
+
+  @Test
+  public void read_graphson_graph_persisted_before_binary_format() {
+    StringWriter data = new StringWriter();
+    new GraphsonWriter().write(createGraph(), data, GraphsonMode.EXTENDED);
+    GraphDto dto = new GraphDto()
+      .setFormat("graphson")
+      .setVersion(1)
+      .setRootVertexId("1")
+      .setData(data.toString());
+    when(dao.selectByComponent("testable", "org.struts:Action")).thenReturn(dto);
+
+    MutableTestable testable = perspectives.as(MutableTestable.class, "org.struts:Action");
+
+    assertThat(testable).isNotNull();
+    assertThat(testable.component().key()).isEqualTo("org.struts:Action");
+  }
+
+  private static TinkerGraph createGraph() {
+    TinkerGraph graph = new TinkerGraph();
+    Vertex component = graph.addVertex("1");
+    component.setProperty("key", "org.struts:Action");
+    Vertex testable = graph.addVertex("2");
+    graph.addEdge("3", component, testable, "testable");
+    return graph;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.graph.binary;
+
+import com.google.common.collect.ImmutableMap;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraph;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+public class BinaryGraphWriterTest {
+
+  @Test
+  public void write_and_read_graph() {
+    TinkerGraph graph = new TinkerGraph();
+    Vertex testable = graph.addVertex("1");
+    testable.setProperty("key", "org.struts:struts:Action.java");
+    testable.setProperty("sid", 123L);
+    testable.setProperty("rid", 45);
+    testable.setProperty("enabled", true);
+    testable.setProperty("ratio", 0.75);
+    Vertex testCase = graph.addVertex("2");
+    testCase.setProperty("name", "should_execute");
+    testCase.setProperty("tags", Arrays.<Object>asList("slow", 3, null));
+    testCase.setProperty("extra", ImmutableMap.<String, Object>of("big", 10000000000L, "label", "foo"));
+    Edge covers = graph.addEdge("3", testCase, testable, "covers");
+    covers.setProperty("lines", Arrays.asList(3, 4, 5, 12, 10, -1));
+
+    String data = new BinaryGraphWriter().write(graph);
+    Graph copy = new BinaryGraphReader().read(data, new TinkerGraph());
+
+    Vertex v1 = copy.getVertex("1");
+    assertThat(v1.getProperty("key")).isEqualTo("org.struts:struts:Action.java");
+    assertThat(v1.getProperty("sid")).isEqualTo(123L);
+    assertThat(v1.getProperty("rid")).isEqualTo(45);
+    assertThat(v1.getProperty("enabled")).isEqualTo(true);
+    assertThat(v1.getProperty("ratio")).isEqualTo(0.75);
+
+    Vertex v2 = copy.getVertex("2");
+    assertThat(v2.getProperty("name")).isEqualTo("should_execute");
+    assertThat(v2.getProperty("tags")).isEqualTo(Arrays.<Object>asList("slow", 3, null));
+    Map extra = (Map) v2.getProperty("extra");
+    assertThat(extra.get("big")).isEqualTo(10000000000L);
+    assertThat(extra.get("label")).isEqualTo("foo");
+
+    Edge edge = copy.getEdge("3");
+    assertThat(edge.getLabel()).isEqualTo("covers");
+    assertThat(edge.getVertex(Direction.OUT).getId()).isEqualTo("2");
+    assertThat(edge.getVertex(Direction.IN).getId()).isEqualTo("1");
+    assertThat(edge.getProperty("lines")).isEqualTo(Arrays.asList(3, 4, 5, 12, 10, -1));
+  }
+
+  @Test
+  public void write_empty_graph() {
+    String data = new BinaryGraphWriter().write(new TinkerGraph());
+
+    Graph copy = new BinaryGraphReader().read(data, new TinkerGraph());
+    assertThat(copy.getVertices()).isEmpty();
+    assertThat(copy.getEdges()).isEmpty();
+  }
+
+  @Test
+  public void fail_to_read_truncated_data() {
+    TinkerGraph graph = new TinkerGraph();
+    graph.addVertex("1").setProperty("key", "foo");
+    String data = new BinaryGraphWriter().write(graph);
+
+    try {
+      new BinaryGraphReader().read(data.substring(0, 4), new TinkerGraph());
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Unable to read graph: data is truncated");
+    }
+  }
+}
@@ -27,6 +27,9 @@ import org.sonar.api.utils.DateUtils;
 import org.sonar.core.persistence.AbstractDaoTestCase;
 import org.sonar.core.persistence.MyBatis;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class IssueMapperTest extends AbstractDaoTestCase {
@@ -78,6 +81,16 @@ public class IssueMapperTest extends AbstractDaoTestCase {
     checkTables("testInsert", new String[]{"id"}, "issues");
   }
 
+  @Test
+  public void selectByKeys() throws Exception {
+    setupData("selectByKeys");
+
+    List<IssueDto> issues = mapper.selectByKeys(Arrays.asList("ABCDE-1", "ABCDE", "UNKNOWN"));
+    assertThat(issues).onProperty("kee").containsOnly("ABCDE-1", "ABCDE");
+    assertThat(issues).onProperty("componentKey").containsOnly("Action.java");
+    assertThat(issues).onProperty("rule").containsOnly("AvoidCycle");
+  }
+
   @Test
   public void testUpdate() throws Exception {
     setupData("testUpdate");
@@ -19,6 +19,7 @@
  */
 package org.sonar.core.issue.db;
 
+import com.google.common.collect.Lists;
 import org.junit.Test;
 import org.sonar.api.issue.internal.DefaultIssue;
 import org.sonar.api.issue.internal.DefaultIssueComment;
@@ -30,10 +31,20 @@ import org.sonar.api.rules.RuleQuery;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.Duration;
 import org.sonar.core.persistence.AbstractDaoTestCase;
+import org.sonar.core.persistence.BatchSession;
+import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 public class IssueStorageTest extends AbstractDaoTestCase {
 
@@ -147,11 +158,71 @@ public class IssueStorageTest extends AbstractDaoTestCase {
     checkTables("should_resolve_conflicts_on_updates", new String[]{"id", "created_at", "updated_at", "issue_change_creation_date"}, "issues");
   }
 
+  @Test
+  public void should_resolve_only_conflicting_issues_of_large_updates() throws Exception {
+    setupData("should_resolve_conflicts_on_updates");
+    FakeSaver saver = new FakeSaver(getMyBatis(), new FakeRuleFinder());
+    int nbIssues = BatchSession.MAX_BATCH_SIZE * 2 + 10;
+    List<DefaultIssue> issues = Lists.newArrayList();
+    for (int i = 0; i < nbIssues; i++) {
+      issues.add(newIssue("ISSUE-" + i).setNew(true));
+    }
+    saver.save(issues);
+
+    UpdateConflictResolver conflictResolver = mock(UpdateConflictResolver.class);
+    saver = new FakeSaver(getMyBatis(), new FakeRuleFinder(), conflictResolver);
+    // issues were loaded by scan after their insertion
+    Date selectedAt = new Date();
+    DefaultIssue modifiedByEndUser = null;
+    for (int i = 0; i < nbIssues; i++) {
+      DefaultIssue issue = issues.get(i).setNew(false).setChanged(true).setLine(i + 1);
+      if (i % 2 == 0) {
+        // unconditional update, issue is changed by end-user
+        issue.setSelectedAt(null);
+      } else if (i == BatchSession.MAX_BATCH_SIZE + 1) {
+        // issue in database has been updated after the loading by scan
+        issue.setSelectedAt(DateUtils.parseDate("2005-01-01"));
+        modifiedByEndUser = issue;
+      } else {
+        issue.setSelectedAt(selectedAt);
+      }
+    }
+    saver.save(issues);
+
+    verify(conflictResolver).resolve(same(modifiedByEndUser), any(IssueMapper.class));
+    verifyNoMoreInteractions(conflictResolver);
+    DbSession session = getMyBatis().openSession(false);
+    try {
+      IssueMapper mapper = session.getMapper(IssueMapper.class);
+      // the conflicting issue is left to the resolver
+      assertThat(mapper.selectByKey(modifiedByEndUser.key()).getLine()).isNull();
+      assertThat(mapper.selectByKey("ISSUE-0").getLine()).isEqualTo(1);
+      assertThat(mapper.selectByKey("ISSUE-1").getLine()).isEqualTo(2);
+      assertThat(mapper.selectByKey("ISSUE-" + (nbIssues - 1)).getLine()).isEqualTo(nbIssues);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  private static DefaultIssue newIssue(String key) {
+    return new DefaultIssue()
+      .setKey(key)
+      .setRuleKey(RuleKey.of("squid", "AvoidCycle"))
+      .setComponentKey("struts:Action")
+      .setStatus("OPEN")
+      .setSeverity("MAJOR")
+      .setCreationDate(DateUtils.parseDate("2013-05-18"));
+  }
+
   static class FakeSaver extends IssueStorage {
     protected FakeSaver(MyBatis mybatis, RuleFinder ruleFinder) {
       super(mybatis, ruleFinder);
     }
 
+    FakeSaver(MyBatis mybatis, RuleFinder ruleFinder, UpdateConflictResolver conflictResolver) {
+      super(mybatis, ruleFinder, conflictResolver);
+    }
+
     @Override
     protected long componentId(DefaultIssue issue) {
       return 100l;
@@ -23,6 +23,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -109,6 +110,52 @@ public class DefaultNotificationManagerTest extends AbstractDbUnitTestCase {
     inOrder.verify(notificationQueueDao).delete(dtos);
   }
 
+  @Test
+  public void shouldGetBatchFromQueueAndIgnoreUnreadableNotifications() throws Exception {
+    NotificationQueueDto unreadable = mock(NotificationQueueDto.class);
+    when(unreadable.toNotification()).thenThrow(new InvalidClassException("Pouet"));
+    List<NotificationQueueDto> dtos = Arrays.asList(
+      NotificationQueueDto.toNotificationQueueDto(new Notification("first")),
+      unreadable,
+      NotificationQueueDto.toNotificationQueueDto(new Notification("second")));
+    when(notificationQueueDao.findOldest(10)).thenReturn(dtos);
+
+    List<Notification> notifications = manager.getFromQueue(10);
+
+    assertThat(notifications).hasSize(2);
+    assertThat(notifications.get(0).getType()).isEqualTo("first");
+    assertThat(notifications.get(1).getType()).isEqualTo("second");
+    verify(notificationQueueDao).delete(dtos);
+  }
+
+  @Test
+  public void shouldReadBatchFromQueueWithoutRemovingIt() throws Exception {
+    NotificationQueueDto unreadable = mock(NotificationQueueDto.class);
+    when(unreadable.toNotification()).thenThrow(new InvalidClassException("Pouet"));
+    NotificationQueueDto first = NotificationQueueDto.toNotificationQueueDto(new Notification("first")).setId(1L);
+    NotificationQueueDto second = NotificationQueueDto.toNotificationQueueDto(new Notification("second")).setId(3L);
+    when(notificationQueueDao.findOldest(10)).thenReturn(Arrays.asList(first, unreadable, second));
+
+    Map<Long, Notification> notifications = manager.readFromQueue(10);
+
+    assertThat(Lists.newArrayList(notifications.keySet())).containsExactly(1L, 3L);
+    assertThat(notifications.get(1L).getType()).isEqualTo("first");
+    assertThat(notifications.get(3L).getType()).isEqualTo("second");
+    // only unreadable notifications are removed
+    verify(notificationQueueDao).delete(Arrays.asList(unreadable));
+  }
+
+  @Test
+  public void shouldRemoveFromQueue() {
+    manager.removeFromQueue(Arrays.asList(1L, 3L));
+
+    ArgumentCaptor<List> dtos = ArgumentCaptor.forClass(List.class);
+    verify(notificationQueueDao).delete(dtos.capture());
+    assertThat(dtos.getValue()).hasSize(2);
+    assertThat(((NotificationQueueDto) dtos.getValue().get(0)).getId()).isEqualTo(1L);
+    assertThat(((NotificationQueueDto) dtos.getValue().get(1)).getId()).isEqualTo(3L);
+  }
+
   // SONAR-4739
   @Test
   public void shouldNotFailWhenUnableToDeserialize() throws Exception {
@@ -178,4 +225,18 @@ public class DefaultNotificationManagerTest extends AbstractDbUnitTestCase {
     assertThat(map.get("user2")).containsOnly(emailChannel, twitterChannel);
     assertThat(map.get("other")).isNull();
   }
+
+  @Test
+  public void shouldLoadSubscribersOnceWhenCacheIsEnabled() {
+    when(propertiesDao.findNotificationSubscribers("NewViolations", "Email", "struts")).thenReturn(Lists.newArrayList("user1"));
+
+    manager.enableSubscribersCache();
+    manager.findNotificationSubscribers(dispatcher, "struts");
+    Multimap<String, NotificationChannel> multiMap = manager.findNotificationSubscribers(dispatcher, "struts");
+    manager.disableSubscribersCache();
+    manager.findNotificationSubscribers(dispatcher, "struts");
+
+    assertThat(multiMap.get("user1")).containsOnly(emailChannel);
+    verify(propertiesDao, times(2)).findNotificationSubscribers("NewViolations", "Email", "struts");
+  }
 }
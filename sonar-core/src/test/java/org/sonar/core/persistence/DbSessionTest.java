@@ -0,0 +1,130 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.persistence;
+
+import org.apache.ibatis.session.SqlSession;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.core.cluster.ClusterAction;
+import org.sonar.core.cluster.CoalescableAction;
+import org.sonar.core.cluster.WorkQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class DbSessionTest {
+
+  RecordingQueue queue = new RecordingQueue();
+  DbSession session;
+
+  @Before
+  public void setUp() {
+    session = new DbSession(queue, mock(SqlSession.class));
+  }
+
+  @Test
+  public void enqueue_actions_on_commit() {
+    FakeAction first = new FakeAction("a", false);
+    FakeAction second = new FakeAction("b", false);
+    session.enqueue(first);
+    session.enqueue(second);
+
+    assertThat(queue.actions).isEmpty();
+
+    session.commit();
+
+    assertThat(queue.actions).containsExactly(first, second);
+  }
+
+  @Test
+  public void discard_actions_replaced_by_later_action_on_same_target() {
+    FakeAction first = new FakeAction("a", true);
+    FakeAction other = new FakeAction("b", true);
+    FakeAction second = new FakeAction("a", true);
+    session.enqueue(first);
+    session.enqueue(other);
+    session.enqueue(second);
+    session.commit();
+
+    assertThat(queue.actions).containsExactly(other, second);
+  }
+
+  @Test
+  public void keep_actions_preceding_an_action_which_is_not_replaced() {
+    FakeAction first = new FakeAction("a", true);
+    FakeAction barrier = new FakeAction("a", false);
+    FakeAction second = new FakeAction("a", true);
+    session.enqueue(first);
+    session.enqueue(barrier);
+    session.enqueue(second);
+    session.commit();
+
+    assertThat(queue.actions).containsExactly(first, barrier, second);
+  }
+
+  @Test
+  public void do_not_coalesce_actions_of_different_commits() {
+    FakeAction first = new FakeAction("a", true);
+    FakeAction second = new FakeAction("a", true);
+    session.enqueue(first);
+    session.commit();
+    session.enqueue(second);
+    session.commit();
+
+    assertThat(queue.actions).containsExactly(first, second);
+  }
+
+  static class RecordingQueue implements WorkQueue<ClusterAction> {
+    List<ClusterAction> actions = new ArrayList<ClusterAction>();
+
+    @Override
+    public void enqueue(List<ClusterAction> actions) {
+      this.actions.addAll(actions);
+    }
+  }
+
+  static class FakeAction implements CoalescableAction<Void> {
+    private final String target;
+    private final boolean replacesPrevious;
+
+    FakeAction(String target, boolean replacesPrevious) {
+      this.target = target;
+      this.replacesPrevious = replacesPrevious;
+    }
+
+    @Override
+    public Object getTarget() {
+      return target;
+    }
+
+    @Override
+    public boolean replaces(CoalescableAction previous) {
+      return replacesPrevious && ((FakeAction) previous).replacesPrevious;
+    }
+
+    @Override
+    public Void call() {
+      return null;
+    }
+  }
+}
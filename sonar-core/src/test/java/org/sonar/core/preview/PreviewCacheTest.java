@@ -190,6 +190,37 @@ public class PreviewCacheTest {
     verify(dryRunDatabaseFactory, times(2)).createNewDatabaseForDryRun(anyLong(), any(File.class), anyString());
   }
 
+  @Test
+  public void keep_previous_database_file_until_next_generation() throws Exception {
+    when(dryRunDatabaseFactory.createNewDatabaseForDryRun(isNull(Long.class), any(File.class), anyString())).thenAnswer(new Answer<File>() {
+      public File answer(InvocationOnMock invocation) throws IOException {
+        Object[] args = invocation.getArguments();
+        File dbFile = new File(new File(dryRunCacheLocation, "default"), (String) args[2] + ".h2.db");
+        FileUtils.write(dbFile, "fake db content");
+        return dbFile;
+      }
+    });
+    File first = dryRunCache.getDatabaseFileForPreview(null);
+    assertThat(first).exists();
+    assertThat(dryRunCache.getDatabaseFileForPreview(null)).isEqualTo(first);
+
+    // Emulate invalidation of cache
+    Thread.sleep(10);
+    when(propertiesDao.selectGlobalProperty(PreviewCache.SONAR_PREVIEW_CACHE_LAST_UPDATE_KEY)).thenReturn(new PropertyDto().setValue("" + System.currentTimeMillis()));
+    Thread.sleep(10);
+    File second = dryRunCache.getDatabaseFileForPreview(null);
+    assertThat(second).isNotEqualTo(first);
+    assertThat(first).exists();
+
+    Thread.sleep(10);
+    when(propertiesDao.selectGlobalProperty(PreviewCache.SONAR_PREVIEW_CACHE_LAST_UPDATE_KEY)).thenReturn(new PropertyDto().setValue("" + System.currentTimeMillis()));
+    Thread.sleep(10);
+    File third = dryRunCache.getDatabaseFileForPreview(null);
+    assertThat(third).exists();
+    assertThat(second).exists();
+    assertThat(first).doesNotExist();
+  }
+
   @Test
   public void test_get_cache_location() throws Exception {
     File tempFolder = temp.newFolder();
@@ -27,6 +27,7 @@ import org.sonar.api.utils.System2;
 import org.sonar.core.persistence.AbstractDaoTestCase;
 import org.sonar.core.resource.ResourceDao;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -82,6 +83,13 @@ public class PurgeDaoTest extends AbstractDaoTestCase {
     checkTables("shouldDeleteSnapshots", "snapshots");
   }
 
+  @Test
+  public void should_delete_snapshot_trees() {
+    setupData("should_delete_snapshot_trees");
+    dao.deleteSnapshotTrees(Arrays.asList(3L));
+    checkTables("should_delete_snapshot_trees", "snapshots");
+  }
+
   @Test
   public void shouldSelectPurgeableSnapshots() {
     setupData("shouldSelectPurgeableSnapshots");
@@ -0,0 +1,102 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.source;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DecorationDataFormatTest {
+
+  @Test
+  public void read_written_syntax_highlighting() {
+    String data = new DecorationDataFormat.SyntaxHighlightingWriter()
+      .add(0, 10, "cd")
+      .add(10, 12, "k")
+      .add(24, 65, "cppd")
+      .add(20, 300000, "k")
+      .write();
+
+    assertThat(DecorationDataFormat.isCompact(data)).isTrue();
+    final List<String> rules = Lists.newArrayList();
+    DecorationDataFormat.readSyntaxHighlighting(data, new DecorationDataFormat.SyntaxHighlightingHandler() {
+      @Override
+      public void onRule(int startOffset, int endOffset, String cssClass) {
+        rules.add(startOffset + "," + endOffset + "," + cssClass);
+      }
+    });
+    assertThat(rules).containsExactly("0,10,cd", "10,12,k", "24,65,cppd", "20,300000,k");
+  }
+
+  @Test
+  public void read_written_symbols() {
+    String data = new DecorationDataFormat.SymbolsWriter()
+      .add(10, 20, Arrays.asList(10, 32))
+      .add(55, 62, Arrays.asList(40, 55, 70))
+      .add(84, 92, Collections.<Integer>emptyList())
+      .write();
+
+    final List<String> references = Lists.newArrayList();
+    DecorationDataFormat.readSymbols(data, new DecorationDataFormat.SymbolHandler() {
+      @Override
+      public void onReference(int declarationStartOffset, int declarationEndOffset, int referenceStartOffset) {
+        references.add(declarationStartOffset + "," + declarationEndOffset + "," + referenceStartOffset);
+      }
+    });
+    assertThat(references).containsExactly("10,20,10", "10,20,32", "55,62,40", "55,62,55", "55,62,70");
+  }
+
+  @Test
+  public void write_empty_string_when_no_data() {
+    assertThat(new DecorationDataFormat.SyntaxHighlightingWriter().write()).isEmpty();
+    assertThat(new DecorationDataFormat.SymbolsWriter().write()).isEmpty();
+  }
+
+  @Test
+  public void recognize_text_format() {
+    assertThat(DecorationDataFormat.isCompact("0,10,cd;10,12,k;")).isFalse();
+    assertThat(DecorationDataFormat.isCompact(null)).isFalse();
+  }
+
+  @Test
+  public void be_smaller_than_text_format() {
+    DecorationDataFormat.SyntaxHighlightingWriter writer = new DecorationDataFormat.SyntaxHighlightingWriter();
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      writer.add(100000 + i * 20, 100000 + i * 20 + 7, "cppd");
+      text.append(100000 + i * 20).append(',').append(100000 + i * 20 + 7).append(",cppd;");
+    }
+    assertThat(writer.write().length()).isLessThan(text.length() / 4);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fail_to_read_text_format() {
+    DecorationDataFormat.readSymbols("10,20,10;", new DecorationDataFormat.SymbolHandler() {
+      @Override
+      public void onReference(int declarationStartOffset, int declarationEndOffset, int referenceStartOffset) {
+      }
+    });
+  }
+}
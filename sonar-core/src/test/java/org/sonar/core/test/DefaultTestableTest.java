@@ -127,4 +127,18 @@ public class DefaultTestableTest {
 
     assertThat(testable.testCasesByLines()).isEqualTo(ImmutableMap.of(49, 1, 48, 1, 10, 1, 11, 1, 12, 2));
   }
+
+  @Test
+  public void test_cases_by_lines_count_duplicated_lines_once() {
+    BeanGraph beanGraph = BeanGraph.createInMemory();
+
+    DefaultTestable testable = beanGraph.createVertex(DefaultTestable.class);
+    DefaultTestCase testCase1 = beanGraph.createVertex(DefaultTestCase.class);
+    testCase1.setCoverageBlock(testable, Arrays.asList(10, 10, 11));
+    DefaultTestCase testCase2 = beanGraph.createVertex(DefaultTestCase.class);
+    testCase2.setCoverageBlock(testable, Arrays.asList(11, 11));
+
+    assertThat(testable.testCasesByLines()).isEqualTo(ImmutableMap.of(10, 1, 11, 2));
+    assertThat(testable.countTestCasesOfLine(11)).isEqualTo(2);
+  }
 }
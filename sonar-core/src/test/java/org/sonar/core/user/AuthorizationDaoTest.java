@@ -123,6 +123,20 @@ public class AuthorizationDaoTest extends AbstractDaoTestCase {
     assertThat(rootProjectIds).isEmpty();
   }
 
+  @Test
+  public void should_return_root_project_ids_for_user() {
+    setupData("should_return_root_project_keys_for_user");
+
+    AuthorizationDao authorization = new AuthorizationDao(getMyBatis());
+    Collection<Long> rootProjectIds = authorization.selectAuthorizedRootProjectsIds(USER, "user");
+
+    assertThat(rootProjectIds).containsOnly(300L);
+
+    // user does not have the role "admin"
+    rootProjectIds = authorization.selectAuthorizedRootProjectsIds(USER, "admin");
+    assertThat(rootProjectIds).isEmpty();
+  }
+
   @Test
   public void should_return_root_project_keys_for_group() {
     // but user is not in an authorized group
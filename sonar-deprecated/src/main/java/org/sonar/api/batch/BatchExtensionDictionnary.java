@@ -145,7 +145,7 @@ public class BatchExtensionDictionnary {
   /**
    * Extension dependencies
    */
-  private <T> List<Object> getDependencies(T extension) {
+  protected <T> List<Object> getDependencies(T extension) {
     List<Object> result = new ArrayList<Object>();
     result.addAll(evaluateAnnotatedClasses(extension, DependsUpon.class));
     if (ClassUtils.isAssignable(extension.getClass(), Sensor.class)) {
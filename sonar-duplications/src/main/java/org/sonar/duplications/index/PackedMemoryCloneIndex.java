@@ -40,6 +40,10 @@ import java.util.List;
  * <p>
  * Note that this implementation currently does not support deletion, however it's possible to implement.
  * </p>
+ * <p>
+ * This implementation is not thread-safe. However, once the index has been {@link #sort() sorted}, lookups do not
+ * modify it and can be executed by concurrent threads, as long as no block is inserted meanwhile.
+ * </p>
  */
 public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
@@ -66,8 +70,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
   private int[] resourceIdsIndex;
 
-  private final Block.Builder blockBuilder = Block.builder();
-
   public PackedMemoryCloneIndex() {
     this(8, DEFAULT_INITIAL_CAPACITY);
   }
@@ -95,15 +97,12 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   public Collection<Block> getByResourceId(String resourceId) {
     ensureSorted();
 
-    // prepare resourceId for binary search
-    resourceIds[size] = resourceId;
-    resourceIdsIndex[size] = size;
-
-    int index = DataUtils.binarySearch(byResourceId);
+    int index = lowerBoundByResourceId(resourceId);
 
     List<Block> result = Lists.newArrayList();
-    int realIndex = resourceIdsIndex[index];
-    while (index < size && FastStringComparator.INSTANCE.compare(resourceIds[realIndex], resourceId) == 0) {
+    Block.Builder blockBuilder = Block.builder();
+    while (index < size && FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[index]], resourceId) == 0) {
+      int realIndex = resourceIdsIndex[index];
       // extract block (note that there is no need to extract resourceId)
       int offset = realIndex * blockInts;
       int[] hash = new int[hashInts];
@@ -126,7 +125,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
       result.add(block);
 
       index++;
-      realIndex = resourceIdsIndex[index];
     }
     return result;
   }
@@ -137,23 +135,19 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
     ensureSorted();
 
-    // prepare hash for binary search
     int[] hash = sequenceHash.toIntArray();
     if (hash.length != hashInts) {
       throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
     }
-    int offset = size * blockInts;
-    for (int i = 0; i < hashInts; i++) {
-      blockData[offset++] = hash[i];
-    }
 
-    int index = DataUtils.binarySearch(byBlockHash);
+    int index = lowerBoundByHash(hash);
 
     List<Block> result = Lists.newArrayList();
-    while (index < size && !isLessByHash(size, index)) {
+    Block.Builder blockBuilder = Block.builder();
+    while (index < size && compareHash(index, hash) == 0) {
       // extract block (note that there is no need to extract hash)
       String resourceId = resourceIds[index];
-      offset = index * blockInts + hashInts;
+      int offset = index * blockInts + hashInts;
       int indexInFile = blockData[offset++];
       int firstLineNumber = blockData[offset++];
       int lastLineNumber = blockData[offset++];
@@ -223,6 +217,15 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     sorted = false;
   }
 
+  /**
+   * Sorts the index, if necessary. Lookups executed afterwards do not modify the index.
+   *
+   * @since 4.5.4
+   */
+  public void sort() {
+    ensureSorted();
+  }
+
   /**
    * Performs sorting, if necessary.
    */
@@ -231,8 +234,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
       return;
     }
 
-    ensureCapacity();
-
     DataUtils.sort(byBlockHash);
     for (int i = 0; i < size; i++) {
       resourceIdsIndex[i] = i;
@@ -242,6 +243,53 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     sorted = true;
   }
 
+  /**
+   * @return position of the first resourceId, in order of {@link #resourceIdsIndex}, which is not less than given one
+   */
+  private int lowerBoundByResourceId(String resourceId) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[mid]], resourceId) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  /**
+   * @return position of the first block, which hash is not less than given one
+   */
+  private int lowerBoundByHash(int[] hash) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  private int compareHash(int i, int[] hash) {
+    int offset = i * blockInts;
+    for (int k = 0; k < hashInts; k++, offset++) {
+      if (blockData[offset] < hash[k]) {
+        return -1;
+      }
+      if (blockData[offset] > hash[k]) {
+        return 1;
+      }
+    }
+    return 0;
+  }
+
   private boolean isLessByHash(int i, int j) {
     int i2 = i * blockInts;
     int j2 = j * blockInts;
@@ -19,12 +19,18 @@
  */
 package org.sonar.duplications.index;
 
+import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.sameInstance;
@@ -109,6 +115,55 @@ public class PackedMemoryCloneIndexTest {
     index.getBySequenceHash(new ByteArray(1L));
   }
 
+  /**
+   * Given: index filled up to its capacity.
+   * Expected: lookups do not need any additional capacity.
+   */
+  @Test
+  public void should_find_blocks_when_index_is_full() {
+    PackedMemoryCloneIndex index = new PackedMemoryCloneIndex(8, 2);
+    index.insert(newBlock("b", 2));
+    index.insert(newBlock("a", 1));
+    index.sort();
+
+    assertThat(index.getByResourceId("a").size(), is(1));
+    assertThat(index.getByResourceId("b").size(), is(1));
+    assertThat(index.getByResourceId("c").size(), is(0));
+    assertThat(index.getBySequenceHash(new ByteArray(2L)).size(), is(1));
+    assertThat(index.getBySequenceHash(new ByteArray(3L)).size(), is(0));
+  }
+
+  /**
+   * Given: sorted index.
+   * Expected: concurrent lookups return the same blocks as sequential ones.
+   */
+  @Test
+  public void should_support_concurrent_lookups_once_sorted() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      index.insert(newBlock("resource" + (i % 10), i % 100));
+    }
+    index.sort();
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> futures = Lists.newArrayList();
+      for (int i = 0; i < 100; i++) {
+        final int hash = i;
+        futures.add(executor.submit(new Callable<Boolean>() {
+          public Boolean call() {
+            return index.getBySequenceHash(new ByteArray((long) hash)).size() == 10
+              && index.getByResourceId("resource" + (hash % 10)).size() == 100;
+          }
+        }));
+      }
+      for (Future<Boolean> future : futures) {
+        assertThat(future.get(), is(true));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   private static Block newBlock(String resourceId, long hash) {
     return Block.builder()
         .setResourceId(resourceId)
@@ -0,0 +1,46 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a batch extension that can be executed concurrently with other extensions of the same kind.
+ * <ul>
+ *   <li>A {@link Decorator} can then be executed concurrently on different resources. It must not keep state
+ *   between two calls and must only use the measure-related methods of {@link DecoratorContext}.</li>
+ *   <li>A {@link org.sonar.api.batch.sensor.Sensor} can then be executed concurrently with the other sensors
+ *   that work on different languages, as declared by its {@link org.sonar.api.batch.sensor.SensorDescriptor}.</li>
+ *   <li>A {@link Sensor} can then be executed concurrently with the other sensors annotated with {@link ConcurrentExecution}.
+ *   It must only save data on the module and must not read data saved by the other sensors.</li>
+ * </ul>
+ * Extensions without this annotation are executed one at a time, even when parallel execution is enabled.
+ *
+ * @since 4.5.4
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE})
+@Inherited
+public @interface ConcurrentExecution {
+}
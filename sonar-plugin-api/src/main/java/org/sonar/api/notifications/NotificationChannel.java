@@ -47,6 +47,11 @@ public abstract class NotificationChannel implements ServerExtension {
 
   /**
    * Implements the delivery of the given notification to the given user.
+   * <p>
+   * The server delivers notifications with the number of threads defined by the property
+   * <code>sonar.notifications.workers</code>, one by default. When greater than one, this method can be called
+   * concurrently and must be thread-safe.
+   * </p>
    * 
    * @param notification the notification to deliver
    * @param userlogin the login of the user who should receive the notification